@@ -15,23 +15,37 @@
  */
 package com.facebook.litho;
 
-import android.support.annotation.Nullable;
-
+/**
+ * Allocates small arrays that live as long as the Components holding them in batches, so that a
+ * layout creating many of them does fewer allocations. Each thread has its own batch, since
+ * Components are created on any thread.
+ */
 public class ArrayBatchAllocator {
 
   private static final int batchSize = 200;
 
-  @Nullable private static int[][] arrays = null;
-  private static int index = 0;
+  private static final ThreadLocal<Batch> sBatches =
+      new ThreadLocal<Batch>() {
+        @Override
+        protected Batch initialValue() {
+          return new Batch();
+        }
+      };
 
   /** same as calling new int[2]; */
   public static int[] newArrayOfSize2() {
-    if (arrays == null || arrays.length == index) {
-      arrays = new int[batchSize][2];
-      index = 0;
+    final Batch batch = sBatches.get();
+    if (batch.arrays == null || batch.arrays.length == batch.index) {
+      batch.arrays = new int[batchSize][2];
+      batch.index = 0;
     }
-    int[] toReturn = arrays[index];
-    arrays[index++] = null;
+    int[] toReturn = batch.arrays[batch.index];
+    batch.arrays[batch.index++] = null;
     return toReturn;
   }
+
+  private static class Batch {
+    private int[][] arrays;
+    private int index;
+  }
 }
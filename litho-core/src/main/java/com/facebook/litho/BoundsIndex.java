@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import android.graphics.Rect;
+import java.util.Arrays;
+
+/**
+ * A static interval tree over the bounds of the outputs of a {@link LayoutState}, which finds the
+ * outputs intersecting a rect without going through all of them.
+ *
+ * <p>Bounds are sorted by top, and the sorted array is the in-order traversal of an implicit
+ * balanced tree in which every node knows the largest bottom of its subtree. A query skips the
+ * subtrees that end above the rect and everything that starts below it, and checks the horizontal
+ * axis on the remaining candidates, so it's O(log n + k) for k vertically overlapping outputs.
+ *
+ * <p>The index is filled and built on the thread that calculates the {@link LayoutState} and is
+ * only read after the LayoutState is published.
+ */
+final class BoundsIndex {
+
+  private int mSize;
+  private int[] mPositions = new int[0];
+  private int[] mTops = new int[0];
+  private int[] mBottoms = new int[0];
+  private int[] mLefts = new int[0];
+  private int[] mRights = new int[0];
+  private int[] mMaxBottoms = new int[0];
+  private long[] mSortKeys = new long[0];
+
+  /** Clears the index and prepares it to receive the bounds of the given number of outputs. */
+  void reset(int size) {
+    if (mPositions.length < size) {
+      mPositions = new int[size];
+      mTops = new int[size];
+      mBottoms = new int[size];
+      mLefts = new int[size];
+      mRights = new int[size];
+      mMaxBottoms = new int[size];
+      mSortKeys = new long[size];
+    }
+
+    mSize = size;
+  }
+
+  /** Sets the bounds of the output at the given position. Must be called for every position. */
+  void set(int position, Rect bounds) {
+    // The position goes in the low bits, so sorting the keys sorts by top then by position.
+    mSortKeys[position] = ((long) bounds.top << 32) | position;
+    mBottoms[position] = bounds.bottom;
+    mLefts[position] = bounds.left;
+    mRights[position] = bounds.right;
+  }
+
+  /** Sorts the bounds set with {@link #set(int, Rect)} and builds the tree. */
+  void build() {
+    Arrays.sort(mSortKeys, 0, mSize);
+
+    // Rearrange the bounds in sorted order, using the max bottoms array as scratch space.
+    for (int i = 0; i < mSize; i++) {
+      mPositions[i] = (int) mSortKeys[i];
+      mTops[i] = (int) (mSortKeys[i] >> 32);
+    }
+    reorder(mBottoms);
+    reorder(mLefts);
+    reorder(mRights);
+
+    buildMaxBottoms(0, mSize);
+  }
+
+  int size() {
+    return mSize;
+  }
+
+  /**
+   * Collects the positions of the outputs whose bounds intersect the given rect, with the same
+   * semantic as {@link Rect#intersects(Rect, Rect)}.
+   *
+   * @param out receives the positions, in no particular order. Must be at least as big as the
+   *     index.
+   * @return the number of positions written to out.
+   */
+  int findIntersecting(Rect rect, int[] out) {
+    return findIntersecting(rect, out, 0);
+  }
+
+  /**
+   * Same as {@link #findIntersecting(Rect, int[])}, writing the positions to out starting at the
+   * given offset.
+   */
+  int findIntersecting(Rect rect, int[] out, int offset) {
+    return findIntersecting(0, mSize, rect, out, offset) - offset;
+  }
+
+  private int findIntersecting(int start, int end, Rect rect, int[] out, int count) {
+    if (start >= end) {
+      return count;
+    }
+
+    final int mid = (start + end) >>> 1;
+
+    // Nothing in this subtree reaches the rect.
+    if (mMaxBottoms[mid] <= rect.top) {
+      return count;
+    }
+
+    count = findIntersecting(start, mid, rect, out, count);
+
+    // This output and every one after it start below the rect.
+    if (mTops[mid] >= rect.bottom) {
+      return count;
+    }
+
+    if (mBottoms[mid] > rect.top && mLefts[mid] < rect.right && rect.left < mRights[mid]) {
+      out[count++] = mPositions[mid];
+    }
+
+    return findIntersecting(mid + 1, end, rect, out, count);
+  }
+
+  private void reorder(int[] valuesByPosition) {
+    for (int i = 0; i < mSize; i++) {
+      mMaxBottoms[i] = valuesByPosition[mPositions[i]];
+    }
+    System.arraycopy(mMaxBottoms, 0, valuesByPosition, 0, mSize);
+  }
+
+  private int buildMaxBottoms(int start, int end) {
+    if (start >= end) {
+      return Integer.MIN_VALUE;
+    }
+
+    final int mid = (start + end) >>> 1;
+    final int maxBottom =
+        Math.max(
+            mBottoms[mid],
+            Math.max(buildMaxBottoms(start, mid), buildMaxBottoms(mid + 1, end)));
+    mMaxBottoms[mid] = maxBottom;
+
+    return maxBottom;
+  }
+}
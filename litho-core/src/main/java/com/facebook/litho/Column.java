@@ -108,6 +108,8 @@ public final class Column extends Component {
       boolean splitLayout = false;
       if (SplitBackgroundLayoutConfiguration.isSplitLayoutEnabled(this)) {
         splitLayout = SplitLayoutResolver.resolveLayouts(c, children, node);
+      } else if (children.size() > 1) {
+        splitLayout = SplitLayoutResolver.forkLayouts(c, children, node);
       }
       if (!splitLayout) {
         for (Component child : children) {
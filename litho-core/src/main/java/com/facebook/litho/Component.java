@@ -70,6 +70,10 @@ public abstract class Component extends ComponentLifecycle
   private int mId = sIdGenerator.getAndIncrement();
   @Nullable private String mOwnerGlobalKey;
   private String mGlobalKey;
+  /** Id of {@link #mGlobalKey} in {@link #mGlobalKeyInterner}, if it was interned. */
+  private int mGlobalKeyId = GlobalKeyInterner.NO_ID;
+  /** The interner of the layout {@link #mGlobalKeyId} was given by, which children use too. */
+  @Nullable private GlobalKeyInterner mGlobalKeyInterner;
   @Nullable private String mKey;
   private boolean mHasManualKey;
   /**
@@ -230,17 +234,26 @@ public abstract class Component extends ComponentLifecycle
    * @return a unique global key for this component relative to its siblings.
    */
   private String generateUniqueGlobalKeyForChild(Component component, String key) {
-
-    final String childKey = ComponentKeyUtils.getKeyWithSeparator(getGlobalKey(), key);
+    // Ids are only meaningful within the interner that gave them.
+    final GlobalKeyInterner interner = mGlobalKeyInterner;
+    component.mGlobalKeyInterner = interner;
+    final int childKeyId =
+        interner == null ? GlobalKeyInterner.NO_ID : interner.intern(mGlobalKeyId, key);
+    final String childKey =
+        childKeyId == GlobalKeyInterner.NO_ID
+            ? ComponentKeyUtils.getKeyWithSeparator(getGlobalKey(), key)
+            : interner.getKey(childKeyId);
     final KeyHandler keyHandler = mScopedContext.getKeyHandler();
 
     /** Null check is for testing only, the keyHandler should never be null here otherwise. */
     if (keyHandler == null) {
+      component.mGlobalKeyId = childKeyId;
       return childKey;
     }
 
     /** If the key is already unique, return it. */
     if (!keyHandler.hasKey(childKey)) {
+      component.mGlobalKeyId = childKeyId;
       return childKey;
     }
 
@@ -273,9 +286,17 @@ public abstract class Component extends ComponentLifecycle
      */
     int childIndex = mChildCounters.containsKey(childType) ? mChildCounters.get(childType) : 0;
 
-    String uniqueKey = ComponentKeyUtils.getKeyForChildPosition(childKey, childIndex);
+    final int uniqueKeyId =
+        interner == null
+            ? GlobalKeyInterner.NO_ID
+            : interner.internChildPosition(childKeyId, childIndex);
+    final String uniqueKey =
+        uniqueKeyId == GlobalKeyInterner.NO_ID
+            ? ComponentKeyUtils.getKeyForChildPosition(childKey, childIndex)
+            : interner.getKey(uniqueKeyId);
 
     mChildCounters.put(childType, childIndex + 1);
+    component.mGlobalKeyId = uniqueKeyId;
 
     return uniqueKey;
   }
@@ -443,6 +464,17 @@ public abstract class Component extends ComponentLifecycle
     setSplitLayoutOnThreadPoolStatus(parentContext, shouldForwardSplitLayoutStatus);
   }
 
+  /**
+   * Like {@link #updateInternalChildState(ComponentContext)}, for a copy of a component that was
+   * already laid out under the same parent, which keeps the global key it had the first time.
+   */
+  void updateInternalChildStateWithGlobalKey(ComponentContext parentContext, String globalKey) {
+    setGlobalKey(globalKey);
+    applyStateUpdates(parentContext);
+    generateErrorEventHandler(parentContext);
+    setSplitLayoutOnThreadPoolStatus(parentContext, false);
+  }
+
   private void setSplitLayoutOnThreadPoolStatus(
       ComponentContext parentContext, boolean shouldForwardSplitLayoutStatus) {
     mSplitChildrenLayoutInThreadPool =
@@ -470,7 +502,15 @@ public abstract class Component extends ComponentLifecycle
       final String key = getKey();
 
       if (parentScope == null) {
-        setGlobalKey(key);
+        final ComponentTree componentTree = parentContext.getComponentTree();
+        final GlobalKeyInterner interner =
+            componentTree == null ? null : componentTree.getGlobalKeyInterner();
+        mGlobalKeyInterner = interner;
+        mGlobalKeyId =
+            interner == null
+                ? GlobalKeyInterner.NO_ID
+                : interner.intern(GlobalKeyInterner.ROOT_ID, key);
+        setGlobalKey(mGlobalKeyId == GlobalKeyInterner.NO_ID ? key : interner.getKey(mGlobalKeyId));
       } else {
         if (parentScope.getGlobalKey() == null) {
           final ComponentsLogger logger = parentContext.getLogger();
@@ -487,10 +527,11 @@ public abstract class Component extends ComponentLifecycle
             logger.log(event);
           }
 
+          mGlobalKeyInterner = null;
+          mGlobalKeyId = GlobalKeyInterner.NO_ID;
           setGlobalKey("null" + key);
         } else {
-          setGlobalKey(
-              parentScope == null ? key : parentScope.generateUniqueGlobalKeyForChild(this, key));
+          setGlobalKey(parentScope.generateUniqueGlobalKeyForChild(this, key));
         }
       }
     }
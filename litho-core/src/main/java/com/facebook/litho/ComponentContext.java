@@ -55,6 +55,15 @@ public class ComponentContext extends ContextWrapper {
   @ThreadConfined(ThreadConfined.ANY)
   private ComponentTree mComponentTree;
 
+  @ThreadConfined(ThreadConfined.ANY)
+  private @Nullable LayoutCancellationToken mLayoutCancellationToken;
+
+  @ThreadConfined(ThreadConfined.ANY)
+  private @Nullable ReusableLayoutTree mReusableLayoutTree;
+
+  @ThreadConfined(ThreadConfined.ANY)
+  private @Nullable SplitLayoutResolver mWorkStealingResolver;
+
   // Used to hold styling information applied to components
   @StyleRes
   @ThreadConfined(ThreadConfined.ANY)
@@ -115,6 +124,9 @@ public class ComponentContext extends ContextWrapper {
       mHeightSpec = componentContext.mHeightSpec;
       mComponentScope = componentContext.mComponentScope;
       mComponentTree = componentContext.mComponentTree;
+      mLayoutCancellationToken = componentContext.mLayoutCancellationToken;
+      mReusableLayoutTree = componentContext.mReusableLayoutTree;
+      mWorkStealingResolver = componentContext.mWorkStealingResolver;
     } else {
       mResourceCache = ResourceCache.getLatest(context.getResources().getConfiguration());
     }
@@ -131,6 +143,8 @@ public class ComponentContext extends ContextWrapper {
     ComponentContext componentContext =
         new ComponentContext(context, ComponentsPools.acquireStateHandler(), context.mKeyHandler);
     componentContext.mComponentTree = componentTree;
+    // The resolver is looked up for every layout of the new tree, from its own split tag.
+    componentContext.mWorkStealingResolver = null;
 
     return componentContext;
   }
@@ -257,6 +271,44 @@ public class ComponentContext extends ContextWrapper {
     return mComponentTree;
   }
 
+  void setLayoutCancellationToken(@Nullable LayoutCancellationToken cancellationToken) {
+    mLayoutCancellationToken = cancellationToken;
+  }
+
+  @Nullable
+  LayoutCancellationToken getLayoutCancellationToken() {
+    return mLayoutCancellationToken;
+  }
+
+  void setReusableLayoutTree(@Nullable ReusableLayoutTree reusableLayoutTree) {
+    mReusableLayoutTree = reusableLayoutTree;
+  }
+
+  /** @return the tree of a previous layout that the layout of this context may reuse parts of. */
+  @Nullable
+  ReusableLayoutTree getReusableLayoutTree() {
+    return mReusableLayoutTree;
+  }
+
+  void setWorkStealingResolver(@Nullable SplitLayoutResolver workStealingResolver) {
+    mWorkStealingResolver = workStealingResolver;
+  }
+
+  /** @return the resolver that forks expensive subtrees of this layout, if it's configured. */
+  @Nullable
+  SplitLayoutResolver getWorkStealingResolver() {
+    return mWorkStealingResolver;
+  }
+
+  /**
+   * @return whether the layout calculation this context belongs to was cancelled because a newer
+   *     layout made its result obsolete.
+   */
+  boolean wasLayoutCancelled() {
+    final LayoutCancellationToken cancellationToken = mLayoutCancellationToken;
+    return cancellationToken != null && cancellationToken.isCancelled();
+  }
+
   protected void setTreeProps(TreeProps treeProps) {
     mTreeProps = treeProps;
   }
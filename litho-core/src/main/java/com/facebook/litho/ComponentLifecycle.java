@@ -155,7 +155,15 @@ public abstract class ComponentLifecycle implements EventDispatcher, EventTrigge
             outputWidth = (int) diffNode.getLastMeasuredWidth();
             outputHeight = (int) diffNode.getLastMeasuredHeight();
           } else {
-            final Size size = acquireSize(Integer.MIN_VALUE /* initialValue */);
+            final LayoutArena arena = LayoutArena.current();
+            final Size size;
+            if (arena != null) {
+              size = arena.acquireSize();
+              size.width = Integer.MIN_VALUE;
+              size.height = Integer.MIN_VALUE;
+            } else {
+              size = acquireSize(Integer.MIN_VALUE /* initialValue */);
+            }
 
             try {
               component.onMeasure(component.getScopedContext(), node, widthSpec, heightSpec, size);
@@ -175,7 +183,11 @@ public abstract class ComponentLifecycle implements EventDispatcher, EventTrigge
                 node.getDiffNode().setLastMeasuredHeight(outputHeight);
               }
             } finally {
-              releaseSize(size);
+              if (arena != null) {
+                arena.releaseSize(size);
+              } else {
+                releaseSize(size);
+              }
             }
           }
 
@@ -278,6 +290,14 @@ public abstract class ComponentLifecycle implements EventDispatcher, EventTrigge
       return layout;
     }
 
+    // The result of this layout is going to be thrown away, don't create any more of it.
+    if (context.wasLayoutCancelled()) {
+      return ComponentContext.NULL_LAYOUT;
+    }
+
+    final boolean isCostTrackingEnabled = context.getWorkStealingResolver() != null;
+    final long startTimeNs = isCostTrackingEnabled ? System.nanoTime() : 0;
+
     final boolean deferNestedTreeResolution =
         Component.isNestedTree((Component) this) && !resolveNestedTree;
 
@@ -358,6 +378,10 @@ public abstract class ComponentLifecycle implements EventDispatcher, EventTrigge
       node.addWorkingRanges(component.mWorkingRangeRegistrations);
     }
 
+    if (isCostTrackingEnabled) {
+      LayoutCostEstimator.record(component, System.nanoTime() - startTimeNs);
+    }
+
     return node;
   }
 
@@ -559,7 +583,12 @@ public abstract class ComponentLifecycle implements EventDispatcher, EventTrigge
    * @return the MountContentPool that should be used to recycle mount content for this mount spec.
    */
   protected MountContentPool onCreateMountContentPool() {
-    return new DefaultMountContentPool(getClass().getSimpleName(), poolSize(), true);
+    return new DefaultMountContentPool(
+        getClass().getSimpleName(),
+        poolSize(),
+        ComponentsConfiguration.useLockFreeMountContentPools
+            ? RecyclePool.LOCK_FREE
+            : RecyclePool.SYNCHRONIZED);
   }
 
   /**
@@ -18,9 +18,15 @@ package com.facebook.litho;
 
 import static com.facebook.litho.ComponentLifecycle.StateUpdate;
 import static com.facebook.litho.FrameworkLogEvents.EVENT_LAYOUT_CALCULATE;
+import static com.facebook.litho.FrameworkLogEvents.EVENT_LAYOUT_CANCELLED;
 import static com.facebook.litho.FrameworkLogEvents.EVENT_PRE_ALLOCATE_MOUNT_CONTENT;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_CANCELLED_LAYOUTS_COUNT;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_CANCELLED_LAYOUTS_SAVED_TIME;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_CANCELLED_LAYOUT_WASTED_TIME;
 import static com.facebook.litho.FrameworkLogEvents.PARAM_IS_BACKGROUND_LAYOUT;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_LAYOUT_LOCK_HOLD_TIME;
 import static com.facebook.litho.FrameworkLogEvents.PARAM_LOG_TAG;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_MAIN_THREAD_LOCK_WAIT_TIME;
 import static com.facebook.litho.FrameworkLogEvents.PARAM_TREE_DIFF_ENABLED;
 import static com.facebook.litho.LayoutState.CalculateLayoutSource;
 import static com.facebook.litho.ThreadUtils.assertHoldsLock;
@@ -53,7 +59,10 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.concurrent.GuardedBy;
 
@@ -104,6 +113,8 @@ public class ComponentTree {
   }
 
   private static final AtomicInteger sIdGenerator = new AtomicInteger(0);
+  private static final AtomicInteger sCancelledLayoutsCount = new AtomicInteger(0);
+  private static final AtomicLong sCancelledLayoutsSavedTimeNs = new AtomicLong(0);
   private static final Handler sMainThreadHandler = new ComponentMainThreadHandler();
   // Do not access sDefaultLayoutThreadLooper directly, use getDefaultLayoutThreadLooper().
   @GuardedBy("ComponentTree.class")
@@ -163,11 +174,22 @@ public class ComponentTree {
 
   private volatile NewLayoutStateReadyListener mNewLayoutStateReadyListener;
 
+  // How urgent async layouts of this tree are for a PriorityLayoutScheduler, lower is more urgent.
+  private volatile int mLayoutPriority = PriorityLayoutScheduler.DEFAULT_PRIORITY;
+
   private final Object mCurrentCalculateLayoutRunnableLock = new Object();
 
   @GuardedBy("mCurrentCalculateLayoutRunnableLock")
   private @Nullable CalculateLayoutRunnable mCurrentCalculateLayoutRunnable;
 
+  // Token of the async layout currently running on the layout thread, if it can be cancelled.
+  @GuardedBy("mCurrentCalculateLayoutRunnableLock")
+  private @Nullable LayoutCancellationToken mInFlightLayoutCancellationToken;
+
+  // Incremented by every layout when it reads the root and size specs.
+  @GuardedBy("this")
+  private long mLayoutGeneration;
+
   private boolean mHasMounted;
   private boolean mHasLithoViewWidthAnimation;
   private boolean mHasLithoViewHeightAnimation;
@@ -197,8 +219,47 @@ public class ComponentTree {
   @Nullable
   private LayoutState mBackgroundLayoutState;
 
+  // Only replaced with the lock held, but read without it to copy the state: StateHandler is
+  // thread safe on its own.
+  private volatile StateHandler mStateHandler;
+
+  // LayoutStates for other size specs than the current ones, for the current root and state.
+  @GuardedBy("this")
+  private final @Nullable LayoutStateCache mLayoutStateCache;
+
+  // Incremented whenever the root or the state changes, to tell which LayoutStates can be cached.
+  @GuardedBy("this")
+  private int mContentGeneration;
+
+  // Size specs this tree is likely to be laid out with later, see addSpeculativeSizeSpec().
+  @GuardedBy("this")
+  private final List<Long> mSpeculativeSizeSpecs = new ArrayList<>();
+
+  // Index of the next speculative size specs to calculate a layout for, in the content generation
+  // mSpeculativeLayoutsGeneration.
+  @GuardedBy("this")
+  private int mNextSpeculativeSizeSpecs;
+
   @GuardedBy("this")
-  private StateHandler mStateHandler;
+  private int mSpeculativeLayoutsGeneration = -1;
+
+  @GuardedBy("this")
+  private boolean mIsSpeculativeLayoutScheduled;
+
+  // Describes mRoot, the size specs and the LayoutStates above for the readers that don't need the
+  // LayoutStates themselves, so that they never wait for a layout being committed on another
+  // thread. A new one is published before releasing the lock whenever any of those change.
+  private final AtomicReference<LayoutSnapshot> mLayoutSnapshot =
+      new AtomicReference<>(LayoutSnapshot.EMPTY);
+
+  @GuardedBy("this")
+  private int mLayoutSnapshotVersion;
+
+  // Time the main thread spent waiting for the lock since the last layout calculation was logged.
+  private final AtomicLong mMainThreadLockWaitTimeNs = new AtomicLong(0);
+
+  private final SpeculativeLayoutRunnable mSpeculativeLayoutRunnable =
+      new SpeculativeLayoutRunnable();
 
   @ThreadConfined(ThreadConfined.UI)
   private RenderState mPreviousRenderState;
@@ -218,10 +279,13 @@ public class ComponentTree {
 
   private final EventHandlersController mEventHandlersController = new EventHandlersController();
 
+  // The interner of the most recent layout, only replaced under the lock of this tree.
+  @Nullable private volatile GlobalKeyInterner mGlobalKeyInterner;
+
   @GuardedBy("mEventTriggersContainer")
   private final EventTriggersContainer mEventTriggersContainer = new EventTriggersContainer();
 
-  @GuardedBy("this")
+  @GuardedBy("mWorkingRangeStatusHandler")
   private final WorkingRangeStatusHandler mWorkingRangeStatusHandler =
       new WorkingRangeStatusHandler();
 
@@ -256,13 +320,23 @@ public class ComponentTree {
     mMeasureListener = builder.mMeasureListener;
     mSplitLayoutTag = builder.splitLayoutTag;
     mPersistInternalNodeTree = builder.persistInternalNodeTree;
+    mLayoutStateCache =
+        ComponentsConfiguration.layoutStateCacheSize > 0
+            ? new LayoutStateCache(ComponentsConfiguration.layoutStateCacheSize)
+            : null;
 
     if (mLayoutThreadHandler == null) {
-      mLayoutThreadHandler =
-          ComponentsConfiguration.threadPoolForBackgroundThreadsConfig == null
-              ? new DefaultLayoutHandler(getDefaultLayoutThreadLooper())
-              : new ThreadPoolLayoutHandler(
-                  ComponentsConfiguration.threadPoolForBackgroundThreadsConfig);
+      if (ComponentsConfiguration.priorityLayoutSchedulerConfig != null) {
+        mLayoutThreadHandler =
+            PriorityLayoutScheduler.getInstance(
+                ComponentsConfiguration.priorityLayoutSchedulerConfig);
+      } else {
+        mLayoutThreadHandler =
+            ComponentsConfiguration.threadPoolForBackgroundThreadsConfig == null
+                ? new DefaultLayoutHandler(getDefaultLayoutThreadLooper())
+                : new ThreadPoolLayoutHandler(
+                    ComponentsConfiguration.threadPoolForBackgroundThreadsConfig);
+      }
     }
 
     if (mPreAllocateMountContentHandler == null && builder.canPreallocateOnDefaultHandler) {
@@ -291,6 +365,10 @@ public class ComponentTree {
         ComponentsConfiguration.USE_INCREMENTAL_MOUNT_HELPER
             ? new IncrementalMountHelper(this)
             : null;
+
+    synchronized (this) {
+      publishLayoutSnapshot();
+    }
   }
 
   @Nullable
@@ -331,7 +409,7 @@ public class ComponentTree {
       // should be released after exiting the lock.
       final LayoutState toRelease = mBackgroundLayoutState;
       mBackgroundLayoutState = null;
-      return toRelease;
+      return cacheOrReturnForRelease(toRelease);
     } else {
       // Since we are changing layout states we'll need to remount.
       if (mLithoView != null) {
@@ -342,7 +420,7 @@ public class ComponentTree {
       mMainThreadLayoutState = mBackgroundLayoutState;
       mBackgroundLayoutState = null;
 
-      return toRelease;
+      return cacheOrReturnForRelease(toRelease);
     }
   }
 
@@ -387,7 +465,7 @@ public class ComponentTree {
     }
   }
 
-  private void backgroundLayoutStateUpdated() {
+  void backgroundLayoutStateUpdated() {
     assertMainThread();
 
     // If we aren't attached, then we have nothing to do. We'll handle
@@ -400,7 +478,10 @@ public class ComponentTree {
     LayoutState toRelease;
     final boolean layoutStateUpdated;
     final int componentRootId;
+    final long lockWaitStartNs = System.nanoTime();
     synchronized (this) {
+      recordMainThreadLockWait(lockWaitStartNs);
+
       if (mRoot == null) {
         // We have been released. Abort.
         return;
@@ -410,6 +491,7 @@ public class ComponentTree {
       toRelease = setBestMainThreadLayoutAndReturnOldLayout();
       layoutStateUpdated = (mMainThreadLayoutState != oldMainThreadLayoutState);
       componentRootId = mRoot.getId();
+      publishLayoutSnapshot();
     }
 
     if (toRelease != null) {
@@ -493,6 +575,7 @@ public class ComponentTree {
       }
 
       componentRootId = mRoot.getId();
+      publishLayoutSnapshot();
     }
 
     if (toRelease != null) {
@@ -632,9 +715,8 @@ public class ComponentTree {
    * @return whether this ComponentTree has a computed layout that will work for the given measure
    *     specs.
    */
-  public synchronized boolean hasCompatibleLayout(int widthSpec, int heightSpec) {
-    return isCompatibleSpec(mMainThreadLayoutState, widthSpec, heightSpec)
-        || isCompatibleSpec(mBackgroundLayoutState, widthSpec, heightSpec);
+  public boolean hasCompatibleLayout(int widthSpec, int heightSpec) {
+    return mLayoutSnapshot.get().hasCompatibleLayout(widthSpec, heightSpec);
   }
 
   void mountComponent(Rect currentVisibleArea, boolean processVisibilityOutputs) {
@@ -753,9 +835,23 @@ public class ComponentTree {
   void measure(int widthSpec, int heightSpec, int[] measureOutput, boolean forceLayout) {
     assertMainThread();
 
+    // The main thread layout is only ever replaced on this thread, so if the latest snapshot says
+    // it's still the one to use we can skip the lock, which a background layout may be holding.
+    if (!forceLayout
+        && mLayoutSnapshot.get().isMainThreadLayoutUpToDate(widthSpec, heightSpec)) {
+      measureOutput[0] = mMainThreadLayoutState.getWidth();
+      measureOutput[1] = mMainThreadLayoutState.getHeight();
+      return;
+    }
+
     Component component = null;
+    int contentGeneration = 0;
+    List<Component> cachedLayoutComponents = null;
     LayoutState toRelease;
+    LayoutState cachedToRelease = null;
+    final long lockWaitStartNs = System.nanoTime();
     synchronized (this) {
+      recordMainThreadLockWait(lockWaitStartNs);
       mIsMeasuring = true;
 
       // This widthSpec/heightSpec is fixed until the view gets detached.
@@ -770,12 +866,24 @@ public class ComponentTree {
       final boolean shouldCalculateNewLayout =
           mMainThreadLayoutState == null
               || !isCompatibleSpec(mMainThreadLayoutState, mWidthSpec, mHeightSpec);
-      if (forceLayout || shouldCalculateNewLayout) {
+      final LayoutState cachedLayoutState =
+          !forceLayout && shouldCalculateNewLayout && mLayoutStateCache != null
+              ? mLayoutStateCache.take(mRoot.getId(), mWidthSpec, mHeightSpec)
+              : null;
+      if (cachedLayoutState != null) {
+        // We already calculated a layout for these specs, e.g. before a rotation.
+        cachedToRelease = cacheOrReturnForRelease(mMainThreadLayoutState);
+        mMainThreadLayoutState = cachedLayoutState;
+        cachedLayoutComponents = new ArrayList<>(cachedLayoutState.getComponents());
+      } else if (forceLayout || shouldCalculateNewLayout) {
         // Neither layout was compatible and we have to perform a layout.
         // Since outputs get set on the same object during the lifecycle calls,
         // we need to copy it in order to use it concurrently.
         component = mRoot.makeShallowCopy();
+        contentGeneration = mContentGeneration;
       }
+
+      publishLayoutSnapshot();
     }
 
     if (toRelease != null) {
@@ -783,6 +891,17 @@ public class ComponentTree {
       toRelease = null;
     }
 
+    if (cachedToRelease != null) {
+      cachedToRelease.releaseRef();
+      cachedToRelease = null;
+    }
+
+    if (cachedLayoutComponents != null) {
+      bindEventAndTriggerHandlers(cachedLayoutComponents);
+      mLithoView.setMountStateDirty();
+      dispatchNewLayoutStateReady();
+    }
+
     if (component != null) {
       // TODO: We should re-use the existing CSSNodeDEPRECATED tree instead of re-creating it.
       if (mMainThreadLayoutState != null) {
@@ -790,10 +909,13 @@ public class ComponentTree {
         // we'll be able to re-use some of the layout nodes.
         final LayoutState localLayoutState;
         synchronized (this) {
-          localLayoutState = mMainThreadLayoutState;
+          localLayoutState = cacheOrReturnForRelease(mMainThreadLayoutState);
           mMainThreadLayoutState = null;
+          publishLayoutSnapshot();
+        }
+        if (localLayoutState != null) {
+          localLayoutState.releaseRef();
         }
-        localLayoutState.releaseRef();
       }
 
       // We have no layout that matches the given spec, so we need to compute it on the main thread.
@@ -809,6 +931,8 @@ public class ComponentTree {
               CalculateLayoutSource.MEASURE,
               null);
 
+      localLayoutState.setContentGeneration(contentGeneration);
+
       final StateHandler layoutStateStateHandler =
           localLayoutState.consumeStateHandler();
       final List<Component> components = new ArrayList<>(localLayoutState.getComponents());
@@ -817,9 +941,10 @@ public class ComponentTree {
           mStateHandler.commit(layoutStateStateHandler);
         }
 
-        localLayoutState.clearComponents();
+        clearComponentsIfNotCacheable(localLayoutState);
         mMainThreadLayoutState = localLayoutState;
         localLayoutState = null;
+        publishLayoutSnapshot();
       }
 
       bindEventAndTriggerHandlers(components);
@@ -828,6 +953,8 @@ public class ComponentTree {
       mLithoView.setMountStateDirty();
 
       dispatchNewLayoutStateReady();
+
+      maybeScheduleSpeculativeLayout();
     }
 
     measureOutput[0] = mMainThreadLayoutState.getWidth();
@@ -878,8 +1005,9 @@ public class ComponentTree {
     return mUseExactRectForVisibilityEvents;
   }
 
-  synchronized Component getRoot() {
-    return mRoot;
+  @Nullable
+  Component getRoot() {
+    return mLayoutSnapshot.get().root;
   }
 
   /**
@@ -935,6 +1063,28 @@ public class ComponentTree {
     toPrePopulate.releaseRef();
   }
 
+  /**
+   * Adds the mount content that the current layout of this tree needs to the given demand, so that
+   * it can be preallocated together with the one of other trees, e.g. by a RecyclerBinder for the
+   * items in its range.
+   */
+  public void collectMountContentDemand(MountContentDemand demand) {
+    final LayoutState layoutState;
+
+    synchronized (this) {
+      if (mMainThreadLayoutState != null) {
+        layoutState = mMainThreadLayoutState.acquireRef();
+      } else if (mBackgroundLayoutState != null) {
+        layoutState = mBackgroundLayoutState.acquireRef();
+      } else {
+        return;
+      }
+    }
+
+    layoutState.collectMountContentDemand(demand, mShouldPreallocatePerMountSpec);
+    layoutState.releaseRef();
+  }
+
   public void setRootAsync(Component rootComponent) {
     if (rootComponent == null) {
       throw new IllegalArgumentException("Root component can't be null");
@@ -950,22 +1100,52 @@ public class ComponentTree {
         null);
   }
 
-  synchronized void updateStateLazy(String componentKey, StateUpdate stateUpdate) {
-    if (mRoot == null) {
-      return;
-    }
+  /**
+   * Queues a state update without scheduling a layout. The current layouts stay, but the cached
+   * ones are invalidated since they can't be promoted anymore without applying the state update.
+   */
+  void updateStateLazy(String componentKey, StateUpdate stateUpdate) {
+    final List<LayoutState> cachedToRelease;
 
-    mStateHandler.queueStateUpdate(componentKey, stateUpdate);
-  }
+    if (ComponentsConfiguration.useLockFreeStateUpdateQueue) {
+      final StateHandler stateHandler = mStateHandler;
+      if (stateHandler == null) {
+        return;
+      }
 
-  void updateStateSync(String componentKey, StateUpdate stateUpdate, String attribution) {
+      stateHandler.enqueueStateUpdate(componentKey, stateUpdate, StateHandler.QUEUED_LAYOUT_NONE);
 
-    synchronized (this) {
-      if (mRoot == null) {
+      // Without a cache there is no layout calculated with the previous state to invalidate.
+      if (mLayoutStateCache == null) {
         return;
       }
 
-      mStateHandler.queueStateUpdate(componentKey, stateUpdate);
+      synchronized (this) {
+        if (mRoot == null) {
+          return;
+        }
+
+        cachedToRelease = invalidateLayoutStateCache();
+        publishLayoutSnapshot();
+      }
+    } else {
+      synchronized (this) {
+        if (mRoot == null) {
+          return;
+        }
+
+        mStateHandler.queueStateUpdate(componentKey, stateUpdate);
+        cachedToRelease = invalidateLayoutStateCache();
+        publishLayoutSnapshot();
+      }
+    }
+
+    releaseLayoutStates(cachedToRelease);
+  }
+
+  void updateStateSync(String componentKey, StateUpdate stateUpdate, String attribution) {
+    if (!queueStateUpdate(componentKey, stateUpdate, StateHandler.QUEUED_LAYOUT_SYNC)) {
+      return;
     }
 
     final Looper looper = Looper.myLooper();
@@ -1012,18 +1192,78 @@ public class ComponentTree {
           "disabled, use sync state updates.");
     }
 
-    synchronized (this) {
-      if (mRoot == null) {
-        return;
-      }
+    if (!queueStateUpdate(componentKey, stateUpdate, StateHandler.QUEUED_LAYOUT_ASYNC)) {
+      return;
+    }
 
-      mStateHandler.queueStateUpdate(componentKey, stateUpdate);
+    if (ComponentsConfiguration.batchStateUpdatesPerFrame) {
+      StateUpdateBatcher.getInstance().add(this, attribution);
+      return;
     }
 
     updateStateInternal(true, attribution);
   }
 
+  /**
+   * Queues a state update and invalidates the layouts calculated with the previous state.
+   *
+   * @return whether the caller has to schedule a layout to apply the state update. It doesn't if
+   *     the tree has no root, or if a layout that will apply it is already scheduled.
+   */
+  private boolean queueStateUpdate(
+      String componentKey, StateUpdate stateUpdate, @StateHandler.QueuedLayout int layout) {
+    final List<LayoutState> cachedToRelease;
+
+    if (ComponentsConfiguration.useLockFreeStateUpdateQueue) {
+      // Only the first of a burst of state updates takes the lock: the others are drained by the
+      // layout it schedules, and the cached layouts are already invalidated.
+      final StateHandler stateHandler = mStateHandler;
+      if (stateHandler == null
+          || !stateHandler.enqueueStateUpdate(componentKey, stateUpdate, layout)) {
+        return false;
+      }
+
+      synchronized (this) {
+        if (mRoot == null) {
+          return false;
+        }
+
+        cachedToRelease = invalidateLayoutStateCache();
+        publishLayoutSnapshot();
+      }
+    } else {
+      synchronized (this) {
+        if (mRoot == null) {
+          return false;
+        }
+
+        mStateHandler.queueStateUpdate(componentKey, stateUpdate);
+        cachedToRelease = invalidateLayoutStateCache();
+        publishLayoutSnapshot();
+      }
+    }
+
+    releaseLayoutStates(cachedToRelease);
+    return true;
+  }
+
   void updateStateInternal(boolean isAsync, String attribution) {
+    updateStateInternal(isAsync, false /* isBatched */, attribution);
+  }
+
+  /**
+   * Calculates the layout for the pending state updates on the calling thread, as part of a batch
+   * of {@link StateUpdateBatcher}, which mounts it along with the other layouts of the batch.
+   */
+  void calculateLayoutForStateUpdateBatch(String attribution) {
+    updateStateInternal(true /* isAsync */, true /* isBatched */, attribution);
+  }
+
+  /**
+   * @param isBatched whether the layout is calculated on the calling thread rather than posted to
+   *     the layout thread, even though it's for async state updates.
+   */
+  private void updateStateInternal(boolean isAsync, boolean isBatched, String attribution) {
 
     final Component root;
 
@@ -1051,7 +1291,7 @@ public class ComponentTree {
         root,
         SIZE_UNINITIALIZED,
         SIZE_UNINITIALIZED,
-        isAsync,
+        isAsync && !isBatched,
         null /*output */,
         CalculateLayoutSource.UPDATE_STATE,
         attribution);
@@ -1084,39 +1324,55 @@ public class ComponentTree {
    * Check if the any child components stored in {@link LayoutState} have entered/exited the working
    * range, and dispatch the event to trigger the corresponding registered methods.
    */
-  public synchronized void checkWorkingRangeAndDispatch(
+  public void checkWorkingRangeAndDispatch(
       int position,
       int firstVisibleIndex,
       int lastVisibleIndex,
       int firstFullyVisibleIndex,
       int lastFullyVisibleIndex) {
+    final LayoutState layoutState;
+    synchronized (this) {
+      final LayoutState bestLayoutState =
+          isBestMainThreadLayout() ? mMainThreadLayoutState : mBackgroundLayoutState;
+      layoutState = bestLayoutState == null ? null : bestLayoutState.acquireRef();
+    }
 
-    LayoutState layoutState =
-        isBestMainThreadLayout() ? mMainThreadLayoutState : mBackgroundLayoutState;
+    if (layoutState == null) {
+      return;
+    }
 
-    if (layoutState != null) {
-      layoutState.checkWorkingRangeAndDispatch(
-          position,
-          firstVisibleIndex,
-          lastVisibleIndex,
-          firstFullyVisibleIndex,
-          lastFullyVisibleIndex,
-          mWorkingRangeStatusHandler);
+    // The callbacks of the components are dispatched without holding the lock of the tree, so
+    // that a layout being committed in the background doesn't have to wait for them.
+    try {
+      synchronized (mWorkingRangeStatusHandler) {
+        layoutState.checkWorkingRangeAndDispatch(
+            position,
+            firstVisibleIndex,
+            lastVisibleIndex,
+            firstFullyVisibleIndex,
+            lastFullyVisibleIndex,
+            mWorkingRangeStatusHandler);
+      }
+    } finally {
+      layoutState.releaseRef();
     }
   }
 
   /**
    * Dispatch OnExitedRange event to component which is still in the range, then clear the handler.
    */
-  private synchronized void clearWorkingRangeStatusHandler() {
+  @GuardedBy("this")
+  private void clearWorkingRangeStatusHandler() {
     final LayoutState layoutState =
         isBestMainThreadLayout() ? mMainThreadLayoutState : mBackgroundLayoutState;
 
-    if (layoutState != null) {
-      layoutState.dispatchOnExitRangeIfNeeded(mWorkingRangeStatusHandler);
-    }
+    synchronized (mWorkingRangeStatusHandler) {
+      if (layoutState != null) {
+        layoutState.dispatchOnExitRangeIfNeeded(mWorkingRangeStatusHandler);
+      }
 
-    mWorkingRangeStatusHandler.clear();
+      mWorkingRangeStatusHandler.clear();
+    }
   }
 
   /**
@@ -1172,6 +1428,42 @@ public class ComponentTree {
         null);
   }
 
+  /**
+   * Same as {@link #setRootAndSizeSpecAsync(Component, int, int)} but also sets how urgent the
+   * layout is, see {@link #setLayoutPriority(int)}.
+   */
+  public void setRootAndSizeSpecAsync(
+      Component root, int widthSpec, int heightSpec, int layoutPriority) {
+    setLayoutPriority(layoutPriority);
+    setRootAndSizeSpecAsync(root, widthSpec, heightSpec);
+  }
+
+  /**
+   * Sets how urgent the async layouts of this tree are when its layout handler is a {@link
+   * PriorityLayoutScheduler}: lower values run first. If a layout of this tree is still waiting to
+   * be run, it's moved to its new place in the scheduler queue. This is a no-op for other layout
+   * handlers.
+   */
+  public void setLayoutPriority(int layoutPriority) {
+    if (mLayoutPriority == layoutPriority) {
+      return;
+    }
+
+    mLayoutPriority = layoutPriority;
+
+    if (!(mLayoutThreadHandler instanceof PriorityLayoutScheduler)) {
+      return;
+    }
+
+    synchronized (mCurrentCalculateLayoutRunnableLock) {
+      if (mCurrentCalculateLayoutRunnable != null) {
+        mCurrentCalculateLayoutRunnable.mLayoutPriority = layoutPriority;
+        ((PriorityLayoutScheduler) mLayoutThreadHandler)
+            .updatePriority(mCurrentCalculateLayoutRunnable, layoutPriority);
+      }
+    }
+  }
+
   /**
    * Compute a new layout with the given component root and sizes
    */
@@ -1222,13 +1514,15 @@ public class ComponentTree {
    *
    * @return a copy of the state handler instance held by ComponentTree.
    */
-  public synchronized StateHandler acquireStateHandler() {
+  public StateHandler acquireStateHandler() {
     return StateHandler.acquireNewInstance(mStateHandler);
   }
 
-  synchronized @Nullable void consumeStateUpdateTransitions(List<Transition> outList) {
-    if (mStateHandler != null) {
-      mStateHandler.consumePendingStateUpdateTransitions(outList);
+  @Nullable
+  void consumeStateUpdateTransitions(List<Transition> outList) {
+    final StateHandler stateHandler = mStateHandler;
+    if (stateHandler != null) {
+      stateHandler.consumePendingStateUpdateTransitions(outList);
     }
   }
 
@@ -1305,6 +1599,7 @@ public class ComponentTree {
       Size output,
       @CalculateLayoutSource int source,
       String extraAttribution) {
+    List<LayoutState> cachedToRelease = null;
 
     synchronized (this) {
       if (mReleased) {
@@ -1372,10 +1667,17 @@ public class ComponentTree {
       }
 
       if (rootInitialized) {
+        if (mRoot == null || root.getId() != mRoot.getId()) {
+          cachedToRelease = invalidateLayoutStateCache();
+        }
         mRoot = root;
       }
+
+      publishLayoutSnapshot();
     }
 
+    releaseLayoutStates(cachedToRelease);
+
     if (isAsync && output != null) {
       throw new IllegalArgumentException("The layout can't be calculated asynchronously if" +
           " we need the Size back");
@@ -1384,7 +1686,7 @@ public class ComponentTree {
         if (mCurrentCalculateLayoutRunnable != null) {
           mLayoutThreadHandler.removeCallbacks(mCurrentCalculateLayoutRunnable);
         }
-        mCurrentCalculateLayoutRunnable = new CalculateLayoutRunnable(source);
+        mCurrentCalculateLayoutRunnable = new CalculateLayoutRunnable(source, mLayoutPriority);
         mLayoutThreadHandler.post(mCurrentCalculateLayoutRunnable);
       }
     } else {
@@ -1399,10 +1701,29 @@ public class ComponentTree {
    */
   private void calculateLayout(
       Size output, @CalculateLayoutSource int source, String extraAttribution) {
+    calculateLayout(output, source, extraAttribution, false /* isCancellable */);
+  }
+
+  /**
+   * Calculates the layout.
+   *
+   * @param output a destination where the size information should be saved
+   * @param isCancellable whether this layout can be aborted half-way if a newer layout calculation
+   *     is started before it completes. Only async layouts that nobody waits on are cancellable.
+   */
+  private void calculateLayout(
+      Size output,
+      @CalculateLayoutSource int source,
+      String extraAttribution,
+      boolean isCancellable) {
     final int widthSpec;
     final int heightSpec;
     final Component root;
+    final int contentGeneration;
+    final long layoutGeneration;
     LayoutState previousLayoutState = null;
+    ReusableLayoutTree reusableLayoutTree = null;
+    long lockHoldTimeNs;
 
     // Cancel any scheduled layout requests we might have in the background queue
     // since we are starting a new layout computation.
@@ -1413,7 +1734,13 @@ public class ComponentTree {
       }
     }
 
+    if (mLayoutStateCache != null) {
+      maybeUseCachedLayoutState();
+    }
+
     synchronized (this) {
+      final long lockAcquiredNs = System.nanoTime();
+
       // Can't compute a layout if specs or root are missing
       if (!hasSizeSpec() || mRoot == null) {
         return;
@@ -1433,10 +1760,42 @@ public class ComponentTree {
       widthSpec = mWidthSpec;
       heightSpec = mHeightSpec;
       root = mRoot.makeShallowCopy();
+      contentGeneration = mContentGeneration;
+      layoutGeneration = ++mLayoutGeneration;
+
+      if (ComponentsConfiguration.useInternedGlobalKeys) {
+        mGlobalKeyInterner = GlobalKeyInterner.forLayout(mGlobalKeyInterner, root.getTypeId());
+      }
 
       if (mMainThreadLayoutState != null) {
         previousLayoutState = mMainThreadLayoutState.acquireRef();
       }
+
+      if (source == CalculateLayoutSource.UPDATE_STATE) {
+        reusableLayoutTree = takeReusableLayoutTree(root);
+      }
+
+      lockHoldTimeNs = System.nanoTime() - lockAcquiredNs;
+    }
+
+    final LayoutCancellationToken cancellationToken =
+        ComponentsConfiguration.cancelObsoleteInFlightLayouts && isCancellable
+            ? new LayoutCancellationToken(layoutGeneration)
+            : null;
+    if (ComponentsConfiguration.cancelObsoleteInFlightLayouts) {
+      onLayoutStarted(layoutGeneration, cancellationToken);
+    }
+
+    final SplitLayoutResolver workStealingResolver =
+        SplitLayoutResolver.getWorkStealingResolver(mContext);
+    final ComponentContext context;
+    if (cancellationToken != null || reusableLayoutTree != null || workStealingResolver != null) {
+      context = mContext.makeNewCopy();
+      context.setLayoutCancellationToken(cancellationToken);
+      context.setReusableLayoutTree(reusableLayoutTree);
+      context.setWorkStealingResolver(workStealingResolver);
+    } else {
+      context = mContext;
     }
 
     final ComponentsLogger logger = mContext.getLogger();
@@ -1451,7 +1810,7 @@ public class ComponentTree {
     LayoutState localLayoutState =
         calculateLayoutState(
             mLayoutLock,
-            mContext,
+            context,
             root,
             widthSpec,
             heightSpec,
@@ -1460,6 +1819,42 @@ public class ComponentTree {
             source,
             extraAttribution);
 
+    if (reusableLayoutTree != null) {
+      reusableLayoutTree.releaseIfUnused();
+    }
+
+    localLayoutState.setContentGeneration(contentGeneration);
+
+    if (cancellationToken != null) {
+      // Finishing the token before committing means that a newer layout can't cancel it anymore:
+      // the committed components would see a cancelled token in their scoped contexts.
+      final boolean isFinished = !localLayoutState.isCancelled() && cancellationToken.finish();
+      synchronized (mCurrentCalculateLayoutRunnableLock) {
+        if (mInFlightLayoutCancellationToken == cancellationToken) {
+          mInFlightLayoutCancellationToken = null;
+        }
+      }
+
+      if (!isFinished) {
+        onLayoutCancelled(
+            logger,
+            cancellationToken,
+            previousLayoutState != null ? previousLayoutState.mCalculateLayoutDuration : 0);
+
+        if (previousLayoutState != null) {
+          previousLayoutState.releaseRef();
+        }
+        localLayoutState.releaseRef();
+
+        if (logger != null) {
+          logLayoutLockTimes(layoutEvent, lockHoldTimeNs);
+          logger.log(layoutEvent);
+        }
+
+        return;
+      }
+    }
+
     if (output != null) {
       output.width = localLayoutState.getWidth();
       output.height = localLayoutState.getHeight();
@@ -1472,37 +1867,43 @@ public class ComponentTree {
 
     List<Component> components = null;
 
+    final List<Component> layoutComponents = new ArrayList<>(localLayoutState.getComponents());
+    final int layoutWidth = localLayoutState.getWidth();
+    final int layoutHeight = localLayoutState.getHeight();
+
     boolean layoutStateUpdated = false;
     synchronized (this) {
-      // Make sure some other thread hasn't computed a compatible layout in the meantime.
-      if (!hasCompatibleComponentAndSpec()
-          && isCompatibleSpec(localLayoutState, mWidthSpec, mHeightSpec)) {
-
-        if (localLayoutState != null) {
-          final StateHandler layoutStateStateHandler =
-              localLayoutState.consumeStateHandler();
-          if (layoutStateStateHandler != null) {
-            if (mStateHandler != null) { // we could have been released
-              mStateHandler.commit(layoutStateStateHandler);
-            }
-          }
+      final long lockAcquiredNs = System.nanoTime();
 
-          if (mMeasureListener != null) {
-            mMeasureListener.onSetRootAndSizeSpec(
-                localLayoutState.getWidth(), localLayoutState.getHeight());
+      // Make sure some other thread hasn't computed a compatible layout in the meantime, and that
+      // the root wasn't replaced while this layout was calculated.
+      if (!hasCompatibleComponentAndSpec() && isCompatibleComponentAndSpec(localLayoutState)) {
+        final StateHandler layoutStateStateHandler = localLayoutState.consumeStateHandler();
+        if (layoutStateStateHandler != null) {
+          if (mStateHandler != null) { // we could have been released
+            mStateHandler.commit(layoutStateStateHandler);
           }
-
-          components = new ArrayList<>(localLayoutState.getComponents());
-          localLayoutState.clearComponents();
         }
 
+        components = layoutComponents;
+        clearComponentsIfNotCacheable(localLayoutState);
+
         // Set the new layout state, and remember the old layout state so we
         // can release it.
         final LayoutState tmp = mBackgroundLayoutState;
         mBackgroundLayoutState = localLayoutState;
-        localLayoutState = tmp;
+        localLayoutState = cacheOrReturnForRelease(tmp);
         layoutStateUpdated = true;
+        publishLayoutSnapshot();
       }
+
+      lockHoldTimeNs += System.nanoTime() - lockAcquiredNs;
+    }
+
+    // Called outside of the lock, since this is client code that the main thread shouldn't have
+    // to wait for.
+    if (layoutStateUpdated && mMeasureListener != null) {
+      mMeasureListener.onSetRootAndSizeSpec(layoutWidth, layoutHeight);
     }
 
     if (components != null) {
@@ -1516,6 +1917,7 @@ public class ComponentTree {
 
     if (layoutStateUpdated) {
       postBackgroundLayoutStateUpdated();
+      maybeScheduleSpeculativeLayout();
     }
 
     if (mPreAllocateMountContentHandler != null) {
@@ -1524,10 +1926,365 @@ public class ComponentTree {
     }
 
     if (logger != null) {
+      logLayoutLockTimes(layoutEvent, lockHoldTimeNs);
       logger.log(layoutEvent);
+      ComponentsPools.maybeLogPoolStats(logger);
     }
   }
 
+  private void logLayoutLockTimes(LogEvent layoutEvent, long lockHoldTimeNs) {
+    layoutEvent.addParam(
+        PARAM_LAYOUT_LOCK_HOLD_TIME, TimeUnit.NANOSECONDS.toMicros(lockHoldTimeNs));
+    layoutEvent.addParam(
+        PARAM_MAIN_THREAD_LOCK_WAIT_TIME,
+        TimeUnit.NANOSECONDS.toMicros(mMainThreadLockWaitTimeNs.getAndSet(0)));
+  }
+
+  /**
+   * Declares size specs this tree is likely to be laid out with later, e.g. the width it will have
+   * in the other orientation or once a side panel opens. Once the tree has a layout for its current
+   * size specs, layouts for these specs are calculated on the layout thread with the lowest
+   * priority and kept in the LayoutState cache, so that switching to them only needs a mount. They
+   * are calculated again whenever the root or the state changes.
+   *
+   * <p>This has no effect unless {@link ComponentsConfiguration#layoutStateCacheSize} is positive
+   * and the layouts of this tree run on a {@link PriorityLayoutScheduler}, and no more layouts than
+   * the size of the cache are kept.
+   */
+  public void addSpeculativeSizeSpec(int widthSpec, int heightSpec) {
+    synchronized (this) {
+      final long sizeSpecs = packSizeSpecs(widthSpec, heightSpec);
+      if (mSpeculativeSizeSpecs.contains(sizeSpecs)) {
+        return;
+      }
+
+      mSpeculativeSizeSpecs.add(sizeSpecs);
+    }
+
+    maybeScheduleSpeculativeLayout();
+  }
+
+  /** Stops calculating layouts for the size specs added with {@link #addSpeculativeSizeSpec}. */
+  public synchronized void clearSpeculativeSizeSpecs() {
+    mSpeculativeSizeSpecs.clear();
+    mNextSpeculativeSizeSpecs = 0;
+  }
+
+  private void maybeScheduleSpeculativeLayout() {
+    // Only a PriorityLayoutScheduler runs the speculative layouts after every other layout: any
+    // other handler would run them in posting order, in the way of the layouts that are needed.
+    if (!(mLayoutThreadHandler instanceof PriorityLayoutScheduler)) {
+      return;
+    }
+
+    synchronized (this) {
+      if (mIsSpeculativeLayoutScheduled || !hasSpeculativeLayoutToCalculate()) {
+        return;
+      }
+
+      mIsSpeculativeLayoutScheduled = true;
+    }
+
+    mLayoutThreadHandler.post(mSpeculativeLayoutRunnable);
+  }
+
+  /**
+   * Calculates the layout for the next speculative size specs that don't have one yet, and adds it
+   * to the LayoutState cache. Only one layout is calculated per run, so that real layouts posted in
+   * the meantime don't have to wait for all of them.
+   */
+  private void calculateSpeculativeLayout() {
+    final Component root;
+    final int widthSpec;
+    final int heightSpec;
+    final int contentGeneration;
+
+    synchronized (this) {
+      mIsSpeculativeLayoutScheduled = false;
+
+      if (!hasSpeculativeLayoutToCalculate()) {
+        return;
+      }
+
+      final long sizeSpecs = mSpeculativeSizeSpecs.get(mNextSpeculativeSizeSpecs++);
+      widthSpec = (int) (sizeSpecs >> 32);
+      heightSpec = (int) sizeSpecs;
+      root = mRoot.makeShallowCopy();
+      contentGeneration = mContentGeneration;
+    }
+
+    LayoutState layoutState =
+        calculateLayoutState(
+            mLayoutLock,
+            mContext,
+            root,
+            widthSpec,
+            heightSpec,
+            mIsLayoutDiffingEnabled,
+            null,
+            CalculateLayoutSource.SPECULATIVE,
+            null);
+    layoutState.setContentGeneration(contentGeneration);
+
+    // The event handlers are bound to the components of this layout if it's promoted from the
+    // cache, so its components are kept.
+    final StateHandler layoutStateStateHandler = layoutState.consumeStateHandler();
+
+    synchronized (this) {
+      if (contentGeneration == mContentGeneration && mRoot != null) {
+        if (layoutStateStateHandler != null && mStateHandler != null) {
+          // Only holds the initial state of components that aren't in the current layout.
+          mStateHandler.commit(layoutStateStateHandler);
+        }
+
+        layoutState = cacheOrReturnForRelease(layoutState);
+        publishLayoutSnapshot();
+      }
+    }
+
+    if (layoutState != null) {
+      layoutState.releaseRef();
+    }
+
+    maybeScheduleSpeculativeLayout();
+  }
+
+  @GuardedBy("this")
+  private boolean hasSpeculativeLayoutToCalculate() {
+    if (mLayoutStateCache == null
+        || mReleased
+        || mRoot == null
+        || mSpeculativeSizeSpecs.isEmpty()
+        || !hasCompatibleComponentAndSpec()) {
+      return false;
+    }
+
+    // State updates are about to cause a new layout, which would make this one obsolete anyway.
+    final Map<String, List<StateUpdate>> pendingStateUpdates =
+        mStateHandler == null ? null : mStateHandler.getPendingStateUpdates();
+    if (pendingStateUpdates != null && !pendingStateUpdates.isEmpty()) {
+      return false;
+    }
+
+    if (mSpeculativeLayoutsGeneration != mContentGeneration) {
+      mSpeculativeLayoutsGeneration = mContentGeneration;
+      mNextSpeculativeSizeSpecs = 0;
+    }
+
+    // Skip the size specs we already have a layout for.
+    final int rootId = mRoot.getId();
+    while (mNextSpeculativeSizeSpecs < mSpeculativeSizeSpecs.size()) {
+      final long sizeSpecs = mSpeculativeSizeSpecs.get(mNextSpeculativeSizeSpecs);
+      final int widthSpec = (int) (sizeSpecs >> 32);
+      final int heightSpec = (int) sizeSpecs;
+
+      if (!isCompatibleComponentAndSpec(mMainThreadLayoutState, rootId, widthSpec, heightSpec)
+          && !isCompatibleComponentAndSpec(mBackgroundLayoutState, rootId, widthSpec, heightSpec)
+          && !mLayoutStateCache.hasCompatibleSpec(widthSpec, heightSpec)) {
+        return true;
+      }
+
+      mNextSpeculativeSizeSpecs++;
+    }
+
+    return false;
+  }
+
+  private static long packSizeSpecs(int widthSpec, int heightSpec) {
+    return ((long) widthSpec << 32) | (heightSpec & 0xFFFFFFFFL);
+  }
+
+  /**
+   * If a LayoutState for the current root and size specs is in the cache, makes it the background
+   * LayoutState so that it gets mounted instead of calculating a new layout.
+   */
+  private void maybeUseCachedLayoutState() {
+    LayoutState toRelease;
+    final int layoutWidth;
+    final int layoutHeight;
+    final List<Component> components;
+    synchronized (this) {
+      if (!hasSizeSpec() || mRoot == null || hasCompatibleComponentAndSpec()) {
+        return;
+      }
+
+      final LayoutState cachedLayoutState =
+          mLayoutStateCache.take(mRoot.getId(), mWidthSpec, mHeightSpec);
+      if (cachedLayoutState == null) {
+        return;
+      }
+
+      layoutWidth = cachedLayoutState.getWidth();
+      layoutHeight = cachedLayoutState.getHeight();
+      components = new ArrayList<>(cachedLayoutState.getComponents());
+      toRelease = cacheOrReturnForRelease(mBackgroundLayoutState);
+      mBackgroundLayoutState = cachedLayoutState;
+      publishLayoutSnapshot();
+    }
+
+    if (toRelease != null) {
+      toRelease.releaseRef();
+      toRelease = null;
+    }
+
+    if (mMeasureListener != null) {
+      mMeasureListener.onSetRootAndSizeSpec(layoutWidth, layoutHeight);
+    }
+
+    bindEventAndTriggerHandlers(components);
+
+    postBackgroundLayoutStateUpdated();
+  }
+
+  /**
+   * Keeps a LayoutState that is being replaced in the cache if it's still valid for the current
+   * root and state, but not for the current size specs.
+   *
+   * @return the LayoutState that must be released (after the lock is released), if any.
+   */
+  @CheckReturnValue
+  @ReturnsOwnership
+  @GuardedBy("this")
+  @Nullable
+  private LayoutState cacheOrReturnForRelease(@Nullable LayoutState layoutState) {
+    if (layoutState == null
+        || mLayoutStateCache == null
+        || mRoot == null
+        || layoutState.isCancelled()
+        || layoutState.getContentGeneration() != mContentGeneration
+        || !layoutState.isForComponentId(mRoot.getId())
+        || layoutState.isCompatibleSpec(mWidthSpec, mHeightSpec)) {
+      return layoutState;
+    }
+
+    return mLayoutStateCache.put(layoutState);
+  }
+
+  /**
+   * Called when the root or the state changes, which makes every LayoutState calculated so far
+   * unfit for the cache.
+   *
+   * @return the cached LayoutStates that must be released (after the lock is released), if any.
+   */
+  @CheckReturnValue
+  @ReturnsOwnership
+  @GuardedBy("this")
+  @Nullable
+  private List<LayoutState> invalidateLayoutStateCache() {
+    mContentGeneration++;
+
+    return mLayoutStateCache == null ? null : mLayoutStateCache.clear();
+  }
+
+  /**
+   * Drops the components of a committed LayoutState, whose event handlers are bound by the caller.
+   * They're kept if there is a LayoutState cache, since the LayoutState may be cached and promoted
+   * again later on, and its event handlers have to be bound to its own components then.
+   */
+  private void clearComponentsIfNotCacheable(LayoutState layoutState) {
+    if (mLayoutStateCache == null) {
+      layoutState.clearComponents();
+    }
+  }
+
+  private static void releaseLayoutStates(@Nullable List<LayoutState> layoutStates) {
+    if (layoutStates == null) {
+      return;
+    }
+
+    for (int i = 0, size = layoutStates.size(); i < size; i++) {
+      layoutStates.get(i).releaseRef();
+    }
+  }
+
+  /**
+   * Hands the InternalNode tree of the most recent layout over to a layout caused by state updates,
+   * so that it only re-creates the subtrees of the components whose state changed. The most recent
+   * layout keeps its tree, which is only persisted if {@link Builder#persistInternalNodeTree} is
+   * set.
+   */
+  @GuardedBy("this")
+  @Nullable
+  private ReusableLayoutTree takeReusableLayoutTree(Component root) {
+    if (!ComponentsConfiguration.reuseUnchangedSubtreesOnStateUpdate
+        || !ComponentsConfiguration.useGlobalKeys
+        || !mPersistInternalNodeTree
+        || mStateHandler == null) {
+      return null;
+    }
+
+    final LayoutState mostRecentLayoutState =
+        mBackgroundLayoutState != null ? mBackgroundLayoutState : mMainThreadLayoutState;
+    if (mostRecentLayoutState == null || !mostRecentLayoutState.isForComponentId(root.getId())) {
+      return null;
+    }
+
+    if (mostRecentLayoutState.getLayoutRoot() == null) {
+      return null;
+    }
+
+    return new ReusableLayoutTree(
+        mostRecentLayoutState.acquireRef(),
+        root.getId(),
+        mStateHandler.getPendingStateUpdateKeys());
+  }
+
+  /**
+   * Makes the given layout the one in flight, and cancels the previous one since its root or size
+   * specs are older. The layouts don't necessarily get here in the order they read the root and
+   * size specs in: if a newer one is already in flight, the given layout is the obsolete one and is
+   * cancelled instead.
+   *
+   * @param cancellationToken the token of the given layout, or null if it can't be cancelled
+   */
+  @VisibleForTesting
+  void onLayoutStarted(long layoutGeneration, @Nullable LayoutCancellationToken cancellationToken) {
+    synchronized (mCurrentCalculateLayoutRunnableLock) {
+      final LayoutCancellationToken inFlightToken = mInFlightLayoutCancellationToken;
+      if (inFlightToken != null && inFlightToken.getLayoutGeneration() > layoutGeneration) {
+        if (cancellationToken != null) {
+          cancellationToken.cancel();
+        }
+        return;
+      }
+
+      if (inFlightToken != null) {
+        inFlightToken.cancel();
+      }
+      mInFlightLayoutCancellationToken = cancellationToken;
+    }
+  }
+
+  /**
+   * Logs a layout that was aborted because it became obsolete. The time saved is estimated from the
+   * duration of the last complete layout of this tree minus the time the cancelled one ran for.
+   */
+  private void onLayoutCancelled(
+      @Nullable ComponentsLogger logger,
+      LayoutCancellationToken cancellationToken,
+      long previousLayoutDurationNs) {
+    final long wastedTimeNs = cancellationToken.getElapsedTimeNs();
+    final long savedTimeNs = Math.max(0, previousLayoutDurationNs - wastedTimeNs);
+    final int cancelledLayoutsCount = sCancelledLayoutsCount.incrementAndGet();
+    final long totalSavedTimeNs = sCancelledLayoutsSavedTimeNs.addAndGet(savedTimeNs);
+
+    if (logger != null) {
+      final LogEvent event = logger.newEvent(EVENT_LAYOUT_CANCELLED);
+      event.addParam(PARAM_LOG_TAG, mContext.getLogTag());
+      event.addParam(PARAM_CANCELLED_LAYOUTS_COUNT, cancelledLayoutsCount);
+      event.addParam(
+          PARAM_CANCELLED_LAYOUT_WASTED_TIME, TimeUnit.NANOSECONDS.toMillis(wastedTimeNs));
+      event.addParam(
+          PARAM_CANCELLED_LAYOUTS_SAVED_TIME, TimeUnit.NANOSECONDS.toMillis(totalSavedTimeNs));
+      logger.log(event);
+    }
+  }
+
+  /** @return the number of in-flight layouts that were cancelled since the process started. */
+  public static int getCancelledLayoutsCount() {
+    return sCancelledLayoutsCount.get();
+  }
+
   private void bindEventAndTriggerHandlers(List<Component> components) {
     clearUnusedTriggerHandlers();
 
@@ -1546,6 +2303,11 @@ public class ComponentTree {
    * meantime, then the transfer will be aborted.
    */
   private void postBackgroundLayoutStateUpdated() {
+    if (ComponentsConfiguration.batchStateUpdatesPerFrame
+        && StateUpdateBatcher.deferLayoutStateUpdated(this)) {
+      return;
+    }
+
     if (isMainThread()) {
       // We need to possibly update mMainThreadLayoutState. This call will
       // cause the host view to be invalidated and re-laid out, if necessary.
@@ -1571,6 +2333,7 @@ public class ComponentTree {
 
     LayoutState mainThreadLayoutState;
     LayoutState backgroundLayoutState;
+    List<LayoutState> cachedLayoutStates;
     synchronized (this) {
       sMainThreadHandler.removeMessages(MESSAGE_WHAT_BACKGROUND_LAYOUT_STATE_UPDATED, this);
 
@@ -1579,6 +2342,10 @@ public class ComponentTree {
           mLayoutThreadHandler.removeCallbacks(mCurrentCalculateLayoutRunnable);
           mCurrentCalculateLayoutRunnable = null;
         }
+        if (mInFlightLayoutCancellationToken != null) {
+          mInFlightLayoutCancellationToken.cancel();
+          mInFlightLayoutCancellationToken = null;
+        }
       }
       synchronized (mUpdateStateSyncRunnableLock) {
         if (mUpdateStateSyncRunnable != null) {
@@ -1591,6 +2358,11 @@ public class ComponentTree {
         mPreAllocateMountContentHandler.removeCallbacks(mPreAllocateMountContentRunnable);
       }
 
+      if (mIsSpeculativeLayoutScheduled) {
+        mLayoutThreadHandler.removeCallbacks(mSpeculativeLayoutRunnable);
+        mIsSpeculativeLayoutScheduled = false;
+      }
+
       mReleased = true;
       mReleasedComponent = mRoot.getSimpleName();
       if (mLithoView != null) {
@@ -1608,6 +2380,9 @@ public class ComponentTree {
       backgroundLayoutState = mBackgroundLayoutState;
       mBackgroundLayoutState = null;
 
+      cachedLayoutStates = invalidateLayoutStateCache();
+      publishLayoutSnapshot();
+
       // TODO t15532529
       mStateHandler = null;
 
@@ -1628,6 +2403,8 @@ public class ComponentTree {
       backgroundLayoutState = null;
     }
 
+    releaseLayoutStates(cachedLayoutStates);
+
     synchronized (mEventTriggersContainer) {
       clearUnusedTriggerHandlers();
     }
@@ -1658,6 +2435,34 @@ public class ComponentTree {
         && mHeightSpec != SIZE_UNINITIALIZED;
   }
 
+  /**
+   * Publishes a new {@link LayoutSnapshot} for the current root, size specs and LayoutStates. Must
+   * be called before releasing the lock whenever any of them changes.
+   */
+  @GuardedBy("this")
+  private void publishLayoutSnapshot() {
+    assertHoldsLock(this);
+
+    mLayoutSnapshot.set(
+        new LayoutSnapshot(
+            ++mLayoutSnapshotVersion,
+            mRoot,
+            mWidthSpec,
+            mHeightSpec,
+            mMainThreadLayoutState != null ? mMainThreadLayoutState.createSnapshotEntry() : null,
+            mBackgroundLayoutState != null ? mBackgroundLayoutState.createSnapshotEntry() : null,
+            mLayoutStateCache != null ? mLayoutStateCache.createSnapshotEntries() : null));
+  }
+
+  @VisibleForTesting
+  LayoutSnapshot getLayoutSnapshot() {
+    return mLayoutSnapshot.get();
+  }
+
+  private void recordMainThreadLockWait(long lockWaitStartNs) {
+    mMainThreadLockWaitTimeNs.addAndGet(System.nanoTime() - lockWaitStartNs);
+  }
+
   private static synchronized Looper getDefaultLayoutThreadLooper() {
     if (sDefaultLayoutThreadLooper == null) {
       final HandlerThread defaultThread =
@@ -1742,17 +2547,14 @@ public class ComponentTree {
       @Nullable DiffNode diffNode,
       @CalculateLayoutSource int source,
       String extraAttribution) {
-    final ComponentContext contextWithStateHandler;
-
-    synchronized (this) {
-      final KeyHandler keyHandler =
-          (ComponentsConfiguration.useGlobalKeys || ComponentsConfiguration.isDebugModeEnabled)
-              ? new KeyHandler(mContext.getLogger())
-              : null;
+    final KeyHandler keyHandler =
+        (ComponentsConfiguration.useGlobalKeys || ComponentsConfiguration.isDebugModeEnabled)
+            ? new KeyHandler(mContext.getLogger())
+            : null;
 
-      contextWithStateHandler =
-          new ComponentContext(context, StateHandler.acquireNewInstance(mStateHandler), keyHandler);
-    }
+    // StateHandler copies are consistent on their own, so this doesn't need the lock of the tree.
+    final ComponentContext contextWithStateHandler =
+        new ComponentContext(context, StateHandler.acquireNewInstance(mStateHandler), keyHandler);
 
     if (lock != null) {
       synchronized (lock) {
@@ -1811,22 +2613,54 @@ public class ComponentTree {
     return sIdGenerator.getAndIncrement();
   }
 
+  /**
+   * @return the interner for the global keys of the most recent layout of this tree, or null if
+   *     global keys should be built by concatenation.
+   */
+  @Nullable
+  GlobalKeyInterner getGlobalKeyInterner() {
+    return mGlobalKeyInterner;
+  }
+
   @VisibleForTesting
   EventHandlersController getEventHandlersController() {
     return mEventHandlersController;
   }
 
-  private final class CalculateLayoutRunnable implements Runnable {
+  private final class CalculateLayoutRunnable
+      implements PriorityLayoutScheduler.PrioritizedRunnable {
 
     private final @CalculateLayoutSource int mSource;
+    private volatile int mLayoutPriority;
 
-    public CalculateLayoutRunnable(@CalculateLayoutSource int source) {
+    public CalculateLayoutRunnable(@CalculateLayoutSource int source, int layoutPriority) {
       mSource = source;
+      mLayoutPriority = layoutPriority;
+    }
+
+    @Override
+    public int getLayoutPriority() {
+      return mLayoutPriority;
+    }
+
+    @Override
+    public void run() {
+      calculateLayout(null, mSource, null, true /* isCancellable */);
+    }
+  }
+
+  private final class SpeculativeLayoutRunnable
+      implements PriorityLayoutScheduler.PrioritizedRunnable {
+
+    @Override
+    public int getLayoutPriority() {
+      // Only run when there's no other layout to compute.
+      return Integer.MAX_VALUE;
     }
 
     @Override
     public void run() {
-      calculateLayout(null, mSource, null);
+      calculateSpeculativeLayout();
     }
   }
 
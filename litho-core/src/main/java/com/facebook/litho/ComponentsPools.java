@@ -21,13 +21,16 @@ import static android.support.v4.view.ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_AUT
 import android.annotation.TargetApi;
 import android.app.Activity;
 import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.ContextWrapper;
+import android.content.res.Configuration;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.support.v4.util.SparseArrayCompat;
@@ -45,6 +48,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -65,36 +69,50 @@ public class ComponentsPools {
   private static final Object sMountContentLock = new Object();
   private static final Object sYogaConfigLock = new Object();
 
+  /**
+   * Creates the pool of a type of object that is acquired for every node of a layout, and so from
+   * all the threads that calculate layouts.
+   */
+  private static <T> RecyclePool<T> createLayoutObjectPool(String name, int maxSize) {
+    return ComponentsConfiguration.useThreadLocalPools
+        ? new TieredRecyclePool<T>(name, maxSize, PoolsConfig.sThreadCacheSize)
+        : new RecyclePool<T>(name, maxSize, true);
+  }
+
   static final RecyclePool<LayoutState> sLayoutStatePool =
-      new RecyclePool<>("LayoutState", PoolsConfig.sLayoutStateSize, true);
+      createLayoutObjectPool("LayoutState", PoolsConfig.sLayoutStateSize);
 
   static final RecyclePool<InternalNode> sInternalNodePool =
-      new RecyclePool<>("InternalNode", PoolsConfig.sInternalNodeSize, true);
+      createLayoutObjectPool("InternalNode", PoolsConfig.sInternalNodeSize);
 
   static final RecyclePool<NodeInfo> sNodeInfoPool =
-      new RecyclePool<>("NodeInfo", PoolsConfig.sNodeInfoSize, true);
+      createLayoutObjectPool("NodeInfo", PoolsConfig.sNodeInfoSize);
 
   static final RecyclePool<ViewNodeInfo> sViewNodeInfoPool =
-      new RecyclePool<>("ViewNodeInfo", 64, true);
+      createLayoutObjectPool("ViewNodeInfo", 64);
 
   static final RecyclePool<YogaNode> sYogaNodePool =
-      new RecyclePool<>("YogaNode", PoolsConfig.sYogaNodeSize, true);
+      createLayoutObjectPool("YogaNode", PoolsConfig.sYogaNodeSize);
 
   static final RecyclePool<MountItem> sMountItemPool =
       new RecyclePool<>("MountItem", 256, true);
 
   static final RecyclePool<LayoutOutput> sLayoutOutputPool =
-      new RecyclePool<>("LayoutOutput", PoolsConfig.sLayoutOutputSize, true);
+      createLayoutObjectPool("LayoutOutput", PoolsConfig.sLayoutOutputSize);
 
   @GuardedBy("sMountContentLock")
   private static final Map<Context, SparseArray<MountContentPool>> sMountContentPoolsByContext =
       new HashMap<>(4);
 
+  // Keyed by the root context of the pools, i.e. the Activity, when adaptive pools are enabled.
+  @GuardedBy("sMountContentLock")
+  private static final Map<Context, MountContentBudget> sMountContentBudgets = new HashMap<>(4);
+
   static final RecyclePool<DisplayListContainer> sDisplayListContainerPool =
-      new RecyclePool<>("DisplayListContainer", PoolsConfig.sDisplayListContainerSize, true);
+      createLayoutObjectPool("DisplayListContainer", PoolsConfig.sDisplayListContainerSize);
 
   static final RecyclePool<VisibilityOutput> sVisibilityOutputPool =
-      new RecyclePool<>("VisibilityOutput", 64, true);
+      createLayoutObjectPool("VisibilityOutput", 64);
 
   // These are lazily initialized as they are only needed when we're in a test environment.
   static RecyclePool<TestOutput> sTestOutputPool = null;
@@ -107,7 +125,7 @@ public class ComponentsPools {
       new RecyclePool<>("Output", 20, true);
 
   static final RecyclePool<DiffNode> sDiffNodePool =
-      new RecyclePool<>("DiffNode", PoolsConfig.sDiffNodeSize, true);
+      createLayoutObjectPool("DiffNode", PoolsConfig.sDiffNodeSize);
 
   static final RecyclePool<Diff<?>> sDiffPool =
       new RecyclePool<>("Diff", 20, true);
@@ -161,6 +179,13 @@ public class ComponentsPools {
   @GuardedBy("sMountContentLock")
   private static PoolsActivityCallback sActivityCallbacks;
 
+  @GuardedBy("sMountContentLock")
+  private static PoolsTrimMemoryCallback sTrimMemoryCallbacks;
+
+  // Starts when the pools are created, so that the first events cover a whole interval.
+  private static final AtomicLong sLastPoolStatsFlushMs =
+      new AtomicLong(SystemClock.uptimeMillis());
+
   /**
    * To support Gingerbread (where the registerActivityLifecycleCallbacks API
    * doesn't exist), we allow apps to explicitly invoke activity callbacks. If
@@ -204,12 +229,16 @@ public class ComponentsPools {
   }
 
   static InternalNode acquireInternalNode(ComponentContext componentContext) {
+    return acquireInternalNode(componentContext, acquireYogaNode());
+  }
+
+  static InternalNode acquireInternalNode(ComponentContext componentContext, YogaNode yogaNode) {
     InternalNode node = sInternalNodePool.acquire();
     if (node == null) {
       node = new InternalNode();
     }
 
-    node.init(acquireYogaNode(), componentContext);
+    node.init(yogaNode, componentContext);
     return node;
   }
 
@@ -567,6 +596,33 @@ public class ComponentsPools {
     }
   }
 
+  /**
+   * Creates one item of mount content for this component type in the pool for this context if the
+   * pool holds less than {@code count} items, and less than its max size.
+   *
+   * @return false if nothing was created because the pool already holds enough.
+   */
+  static boolean preallocateContentUpTo(
+      ComponentContext context, ComponentLifecycle lifecycle, int count) {
+    final MountContentPool pool = getMountContentPool(context, lifecycle);
+    if (pool == null || pool.getCurrentSize() >= Math.min(count, pool.getMaxSize())) {
+      return false;
+    }
+
+    if (pool instanceof RecyclePool) {
+      final PoolStats stats = ((RecyclePool) pool).getStats();
+      if (stats != null) {
+        stats.onPreallocate();
+      }
+    }
+
+    final int sizeBefore = pool.getCurrentSize();
+    pool.release(lifecycle.createMountContent(context));
+
+    // A pool can still refuse the content, e.g. when its Activity retains too much already.
+    return pool.getCurrentSize() > sizeBefore;
+  }
+
   private static @Nullable MountContentPool getMountContentPool(
       ComponentContext wrappedContext, ComponentLifecycle lifecycle) {
     if (lifecycle.poolSize() == 0) {
@@ -592,6 +648,11 @@ public class ComponentsPools {
       if (pool == null) {
         pool = lifecycle.onCreateMountContentPool();
         poolsArray.put(lifecycle.getTypeId(), pool);
+
+        if (ComponentsConfiguration.useAdaptiveMountContentPools
+            && pool instanceof DefaultMountContentPool) {
+          addToBudget(context, (DefaultMountContentPool) pool);
+        }
       }
 
       return pool;
@@ -607,6 +668,25 @@ public class ComponentsPools {
     return innerContext;
   }
 
+  @GuardedBy("sMountContentLock")
+  private static void addToBudget(Context context, DefaultMountContentPool pool) {
+    final Context rootContext = ContextUtils.getRootContext(context);
+    MountContentBudget budget = sMountContentBudgets.get(rootContext);
+    if (budget == null) {
+      budget = new MountContentBudget(PoolsConfig.sMountContentPerActivitySize);
+      sMountContentBudgets.put(rootContext, budget);
+    }
+
+    budget.addPool(pool);
+    pool.setBudget(budget);
+
+    if (sTrimMemoryCallbacks == null
+        && Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+      sTrimMemoryCallbacks = new PoolsTrimMemoryCallback();
+      context.getApplicationContext().registerComponentCallbacks(sTrimMemoryCallbacks);
+    }
+  }
+
   @GuardedBy("sMountContentLock")
   private static void ensureActivityCallbacks(Context context) {
     if (sActivityCallbacks == null && !sIsManualCallbacks) {
@@ -722,6 +802,85 @@ public class ComponentsPools {
     }
   }
 
+  @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+  private static class PoolsTrimMemoryCallback implements ComponentCallbacks2 {
+
+    @Override
+    public void onTrimMemory(int level) {
+      ComponentsPools.onTrimMemory(level);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onLowMemory() {
+      ComponentsPools.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+  }
+
+  /**
+   * Logs the counters of every pool that was used since the last call as an {@link
+   * FrameworkLogEvents#EVENT_POOL_STATS} event each, and resets them. Does nothing if the last call
+   * was less than {@link ComponentsConfiguration#poolStatsFlushIntervalMs} ago.
+   */
+  static void maybeLogPoolStats(ComponentsLogger logger) {
+    if (!ComponentsConfiguration.enablePoolStats) {
+      return;
+    }
+
+    final long nowMs = SystemClock.uptimeMillis();
+    final long lastFlushMs = sLastPoolStatsFlushMs.get();
+    if (nowMs - lastFlushMs < ComponentsConfiguration.poolStatsFlushIntervalMs
+        || !sLastPoolStatsFlushMs.compareAndSet(lastFlushMs, nowMs)) {
+      return;
+    }
+
+    for (PoolWithDebugInfo pool : LithoDebugInfo.getPools()) {
+      if (!(pool instanceof RecyclePool)) {
+        continue;
+      }
+
+      final PoolStats stats = ((RecyclePool) pool).getStats();
+      if (stats == null || stats.isEmpty()) {
+        continue;
+      }
+
+      final LogEvent event = logger.newEvent(FrameworkLogEvents.EVENT_POOL_STATS);
+      event.addParam(FrameworkLogEvents.PARAM_POOL_NAME, pool.getName());
+      event.addParam(FrameworkLogEvents.PARAM_POOL_MAX_SIZE, pool.getMaxSize());
+      event.addParam(FrameworkLogEvents.PARAM_POOL_CURRENT_SIZE, pool.getCurrentSize());
+      stats.flush(event);
+      logger.log(event);
+    }
+  }
+
+  /**
+   * Drops pooled mount content according to a {@link ComponentCallbacks2} trim level: only what
+   * wasn't needed lately while the app runs fine, half of it once memory is getting low or the UI
+   * is hidden, and all of it when memory is critical. Called automatically when adaptive mount
+   * content pools are enabled, apps can also call it from their own callbacks.
+   */
+  public static void onTrimMemory(int level) {
+    for (MountContentPool pool : getMountContentPools()) {
+      if (!(pool instanceof DefaultMountContentPool)) {
+        continue;
+      }
+
+      final DefaultMountContentPool defaultPool = (DefaultMountContentPool) pool;
+      if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+          || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+        defaultPool.trim(0);
+      } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+        defaultPool.trim(defaultPool.getCurrentSize() / 2);
+      } else {
+        defaultPool.adapt();
+      }
+    }
+  }
+
   static void onContextCreated(Context context) {
     synchronized (sMountContentLock) {
       if (sMountContentPoolsByContext.containsKey(context)) {
@@ -734,6 +893,7 @@ public class ComponentsPools {
   static void onContextDestroyed(Context context) {
     synchronized (sMountContentLock) {
       sMountContentPoolsByContext.remove(context);
+      sMountContentBudgets.remove(ContextUtils.getRootContext(context));
 
       // Clear any context wrappers holding a reference to this activity.
       final Iterator<Map.Entry<Context, SparseArray<MountContentPool>>> it =
@@ -756,6 +916,7 @@ public class ComponentsPools {
   public static void clearMountContentPools() {
     synchronized (sMountContentLock) {
       sMountContentPoolsByContext.clear();
+      sMountContentBudgets.clear();
     }
   }
 
@@ -934,6 +1095,13 @@ public class ComponentsPools {
     return pools;
   }
 
+  @VisibleForTesting
+  static @Nullable MountContentBudget getMountContentBudget(Context context) {
+    synchronized (sMountContentLock) {
+      return sMountContentBudgets.get(ContextUtils.getRootContext(context));
+    }
+  }
+
   @VisibleForTesting
   @GuardedBy("sMountContentLock")
   static void clearActivityCallbacks() {
@@ -15,25 +15,60 @@
  */
 package com.facebook.litho;
 
+import android.support.annotation.Nullable;
+import com.facebook.litho.config.ComponentsConfiguration;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The default {@link MountContentPool} used for mount content unless your MountSpec
  * implements @OnCreateMountContentPool.
+ *
+ * <p>When {@link ComponentsConfiguration#useAdaptiveMountContentPools} is enabled, the pool only
+ * retains up to a target size that follows its hits and misses: the most content it held since the
+ * last adaptation, minus what was never acquired, plus one item for every miss.
  */
 public class DefaultMountContentPool extends RecyclePool implements MountContentPool {
 
+  /** How many acquire calls happen between two adaptations of the target size. */
+  private static final int ADAPT_INTERVAL = 32;
+
   private final AtomicInteger mAllocationCount = new AtomicInteger(0);
   private final int mPoolSize;
+  private final boolean mIsAdaptive;
+
+  // The following are only used by adaptive pools.
+  private final Object mAdaptLock = new Object();
+  private final AtomicInteger mAcquireCount = new AtomicInteger(0);
+  private final AtomicInteger mMissCount = new AtomicInteger(0);
+  // The most and the fewest items the pool held since the last adaptation. The latter were never
+  // needed.
+  private final AtomicInteger mPeakCount = new AtomicInteger(0);
+  private final AtomicInteger mIdleCount = new AtomicInteger(0);
+  private volatile int mTargetSize;
+  private volatile @Nullable MountContentBudget mBudget;
 
   public DefaultMountContentPool(String name, int maxSize, boolean sync) {
     super(name, maxSize, sync);
     mPoolSize = maxSize;
+    mIsAdaptive = ComponentsConfiguration.useAdaptiveMountContentPools;
+    mTargetSize = maxSize;
+  }
+
+  public DefaultMountContentPool(
+      String name, int maxSize, @RecyclePool.ThreadingMode int threadingMode) {
+    super(name, maxSize, threadingMode);
+    mPoolSize = maxSize;
+    mIsAdaptive = ComponentsConfiguration.useAdaptiveMountContentPools;
+    mTargetSize = maxSize;
   }
 
   @Override
   public Object acquire(ComponentContext c, ComponentLifecycle lifecycle) {
     final Object fromPool = super.acquire();
+    if (mIsAdaptive) {
+      onAcquire(fromPool != null);
+    }
+
     if (fromPool != null) {
       return fromPool;
     }
@@ -47,6 +82,46 @@ public class DefaultMountContentPool extends RecyclePool implements MountContent
     throw new UnsupportedOperationException("Call acquire(ComponentContext, ComponentLifecycle)");
   }
 
+  @Override
+  boolean tryRelease(Object item) {
+    if (!mIsAdaptive) {
+      return super.tryRelease(item);
+    }
+
+    if (getCurrentSize() >= mTargetSize) {
+      return false;
+    }
+
+    final MountContentBudget budget = mBudget;
+    if (budget != null && !budget.tryReserve()) {
+      return false;
+    }
+
+    if (super.tryRelease(item)) {
+      final int size = getCurrentSize();
+      int peakCount;
+      while ((peakCount = mPeakCount.get()) < size && !mPeakCount.compareAndSet(peakCount, size)) {
+        // Retry until the high watermark is at least the current size.
+      }
+      return true;
+    }
+
+    if (budget != null) {
+      budget.release(1);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isFull() {
+    if (!mIsAdaptive) {
+      return super.isFull();
+    }
+
+    final MountContentBudget budget = mBudget;
+    return getCurrentSize() >= mTargetSize || (budget != null && !budget.hasRoom());
+  }
+
   /**
    * Pre-allocates one item for the given ComponentLifecycle if the preallocation count is less than
    * the pool size, otherwise does nothing.
@@ -56,7 +131,93 @@ public class DefaultMountContentPool extends RecyclePool implements MountContent
     // There's a slight race between checking isFull and the actual release() but this shouldn't
     // happen much and when it does it isn't that bad.
     if (!isFull() && mAllocationCount.getAndIncrement() < mPoolSize) {
+      final PoolStats stats = getStats();
+      if (stats != null) {
+        stats.onPreallocate();
+      }
       release(lifecycle.createMountContent(c));
     }
   }
+
+  /** Makes the content retained by this pool count towards the given budget. */
+  void setBudget(MountContentBudget budget) {
+    mBudget = budget;
+  }
+
+  int getTargetSize() {
+    return mTargetSize;
+  }
+
+  /**
+   * Moves the target size of an adaptive pool to what was actually used since the last call: the
+   * content that was never acquired is dropped, and each miss makes room for one more item.
+   */
+  void adapt() {
+    if (!mIsAdaptive) {
+      return;
+    }
+
+    synchronized (mAdaptLock) {
+      final int usedSize = mPeakCount.get() - mIdleCount.get() + mMissCount.getAndSet(0);
+      final int targetSize = Math.max(0, Math.min(mPoolSize, usedSize));
+      mTargetSize = targetSize;
+      trimTo(targetSize);
+      resetWatermarks();
+    }
+  }
+
+  /**
+   * Drops pooled content until at most {@code size} items are left, e.g. when the system is low on
+   * memory. An adaptive pool also lowers its target size, and grows it back from its misses.
+   */
+  void trim(int size) {
+    if (mIsAdaptive) {
+      synchronized (mAdaptLock) {
+        mTargetSize = Math.min(mTargetSize, size);
+        trimTo(size);
+        resetWatermarks();
+      }
+    } else {
+      trimTo(size);
+    }
+  }
+
+  private void trimTo(int size) {
+    int trimmed = 0;
+    while (getCurrentSize() > size && poll() != null) {
+      trimmed++;
+    }
+
+    final MountContentBudget budget = mBudget;
+    if (budget != null && trimmed > 0) {
+      budget.release(trimmed);
+    }
+  }
+
+  private void resetWatermarks() {
+    final int size = getCurrentSize();
+    mPeakCount.set(size);
+    mIdleCount.set(size);
+  }
+
+  private void onAcquire(boolean isHit) {
+    if (isHit) {
+      final MountContentBudget budget = mBudget;
+      if (budget != null) {
+        budget.release(1);
+      }
+    } else {
+      mMissCount.incrementAndGet();
+    }
+
+    final int size = getCurrentSize();
+    int idleCount;
+    while ((idleCount = mIdleCount.get()) > size && !mIdleCount.compareAndSet(idleCount, size)) {
+      // Retry until the low watermark is at most the current size.
+    }
+
+    if (mAcquireCount.incrementAndGet() % ADAPT_INTERVAL == 0) {
+      adapt();
+    }
+  }
 }
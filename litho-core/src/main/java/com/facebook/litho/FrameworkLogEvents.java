@@ -42,6 +42,8 @@ public interface FrameworkLogEvents {
   int EVENT_SECTIONS_ON_CREATE_CHILDREN = 14;
   int EVENT_SECTIONS_SET_ROOT = 15;
   int EVENT_CALCULATE_LAYOUT_STATE = 16;
+  int EVENT_LAYOUT_CANCELLED = 17;
+  int EVENT_POOL_STATS = 18;
 
   @IntDef({
     FrameworkLogEvents.EVENT_CREATE_LAYOUT,
@@ -60,6 +62,8 @@ public interface FrameworkLogEvents {
     FrameworkLogEvents.EVENT_SECTIONS_ON_CREATE_CHILDREN,
     FrameworkLogEvents.EVENT_SECTIONS_SET_ROOT,
     FrameworkLogEvents.EVENT_CALCULATE_LAYOUT_STATE,
+    FrameworkLogEvents.EVENT_LAYOUT_CANCELLED,
+    FrameworkLogEvents.EVENT_POOL_STATS,
   })
   @Retention(RetentionPolicy.SOURCE)
   @interface LogEventId {}
@@ -93,4 +97,20 @@ public interface FrameworkLogEvents {
   String PARAM_SECTION_SET_ROOT_SOURCE = "section_set_root_source";
   String PARAM_SET_ROOT_ON_BG_THREAD = "sections_set_root_bg_thread";
   String PARAM_LAYOUT_STATE_SOURCE = "calculate_layout_state_source";
+  String PARAM_CANCELLED_LAYOUTS_COUNT = "cancelled_layouts_count";
+  String PARAM_CANCELLED_LAYOUT_WASTED_TIME = "cancelled_layout_wasted_time_ms";
+  String PARAM_CANCELLED_LAYOUTS_SAVED_TIME = "cancelled_layouts_saved_time_ms";
+  String PARAM_LAYOUT_LOCK_HOLD_TIME = "layout_lock_hold_time_us";
+  String PARAM_MAIN_THREAD_LOCK_WAIT_TIME = "main_thread_lock_wait_time_us";
+  String PARAM_DIFF_CHUNK_COUNT = "diff_chunk_count";
+  String PARAM_DIFF_CHUNK_TIMES = "diff_chunk_times_ms";
+  String PARAM_POOL_NAME = "pool_name";
+  String PARAM_POOL_MAX_SIZE = "pool_max_size";
+  String PARAM_POOL_CURRENT_SIZE = "pool_current_size";
+  String PARAM_POOL_ACQUIRE_COUNT = "pool_acquire_count";
+  String PARAM_POOL_HIT_COUNT = "pool_hit_count";
+  String PARAM_POOL_MISS_COUNT = "pool_miss_count";
+  String PARAM_POOL_RELEASE_COUNT = "pool_release_count";
+  String PARAM_POOL_DROPPED_RELEASE_COUNT = "pool_dropped_release_count";
+  String PARAM_POOL_PREALLOCATION_COUNT = "pool_preallocation_count";
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.facebook.litho;
+
+import android.support.annotation.VisibleForTesting;
+import com.facebook.infer.annotation.ThreadSafe;
+import com.facebook.litho.internal.LongIntHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Interns the global keys of the {@link Component}s of a {@link ComponentTree} as integer path ids,
+ * so that the same component in two different layouts gets the same id, and the same global key
+ * {@link String} instance, without building a new String for every component on every layout.
+ *
+ * <p>A path id is made of the id of the parent path and of a local part, which is either the key
+ * of the component within its parent or the position that makes a duplicate key unique. The
+ * String form of a path, as built by {@link ComponentKeyUtils}, is only created the first time the
+ * path is seen and can be recovered from its id with {@link #getKey(int)}.
+ *
+ * <p>Every layout uses its own interner, created by {@link #forLayout} from the one of the previous
+ * layout. The keys of the previous layouts are read without locking since they never change, so
+ * only the keys that are new to a layout take a lock. The interned keys are dropped when the root
+ * component changes type or when there are too many of them.
+ */
+@ThreadSafe
+final class GlobalKeyInterner {
+
+  /** Returned when an id could not be assigned, in which case keys should be built as Strings. */
+  static final int NO_ID = -1;
+
+  /** The parent path id of root components. */
+  static final int ROOT_ID = 0;
+
+  /** Past this many distinct keys, the next layout starts over with an empty interner. */
+  @VisibleForTesting static final int MAX_INTERNED_KEYS = 1 << 16;
+
+  // Local keys that are the decimal form of a number up to this, like the default keys made of
+  // the component's type id, are stored as that number instead of being looked up by String.
+  private static final int MAX_NUMERIC_KEY = (1 << 30) - 1;
+
+  private final int mRootTypeId;
+
+  // The keys of the previous layouts, which are never modified.
+  private final LongIntHashMap mBasePathIds;
+  private final Map<String, Integer> mBaseLocalKeyIds;
+  private final String[] mBaseKeys;
+  private final long[] mBasePaths;
+
+  // The keys that are new to this layout. Their ids follow the ones of the base keys.
+  @GuardedBy("this")
+  private final LongIntHashMap mPathIds = new LongIntHashMap();
+
+  @GuardedBy("this")
+  private final Map<String, Integer> mLocalKeyIds = new HashMap<>();
+
+  @GuardedBy("this")
+  private final List<String> mKeys = new ArrayList<>();
+
+  @GuardedBy("this")
+  private long[] mPaths = new long[8];
+
+  @VisibleForTesting
+  GlobalKeyInterner(int rootTypeId) {
+    this(
+        rootTypeId,
+        new LongIntHashMap(),
+        Collections.<String, Integer>emptyMap(),
+        new String[] {null},
+        new long[] {0});
+  }
+
+  private GlobalKeyInterner(
+      int rootTypeId,
+      LongIntHashMap basePathIds,
+      Map<String, Integer> baseLocalKeyIds,
+      String[] baseKeys,
+      long[] basePaths) {
+    mRootTypeId = rootTypeId;
+    mBasePathIds = basePathIds;
+    mBaseLocalKeyIds = baseLocalKeyIds;
+    mBaseKeys = baseKeys;
+    mBasePaths = basePaths;
+  }
+
+  /**
+   * @return the interner for a layout of a root component with the given type id. It starts with
+   *     the keys of the previous interner unless the root changed type or the previous interner
+   *     is full.
+   */
+  static GlobalKeyInterner forLayout(@Nullable GlobalKeyInterner previous, int rootTypeId) {
+    if (previous == null || previous.mRootTypeId != rootTypeId || previous.isFull()) {
+      return new GlobalKeyInterner(rootTypeId);
+    }
+
+    return previous.withNewKeysInBase();
+  }
+
+  /**
+   * @return the id of the global key of a component with the given local key whose parent's global
+   *     key has the given id, or {@link #NO_ID} if the parent has no id or the interner is full.
+   */
+  int intern(int parentId, String key) {
+    if (parentId == NO_ID) {
+      return NO_ID;
+    }
+
+    final int numericKey = parseNumericKey(key);
+    if (numericKey >= 0) {
+      // Non-negative even local parts are numeric keys.
+      return internPath(parentId, numericKey << 1, key, NO_ID);
+    }
+
+    Integer localKeyId = mBaseLocalKeyIds.get(key);
+    if (localKeyId == null) {
+      synchronized (this) {
+        localKeyId = mLocalKeyIds.get(key);
+        if (localKeyId == null) {
+          localKeyId = mBaseLocalKeyIds.size() + mLocalKeyIds.size();
+          mLocalKeyIds.put(key, localKeyId);
+        }
+      }
+    }
+
+    // Odd local parts are the ids of the other keys.
+    return internPath(parentId, (localKeyId << 1) | 1, key, NO_ID);
+  }
+
+  /**
+   * @return the id of the global key made unique by appending the given child position to the
+   *     global key with the given id, or {@link #NO_ID} if that key has no id or the interner is
+   *     full.
+   */
+  int internChildPosition(int id, int index) {
+    if (id == NO_ID) {
+      return NO_ID;
+    }
+
+    // Positions are stored as negative local parts so they never collide with local keys.
+    return internPath(id, -(index + 1), null, index);
+  }
+
+  /** @return the global key String with the given id. */
+  String getKey(int id) {
+    if (id < mBaseKeys.length) {
+      return mBaseKeys[id];
+    }
+
+    synchronized (this) {
+      return mKeys.get(id - mBaseKeys.length);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return mBaseKeys.length - 1 + mKeys.size();
+  }
+
+  private synchronized boolean isFull() {
+    return mBaseKeys.length + mKeys.size() > MAX_INTERNED_KEYS;
+  }
+
+  private int internPath(int parentId, int localPart, @Nullable String key, int index) {
+    final long path = ((long) parentId << 32) | (localPart & 0xFFFFFFFFL);
+    final int baseId = mBasePathIds.get(path, NO_ID);
+    if (baseId != NO_ID) {
+      return baseId;
+    }
+
+    synchronized (this) {
+      final int existingId = mPathIds.get(path, NO_ID);
+      if (existingId != NO_ID) {
+        return existingId;
+      }
+
+      final int id = mBaseKeys.length + mKeys.size();
+      if (id > MAX_INTERNED_KEYS) {
+        return NO_ID;
+      }
+
+      final String parentKey = getKeyLocked(parentId);
+      final String globalKey;
+      if (key == null) {
+        globalKey = ComponentKeyUtils.getKeyForChildPosition(parentKey, index);
+      } else if (parentKey == null) {
+        globalKey = key;
+      } else {
+        globalKey = ComponentKeyUtils.getKeyWithSeparator(parentKey, key);
+      }
+
+      if (mKeys.size() == mPaths.length) {
+        mPaths = Arrays.copyOf(mPaths, mPaths.length * 2);
+      }
+      mPaths[mKeys.size()] = path;
+      mKeys.add(globalKey);
+      mPathIds.put(path, id);
+
+      return id;
+    }
+  }
+
+  @GuardedBy("this")
+  private String getKeyLocked(int id) {
+    return id < mBaseKeys.length ? mBaseKeys[id] : mKeys.get(id - mBaseKeys.length);
+  }
+
+  /** @return an interner whose base keys are all the keys of this one. */
+  private synchronized GlobalKeyInterner withNewKeysInBase() {
+    final int newKeyCount = mKeys.size();
+    if (newKeyCount == 0) {
+      return this;
+    }
+
+    final int baseKeyCount = mBaseKeys.length;
+    final String[] keys = Arrays.copyOf(mBaseKeys, baseKeyCount + newKeyCount);
+    final long[] paths = Arrays.copyOf(mBasePaths, baseKeyCount + newKeyCount);
+    final LongIntHashMap pathIds = new LongIntHashMap(keys.length);
+    for (int i = 1; i < baseKeyCount; i++) {
+      pathIds.put(paths[i], i);
+    }
+    for (int i = 0; i < newKeyCount; i++) {
+      keys[baseKeyCount + i] = mKeys.get(i);
+      paths[baseKeyCount + i] = mPaths[i];
+      pathIds.put(mPaths[i], baseKeyCount + i);
+    }
+
+    final Map<String, Integer> localKeyIds;
+    if (mLocalKeyIds.isEmpty()) {
+      localKeyIds = mBaseLocalKeyIds;
+    } else {
+      localKeyIds = new HashMap<>(mBaseLocalKeyIds);
+      localKeyIds.putAll(mLocalKeyIds);
+    }
+
+    return new GlobalKeyInterner(mRootTypeId, pathIds, localKeyIds, keys, paths);
+  }
+
+  /**
+   * @return the number of which the given key is the decimal form, without sign or leading zeros,
+   *     or -1 if it's not one or if it's too big.
+   */
+  private static int parseNumericKey(String key) {
+    final int length = key.length();
+    if (length == 0 || length > 10 || (length > 1 && key.charAt(0) == '0')) {
+      return -1;
+    }
+
+    long value = 0;
+    for (int i = 0; i < length; i++) {
+      final char c = key.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+
+    return value <= MAX_NUMERIC_KEY ? (int) value : -1;
+  }
+}
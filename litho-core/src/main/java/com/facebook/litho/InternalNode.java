@@ -1651,6 +1651,78 @@ class InternalNode implements ComponentLayout {
     ComponentsPools.release(this);
   }
 
+  /**
+   * @return a copy of this node and of its Yoga node, without children, that another layout can
+   *     change and measure without affecting the layout this node belongs to. Nested trees and
+   *     diff nodes are not copied since every layout resolves its own.
+   */
+  @ReturnsOwnership
+  InternalNode copyWithoutChildren() {
+    final InternalNode copy =
+        ComponentsPools.acquireInternalNode(mComponentContext, mYogaNode.cloneWithNewChildren());
+
+    copy.mComponents.addAll(mComponents);
+    copy.mImportantForAccessibility = mImportantForAccessibility;
+    copy.mDuplicateParentState = mDuplicateParentState;
+    copy.mIsNestedTreeHolder = mIsNestedTreeHolder;
+    copy.mPrivateFlags = mPrivateFlags;
+    copy.mBackground = mBackground;
+    copy.mForeground = mForeground;
+    System.arraycopy(mBorderColors, 0, copy.mBorderColors, 0, mBorderColors.length);
+    System.arraycopy(mBorderRadius, 0, copy.mBorderRadius, 0, mBorderRadius.length);
+    copy.mBorderPathEffect = mBorderPathEffect;
+    copy.mStateListAnimator = mStateListAnimator;
+    copy.mStateListAnimatorRes = mStateListAnimatorRes;
+    copy.mNodeInfo = mNodeInfo != null ? mNodeInfo.acquireRef() : null;
+    copy.mForceViewWrapping = mForceViewWrapping;
+    copy.mTransitionKey = mTransitionKey;
+    copy.mVisibleHeightRatio = mVisibleHeightRatio;
+    copy.mVisibleWidthRatio = mVisibleWidthRatio;
+    copy.mVisibleHandler = mVisibleHandler;
+    copy.mFocusedHandler = mFocusedHandler;
+    copy.mUnfocusedHandler = mUnfocusedHandler;
+    copy.mFullImpressionHandler = mFullImpressionHandler;
+    copy.mInvisibleHandler = mInvisibleHandler;
+    copy.mTestKey = mTestKey;
+    copy.mTouchExpansion = copyEdges(mTouchExpansion);
+    copy.mNestedTreePadding = copyEdges(mNestedTreePadding);
+    copy.mNestedTreeBorderWidth = copyEdges(mNestedTreeBorderWidth);
+    copy.mIsPaddingPercent = mIsPaddingPercent != null ? mIsPaddingPercent.clone() : null;
+    copy.mLastWidthSpec = mLastWidthSpec;
+    copy.mLastHeightSpec = mLastHeightSpec;
+    copy.mLastMeasuredWidth = mLastMeasuredWidth;
+    copy.mLastMeasuredHeight = mLastMeasuredHeight;
+    copy.mCachedMeasuresValid = mCachedMeasuresValid;
+    copy.mPendingTreeProps = mPendingTreeProps != null ? TreeProps.copy(mPendingTreeProps) : null;
+
+    if (mTransitions != null) {
+      copy.mTransitions = new ArrayList<>(mTransitions);
+    }
+    if (mComponentsNeedingPreviousRenderData != null) {
+      copy.mComponentsNeedingPreviousRenderData =
+          new ArrayList<>(mComponentsNeedingPreviousRenderData);
+    }
+    if (mWorkingRangeRegistrations != null) {
+      copy.mWorkingRangeRegistrations = new ArrayList<>(mWorkingRangeRegistrations);
+    }
+
+    return copy;
+  }
+
+  @Nullable
+  private static Edges copyEdges(@Nullable Edges edges) {
+    if (edges == null) {
+      return null;
+    }
+
+    final Edges copy = ComponentsPools.acquireEdges();
+    for (YogaEdge edge : YogaEdge.values()) {
+      copy.set(edge, edges.getRaw(edge));
+    }
+
+    return copy;
+  }
+
   private NodeInfo getOrCreateNodeInfo() {
     if (mNodeInfo == null) {
       mNodeInfo = NodeInfo.acquire();
@@ -1738,7 +1810,9 @@ class InternalNode implements ComponentLayout {
     }
     final T drawable = Reference.acquire(mComponentContext, ref);
     if (drawable != null) {
-      final Rect backgroundPadding = ComponentsPools.acquireRect();
+      final LayoutArena arena = LayoutArena.current();
+      final Rect backgroundPadding =
+          arena != null ? arena.acquireRect() : ComponentsPools.acquireRect();
       if (getDrawablePadding(drawable, backgroundPadding)) {
         paddingPx(LEFT, backgroundPadding.left);
         paddingPx(TOP, backgroundPadding.top);
@@ -1747,7 +1821,11 @@ class InternalNode implements ComponentLayout {
       }
 
       Reference.release(mComponentContext, drawable, ref);
-      ComponentsPools.release(backgroundPadding);
+      if (arena != null) {
+        arena.releaseRect(backgroundPadding);
+      } else {
+        ComponentsPools.release(backgroundPadding);
+      }
     }
   }
 
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import android.graphics.Rect;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import com.facebook.infer.annotation.ThreadConfined;
+import com.facebook.litho.config.ComponentsConfiguration;
+import java.util.ArrayList;
+
+/**
+ * A stack allocator for the transient objects of a layout calculation, e.g. the Size a component is
+ * measured into. Each thread has its own arena, which only hands out objects between {@link
+ * #enter()} and the matching {@link #exit()}. Every object is released at the end of the scope that
+ * acquired it, in the reverse order of acquisition, so the arena only ever holds as many objects as
+ * are in use at the same time, e.g. one Size per level of nested measure calls. Nothing is
+ * synchronized, and nothing is left to the garbage collector.
+ *
+ * <p>Nothing acquired from an arena can outlive the scope that acquired it, e.g. be stored in a
+ * LayoutState or a Component.
+ */
+@ThreadConfined(ThreadConfined.ANY)
+final class LayoutArena {
+
+  /** How many objects of each kind a stack keeps after a layout that needed more. */
+  private static final int MAX_RETAINED_PER_SLAB = 256;
+
+  private static final ThreadLocal<LayoutArena> sArenas =
+      new ThreadLocal<LayoutArena>() {
+        @Override
+        protected LayoutArena initialValue() {
+          return new LayoutArena();
+        }
+      };
+
+  private final ObjectStack<Rect> mRects =
+      new ObjectStack<Rect>() {
+        @Override
+        Rect create() {
+          return new Rect();
+        }
+
+        @Override
+        void clear(Rect rect) {
+          rect.setEmpty();
+        }
+      };
+
+  private final ObjectStack<Size> mSizes =
+      new ObjectStack<Size>() {
+        @Override
+        Size create() {
+          return new Size();
+        }
+
+        @Override
+        void clear(Size size) {
+          size.width = 0;
+          size.height = 0;
+        }
+      };
+
+  private int mDepth;
+  private int mAllocationCount;
+
+  private LayoutArena() {}
+
+  /**
+   * Starts a layout calculation on this thread. Nested calculations, e.g. of a nested tree, share
+   * the arena of the outermost one.
+   *
+   * @return the arena to pass to {@link #exit()}, or null if arenas are disabled.
+   */
+  @Nullable
+  static LayoutArena enter() {
+    if (!ComponentsConfiguration.useLayoutArena) {
+      return null;
+    }
+
+    final LayoutArena arena = sArenas.get();
+    arena.mDepth++;
+    return arena;
+  }
+
+  /**
+   * Ends a layout calculation. Once the outermost one ends, whatever wasn't released, e.g. because
+   * of an exception, is freed too.
+   */
+  void exit() {
+    if (--mDepth > 0) {
+      return;
+    }
+
+    mRects.reset();
+    mSizes.reset();
+  }
+
+  /** @return the arena of this thread if it's calculating a layout, null otherwise. */
+  @Nullable
+  static LayoutArena current() {
+    if (!ComponentsConfiguration.useLayoutArena) {
+      return null;
+    }
+
+    final LayoutArena arena = sArenas.get();
+    return arena.mDepth > 0 ? arena : null;
+  }
+
+  /** Same as new Rect(). Must be released with {@link #releaseRect(Rect)}. */
+  Rect acquireRect() {
+    return mRects.acquire();
+  }
+
+  /** Releases the Rect acquired last. */
+  void releaseRect(Rect rect) {
+    mRects.release(rect);
+  }
+
+  /** Same as new Size(). Must be released with {@link #releaseSize(Size)}. */
+  Size acquireSize() {
+    return mSizes.acquire();
+  }
+
+  /** Releases the Size acquired last. */
+  void releaseSize(Size size) {
+    mSizes.release(size);
+  }
+
+  /** @return how many objects this arena had to allocate since it was created. */
+  @VisibleForTesting
+  int getAllocationCount() {
+    return mAllocationCount;
+  }
+
+  @VisibleForTesting
+  static LayoutArena getForCurrentThread() {
+    return sArenas.get();
+  }
+
+  /** Objects of one kind, taken back in the reverse order they were handed out. */
+  private abstract class ObjectStack<T> {
+    private final ArrayList<T> mItems = new ArrayList<>();
+    private int mUsedCount;
+
+    abstract T create();
+
+    abstract void clear(T item);
+
+    T acquire() {
+      if (mUsedCount < mItems.size()) {
+        final T item = mItems.get(mUsedCount++);
+        clear(item);
+        return item;
+      }
+
+      final T item = create();
+      mAllocationCount++;
+      mItems.add(item);
+      mUsedCount++;
+      return item;
+    }
+
+    void release(T item) {
+      if (mUsedCount == 0 || mItems.get(mUsedCount - 1) != item) {
+        throw new IllegalStateException(
+            "Objects acquired from a LayoutArena must be released in the reverse order");
+      }
+
+      mUsedCount--;
+    }
+
+    void reset() {
+      mUsedCount = 0;
+      for (int i = mItems.size() - 1; i >= MAX_RETAINED_PER_SLAB; i--) {
+        mItems.remove(i);
+      }
+    }
+  }
+}
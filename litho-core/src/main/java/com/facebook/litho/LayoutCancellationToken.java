@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import com.facebook.infer.annotation.ThreadSafe;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A flag shared between a {@link ComponentTree} and a layout calculation running on another
+ * thread. The layout calculation polls it between components in {@link LayoutState#createTree} and
+ * before measuring in {@link LayoutState#measureTree}, and bails out as soon as the {@link
+ * ComponentTree} has started a newer layout that makes the result of the running one obsolete.
+ */
+@ThreadSafe
+class LayoutCancellationToken {
+
+  private static final int RUNNING = 0;
+  private static final int CANCELLED = 1;
+  private static final int FINISHED = 2;
+
+  private final long mLayoutGeneration;
+  private final long mStartTimeNs = System.nanoTime();
+  private final AtomicInteger mState = new AtomicInteger(RUNNING);
+
+  /**
+   * @param layoutGeneration orders the layouts of a tree by when they read its root and size
+   *     specs, so that a layout only ever cancels older ones.
+   */
+  LayoutCancellationToken(long layoutGeneration) {
+    mLayoutGeneration = layoutGeneration;
+  }
+
+  long getLayoutGeneration() {
+    return mLayoutGeneration;
+  }
+
+  /** Cancels the layout, unless it already finished. */
+  void cancel() {
+    mState.compareAndSet(RUNNING, CANCELLED);
+  }
+
+  /**
+   * Marks the layout as finished, so that cancelling it has no effect anymore. The components of a
+   * finished layout keep this token in their scoped contexts, and must not see it cancelled later.
+   *
+   * @return false if the layout was cancelled before it could be finished.
+   */
+  boolean finish() {
+    return mState.compareAndSet(RUNNING, FINISHED) || mState.get() == FINISHED;
+  }
+
+  boolean isCancelled() {
+    return mState.get() == CANCELLED;
+  }
+
+  /** @return the time elapsed since the layout owning this token was started, in nanoseconds. */
+  long getElapsedTimeNs() {
+    return System.nanoTime() - mStartTimeNs;
+  }
+}
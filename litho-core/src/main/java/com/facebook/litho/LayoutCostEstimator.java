@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import android.support.annotation.VisibleForTesting;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Learns how long it takes to create the layout of each type of {@link Component} from previous
+ * layout calculations, so that {@link SplitLayoutResolver} can decide which subtrees are worth
+ * computing on another thread.
+ *
+ * <p>The cost of a component is the time spent in {@link ComponentLifecycle#createLayout}, which
+ * includes the creation of its whole subtree. It's kept as an exponential moving average per
+ * component type. Rows and Columns don't have a meaningful cost as a type, so their cost is
+ * estimated as the sum of the costs of their children.
+ */
+@ThreadSafe
+final class LayoutCostEstimator {
+
+  static final long UNKNOWN_COST = -1;
+
+  // Weight of a new sample in the moving average, as a power of 2: new = old + (sample - old) / 4.
+  private static final int SAMPLE_WEIGHT_SHIFT = 2;
+
+  private static final ConcurrentHashMap<Class<?>, AtomicLong> sCostsNs =
+      new ConcurrentHashMap<>();
+
+  private LayoutCostEstimator() {}
+
+  /** Records that creating the layout of the given component took the given time. */
+  static void record(Component component, long durationNs) {
+    final Class<?> type = component.getClass();
+    AtomicLong cost = sCostsNs.get(type);
+    if (cost == null) {
+      cost = sCostsNs.putIfAbsent(type, new AtomicLong(durationNs));
+      if (cost == null) {
+        return;
+      }
+    }
+
+    // The threads of the work-stealing pool record costs concurrently.
+    long previousCost;
+    do {
+      previousCost = cost.get();
+    } while (!cost.compareAndSet(
+        previousCost, previousCost + ((durationNs - previousCost) >> SAMPLE_WEIGHT_SHIFT)));
+  }
+
+  /**
+   * @return the estimated time to create the layout of the given component and its subtree, in
+   *     nanoseconds, or {@link #UNKNOWN_COST} if this type of component was never laid out.
+   */
+  static long getEstimatedCostNs(Component component) {
+    if (component instanceof Column) {
+      return getEstimatedCostNs(((Column) component).children);
+    } else if (component instanceof Row) {
+      return getEstimatedCostNs(((Row) component).children);
+    }
+
+    final AtomicLong cost = sCostsNs.get(component.getClass());
+    return cost == null ? UNKNOWN_COST : cost.get();
+  }
+
+  private static long getEstimatedCostNs(List<Component> children) {
+    if (children == null) {
+      return 0;
+    }
+
+    long total = 0;
+    for (int i = 0, size = children.size(); i < size; i++) {
+      final Component child = children.get(i);
+      final long cost = child == null ? 0 : getEstimatedCostNs(child);
+      if (cost == UNKNOWN_COST) {
+        return UNKNOWN_COST;
+      }
+      total += cost;
+    }
+
+    return total;
+  }
+
+  @VisibleForTesting
+  static void clear() {
+    sCostsNs.clear();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import android.support.annotation.Nullable;
+import android.view.accessibility.AccessibilityManager;
+import com.facebook.infer.annotation.ThreadSafe;
+
+/**
+ * An immutable description of the layouts a {@link ComponentTree} holds at a given point in time.
+ * A new snapshot with a higher version is published every time the root, the size specs or one of
+ * the LayoutStates of the tree change, so that it can be queried from any thread without waiting
+ * for a layout that is being committed on another thread.
+ *
+ * <p>Snapshots never reference the LayoutStates themselves, since those are released to a pool
+ * and reused once they are replaced: only the values needed to tell whether a layout is
+ * compatible with some size specs are copied.
+ */
+@ThreadSafe
+final class LayoutSnapshot {
+
+  static final LayoutSnapshot EMPTY =
+      new LayoutSnapshot(0, null, SizeSpec.UNSPECIFIED, SizeSpec.UNSPECIFIED, null, null, null);
+
+  final int version;
+  final @Nullable Component root;
+  final int widthSpec;
+  final int heightSpec;
+  final @Nullable Entry mainThreadLayout;
+  final @Nullable Entry backgroundLayout;
+  final @Nullable Entry[] cachedLayouts;
+
+  LayoutSnapshot(
+      int version,
+      @Nullable Component root,
+      int widthSpec,
+      int heightSpec,
+      @Nullable Entry mainThreadLayout,
+      @Nullable Entry backgroundLayout,
+      @Nullable Entry[] cachedLayouts) {
+    this.version = version;
+    this.root = root;
+    this.widthSpec = widthSpec;
+    this.heightSpec = heightSpec;
+    this.mainThreadLayout = mainThreadLayout;
+    this.backgroundLayout = backgroundLayout;
+    this.cachedLayouts = cachedLayouts;
+  }
+
+  /** @return whether one of the layouts can be used for the given size specs. */
+  boolean hasCompatibleLayout(int widthSpec, int heightSpec) {
+    if (isCompatibleSpec(mainThreadLayout, widthSpec, heightSpec)
+        || isCompatibleSpec(backgroundLayout, widthSpec, heightSpec)) {
+      return true;
+    }
+
+    if (cachedLayouts != null) {
+      for (Entry cachedLayout : cachedLayouts) {
+        if (cachedLayout.isCompatibleSpec(widthSpec, heightSpec)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @return whether the main thread layout is for the current root and size specs, and no other
+   *     layout is waiting to replace it, i.e. whether measuring with the current size specs is a
+   *     no-op.
+   */
+  boolean isMainThreadLayoutUpToDate(int widthSpec, int heightSpec) {
+    return root != null
+        && backgroundLayout == null
+        && this.widthSpec == widthSpec
+        && this.heightSpec == heightSpec
+        && mainThreadLayout != null
+        && mainThreadLayout.componentId == root.getId()
+        && isCompatibleSpec(mainThreadLayout, widthSpec, heightSpec);
+  }
+
+  private static boolean isCompatibleSpec(@Nullable Entry entry, int widthSpec, int heightSpec) {
+    return entry != null
+        && entry.isCompatibleSpec(widthSpec, heightSpec)
+        && entry.isCompatibleAccessibility();
+  }
+
+  /** The values of a LayoutState that tell which size specs it can be used for. */
+  static final class Entry {
+
+    final int componentId;
+    final int widthSpec;
+    final int heightSpec;
+    final int width;
+    final int height;
+    private final @Nullable AccessibilityManager mAccessibilityManager;
+    private final boolean mAccessibilityEnabled;
+
+    Entry(
+        int componentId,
+        int widthSpec,
+        int heightSpec,
+        int width,
+        int height,
+        @Nullable AccessibilityManager accessibilityManager,
+        boolean accessibilityEnabled) {
+      this.componentId = componentId;
+      this.widthSpec = widthSpec;
+      this.heightSpec = heightSpec;
+      this.width = width;
+      this.height = height;
+      mAccessibilityManager = accessibilityManager;
+      mAccessibilityEnabled = accessibilityEnabled;
+    }
+
+    boolean isCompatibleSpec(int widthSpec, int heightSpec) {
+      return MeasureComparisonUtils.isMeasureSpecCompatible(this.widthSpec, widthSpec, width)
+          && MeasureComparisonUtils.isMeasureSpecCompatible(this.heightSpec, heightSpec, height);
+    }
+
+    boolean isCompatibleAccessibility() {
+      return mAccessibilityManager != null
+          && LayoutState.isAccessibilityEnabled(mAccessibilityManager) == mAccessibilityEnabled;
+    }
+  }
+}
@@ -58,7 +58,6 @@ import android.os.Build;
 import android.support.annotation.IntDef;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
-import android.support.v4.util.LongSparseArray;
 import android.support.v4.util.SimpleArrayMap;
 import android.support.v4.view.accessibility.AccessibilityManagerCompat;
 import android.text.TextUtils;
@@ -70,6 +69,7 @@ import com.facebook.infer.annotation.ThreadSafe;
 import com.facebook.litho.config.ComponentsConfiguration;
 import com.facebook.litho.displaylist.DisplayList;
 import com.facebook.litho.displaylist.DisplayListException;
+import com.facebook.litho.internal.LongIntHashMap;
 import com.facebook.litho.reference.BorderColorDrawableReference;
 import com.facebook.litho.reference.DrawableReference;
 import com.facebook.litho.reference.Reference;
@@ -104,7 +104,8 @@ class LayoutState {
     CalculateLayoutSource.SET_ROOT,
     CalculateLayoutSource.SET_SIZE_SPEC,
     CalculateLayoutSource.UPDATE_STATE,
-    CalculateLayoutSource.MEASURE
+    CalculateLayoutSource.MEASURE,
+    CalculateLayoutSource.SPECULATIVE
   })
   @Retention(RetentionPolicy.SOURCE)
   public @interface CalculateLayoutSource {
@@ -114,6 +115,7 @@ class LayoutState {
     int SET_SIZE_SPEC = 1;
     int UPDATE_STATE = 2;
     int MEASURE = 3;
+    int SPECULATIVE = 4;
   }
 
   static final Comparator<LayoutOutput> sTopsComparator =
@@ -171,9 +173,12 @@ class LayoutState {
 
   private final List<LayoutOutput> mMountableOutputs = new ArrayList<>(8);
   private final List<VisibilityOutput> mVisibilityOutputs = new ArrayList<>(8);
-  private final LongSparseArray<Integer> mOutputsIdToPositionMap = new LongSparseArray<>(8);
+  private final LongIntHashMap mOutputsIdToPositionMap = new LongIntHashMap(8);
   private final ArrayList<LayoutOutput> mMountableOutputTops = new ArrayList<>();
   private final ArrayList<LayoutOutput> mMountableOutputBottoms = new ArrayList<>();
+  private final BoundsIndex mMountableOutputsIndex = new BoundsIndex();
+  private final BoundsIndex mVisibilityOutputsIndex = new BoundsIndex();
+  private boolean mHasBoundsIndices;
   private final Queue<Integer> mDisplayListsToPrefetch = new LinkedList<>();
 
   @Nullable private LayoutStateOutputIdCalculator mLayoutStateOutputIdCalculator;
@@ -218,6 +223,8 @@ class LayoutState {
       mTransitionKeyMapping = new SimpleArrayMap<>();
   private List<Transition> mTransitions;
   long mCalculateLayoutDuration;
+  private boolean mIsCancelled;
+  private int mContentGeneration = -1;
 
   @Nullable WorkingRangeContainer mWorkingRangeContainer;
 
@@ -845,7 +852,8 @@ class LayoutState {
     }
 
     if (component != null) {
-      final Rect rect = ComponentsPools.acquireRect();
+      final LayoutArena arena = LayoutArena.current();
+      final Rect rect = arena != null ? arena.acquireRect() : ComponentsPools.acquireRect();
       if (layoutOutput != null) {
         rect.set(layoutOutput.getBounds());
       } else {
@@ -861,7 +869,12 @@ class LayoutState {
           layoutState.mComponentKeyToBounds.put(delegate.getGlobalKey(), copyRect);
         }
       }
-      ComponentsPools.release(rect);
+
+      if (arena != null) {
+        arena.releaseRect(rect);
+      } else {
+        ComponentsPools.release(rect);
+      }
     }
 
     // All children for the given host have been added, restore the previous
@@ -978,7 +991,7 @@ class LayoutState {
   }
 
   private static void addLayoutOutputIdToPositionsMap(
-      LongSparseArray outputsIdToPositionMap,
+      LongIntHashMap outputsIdToPositionMap,
       LayoutOutput layoutOutput,
       int position) {
     if (outputsIdToPositionMap != null) {
@@ -1178,6 +1191,7 @@ class LayoutState {
     }
 
     final LayoutState layoutState;
+    final LayoutArena arena = LayoutArena.enter();
     try {
       if (logger != null) {
         logLayoutState = logger.newPerformanceEvent(EVENT_CALCULATE_LAYOUT_STATE);
@@ -1214,6 +1228,17 @@ class LayoutState {
                   previousDiffTreeRoot)
               : component.mLayoutCreatedInWillRender;
 
+      if (c.wasLayoutCancelled()) {
+        // A newer layout made this one obsolete while we were creating and measuring the tree:
+        // skip collecting the results, nobody is going to mount them.
+        if (root != NULL_LAYOUT) {
+          releaseNodeTree(root, false /* isNestedTree */);
+        }
+        layoutState.mIsCancelled = true;
+        layoutState.mCalculateLayoutDuration = System.nanoTime() - timestampStartLayout;
+        return layoutState;
+      }
+
       switch (SizeSpec.getMode(widthSpec)) {
         case SizeSpec.EXACTLY:
           layoutState.mWidth = SizeSpec.getSize(widthSpec);
@@ -1265,6 +1290,10 @@ class LayoutState {
       Collections.sort(layoutState.mMountableOutputTops, sTopsComparator);
       Collections.sort(layoutState.mMountableOutputBottoms, sBottomsComparator);
 
+      if (ComponentsConfiguration.useBoundsIndexForIncrementalMount) {
+        layoutState.buildBoundsIndices();
+      }
+
       if (logger != null) {
         logger.log(collectResultsEvent);
       }
@@ -1294,6 +1323,10 @@ class LayoutState {
 
       layoutState.mCalculateLayoutDuration = System.nanoTime() - timestampStartLayout;
     } finally {
+      if (arena != null) {
+        arena.exit();
+      }
+
       if (isTracing) {
         ComponentsSystrace.endSection();
         if (extraAttribution != null) {
@@ -1319,6 +1352,8 @@ class LayoutState {
         return "updateState";
       case CalculateLayoutSource.MEASURE:
         return "measure";
+      case CalculateLayoutSource.SPECULATIVE:
+        return "speculative";
       case CalculateLayoutSource.TEST:
         return "test";
       case CalculateLayoutSource.NONE:
@@ -1362,6 +1397,26 @@ class LayoutState {
     }
   }
 
+  /** Adds the mount content of the MountSpecs of this layout to the given demand. */
+  void collectMountContentDemand(
+      MountContentDemand demand, boolean shouldPreallocatePerMountSpec) {
+    if (mMountableOutputs == null) {
+      return;
+    }
+
+    for (int i = 0, size = mMountableOutputs.size(); i < size; i++) {
+      final Component component = mMountableOutputs.get(i).getComponent();
+
+      if (shouldPreallocatePerMountSpec && !component.canPreallocate()) {
+        continue;
+      }
+
+      if (Component.isMountViewSpec(component)) {
+        demand.add(mContext, component);
+      }
+    }
+  }
+
   private static void collectDisplayLists(LayoutState layoutState) {
     final boolean isTracing = ComponentsSystrace.isTracing();
     if (isTracing) {
@@ -1611,6 +1666,11 @@ class LayoutState {
       int heightSpec,
       DiffNode previousDiffTreeRoot) {
     final ComponentContext context = root.getContext();
+
+    if (context.wasLayoutCancelled()) {
+      return;
+    }
+
     final Component component = root.getRootComponent();
     final boolean isTracing = ComponentsSystrace.isTracing();
 
@@ -1779,9 +1839,17 @@ class LayoutState {
     c.setWidthSpec(widthSpec);
     c.setHeightSpec(heightSpec);
 
-    final InternalNode root = createTree(
-        component,
-        c);
+    InternalNode root = null;
+
+    // Nested trees are created with the sizes of their holder, never from a previous layout.
+    final ReusableLayoutTree reusableLayoutTree = c.getReusableLayoutTree();
+    if (!hasNestedTreeHolder && reusableLayoutTree != null) {
+      root = reusableLayoutTree.reconcile(c, component);
+    }
+
+    if (root == null) {
+      root = createTree(component, c);
+    }
 
     if (hasNestedTreeHolder) {
       c.setTreeProps(null);
@@ -1852,7 +1920,7 @@ class LayoutState {
     return isAccessibilityEnabled(mAccessibilityManager) == mAccessibilityEnabled;
   }
 
-  private static boolean isAccessibilityEnabled(AccessibilityManager accessibilityManager) {
+  static boolean isAccessibilityEnabled(AccessibilityManager accessibilityManager) {
     return accessibilityManager.isEnabled() &&
         AccessibilityManagerCompat.isTouchExplorationEnabled(accessibilityManager);
   }
@@ -1983,6 +2051,42 @@ class LayoutState {
     return mMountableOutputs.get(index);
   }
 
+  private void buildBoundsIndices() {
+    final int mountableOutputCount = mMountableOutputs.size();
+    mMountableOutputsIndex.reset(mountableOutputCount);
+    for (int i = 0; i < mountableOutputCount; i++) {
+      mMountableOutputsIndex.set(i, mMountableOutputs.get(i).getBounds());
+    }
+    mMountableOutputsIndex.build();
+
+    final int visibilityOutputCount = mVisibilityOutputs.size();
+    mVisibilityOutputsIndex.reset(visibilityOutputCount);
+    for (int i = 0; i < visibilityOutputCount; i++) {
+      mVisibilityOutputsIndex.set(i, mVisibilityOutputs.get(i).getBounds());
+    }
+    mVisibilityOutputsIndex.build();
+
+    mHasBoundsIndices = true;
+  }
+
+  /**
+   * @return an index of the bounds of the mountable outputs by position, or null if it wasn't
+   *     built for this LayoutState.
+   */
+  @Nullable
+  BoundsIndex getMountableOutputsIndex() {
+    return mHasBoundsIndices ? mMountableOutputsIndex : null;
+  }
+
+  /**
+   * @return an index of the bounds of the visibility outputs by position, or null if it wasn't
+   *     built for this LayoutState.
+   */
+  @Nullable
+  BoundsIndex getVisibilityOutputsIndex() {
+    return mHasBoundsIndices ? mVisibilityOutputsIndex : null;
+  }
+
   ArrayList<LayoutOutput> getMountableOutputTops() {
     return mMountableOutputTops;
   }
@@ -2026,6 +2130,45 @@ class LayoutState {
     return mComponentTreeId;
   }
 
+  /**
+   * @return whether the calculation of this LayoutState was cancelled before completion. A
+   *     cancelled LayoutState holds no outputs and must never be mounted.
+   */
+  boolean isCancelled() {
+    return mIsCancelled;
+  }
+
+  /**
+   * Tags this LayoutState with the generation of the root and state of its {@link ComponentTree}
+   * it was calculated for, so that it's only cached for as long as neither of them changes.
+   */
+  void setContentGeneration(int contentGeneration) {
+    mContentGeneration = contentGeneration;
+  }
+
+  int getContentGeneration() {
+    return mContentGeneration;
+  }
+
+  /** @return the values a {@link LayoutSnapshot} needs to describe this LayoutState. */
+  LayoutSnapshot.Entry createSnapshotEntry() {
+    return new LayoutSnapshot.Entry(
+        mComponent.getId(),
+        mWidthSpec,
+        mHeightSpec,
+        mWidth,
+        mHeight,
+        mAccessibilityManager,
+        mAccessibilityEnabled);
+  }
+
+  /** @return whether the given LayoutState was calculated for the same root and size specs. */
+  boolean hasSameRootAndSizeSpecs(LayoutState other) {
+    return mComponent.getId() == other.mComponent.getId()
+        && mWidthSpec == other.mWidthSpec
+        && mHeightSpec == other.mHeightSpec;
+  }
+
   /**
    * See {@link LayoutState#acquireRef} Call this when you are done using the reference to the
    * LayoutState.
@@ -2048,6 +2191,8 @@ class LayoutState {
       mCurrentHostMarker = -1;
       mCurrentHostOutputPosition = -1;
       mComponentTreeId = -1;
+      mIsCancelled = false;
+      mContentGeneration = -1;
 
       mShouldDuplicateParentState = true;
       mClipChildren = true;
@@ -2058,6 +2203,9 @@ class LayoutState {
       mMountableOutputs.clear();
       mMountableOutputTops.clear();
       mMountableOutputBottoms.clear();
+      mMountableOutputsIndex.reset(0);
+      mVisibilityOutputsIndex.reset(0);
+      mHasBoundsIndices = false;
       mOutputsIdToPositionMap.clear();
       mDisplayListsToPrefetch.clear();
 
@@ -2070,6 +2218,7 @@ class LayoutState {
         ComponentsPools.release(mVisibilityOutputs.get(i));
       }
       mVisibilityOutputs.clear();
+      mComponents.clear();
 
       if (mTestOutputs != null) {
         for (int i = 0, size = mTestOutputs.size(); i < size; i++) {
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import android.support.annotation.Nullable;
+import com.facebook.infer.annotation.ReturnsOwnership;
+import com.facebook.infer.annotation.ThreadConfined;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.CheckReturnValue;
+
+/**
+ * A small LRU cache of the LayoutStates a {@link ComponentTree} calculated for size specs other
+ * than its current ones, so that going back to one of them (e.g. on rotation) only needs a mount.
+ *
+ * <p>All entries are for the same root and state: the owner is expected to {@link #clear()} the
+ * cache whenever either of them changes. The cache holds one reference to each LayoutState it
+ * contains, which is handed back to the caller on {@link #take}, and on {@link #put} or {@link
+ * #clear()} for evicted entries. Access must be guarded by the owning ComponentTree.
+ */
+@ThreadConfined(ThreadConfined.ANY)
+class LayoutStateCache {
+
+  private final int mCapacity;
+
+  // Least recently used first.
+  private final List<LayoutState> mLayoutStates;
+
+  LayoutStateCache(int capacity) {
+    mCapacity = capacity;
+    mLayoutStates = new ArrayList<>(capacity);
+  }
+
+  /**
+   * Adds the given LayoutState as the most recently used one, replacing any entry for exactly the
+   * same root and size specs.
+   *
+   * @return the LayoutState evicted to make room for the new one, which must be released by the
+   *     caller.
+   */
+  @CheckReturnValue
+  @ReturnsOwnership
+  @Nullable
+  LayoutState put(LayoutState layoutState) {
+    if (mCapacity <= 0) {
+      return layoutState;
+    }
+
+    LayoutState evicted = null;
+    for (int i = 0, size = mLayoutStates.size(); i < size; i++) {
+      if (mLayoutStates.get(i).hasSameRootAndSizeSpecs(layoutState)) {
+        evicted = mLayoutStates.remove(i);
+        break;
+      }
+    }
+
+    if (evicted == null && mLayoutStates.size() >= mCapacity) {
+      evicted = mLayoutStates.remove(0);
+    }
+
+    mLayoutStates.add(layoutState);
+
+    return evicted;
+  }
+
+  /**
+   * Removes the most recently used LayoutState that can be used for the given root and size specs
+   * from the cache.
+   */
+  @CheckReturnValue
+  @ReturnsOwnership
+  @Nullable
+  LayoutState take(int componentId, int widthSpec, int heightSpec) {
+    for (int i = mLayoutStates.size() - 1; i >= 0; i--) {
+      if (mLayoutStates.get(i).isCompatibleComponentAndSpec(componentId, widthSpec, heightSpec)) {
+        return mLayoutStates.remove(i);
+      }
+    }
+
+    return null;
+  }
+
+  /** @return whether a LayoutState in the cache can be used for the given size specs. */
+  boolean hasCompatibleSpec(int widthSpec, int heightSpec) {
+    for (int i = 0, size = mLayoutStates.size(); i < size; i++) {
+      if (mLayoutStates.get(i).isCompatibleSpec(widthSpec, heightSpec)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /** @return the {@link LayoutSnapshot} entries of the cached LayoutStates, if any. */
+  @Nullable
+  LayoutSnapshot.Entry[] createSnapshotEntries() {
+    if (mLayoutStates.isEmpty()) {
+      return null;
+    }
+
+    final LayoutSnapshot.Entry[] entries = new LayoutSnapshot.Entry[mLayoutStates.size()];
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = mLayoutStates.get(i).createSnapshotEntry();
+    }
+
+    return entries;
+  }
+
+  int size() {
+    return mLayoutStates.size();
+  }
+
+  /**
+   * Empties the cache.
+   *
+   * @return the LayoutStates that were in the cache, which must be released by the caller.
+   */
+  @CheckReturnValue
+  @ReturnsOwnership
+  @Nullable
+  List<LayoutState> clear() {
+    if (mLayoutStates.isEmpty()) {
+      return null;
+    }
+
+    final List<LayoutState> cleared = new ArrayList<>(mLayoutStates);
+    mLayoutStates.clear();
+
+    return cleared;
+  }
+}
@@ -17,6 +17,7 @@ package com.facebook.litho;
 
 import android.os.Looper;
 import android.os.Process;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -29,12 +30,17 @@ public class LayoutThreadPoolExecutor extends ThreadPoolExecutor {
   private static final AtomicInteger threadPoolId = new AtomicInteger(1);
 
   public LayoutThreadPoolExecutor(int corePoolSize, int maxPoolSize, int priority) {
+    this(corePoolSize, maxPoolSize, priority, new LinkedBlockingQueue<Runnable>());
+  }
+
+  public LayoutThreadPoolExecutor(
+      int corePoolSize, int maxPoolSize, int priority, BlockingQueue<Runnable> workQueue) {
     super(
         corePoolSize,
         maxPoolSize,
         1,
         TimeUnit.SECONDS,
-        new LinkedBlockingQueue<Runnable>(),
+        workQueue,
         new LayoutThreadFactory(priority));
   }
 
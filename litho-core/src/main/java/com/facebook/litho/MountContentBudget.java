@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import com.facebook.infer.annotation.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Caps how much mount content the {@link DefaultMountContentPool}s of one Activity retain in total,
+ * across all the component types, so that many rarely used types can't each keep a full pool.
+ */
+@ThreadSafe
+class MountContentBudget {
+
+  /** How many reservations have to succeed between two attempts to reclaim idle content. */
+  private static final int RECLAIM_INTERVAL = 32;
+
+  private final int mLimit;
+  private final AtomicInteger mRetained = new AtomicInteger(0);
+  private final AtomicInteger mReservationsSinceReclaim = new AtomicInteger(0);
+
+  @GuardedBy("this")
+  private final List<DefaultMountContentPool> mPools = new ArrayList<>();
+
+  MountContentBudget(int limit) {
+    mLimit = limit;
+  }
+
+  synchronized void addPool(DefaultMountContentPool pool) {
+    mPools.add(pool);
+  }
+
+  boolean hasRoom() {
+    return mRetained.get() < mLimit;
+  }
+
+  /**
+   * Reserves room for one more item of mount content. When the budget is exhausted, the pools are
+   * first asked to drop the content they haven't needed lately.
+   *
+   * @return false if the item shouldn't be retained.
+   */
+  boolean tryReserve() {
+    if (tryIncrement()) {
+      return true;
+    }
+
+    if (mReservationsSinceReclaim.get() < RECLAIM_INTERVAL) {
+      return false;
+    }
+
+    mReservationsSinceReclaim.set(0);
+    final DefaultMountContentPool[] pools;
+    synchronized (this) {
+      pools = mPools.toArray(new DefaultMountContentPool[mPools.size()]);
+    }
+    for (DefaultMountContentPool pool : pools) {
+      pool.adapt();
+    }
+
+    return tryIncrement();
+  }
+
+  /** Gives back the room of mount content that left a pool. */
+  void release(int count) {
+    mRetained.addAndGet(-count);
+  }
+
+  int getRetained() {
+    return mRetained.get();
+  }
+
+  int getLimit() {
+    return mLimit;
+  }
+
+  private boolean tryIncrement() {
+    while (true) {
+      final int retained = mRetained.get();
+      if (retained >= mLimit) {
+        return false;
+      }
+
+      if (mRetained.compareAndSet(retained, retained + 1)) {
+        mReservationsSinceReclaim.incrementAndGet();
+        return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import android.util.SparseArray;
+import com.facebook.infer.annotation.ThreadConfined;
+
+/**
+ * How much mount content of each type a set of layouts needs, e.g. the items of a list that are
+ * about to scroll in. Collected with {@link ComponentTree#collectMountContentDemand}, then used to
+ * top up the mount content pools to that level with {@link #preallocate(long)}, taking into account
+ * what they already hold.
+ */
+@ThreadConfined(ThreadConfined.ANY)
+public class MountContentDemand {
+
+  private final SparseArray<Entry> mEntries = new SparseArray<>();
+  private int mNextEntryIndex;
+
+  void add(ComponentContext context, Component component) {
+    final int typeId = component.getTypeId();
+    Entry entry = mEntries.get(typeId);
+    if (entry == null) {
+      entry = new Entry(context, component);
+      mEntries.put(typeId, entry);
+    }
+
+    entry.mCount++;
+  }
+
+  /** @return how many items of mount content of the given type are needed. */
+  int getCount(ComponentLifecycle lifecycle) {
+    final Entry entry = mEntries.get(lifecycle.getTypeId());
+    return entry == null ? 0 : entry.mCount;
+  }
+
+  /** @return the number of mount content types that are needed. */
+  public int getTypeCount() {
+    return mEntries.size();
+  }
+
+  /**
+   * Creates mount content in the pools that hold less than what's needed of their type, one item at
+   * a time, until all of them are topped up or {@link System#nanoTime()} reaches the deadline. A
+   * later call carries on where the previous one stopped.
+   *
+   * @return true if all the pools are topped up.
+   */
+  public boolean preallocate(long deadlineNs) {
+    while (mNextEntryIndex < mEntries.size()) {
+      if (System.nanoTime() >= deadlineNs) {
+        return false;
+      }
+
+      final Entry entry = mEntries.valueAt(mNextEntryIndex);
+      if (!ComponentsPools.preallocateContentUpTo(entry.mContext, entry.mComponent, entry.mCount)) {
+        mNextEntryIndex++;
+      }
+    }
+
+    return true;
+  }
+
+  private static class Entry {
+    private final ComponentContext mContext;
+    private final Component mComponent;
+    private int mCount;
+
+    Entry(ComponentContext context, Component component) {
+      mContext = context;
+      mComponent = component;
+    }
+  }
+}
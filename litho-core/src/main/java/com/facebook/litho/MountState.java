@@ -63,6 +63,7 @@ import com.facebook.litho.animation.AnimatedProperties;
 import com.facebook.litho.config.ComponentsConfiguration;
 import com.facebook.litho.reference.Reference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
@@ -123,6 +124,21 @@ class MountState implements TransitionManager.OnAnimationCompleteListener {
   private final MountStats mMountStats = new MountStats();
   private int mPreviousTopsIndex;
   private int mPreviousBottomsIndex;
+
+  // Used instead of the tops and bottoms indices when the LayoutState has a BoundsIndex: the
+  // positions of the outputs that intersected the previous visible rect, and scratch space.
+  private int[] mPreviousIntersectingPositions = new int[0];
+  private int mPreviousIntersectingCount;
+  private int[] mIntersectingPositions = new int[0];
+  private int[] mIntersectingMarks = new int[0];
+  private int mIntersectingMark;
+
+  // The rect visibility outputs were last processed with, if the LayoutState didn't change since.
+  private final Rect mPreviousVisibilityRect = new Rect();
+  private boolean mHasPreviousVisibilityRect;
+  private int[] mVisibilityPositions = new int[0];
+  private int mVisibilityPositionsCount;
+
   private int mLastMountedComponentTreeId = ComponentTree.INVALID_ID;
   private LayoutState mLastMountedLayoutState;
   private boolean mIsFirstMountOfComponentTree = false;
@@ -245,6 +261,7 @@ class MountState implements TransitionManager.OnAnimationCompleteListener {
     }
 
     if (mIsDirty) {
+      mHasPreviousVisibilityRect = false;
       updateTransitions(layoutState, componentTree);
 
       suppressInvalidationsOnHosts(true);
@@ -537,7 +554,22 @@ class MountState implements TransitionManager.OnAnimationCompleteListener {
     final boolean isDoingPerfLog = mMountStats.isLoggingEnabled;
     final boolean isTracing = ComponentsSystrace.isTracing();
     final long totalStartTime = isDoingPerfLog ? System.nanoTime() : 0L;
-    for (int j = 0, size = layoutState.getVisibilityOutputCount(); j < size; j++) {
+
+    // With an index, only the outputs that intersect either the current or the previous visible
+    // rect can have changed since the last time, as long as the LayoutState is the same.
+    final BoundsIndex index = layoutState.getVisibilityOutputsIndex();
+    final int[] positions;
+    final int count;
+    if (index != null && mHasPreviousVisibilityRect) {
+      positions = findVisibilityPositions(index, localVisibleRect, mPreviousVisibilityRect);
+      count = mVisibilityPositionsCount;
+    } else {
+      positions = null;
+      count = layoutState.getVisibilityOutputCount();
+    }
+
+    for (int i = 0; i < count; i++) {
+      final int j = positions == null ? i : positions[i];
       final VisibilityOutput visibilityOutput = layoutState.getVisibilityOutputAt(j);
       if (isTracing) {
         final String componentName =
@@ -658,6 +690,11 @@ class MountState implements TransitionManager.OnAnimationCompleteListener {
       }
     }
 
+    if (index != null) {
+      mPreviousVisibilityRect.set(localVisibleRect);
+      mHasPreviousVisibilityRect = true;
+    }
+
     if (isDoingPerfLog) {
       mMountStats.visibilityHandlersTotalTime = (System.nanoTime() - totalStartTime) / NS_IN_MS;
     }
@@ -717,10 +754,20 @@ class MountState implements TransitionManager.OnAnimationCompleteListener {
   }
 
   private void setupPreviousMountableOutputData(LayoutState layoutState, Rect localVisibleRect) {
+    mPreviousIntersectingCount = 0;
+
     if (localVisibleRect.isEmpty()) {
       return;
     }
 
+    final BoundsIndex index = layoutState.getMountableOutputsIndex();
+    if (index != null) {
+      ensureIntersectingCapacity(index.size(), index.size());
+      mPreviousIntersectingCount =
+          index.findIntersecting(localVisibleRect, mPreviousIntersectingPositions);
+      return;
+    }
+
     final ArrayList<LayoutOutput> layoutOutputTops = layoutState.getMountableOutputTops();
     final ArrayList<LayoutOutput> layoutOutputBottoms = layoutState.getMountableOutputBottoms();
     final int mountableOutputCount = layoutState.getMountableOutputCount();
@@ -2702,6 +2749,13 @@ class MountState implements TransitionManager.OnAnimationCompleteListener {
       return false;
     }
 
+    final BoundsIndex index = layoutState.getMountableOutputsIndex();
+    if (index != null) {
+      performIndexedIncrementalMount(layoutState, index, localVisibleRect);
+      mountIncrementalItems(layoutState, localVisibleRect, processVisibilityOutputs);
+      return true;
+    }
+
     if (localVisibleRect.left != mPreviousLocalVisibleRect.left ||
         localVisibleRect.right != mPreviousLocalVisibleRect.right) {
       return false;
@@ -2773,6 +2827,13 @@ class MountState implements TransitionManager.OnAnimationCompleteListener {
       }
     }
 
+    mountIncrementalItems(layoutState, localVisibleRect, processVisibilityOutputs);
+
+    return true;
+  }
+
+  private void mountIncrementalItems(
+      LayoutState layoutState, Rect localVisibleRect, boolean processVisibilityOutputs) {
     for (int i = 0, size = mCanMountIncrementallyMountItems.size(); i < size; i++) {
       final MountItem mountItem = mCanMountIncrementallyMountItems.valueAt(i);
       final int layoutOutputPosition =
@@ -2783,8 +2844,111 @@ class MountState implements TransitionManager.OnAnimationCompleteListener {
           localVisibleRect,
           processVisibilityOutputs);
     }
+  }
 
-    return true;
+  /**
+   * Unmounts the outputs that left the visible rect and mounts the ones that entered it since the
+   * previous incremental mount, whichever way the rect moved.
+   */
+  private void performIndexedIncrementalMount(
+      LayoutState layoutState, BoundsIndex index, Rect localVisibleRect) {
+    ensureIntersectingCapacity(index.size(), index.size());
+    final int count = index.findIntersecting(localVisibleRect, mIntersectingPositions);
+
+    // Parents have lower positions than their children, so mount in position order.
+    Arrays.sort(mIntersectingPositions, 0, count);
+
+    final int mark = nextIntersectingMark();
+    for (int i = 0; i < count; i++) {
+      mIntersectingMarks[mIntersectingPositions[i]] = mark;
+    }
+
+    // Outputs that left the rect but are kept mounted for an animation are carried over after the
+    // intersecting ones, so that they're unmounted by a later pass once they're unlocked.
+    int nextPreviousCount = count;
+    for (int i = 0; i < mPreviousIntersectingCount; i++) {
+      final int position = mPreviousIntersectingPositions[i];
+      if (mIntersectingMarks[position] == mark) {
+        continue;
+      }
+
+      if (!isAnimationLocked(position)) {
+        unmountItem(mContext, position, mHostsByMarker);
+      } else if (getItemAt(position) != null) {
+        mIntersectingPositions[nextPreviousCount++] = position;
+      }
+    }
+
+    for (int i = 0; i < count; i++) {
+      final int position = mIntersectingPositions[i];
+      if (getItemAt(position) == null) {
+        mountLayoutOutput(position, layoutState.getMountableOutputAt(position), layoutState, false);
+      }
+    }
+
+    final int[] previousIntersectingPositions = mPreviousIntersectingPositions;
+    mPreviousIntersectingPositions = mIntersectingPositions;
+    mPreviousIntersectingCount = nextPreviousCount;
+    mIntersectingPositions = previousIntersectingPositions;
+  }
+
+  /**
+   * @return the positions of the visibility outputs of the index that intersect either of the
+   *     given rects, in increasing order. The number of positions is left in {@link
+   *     #mVisibilityPositionsCount}.
+   */
+  private int[] findVisibilityPositions(BoundsIndex index, Rect rect, Rect otherRect) {
+    // Room for both queries before removing duplicates.
+    final int maxCount = index.size() * 2;
+    if (mVisibilityPositions.length < maxCount) {
+      mVisibilityPositions = new int[maxCount];
+    }
+    ensureIntersectingCapacity(index.size(), 0);
+
+    final int[] positions = mVisibilityPositions;
+    final int count = index.findIntersecting(rect, positions);
+    final int otherCount = index.findIntersecting(otherRect, positions, count);
+
+    final int mark = nextIntersectingMark();
+    int uniqueCount = 0;
+    for (int i = 0, size = count + otherCount; i < size; i++) {
+      final int position = positions[i];
+      if (mIntersectingMarks[position] != mark) {
+        mIntersectingMarks[position] = mark;
+        positions[uniqueCount++] = position;
+      }
+    }
+
+    Arrays.sort(positions, 0, uniqueCount);
+    mVisibilityPositionsCount = uniqueCount;
+
+    return positions;
+  }
+
+  private void ensureIntersectingCapacity(int indexSize, int positionsCount) {
+    if (mIntersectingPositions.length < positionsCount) {
+      mIntersectingPositions = new int[positionsCount];
+    }
+
+    if (mPreviousIntersectingPositions.length < indexSize) {
+      mPreviousIntersectingPositions = Arrays.copyOf(mPreviousIntersectingPositions, indexSize);
+    }
+
+    if (mIntersectingMarks.length < indexSize) {
+      mIntersectingMarks = new int[indexSize];
+      mIntersectingMark = 0;
+    }
+  }
+
+  /** @return a value that no position is marked with yet. */
+  private int nextIntersectingMark() {
+    mIntersectingMark++;
+    if (mIntersectingMark == 0) {
+      Arrays.fill(mIntersectingMarks, 0);
+      mIntersectingMark = 1;
+    }
+
+    return mIntersectingMark;
   }
 
   LithoView getLithoView() {
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static com.facebook.litho.config.ComponentsConfiguration.DEFAULT_BACKGROUND_THREAD_PRIORITY;
+
+import android.support.annotation.GuardedBy;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
+
+/**
+ * Helpers to fork work on several threads and join it, and a bounded background pool shared by the
+ * features that do so, so that they don't each start a thread per processor.
+ */
+@ThreadSafe
+public final class ParallelTasks {
+
+  // How long a thread joining a task waits before looking for pending work to steal.
+  private static final long JOIN_POLL_INTERVAL_MS = 1;
+
+  @GuardedBy("ParallelTasks.class")
+  private static @Nullable LayoutThreadPoolExecutor sSharedExecutor;
+
+  private ParallelTasks() {}
+
+  /**
+   * @return a pool with one thread less than the number of processors, since the calling thread
+   *     also takes part in the work, whose threads stop when idle.
+   */
+  public static synchronized Executor getSharedExecutor() {
+    if (sSharedExecutor == null) {
+      final int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+      sSharedExecutor =
+          new LayoutThreadPoolExecutor(poolSize, poolSize, DEFAULT_BACKGROUND_THREAD_PRIORITY);
+      sSharedExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    return sSharedExecutor;
+  }
+
+  /**
+   * Runs all the tasks and returns once they are done. The calling thread runs the first task
+   * itself, and the others on the executor unless it gets to them first. If a task throws, the
+   * exception is rethrown on the calling thread.
+   */
+  public static void runAll(Executor executor, List<? extends Runnable> tasks) {
+    final int size = tasks.size();
+    final List<FutureTask<Void>> futures = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      final FutureTask<Void> future = new FutureTask<>(tasks.get(i), null);
+      futures.add(future);
+      if (i > 0) {
+        executor.execute(future);
+      }
+    }
+
+    for (int i = 0; i < size; i++) {
+      join(futures.get(i), null);
+    }
+  }
+
+  /**
+   * Waits for a task to be done and returns its result. If no thread started it yet, the calling
+   * thread runs it instead of blocking. If pending tasks are given, the calling thread also runs
+   * them while it waits, so tasks forked from a thread of the pool never wait for a free thread. If
+   * the task throws, the exception is rethrown on the calling thread.
+   *
+   * @param pendingTasks the work queue of the pool the task was submitted to, or null to only wait
+   */
+  public static <T> T join(FutureTask<T> task, @Nullable BlockingQueue<Runnable> pendingTasks) {
+    // A no-op if the task was already started.
+    task.run();
+    try {
+      if (pendingTasks == null) {
+        return task.get();
+      }
+
+      while (!task.isDone()) {
+        final Runnable pendingTask = pendingTasks.poll();
+        if (pendingTask != null) {
+          pendingTask.run();
+        } else {
+          try {
+            return task.get(JOIN_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+          } catch (TimeoutException e) {
+            // Look for pending work again.
+          }
+        }
+      }
+
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+}
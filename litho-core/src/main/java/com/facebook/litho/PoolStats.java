@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import com.facebook.infer.annotation.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how a {@link RecyclePool} is used since the counters were last flushed, so that pool sizes
+ * can be tuned from what happens in the field. Only kept when {@link
+ * com.facebook.litho.config.ComponentsConfiguration#enablePoolStats} is enabled.
+ */
+@ThreadSafe
+public class PoolStats {
+
+  private final AtomicLong mAcquireCount = new AtomicLong(0);
+  private final AtomicLong mHitCount = new AtomicLong(0);
+  private final AtomicLong mReleaseCount = new AtomicLong(0);
+  private final AtomicLong mDroppedReleaseCount = new AtomicLong(0);
+  private final AtomicLong mPreallocationCount = new AtomicLong(0);
+
+  void onAcquire(boolean isHit) {
+    mAcquireCount.incrementAndGet();
+    if (isHit) {
+      mHitCount.incrementAndGet();
+    }
+  }
+
+  void onRelease(boolean isKept) {
+    mReleaseCount.incrementAndGet();
+    if (!isKept) {
+      mDroppedReleaseCount.incrementAndGet();
+    }
+  }
+
+  void onPreallocate() {
+    mPreallocationCount.incrementAndGet();
+  }
+
+  /** @return how many objects were asked from the pool. */
+  public long getAcquireCount() {
+    return mAcquireCount.get();
+  }
+
+  /** @return how many of the acquired objects came from the pool. */
+  public long getHitCount() {
+    return mHitCount.get();
+  }
+
+  /** @return how many of the acquired objects had to be allocated because the pool was empty. */
+  public long getMissCount() {
+    return mAcquireCount.get() - mHitCount.get();
+  }
+
+  /** @return how many objects were given back to the pool. */
+  public long getReleaseCount() {
+    return mReleaseCount.get();
+  }
+
+  /** @return how many of the released objects were dropped because the pool was full. */
+  public long getDroppedReleaseCount() {
+    return mDroppedReleaseCount.get();
+  }
+
+  /** @return how many objects were created ahead of time to be put in the pool. */
+  public long getPreallocationCount() {
+    return mPreallocationCount.get();
+  }
+
+  boolean isEmpty() {
+    return mAcquireCount.get() == 0 && mReleaseCount.get() == 0 && mPreallocationCount.get() == 0;
+  }
+
+  /** Adds the counters to the given event and resets them. */
+  void flush(LogEvent event) {
+    final long acquireCount = mAcquireCount.getAndSet(0);
+    final long hitCount = mHitCount.getAndSet(0);
+    event.addParam(FrameworkLogEvents.PARAM_POOL_ACQUIRE_COUNT, acquireCount);
+    event.addParam(FrameworkLogEvents.PARAM_POOL_HIT_COUNT, hitCount);
+    event.addParam(FrameworkLogEvents.PARAM_POOL_MISS_COUNT, acquireCount - hitCount);
+    event.addParam(FrameworkLogEvents.PARAM_POOL_RELEASE_COUNT, mReleaseCount.getAndSet(0));
+    event.addParam(
+        FrameworkLogEvents.PARAM_POOL_DROPPED_RELEASE_COUNT, mDroppedReleaseCount.getAndSet(0));
+    event.addParam(
+        FrameworkLogEvents.PARAM_POOL_PREALLOCATION_COUNT, mPreallocationCount.getAndSet(0));
+  }
+}
@@ -24,4 +24,17 @@ public class PoolsConfig {
   public static int sLayoutOutputSize = 256;
   public static int sYogaNodeSize = 256;
   public static int sDisplayListContainerSize = 64;
+
+  /**
+   * How many objects of each type every thread keeps for itself when {@link
+   * com.facebook.litho.config.ComponentsConfiguration#useThreadLocalPools} is enabled.
+   */
+  public static int sThreadCacheSize = 16;
+
+  /**
+   * How much mount content the pools of one Activity can retain in total, across all the component
+   * types. Only used when {@link
+   * com.facebook.litho.config.ComponentsConfiguration#useAdaptiveMountContentPools} is enabled.
+   */
+  public static int sMountContentPerActivitySize = 128;
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import android.support.annotation.VisibleForTesting;
+import com.facebook.infer.annotation.ThreadSafe;
+import com.facebook.litho.config.LayoutThreadPoolConfiguration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A {@link LayoutHandler} shared by all the {@link ComponentTree}s that use it, which runs the most
+ * urgent layout first on a bounded pool of threads instead of in posting order.
+ *
+ * <p>Runnables implementing {@link PrioritizedRunnable} are ordered by their priority, lower values
+ * being more urgent; every other runnable gets {@link #DEFAULT_PRIORITY}. Runnables with the same
+ * priority run in the order in which they were posted. The priority of a runnable that is still
+ * queued can be changed with {@link #updatePriority(Runnable, int)}, for example when the viewport
+ * of a list moves and an item that was off-screen is about to be shown.
+ *
+ * <p>As with a {@link android.os.Handler}, a runnable posted several times runs once per post, and
+ * {@link #removeCallbacks(Runnable)} removes all of its pending posts.
+ */
+@ThreadSafe
+public class PriorityLayoutScheduler implements LayoutHandler {
+
+  /** Priority given to runnables that don't declare one. Lower values run first. */
+  public static final int DEFAULT_PRIORITY = 0;
+
+  /** A layout task that knows how urgent it is. Lower values run first. */
+  public interface PrioritizedRunnable extends Runnable {
+    int getLayoutPriority();
+  }
+
+  @GuardedBy("PriorityLayoutScheduler.class")
+  private static PriorityLayoutScheduler sInstance;
+
+  private final ThreadPoolExecutor mExecutor;
+  private final AtomicLong mSequenceGenerator = new AtomicLong(0);
+
+  // The pending posts of every runnable. A queued ScheduledLayout that isn't in here anymore was
+  // removed or reprioritized, and doesn't run.
+  @GuardedBy("this")
+  private final Map<Runnable, List<ScheduledLayout>> mScheduledLayouts = new IdentityHashMap<>();
+
+  /**
+   * @return the scheduler shared by every {@link ComponentTree} of the process. The configuration
+   *     is only used the first time this is called.
+   */
+  public static synchronized PriorityLayoutScheduler getInstance(
+      LayoutThreadPoolConfiguration configuration) {
+    if (sInstance == null) {
+      sInstance = new PriorityLayoutScheduler(configuration);
+    }
+
+    return sInstance;
+  }
+
+  @VisibleForTesting
+  PriorityLayoutScheduler(LayoutThreadPoolConfiguration configuration) {
+    // The work queue is unbounded, so the pool never grows past its core size: use the max size
+    // as the core size and let idle threads time out instead.
+    final int poolSize = Math.max(1, configuration.getMaxPoolSize());
+    mExecutor =
+        new LayoutThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            configuration.getThreadPriority(),
+            new PriorityBlockingQueue<Runnable>());
+    mExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public boolean post(Runnable runnable) {
+    final int priority =
+        runnable instanceof PrioritizedRunnable
+            ? ((PrioritizedRunnable) runnable).getLayoutPriority()
+            : DEFAULT_PRIORITY;
+
+    final ScheduledLayout scheduledLayout =
+        new ScheduledLayout(runnable, priority, mSequenceGenerator.getAndIncrement());
+    synchronized (this) {
+      List<ScheduledLayout> scheduledLayouts = mScheduledLayouts.get(runnable);
+      if (scheduledLayouts == null) {
+        scheduledLayouts = new ArrayList<>(1);
+        mScheduledLayouts.put(runnable, scheduledLayouts);
+      }
+      scheduledLayouts.add(scheduledLayout);
+
+      // Queued under the lock, so that a concurrent removeCallbacks either finds it in the map
+      // and in the queue, or neither.
+      try {
+        mExecutor.execute(scheduledLayout);
+        return true;
+      } catch (RejectedExecutionException e) {
+        removeScheduledLayout(scheduledLayout);
+        throw new RuntimeException("Cannot execute layout calculation task; " + e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void removeCallbacks(Runnable runnable) {
+    final List<ScheduledLayout> scheduledLayouts = mScheduledLayouts.remove(runnable);
+    if (scheduledLayouts == null) {
+      return;
+    }
+
+    for (int i = 0, size = scheduledLayouts.size(); i < size; i++) {
+      mExecutor.remove(scheduledLayouts.get(i));
+    }
+  }
+
+  @Override
+  public void removeCallbacksAndMessages(Object token) {
+    throw new RuntimeException("Operation not supported");
+  }
+
+  /**
+   * Changes the priority of the posts of a runnable to this scheduler that didn't start yet. This
+   * is a no-op for the posts that already started running.
+   */
+  public synchronized void updatePriority(Runnable runnable, int priority) {
+    final List<ScheduledLayout> scheduledLayouts = mScheduledLayouts.get(runnable);
+    if (scheduledLayouts == null) {
+      return;
+    }
+
+    for (int i = 0, size = scheduledLayouts.size(); i < size; i++) {
+      final ScheduledLayout scheduledLayout = scheduledLayouts.get(i);
+      if (scheduledLayout.mPriority == priority || !mExecutor.remove(scheduledLayout)) {
+        continue;
+      }
+
+      // Keep the original sequence number so the layout doesn't lose its place among the layouts
+      // that have the same priority.
+      final ScheduledLayout reprioritizedLayout =
+          new ScheduledLayout(runnable, priority, scheduledLayout.mSequenceNumber);
+      scheduledLayouts.set(i, reprioritizedLayout);
+      mExecutor.execute(reprioritizedLayout);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int getQueuedLayoutsCount() {
+    return mExecutor.getQueue().size();
+  }
+
+  /**
+   * @return false if the layout was removed or replaced by a reprioritized copy after it was taken
+   *     from the queue, in which case it must not run.
+   */
+  private synchronized boolean onScheduledLayoutStarted(ScheduledLayout scheduledLayout) {
+    return removeScheduledLayout(scheduledLayout);
+  }
+
+  @GuardedBy("this")
+  private boolean removeScheduledLayout(ScheduledLayout scheduledLayout) {
+    final List<ScheduledLayout> scheduledLayouts =
+        mScheduledLayouts.get(scheduledLayout.mRunnable);
+    if (scheduledLayouts == null || !scheduledLayouts.remove(scheduledLayout)) {
+      return false;
+    }
+
+    if (scheduledLayouts.isEmpty()) {
+      mScheduledLayouts.remove(scheduledLayout.mRunnable);
+    }
+    return true;
+  }
+
+  private final class ScheduledLayout implements Runnable, Comparable<ScheduledLayout> {
+
+    private final Runnable mRunnable;
+    private final int mPriority;
+    private final long mSequenceNumber;
+
+    private ScheduledLayout(Runnable runnable, int priority, long sequenceNumber) {
+      mRunnable = runnable;
+      mPriority = priority;
+      mSequenceNumber = sequenceNumber;
+    }
+
+    @Override
+    public void run() {
+      if (onScheduledLayoutStarted(this)) {
+        mRunnable.run();
+      }
+    }
+
+    @Override
+    public int compareTo(ScheduledLayout other) {
+      if (mPriority != other.mPriority) {
+        return mPriority < other.mPriority ? -1 : 1;
+      }
+
+      return mSequenceNumber < other.mSequenceNumber
+          ? -1
+          : mSequenceNumber == other.mSequenceNumber ? 0 : 1;
+    }
+  }
+}
@@ -16,52 +16,167 @@
 
 package com.facebook.litho;
 
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.Nullable;
 import android.support.v4.util.Pools;
 import com.facebook.infer.annotation.ThreadSafe;
+import com.facebook.litho.config.ComponentsConfiguration;
+import com.facebook.litho.internal.LockFreeRingBuffer;
+import java.lang.annotation.Retention;
 
 /**
- * Used to recycle objects in Litho. Can be configured to be either syncronized or not. A {@link
- * RecyclePool} will keep track of its own size so that it can be queried to debug pool sizes.
+ * Used to recycle objects in Litho. Can be configured to be unsynchronized, synchronized with a
+ * lock, or lock-free. A {@link RecyclePool} will keep track of its own size so that it can be
+ * queried to debug pool sizes.
  */
 @ThreadSafe(enableChecks = false)
 public class RecyclePool<T> implements PoolWithDebugInfo {
+
+  /** The pool is only ever used from one thread at a time. */
+  public static final int UNSYNCHRONIZED = 0;
+
+  /** The pool can be used from several threads, which take turns holding its lock. */
+  public static final int SYNCHRONIZED = 1;
+
+  /**
+   * The pool can be used from several threads, without any lock: objects are kept in a bounded
+   * ring buffer, which is FIFO instead of LIFO. Best for pools that several threads use at the
+   * same time, e.g. mount content that is both preallocated in the background and released on the
+   * main thread.
+   */
+  public static final int LOCK_FREE = 2;
+
+  @IntDef({UNSYNCHRONIZED, SYNCHRONIZED, LOCK_FREE})
+  @Retention(SOURCE)
+  public @interface ThreadingMode {}
+
   private final String mName;
   private final int mMaxSize;
   private final boolean mIsSync;
-  private final Pools.Pool<T> mPool;
+  private final @Nullable Pools.Pool<T> mPool;
+  private final @Nullable LockFreeRingBuffer<T> mRingBuffer;
+  private final @Nullable PoolStats mStats =
+      ComponentsConfiguration.enablePoolStats ? new PoolStats() : null;
   private int mCurrentSize = 0;
 
   public RecyclePool(String name, int maxSize, boolean sync) {
-    mIsSync = sync;
+    this(name, maxSize, sync ? SYNCHRONIZED : UNSYNCHRONIZED);
+  }
+
+  public RecyclePool(String name, int maxSize, @ThreadingMode int threadingMode) {
+    mIsSync = threadingMode == SYNCHRONIZED;
     mName = name;
     mMaxSize = maxSize;
-    mPool = sync ? new Pools.SynchronizedPool<T>(maxSize) : new Pools.SimplePool<T>(maxSize);
+    if (threadingMode == LOCK_FREE) {
+      mPool = null;
+      mRingBuffer = new LockFreeRingBuffer<>(maxSize);
+    } else {
+      // Synchronized pools already hold the lock of this RecyclePool, so they don't need a
+      // Pools.SynchronizedPool that would take a second one.
+      mPool = new Pools.SimplePool<>(maxSize);
+      mRingBuffer = null;
+    }
   }
 
+  /**
+   * For subclasses that store the pooled objects themselves. They must override {@link #poll()},
+   * {@link #tryRelease(Object)} and {@link #getCurrentSize()}, which throw otherwise; {@link
+   * #isFull()} and {@link #clear()} work on top of those.
+   */
+  protected RecyclePool(String name, int maxSize) {
+    mIsSync = false;
+    mName = name;
+    mMaxSize = maxSize;
+    mPool = null;
+    mRingBuffer = null;
+  }
+
+  @Nullable
   public T acquire() {
+    final T item = poll();
+    if (mStats != null) {
+      mStats.onAcquire(item != null);
+    }
+    return item;
+  }
+
+  /** Takes an object out of the pool without counting it as acquired, e.g. to trim the pool. */
+  @Nullable
+  T poll() {
+    if (mRingBuffer != null) {
+      return mRingBuffer.poll();
+    }
+
     T item;
     if (mIsSync) {
       synchronized (this) {
-        item = mPool.acquire();
-        mCurrentSize = Math.max(0, mCurrentSize - 1);
+        item = acquireFromPool();
       }
     } else {
-      item = mPool.acquire();
-      mCurrentSize = Math.max(0, mCurrentSize - 1);
+      item = acquireFromPool();
     }
     return item;
   }
 
   public void release(T item) {
+    final boolean isKept = tryRelease(item);
+    if (mStats != null) {
+      mStats.onRelease(isKept);
+    }
+  }
+
+  /** Same as {@link #release(Object)}, but returns false if the pool was full. */
+  boolean tryRelease(T item) {
+    if (mRingBuffer != null) {
+      // Pools.SimplePool makes the same check for the other threading modes.
+      if (ComponentsConfiguration.isDebugModeEnabled && mRingBuffer.contains(item)) {
+        throw new IllegalStateException("Already in the pool!");
+      }
+
+      return mRingBuffer.offer(item);
+    }
+
     if (mIsSync) {
       synchronized (this) {
-        mPool.release(item);
-        mCurrentSize = Math.min(mMaxSize, mCurrentSize + 1);
+        return releaseToPool(item);
       }
     } else {
-      mPool.release(item);
-      mCurrentSize = Math.min(mMaxSize, mCurrentSize + 1);
+      return releaseToPool(item);
+    }
+  }
+
+  @Nullable
+  private T acquireFromPool() {
+    if (mPool == null) {
+      throw createMissingStorageException("poll()");
+    }
+
+    final T item = mPool.acquire();
+    if (item != null) {
+      mCurrentSize--;
     }
+    return item;
+  }
+
+  private boolean releaseToPool(T item) {
+    if (mPool == null) {
+      throw createMissingStorageException("tryRelease(Object)");
+    }
+
+    if (mPool.release(item)) {
+      mCurrentSize++;
+      return true;
+    }
+    return false;
+  }
+
+  private IllegalStateException createMissingStorageException(String method) {
+    return new IllegalStateException(
+        getClass().getName()
+            + " was created without storage for its objects, so it must override "
+            + method);
   }
 
   @Override
@@ -76,22 +191,39 @@ public class RecyclePool<T> implements PoolWithDebugInfo {
 
   @Override
   public int getCurrentSize() {
+    if (mRingBuffer != null) {
+      return mRingBuffer.size();
+    }
+
+    if (mPool == null) {
+      throw createMissingStorageException("getCurrentSize()");
+    }
+
     return mCurrentSize;
   }
 
+  /**
+   * @return the usage counters of this pool, or null if {@link
+   *     ComponentsConfiguration#enablePoolStats} is disabled.
+   */
+  @Nullable
+  public PoolStats getStats() {
+    return mStats;
+  }
+
   public boolean isFull() {
-    return mCurrentSize >= mMaxSize;
+    return getCurrentSize() >= mMaxSize;
   }
 
   public void clear() {
     if (mIsSync) {
       synchronized (this) {
-        while (acquire() != null) {
+        while (poll() != null) {
           // no-op.
         }
       }
     } else {
-      while (acquire() != null) {
+      while (poll() != null) {
         // no-op.
       }
     }
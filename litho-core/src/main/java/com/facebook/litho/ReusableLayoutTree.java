@@ -0,0 +1,225 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static com.facebook.litho.ComponentContext.NULL_LAYOUT;
+
+import android.support.annotation.Nullable;
+import com.facebook.infer.annotation.ThreadSafe;
+import com.facebook.litho.config.ComponentsConfiguration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * The persisted {@link InternalNode} tree of the last layout of a {@link ComponentTree}, handed
+ * over to a layout caused by state updates so that it only re-creates what the updates affect.
+ *
+ * <p>The root component is the same as in the previous layout and only state changed, so every
+ * component whose state didn't change would create exactly the same subtree as before. The tree is
+ * reconciled into a copy, since the previous layout may be mounted and still uses its own: a node
+ * is re-created from a copy of its component if one of its components has a pending state update,
+ * and copied with its Yoga node otherwise. Nested tree holders are always re-created, since their
+ * nested tree is resolved with their own context at measure time.
+ */
+@ThreadSafe
+final class ReusableLayoutTree {
+
+  @GuardedBy("this")
+  private @Nullable LayoutState mPreviousLayoutState;
+
+  private final int mRootComponentId;
+  private final Set<String> mDirtyKeys;
+
+  private int mReusedNodesCount;
+  private int mRecreatedNodesCount;
+
+  /**
+   * @param previousLayoutState the previous layout, whose tree is persisted. This takes ownership
+   *     of a reference to it.
+   * @param rootComponentId the id of the root component of the previous layout.
+   * @param dirtyKeys global keys with pending state updates at the time the tree was taken.
+   */
+  ReusableLayoutTree(
+      LayoutState previousLayoutState, int rootComponentId, @Nullable Set<String> dirtyKeys) {
+    mPreviousLayoutState = previousLayoutState;
+    mRootComponentId = rootComponentId;
+    mDirtyKeys = dirtyKeys == null ? new HashSet<String>() : dirtyKeys;
+  }
+
+  /**
+   * Reconciles the previous tree with the state updates of the given context. This can only be done
+   * once.
+   *
+   * @return the root of the reconciled tree, which belongs to the caller, or null if the root has
+   *     to be created from scratch.
+   */
+  @Nullable
+  InternalNode reconcile(ComponentContext c, Component root) {
+    // Other trees created with this context, such as the ones of Component#measure, can't use it.
+    if (root.getId() != mRootComponentId) {
+      return null;
+    }
+
+    final LayoutState previousLayoutState = consume();
+    if (previousLayoutState == null) {
+      return null;
+    }
+
+    try {
+      final InternalNode previousRoot = previousLayoutState.getLayoutRoot();
+      if (previousRoot == null) {
+        return null;
+      }
+
+      final StateHandler stateHandler = c.getStateHandler();
+      if (stateHandler != null) {
+        mDirtyKeys.addAll(stateHandler.getPendingStateUpdateKeys());
+      }
+
+      final Component previousRootComponent = getOutermostComponent(previousRoot);
+      if (previousRootComponent == null
+          || previousRootComponent.getId() != mRootComponentId
+          || previousRoot.isNestedTreeHolder()
+          || hasDirtyComponent(previousRoot)) {
+        return null;
+      }
+
+      final InternalNode reconciledRoot = previousRoot.copyWithoutChildren();
+
+      // The root node is bound to the root component of this layout, not of the previous one.
+      final List<Component> components = reconciledRoot.getComponents();
+      components.set(components.size() - 1, root);
+
+      reconcileChildren(c, previousRoot, reconciledRoot);
+
+      return reconciledRoot;
+    } finally {
+      previousLayoutState.releaseRef();
+    }
+  }
+
+  /** Releases the previous layout if no layout reconciled its tree. */
+  void releaseIfUnused() {
+    final LayoutState previousLayoutState = consume();
+    if (previousLayoutState != null) {
+      previousLayoutState.releaseRef();
+    }
+  }
+
+  int getReusedNodesCount() {
+    return mReusedNodesCount;
+  }
+
+  int getRecreatedNodesCount() {
+    return mRecreatedNodesCount;
+  }
+
+  private synchronized @Nullable LayoutState consume() {
+    final LayoutState previousLayoutState = mPreviousLayoutState;
+    mPreviousLayoutState = null;
+    return previousLayoutState;
+  }
+
+  /** Adds copies or re-created layouts of the children of a previous node to its copy. */
+  private void reconcileChildren(ComponentContext c, InternalNode previousNode, InternalNode node) {
+    keepComponents(c, node);
+    mReusedNodesCount++;
+
+    for (int i = 0, count = previousNode.getChildCount(); i < count; i++) {
+      final InternalNode previousChild = previousNode.getChildAt(i);
+
+      if (!previousChild.isNestedTreeHolder() && !hasDirtyComponent(previousChild)) {
+        final InternalNode child = previousChild.copyWithoutChildren();
+        reconcileChildren(c, previousChild, child);
+        node.child(child);
+        continue;
+      }
+
+      node.child(recreate(c, node, previousChild));
+      mRecreatedNodesCount++;
+    }
+  }
+
+  /**
+   * Creates the layout of the outermost component of the given child again, from the same context
+   * it was created with the first time but with this layout's state and key handlers.
+   */
+  private static InternalNode recreate(ComponentContext c, InternalNode parent, InternalNode child) {
+    final Component component = getOutermostComponent(child);
+    if (component == null) {
+      return NULL_LAYOUT;
+    }
+
+    // Children are always created within the scope of the first component of their parent node,
+    // i.e. the Row or Column that lays them out.
+    final Component parentScope = parent.getRootComponent();
+    final ComponentContext previousParentContext =
+        parentScope != null && parentScope.getScopedContext() != null
+            ? parentScope.getScopedContext()
+            : c;
+    final ComponentContext parentContext =
+        new ComponentContext(previousParentContext, c.getStateHandler(), c.getKeyHandler());
+    parentContext.setLayoutCancellationToken(c.getLayoutCancellationToken());
+    parentContext.setWorkStealingResolver(c.getWorkStealingResolver());
+
+    final Component copy = component.makeShallowCopy();
+    copy.updateInternalChildStateWithGlobalKey(parentContext, component.getGlobalKey());
+
+    return copy.createLayout(copy.getScopedContext(), false);
+  }
+
+  /** Registers the components of a kept node with this layout's key and state handlers. */
+  private static void keepComponents(ComponentContext c, InternalNode node) {
+    final KeyHandler keyHandler = c.getKeyHandler();
+    final StateHandler stateHandler = c.getStateHandler();
+    final List<Component> components = node.getComponents();
+
+    for (int i = 0, size = components.size(); i < size; i++) {
+      final Component component = components.get(i);
+
+      // The root component was already registered when the root of this layout was created.
+      if (keyHandler != null
+          && !ComponentsConfiguration.isEndToEndTestRun
+          && !keyHandler.hasKey(component.getGlobalKey())) {
+        keyHandler.registerKey(component);
+      }
+
+      if (stateHandler != null && component.hasState()) {
+        stateHandler.keepStateContainer(component);
+      }
+    }
+  }
+
+  private boolean hasDirtyComponent(InternalNode node) {
+    final List<Component> components = node.getComponents();
+    for (int i = 0, size = components.size(); i < size; i++) {
+      if (mDirtyKeys.contains(components.get(i).getGlobalKey())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  @Nullable
+  private static Component getOutermostComponent(InternalNode node) {
+    final List<Component> components = node.getComponents();
+    return components.isEmpty() ? null : components.get(components.size() - 1);
+  }
+}
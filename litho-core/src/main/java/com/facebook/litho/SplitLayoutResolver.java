@@ -27,12 +27,23 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import javax.annotation.Nullable;
 
 /**
  * Creates tasks for calculating the layout of a component's children on different threads and
  * commits the results to the parent's internal node when they are finished.
+ *
+ * <p>There are two modes. The allow-list mode, configured with {@link #createForTag}, splits the
+ * direct children of the allow-listed components. The work-stealing mode, configured with {@link
+ * #createWorkStealingForTag}, splits the children of any Row or Column whose subtrees are expensive
+ * enough according to the {@link LayoutCostEstimator}. Since forked subtrees can fork again, a
+ * single big layout spreads over the whole pool, and threads waiting for a forked subtree run
+ * pending subtrees themselves instead of blocking.
  */
 @ThreadSafe
 public class SplitLayoutResolver {
@@ -43,6 +54,8 @@ public class SplitLayoutResolver {
   private final Set<String> mEnabledComponents = new LinkedHashSet<>();
   private @Nullable ExecutorCompletionService mainService;
   private @Nullable ExecutorCompletionService bgService;
+  private @Nullable ThreadPoolExecutor mWorkStealingExecutor;
+  private long mMinForkCostNs;
 
   /**
    * Create a SplitLayoutResolver that will be used to split layout where possible in ComponentTrees
@@ -66,6 +79,37 @@ public class SplitLayoutResolver {
         tag, new SplitLayoutResolver(mainThreadPoolConfig, bgThreadPoolConfig, enabledComponents));
   }
 
+  /**
+   * Create a SplitLayoutResolver in work-stealing mode for ComponentTrees with the given split tag.
+   * If a configuration already exists for the same split tag, it uses that one.
+   *
+   * @param tag split tag
+   * @param threadPoolConfig configuration of the pool shared by main and background thread layouts
+   * @param minForkCostNs estimated time to create the layout of a subtree above which it's worth
+   *     computing it on another thread
+   */
+  public static synchronized void createWorkStealingForTag(
+      String tag, LayoutThreadPoolConfiguration threadPoolConfig, long minForkCostNs) {
+    if (sSplitLayoutResolvers.containsKey(tag)) {
+      return;
+    }
+
+    sSplitLayoutResolvers.put(tag, new SplitLayoutResolver(threadPoolConfig, minForkCostNs));
+  }
+
+  private SplitLayoutResolver(
+      LayoutThreadPoolConfiguration threadPoolConfig, long minForkCostNs) {
+    // The work queue is unbounded, so the pool never grows past its core size.
+    final int poolSize = Math.max(1, threadPoolConfig.getMaxPoolSize());
+    mWorkStealingExecutor =
+        new LayoutThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            threadPoolConfig.getThreadPriority(),
+            new LinkedBlockingQueue<Runnable>());
+    mMinForkCostNs = minForkCostNs;
+  }
+
   private SplitLayoutResolver(
       @Nullable LayoutThreadPoolConfiguration mainThreadPoolConfig,
       @Nullable LayoutThreadPoolConfiguration bgThreadPoolConfig,
@@ -154,6 +198,93 @@ public class SplitLayoutResolver {
     return true;
   }
 
+  /**
+   * @return the work-stealing resolver of the tree of the given context, if any. It's looked up
+   *     once per layout and then read from {@link ComponentContext#getWorkStealingResolver()},
+   *     which also enables recording component layout times.
+   */
+  static @Nullable SplitLayoutResolver getWorkStealingResolver(ComponentContext c) {
+    final SplitLayoutResolver resolver = getResolver(c);
+    return resolver != null && resolver.mWorkStealingExecutor != null ? resolver : null;
+  }
+
+  /**
+   * Forks the layout of the children whose estimated cost is above the threshold of the
+   * work-stealing configuration, lays out the others on the caller thread and adds all of them to
+   * the node in order. Returns false, without doing anything, if work-stealing is not configured
+   * for this tree or if less than two children are worth forking.
+   */
+  static boolean forkLayouts(
+      ComponentContext c, List<Component> children, final InternalNode node) {
+    final SplitLayoutResolver resolver = c.getWorkStealingResolver();
+    if (resolver == null) {
+      return false;
+    }
+
+    final int size = children.size();
+    final boolean[] shouldFork = new boolean[size];
+    int forkCount = 0;
+    int lastForkIndex = -1;
+    for (int i = 0; i < size; i++) {
+      final Component child = children.get(i);
+      if (child != null
+          && LayoutCostEstimator.getEstimatedCostNs(child) >= resolver.mMinForkCostNs) {
+        shouldFork[i] = true;
+        forkCount++;
+        lastForkIndex = i;
+      }
+    }
+
+    if (forkCount < 2) {
+      return false;
+    }
+
+    // Keep one expensive child for the caller thread so we're not idle while waiting.
+    shouldFork[lastForkIndex] = false;
+
+    final ComponentContext context = node.getContext();
+    final ForkedLayout[] forkedLayouts = new ForkedLayout[size];
+    for (int i = 0; i < size; i++) {
+      if (shouldFork[i]) {
+        forkedLayouts[i] = new ForkedLayout(context, children.get(i));
+        resolver.mWorkStealingExecutor.execute(forkedLayouts[i]);
+      }
+    }
+
+    final InternalNode[] results = new InternalNode[size];
+    for (int i = 0; i < size; i++) {
+      if (!shouldFork[i]) {
+        results[i] = getChildLayout(context, children.get(i));
+      }
+    }
+
+    for (int i = 0; i < size; i++) {
+      if (shouldFork[i]) {
+        results[i] = resolver.join(forkedLayouts[i]);
+      }
+    }
+
+    for (int i = 0; i < size; i++) {
+      node.child(results[i]);
+    }
+
+    return true;
+  }
+
+  /**
+   * Waits for a forked layout to complete. Rather than blocking, the calling thread runs the
+   * pending forked layouts of the pool, which may include the one it's waiting for. The main thread
+   * only runs the forked layout it's waiting for, never the pending work of other trees.
+   */
+  private InternalNode join(ForkedLayout forkedLayout) {
+    if (ThreadUtils.isMainThread()) {
+      mWorkStealingExecutor.remove(forkedLayout);
+      return ParallelTasks.join(forkedLayout, null);
+    }
+
+    return ParallelTasks.join(forkedLayout, mWorkStealingExecutor.getQueue());
+  }
+
   private static InternalNode getChildLayout(ComponentContext c, Component child) {
     return child != null ? Layout.create(c, child) : NULL_LAYOUT;
   }
@@ -173,6 +304,24 @@ public class SplitLayoutResolver {
     }
   }
 
+  /** The layout of a subtree that can be run by a thread from the pool or by a waiting thread. */
+  private static class ForkedLayout extends FutureTask<InternalNode> {
+
+    ForkedLayout(final ComponentContext context, final Component component) {
+      super(
+          new Callable<InternalNode>() {
+            @Override
+            public InternalNode call() {
+              if (Looper.myLooper() == null) {
+                Looper.prepare();
+              }
+
+              return getChildLayout(context, component);
+            }
+          });
+    }
+  }
+
   @VisibleForTesting
   static void clearTag(String tag) {
     sSplitLayoutResolvers.remove(tag);
@@ -182,4 +331,10 @@ public class SplitLayoutResolver {
   static SplitLayoutResolver getForTag(String tag) {
     return sSplitLayoutResolvers.get(tag);
   }
+
+  @VisibleForTesting
+  @Nullable
+  ThreadPoolExecutor getWorkStealingExecutor() {
+    return mWorkStealingExecutor;
+  }
 }
@@ -18,15 +18,26 @@ package com.facebook.litho;
 
 import static com.facebook.litho.ComponentLifecycle.StateUpdate;
 
+import android.support.annotation.IntDef;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.support.v4.util.Pools;
 import com.facebook.infer.annotation.ThreadSafe;
 import com.facebook.litho.ComponentLifecycle.StateContainer;
 import com.facebook.litho.config.ComponentsConfiguration;
+import com.facebook.litho.internal.PersistentHashMap;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -34,6 +45,15 @@ import javax.annotation.concurrent.GuardedBy;
  */
 public class StateHandler {
 
+  @IntDef({QUEUED_LAYOUT_NONE, QUEUED_LAYOUT_ASYNC, QUEUED_LAYOUT_SYNC})
+  @Retention(RetentionPolicy.SOURCE)
+  @interface QueuedLayout {}
+
+  /** No layout is needed, e.g. for lazy state updates. */
+  static final int QUEUED_LAYOUT_NONE = 0;
+  static final int QUEUED_LAYOUT_ASYNC = 1;
+  static final int QUEUED_LAYOUT_SYNC = 2;
+
   private static final int INITIAL_STATE_UPDATE_LIST_CAPACITY = 4;
   private static final int INITIAL_MAP_CAPACITY = 4;
   private static final int POOL_CAPACITY = 10;
@@ -72,19 +92,66 @@ public class StateHandler {
 
   /**
    * Maps a component key to a component object that retains the current state values for that key.
+   * It's persistent, so that copies of this StateHandler can share it instead of copying it.
+   */
+  @GuardedBy("this")
+  private PersistentHashMap<String, StateContainer> mStateContainers = PersistentHashMap.empty();
+
+  /**
+   * The state containers stored in this StateHandler since it was initialized that differ from the
+   * ones it already had, which are the only ones {@link #commit} has to merge.
    */
   @GuardedBy("this")
-  public Map<String, StateContainer> mStateContainers;
+  @Nullable
+  private Map<String, StateContainer> mChangedStateContainers;
+
+  /**
+   * State updates enqueued without holding any lock, per component key, which are moved to the
+   * pending state updates before those are read. The queue of a key is kept once created: removing
+   * it could lose an update enqueued at the same time.
+   */
+  private final ConcurrentHashMap<String, ConcurrentLinkedQueue<StateUpdate>> mQueuedStateUpdates =
+      new ConcurrentHashMap<>();
+
+  /** Whether state updates were enqueued since the queues were last drained. */
+  private final AtomicBoolean mHasQueuedStateUpdates = new AtomicBoolean(false);
+
+  /** The strongest layout requested by the queued state updates since they were last drained. */
+  private final AtomicInteger mQueuedLayout = new AtomicInteger(QUEUED_LAYOUT_NONE);
 
   void init(@Nullable StateHandler stateHandler) {
     if (stateHandler == null) {
       return;
     }
 
+    // The snapshot is taken with only the lock of the given StateHandler held, which makes it
+    // consistent with a concurrent commit() on it, so callers don't need any other lock to copy it.
+    // It's applied once that lock is released: commit() takes the locks in the opposite order.
+    final Map<String, List<StateUpdate>> pendingStateUpdates;
+    final PersistentHashMap<String, StateContainer> stateContainers;
+    final Map<String, StateContainer> changedStateContainers;
+    final Map<String, List<Transition>> pendingStateUpdateTransitions;
+    synchronized (stateHandler) {
+      pendingStateUpdates = copyPendingStateUpdatesMap(stateHandler.getPendingStateUpdates());
+      stateContainers = stateHandler.mStateContainers;
+      changedStateContainers =
+          stateHandler.mChangedStateContainers == null
+              ? null
+              : new HashMap<>(stateHandler.mChangedStateContainers);
+      pendingStateUpdateTransitions =
+          stateHandler.mPendingStateUpdateTransitions == null
+              ? null
+              : new HashMap<>(stateHandler.mPendingStateUpdateTransitions);
+    }
+
     synchronized (this) {
-      copyPendingStateUpdatesMap(stateHandler.getPendingStateUpdates());
-      copyCurrentStateContainers(stateHandler.getStateContainers());
-      copyPendingStateTransitions(stateHandler.getPendingStateUpdateTransitions());
+      if (pendingStateUpdates != null) {
+        maybeInitPendingUpdates();
+        mPendingStateUpdates.putAll(pendingStateUpdates);
+      }
+      mStateContainers = stateContainers;
+      copyChangedStateContainers(changedStateContainers);
+      copyPendingStateTransitions(pendingStateUpdateTransitions);
     }
   }
 
@@ -95,7 +162,7 @@ public class StateHandler {
   }
 
   public synchronized boolean isEmpty() {
-    return mStateContainers == null || mStateContainers.isEmpty();
+    return mStateContainers.isEmpty();
   }
 
   /**
@@ -117,6 +184,78 @@ public class StateHandler {
     pendingStateUpdatesForKey.add(stateUpdate);
   }
 
+  /**
+   * Enqueues a state update without taking any lock. It's added to the pending state updates the
+   * next time they're read, which is at the latest when the next layout copies this StateHandler.
+   *
+   * @param layout the layout the caller wants to schedule to apply the state update
+   * @return whether the caller has to schedule that layout, which is false if a layout at least as
+   *     synchronous was already requested for the state updates that haven't been drained yet,
+   *     since it will apply this one too.
+   */
+  boolean enqueueStateUpdate(String key, StateUpdate stateUpdate, @QueuedLayout int layout) {
+    ConcurrentLinkedQueue<StateUpdate> queuedStateUpdatesForKey = mQueuedStateUpdates.get(key);
+    if (queuedStateUpdatesForKey == null) {
+      final ConcurrentLinkedQueue<StateUpdate> newQueue = new ConcurrentLinkedQueue<>();
+      queuedStateUpdatesForKey = mQueuedStateUpdates.putIfAbsent(key, newQueue);
+      if (queuedStateUpdatesForKey == null) {
+        queuedStateUpdatesForKey = newQueue;
+      }
+    }
+
+    queuedStateUpdatesForKey.offer(stateUpdate);
+    mHasQueuedStateUpdates.set(true);
+
+    while (true) {
+      final int queuedLayout = mQueuedLayout.get();
+      if (queuedLayout >= layout) {
+        return false;
+      }
+
+      if (mQueuedLayout.compareAndSet(queuedLayout, layout)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Moves the queued state updates to the pending state updates, keeping the updates of every key
+   * in the order they were enqueued. The updates of a key are coalesced into its list of pending
+   * state updates at once. They can't be merged into fewer updates, since each of them is an
+   * arbitrary function of the state that the next one depends on.
+   */
+  @GuardedBy("this")
+  private void drainQueuedStateUpdates() {
+    // Resetting the requested layout before polling guarantees that a caller told it doesn't have
+    // to schedule a layout enqueued its state update before it's drained.
+    mQueuedLayout.set(QUEUED_LAYOUT_NONE);
+
+    if (!mHasQueuedStateUpdates.getAndSet(false)) {
+      return;
+    }
+
+    for (Map.Entry<String, ConcurrentLinkedQueue<StateUpdate>> entry :
+        mQueuedStateUpdates.entrySet()) {
+      final ConcurrentLinkedQueue<StateUpdate> queuedStateUpdatesForKey = entry.getValue();
+      StateUpdate stateUpdate = queuedStateUpdatesForKey.poll();
+      if (stateUpdate == null) {
+        continue;
+      }
+
+      maybeInitPendingUpdates();
+      final String key = entry.getKey();
+      List<StateUpdate> pendingStateUpdatesForKey = mPendingStateUpdates.get(key);
+      if (pendingStateUpdatesForKey == null) {
+        pendingStateUpdatesForKey = StateHandler.acquireStateUpdatesList();
+        mPendingStateUpdates.put(key, pendingStateUpdatesForKey);
+      }
+
+      do {
+        pendingStateUpdatesForKey.add(stateUpdate);
+      } while ((stateUpdate = queuedStateUpdatesForKey.poll()) != null);
+    }
+  }
+
   /**
    * Sets the initial value for a state or transfers the previous state value to the new component,
    * then applies all the states updates that have been enqueued for the new component's global key.
@@ -125,8 +264,6 @@ public class StateHandler {
    */
   @ThreadSafe(enableChecks = false)
   void applyStateUpdatesForComponent(Component component) {
-    maybeInitStateContainers();
-
     if (!component.hasState()) {
       return;
     }
@@ -166,7 +303,7 @@ public class StateHandler {
 
     synchronized (this) {
       final StateContainer stateContainer = component.getStateContainer();
-      mStateContainers.put(key, stateContainer);
+      putStateContainer(key, stateContainer);
       if (stateContainer instanceof ComponentLifecycle.TransitionContainer) {
         final List<Transition> transitions =
             ((ComponentLifecycle.TransitionContainer) stateContainer).consumeTransitions();
@@ -178,14 +315,44 @@ public class StateHandler {
     }
   }
 
+  /**
+   * Stores the current state of a component that is reused from a previous layout as it is, without
+   * applying any state update to it.
+   */
+  synchronized void keepStateContainer(Component component) {
+    putStateContainer(component.getGlobalKey(), component.getStateContainer());
+  }
+
+  @GuardedBy("this")
+  private void putStateContainer(String key, StateContainer stateContainer) {
+    // Components reused from the previous layout keep their state container: there's nothing to
+    // store or to merge on commit.
+    if (mStateContainers.get(key) == stateContainer) {
+      return;
+    }
+
+    mStateContainers = mStateContainers.plus(key, stateContainer);
+    maybeInitChangedStateContainers();
+    mChangedStateContainers.put(key, stateContainer);
+  }
+
+  /** @return a copy of the global keys of the components that have pending state updates. */
+  synchronized Set<String> getPendingStateUpdateKeys() {
+    drainQueuedStateUpdates();
+    return mPendingStateUpdates == null
+        ? new HashSet<String>()
+        : new HashSet<>(mPendingStateUpdates.keySet());
+  }
+
   /**
    * Removes a list of state updates that have been applied from the pending state updates list and
-   *  updates the map of current components with the given components.
+   *  updates the map of current components with the given components. Only the state containers
+   *  stored by the given state handler are merged, so this doesn't depend on the size of the state.
    * @param stateHandler state handler that was used to apply state updates in a layout pass
    */
-  void commit(StateHandler stateHandler) {
+  synchronized void commit(StateHandler stateHandler) {
     clearStateUpdates(stateHandler.getPendingStateUpdates());
-    copyCurrentStateContainers(stateHandler.getStateContainers());
+    mergeStateContainers(stateHandler.getChangedStateContainers());
     copyPendingStateTransitions(stateHandler.getPendingStateUpdateTransitions());
   }
 
@@ -221,6 +388,10 @@ public class StateHandler {
   }
 
   synchronized void release() {
+    mQueuedStateUpdates.clear();
+    mHasQueuedStateUpdates.set(false);
+    mQueuedLayout.set(QUEUED_LAYOUT_NONE);
+
     if (mPendingStateUpdates != null) {
       mPendingStateUpdates.clear();
       sPendingStateUpdatesMapPool.release(mPendingStateUpdates);
@@ -228,11 +399,12 @@ public class StateHandler {
     }
 
     mPendingStateUpdateTransitions = null;
+    mStateContainers = PersistentHashMap.empty();
 
-    if (mStateContainers != null) {
-      mStateContainers.clear();
-      sStateContainersMapPool.release(mStateContainers);
-      mStateContainers = null;
+    if (mChangedStateContainers != null) {
+      mChangedStateContainers.clear();
+      sStateContainersMapPool.release(mChangedStateContainers);
+      mChangedStateContainers = null;
     }
   }
 
@@ -258,11 +430,19 @@ public class StateHandler {
     sStateUpdatesListPool.release(list);
   }
 
-  synchronized Map<String, StateContainer> getStateContainers() {
+  /** @return the current state containers. Later changes to this StateHandler don't affect it. */
+  synchronized PersistentHashMap<String, StateContainer> getStateContainers() {
     return mStateContainers;
   }
 
+  @VisibleForTesting
+  @Nullable
+  synchronized Map<String, StateContainer> getChangedStateContainers() {
+    return mChangedStateContainers;
+  }
+
   synchronized Map<String, List<StateUpdate>> getPendingStateUpdates() {
+    drainQueuedStateUpdates();
     return mPendingStateUpdates;
   }
 
@@ -286,35 +466,48 @@ public class StateHandler {
   }
 
   /**
-   * @return copy the information from the given map of state updates into the map of pending state
-   * updates.
+   * @return a copy of the given map of state updates, with copies of the lists of state updates of
+   *     every key, or null if there are no state updates.
    */
-  private void copyPendingStateUpdatesMap(
-      Map<String, List<StateUpdate>> pendingStateUpdates) {
+  @Nullable
+  private static Map<String, List<StateUpdate>> copyPendingStateUpdatesMap(
+      @Nullable Map<String, List<StateUpdate>> pendingStateUpdates) {
     if (pendingStateUpdates == null || pendingStateUpdates.isEmpty()) {
+      return null;
+    }
+
+    final Map<String, List<StateUpdate>> copy = new HashMap<>(pendingStateUpdates.size());
+    for (Map.Entry<String, List<StateUpdate>> entry : pendingStateUpdates.entrySet()) {
+      copy.put(entry.getKey(), acquireStateUpdatesList(entry.getValue()));
+    }
+
+    return copy;
+  }
+
+  /** Adds the given state containers to the current state containers of components. */
+  private void mergeStateContainers(@Nullable Map<String, StateContainer> stateContainers) {
+    if (stateContainers == null || stateContainers.isEmpty()) {
       return;
     }
 
-    maybeInitPendingUpdates();
-    for (String key : pendingStateUpdates.keySet()) {
-      synchronized (this) {
-        mPendingStateUpdates.put(key, acquireStateUpdatesList(pendingStateUpdates.get(key)));
+    synchronized (this) {
+      PersistentHashMap<String, StateContainer> merged = mStateContainers;
+      for (Map.Entry<String, StateContainer> entry : stateContainers.entrySet()) {
+        merged = merged.plus(entry.getKey(), entry.getValue());
       }
+      mStateContainers = merged;
     }
   }
 
-  /**
-   * @return copy the list of given state containers into the map that holds the current
-   * state containers of components.
-   */
-  private void copyCurrentStateContainers(Map<String, StateContainer> stateContainers) {
-    if (stateContainers == null || stateContainers.isEmpty()) {
+  private void copyChangedStateContainers(
+      @Nullable Map<String, StateContainer> changedStateContainers) {
+    if (changedStateContainers == null || changedStateContainers.isEmpty()) {
       return;
     }
 
     synchronized (this) {
-      maybeInitStateContainers();
-      mStateContainers.putAll(stateContainers);
+      maybeInitChangedStateContainers();
+      mChangedStateContainers.putAll(changedStateContainers);
     }
   }
 
@@ -330,11 +523,11 @@ public class StateHandler {
     }
   }
 
-  private synchronized void maybeInitStateContainers() {
-    if (mStateContainers == null) {
-      mStateContainers = sStateContainersMapPool.acquire();
-      if (mStateContainers == null) {
-        mStateContainers = new HashMap<>(INITIAL_MAP_CAPACITY);
+  private synchronized void maybeInitChangedStateContainers() {
+    if (mChangedStateContainers == null) {
+      mChangedStateContainers = sStateContainersMapPool.acquire();
+      if (mChangedStateContainers == null) {
+        mChangedStateContainers = new HashMap<>(INITIAL_MAP_CAPACITY);
       }
     }
   }
@@ -353,5 +546,4 @@ public class StateHandler {
       }
     }
   }
-
 }
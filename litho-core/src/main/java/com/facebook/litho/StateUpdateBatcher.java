@@ -0,0 +1,212 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static com.facebook.litho.ThreadUtils.isMainThread;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import com.facebook.infer.annotation.ThreadSafe;
+import com.facebook.litho.config.ComponentsConfiguration;
+import com.facebook.litho.dataflow.ChoreographerCompat;
+import com.facebook.litho.dataflow.ChoreographerCompatImpl;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Collects the ComponentTrees that get async state updates until the next frame, then calculates
+ * their layouts in parallel and hands all of them to the main thread in a single message. A burst
+ * of state updates across many trees, e.g. in every item of a list, then costs one main thread
+ * handoff and one mount pass instead of one per tree.
+ *
+ * @see ComponentsConfiguration#batchStateUpdatesPerFrame
+ */
+@ThreadSafe
+class StateUpdateBatcher {
+
+  /** The batch whose layouts are being calculated on this thread, if any. */
+  private static final ThreadLocal<Batch> sCurrentBatch = new ThreadLocal<>();
+
+  @GuardedBy("StateUpdateBatcher.class")
+  private static StateUpdateBatcher sInstance;
+
+  private final @Nullable ChoreographerCompat mChoreographer;
+  private final Executor mLayoutExecutor;
+  private final Handler mMainThreadHandler;
+
+  @GuardedBy("this")
+  private Map<ComponentTree, String> mPendingTrees = new LinkedHashMap<>();
+
+  @GuardedBy("this")
+  private boolean mIsFrameCallbackPosted;
+
+  private final ChoreographerCompat.FrameCallback mFrameCallback =
+      new ChoreographerCompat.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+          calculateBatch();
+        }
+      };
+
+  private final Runnable mPostFrameCallbackRunnable =
+      new Runnable() {
+        @Override
+        public void run() {
+          // The Choreographer is only available on the main thread.
+          final ChoreographerCompat choreographer =
+              mChoreographer != null ? mChoreographer : ChoreographerCompatImpl.getInstance();
+          choreographer.postFrameCallback(mFrameCallback);
+        }
+      };
+
+  @VisibleForTesting
+  StateUpdateBatcher(
+      @Nullable ChoreographerCompat choreographer,
+      Executor layoutExecutor,
+      Handler mainThreadHandler) {
+    mChoreographer = choreographer;
+    mLayoutExecutor = layoutExecutor;
+    mMainThreadHandler = mainThreadHandler;
+  }
+
+  static synchronized StateUpdateBatcher getInstance() {
+    if (sInstance == null) {
+      sInstance =
+          new StateUpdateBatcher(
+              null, ParallelTasks.getSharedExecutor(), new Handler(Looper.getMainLooper()));
+    }
+
+    return sInstance;
+  }
+
+  @VisibleForTesting
+  static synchronized void setInstance(@Nullable StateUpdateBatcher stateUpdateBatcher) {
+    sInstance = stateUpdateBatcher;
+  }
+
+  /**
+   * Schedules a layout of the given tree for its pending state updates, to be calculated with the
+   * layouts of the other trees updated before the next frame.
+   */
+  void add(ComponentTree componentTree, String attribution) {
+    synchronized (this) {
+      if (!mPendingTrees.containsKey(componentTree)) {
+        mPendingTrees.put(componentTree, attribution);
+      }
+
+      if (mIsFrameCallbackPosted) {
+        return;
+      }
+      mIsFrameCallbackPosted = true;
+    }
+
+    if (isMainThread()) {
+      mPostFrameCallbackRunnable.run();
+    } else {
+      mMainThreadHandler.post(mPostFrameCallbackRunnable);
+    }
+  }
+
+  /**
+   * Called when a layout calculated on this thread is ready to be mounted.
+   *
+   * @return whether the layout was taken by the batch calculated on this thread, which hands it to
+   *     the main thread with the layouts of the other trees of the batch.
+   */
+  static boolean deferLayoutStateUpdated(ComponentTree componentTree) {
+    final Batch batch = sCurrentBatch.get();
+    if (batch == null) {
+      return false;
+    }
+
+    batch.addUpdatedTree(componentTree);
+    return true;
+  }
+
+  private void calculateBatch() {
+    final Map<ComponentTree, String> trees;
+    synchronized (this) {
+      trees = mPendingTrees;
+      mPendingTrees = new LinkedHashMap<>();
+      mIsFrameCallbackPosted = false;
+    }
+
+    if (trees.isEmpty()) {
+      return;
+    }
+
+    final Batch batch = new Batch(trees.size());
+    for (final Map.Entry<ComponentTree, String> entry : trees.entrySet()) {
+      mLayoutExecutor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              sCurrentBatch.set(batch);
+              try {
+                entry.getKey().calculateLayoutForStateUpdateBatch(entry.getValue());
+              } finally {
+                sCurrentBatch.set(null);
+                if (batch.onLayoutCalculated()) {
+                  mMainThreadHandler.post(batch);
+                }
+              }
+            }
+          });
+    }
+  }
+
+  /** The trees laid out for the same frame, which are mounted together once all are done. */
+  private static class Batch implements Runnable {
+
+    private final AtomicInteger mRemainingLayouts;
+
+    @GuardedBy("this")
+    private final List<ComponentTree> mUpdatedTrees = new ArrayList<>();
+
+    Batch(int layoutCount) {
+      mRemainingLayouts = new AtomicInteger(layoutCount);
+    }
+
+    synchronized void addUpdatedTree(ComponentTree componentTree) {
+      mUpdatedTrees.add(componentTree);
+    }
+
+    /** @return whether this was the last layout of the batch. */
+    boolean onLayoutCalculated() {
+      return mRemainingLayouts.decrementAndGet() == 0;
+    }
+
+    @Override
+    public void run() {
+      final List<ComponentTree> updatedTrees;
+      synchronized (this) {
+        updatedTrees = new ArrayList<>(mUpdatedTrees);
+      }
+
+      for (int i = 0, size = updatedTrees.size(); i < size; i++) {
+        updatedTrees.get(i).backgroundLayoutStateUpdated();
+      }
+    }
+  }
+}
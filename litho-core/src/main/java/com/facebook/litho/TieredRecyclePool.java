@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import android.support.annotation.Nullable;
+import com.facebook.infer.annotation.ThreadSafe;
+import com.facebook.litho.internal.LockFreeRingBuffer;
+
+/**
+ * A {@link RecyclePool} for objects that are acquired and released at a high rate from several
+ * threads at once, e.g. the nodes of layouts calculated in parallel. Each thread first uses a small
+ * cache of its own, which needs no synchronization at all, and only goes to a lock-free pool shared
+ * by all the threads when its cache is empty on acquire, or full on release.
+ *
+ * <p>The debug size of this pool only counts the shared pool: each thread cache can hold up to
+ * {@code threadCacheSize} more objects.
+ */
+@ThreadSafe(enableChecks = false)
+public class TieredRecyclePool<T> extends RecyclePool<T> {
+
+  private final int mThreadCacheSize;
+  private final LockFreeRingBuffer<T> mSharedPool;
+
+  private final ThreadLocal<ThreadCache> mThreadCache =
+      new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+          return new ThreadCache(mThreadCacheSize);
+        }
+      };
+
+  public TieredRecyclePool(String name, int maxSize, int threadCacheSize) {
+    super(name, maxSize);
+    mThreadCacheSize = threadCacheSize;
+    mSharedPool = new LockFreeRingBuffer<>(maxSize);
+  }
+
+  @Override
+  @Nullable
+  T poll() {
+    final ThreadCache threadCache = mThreadCache.get();
+    if (threadCache.mSize > 0) {
+      final int index = --threadCache.mSize;
+      final T item = (T) threadCache.mItems[index];
+      threadCache.mItems[index] = null;
+      return item;
+    }
+
+    return mSharedPool.poll();
+  }
+
+  @Override
+  boolean tryRelease(T item) {
+    final ThreadCache threadCache = mThreadCache.get();
+    if (threadCache.mSize < threadCache.mItems.length) {
+      threadCache.mItems[threadCache.mSize++] = item;
+      return true;
+    }
+
+    // If both tiers are full, the object is left to be garbage collected.
+    return mSharedPool.offer(item);
+  }
+
+  @Override
+  public int getCurrentSize() {
+    return mSharedPool.size();
+  }
+
+  @Override
+  public boolean isFull() {
+    return mSharedPool.size() >= mSharedPool.capacity();
+  }
+
+  /** Empties the shared pool and the cache of the calling thread. */
+  @Override
+  public void clear() {
+    final ThreadCache threadCache = mThreadCache.get();
+    while (threadCache.mSize > 0) {
+      threadCache.mItems[--threadCache.mSize] = null;
+    }
+
+    while (mSharedPool.poll() != null) {
+      // no-op.
+    }
+  }
+
+  private static class ThreadCache {
+    private final Object[] mItems;
+    private int mSize;
+
+    ThreadCache(int size) {
+      mItems = new Object[size];
+    }
+  }
+}
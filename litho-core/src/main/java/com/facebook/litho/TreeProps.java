@@ -26,42 +26,92 @@ import java.util.Map;
 
 /**
  * A data structure to store tree props.
+ *
+ * <p>Tree props are kept in a persistent list of immutable entries, with at most one entry per
+ * key. A copy shares the whole list of its source, and a put only copies the entries in front of
+ * the one it replaces, so passing tree props down a deep hierarchy doesn't copy them at every
+ * level. Lookups walk the list without taking a lock: there are only ever a handful of tree props.
+ *
  * @see TreeProp
  */
 @ThreadConfined(ThreadConfined.ANY)
 public class TreeProps {
 
-  private final Map<Class, Object> mMap = Collections.synchronizedMap(new HashMap<Class, Object>());
+  private volatile @Nullable Entry mHead;
 
   public void put(Class key, Object value) {
-    mMap.put(key, value);
+    mHead = new Entry(key, value, remove(mHead, key));
   }
 
   @Nullable
   public <T> T get(Class<T> key) {
-    return (T) mMap.get(key);
+    for (Entry entry = mHead; entry != null; entry = entry.mNext) {
+      if (entry.mKey == key) {
+        return (T) entry.mValue;
+      }
+    }
+
+    return null;
   }
 
+  /** @return a snapshot of the tree props currently set. */
   public Map<Class, Object> toMap() {
-    return Collections.unmodifiableMap(mMap);
+    final Map<Class, Object> map = new HashMap<>();
+    for (Entry entry = mHead; entry != null; entry = entry.mNext) {
+      map.put(entry.mKey, entry.mValue);
+    }
+
+    return Collections.unmodifiableMap(map);
   }
 
   /**
-   * Whenever a Spec sets tree props, the TreeProps map from the parent is copied.
+   * Whenever a Spec sets tree props, the TreeProps map from the parent is copied. The copy shares
+   * the entries of the parent, which are never mutated, so it doesn't depend on how many tree props
+   * are set.
    *
-   * Infer knows that newProps is owned but doesn't know that newProps.mMap is owned.
+   * Infer knows that newProps is owned but doesn't know that newProps.mHead is owned.
    */
   @ThreadSafe(enableChecks = false)
   public static TreeProps copy(TreeProps source) {
     final TreeProps newProps = ComponentsPools.acquireTreeProps();
     if (source != null) {
-      newProps.mMap.putAll((Map<? extends Class, ?>) source.mMap);
+      newProps.mHead = source.mHead;
     }
 
     return newProps;
   }
 
   void reset() {
-    mMap.clear();
+    mHead = null;
+  }
+
+  /**
+   * @return the list starting at head without the entry for key. Only the entries in front of it
+   *     are copied, the rest of the list is shared.
+   */
+  @Nullable
+  private static Entry remove(@Nullable Entry head, Class key) {
+    if (head == null) {
+      return null;
+    }
+
+    if (head.mKey == key) {
+      return head.mNext;
+    }
+
+    final Entry next = remove(head.mNext, key);
+    return next == head.mNext ? head : new Entry(head.mKey, head.mValue, next);
+  }
+
+  private static class Entry {
+    private final Class mKey;
+    private final Object mValue;
+    private final @Nullable Entry mNext;
+
+    Entry(Class key, Object value, @Nullable Entry next) {
+      mKey = key;
+      mValue = value;
+      mNext = next;
+    }
   }
 }
@@ -117,6 +117,12 @@ public class ComponentsConfiguration {
    */
   public static boolean useGlobalKeys = true;
 
+  /**
+   * If true, global keys are interned per ComponentTree, so that a component gets the same key
+   * String instance on every layout instead of a newly concatenated one.
+   */
+  public static boolean useInternedGlobalKeys = false;
+
   /** If true then the new version of the YogaEdgeWithInts will be used. */
   public static boolean useNewYogaEdge = false;
 
@@ -154,6 +160,13 @@ public class ComponentsConfiguration {
    */
   public static LayoutThreadPoolConfiguration threadPoolForBackgroundThreadsConfig = null;
 
+  /**
+   * Configuration for a pool of threads shared by all ComponentTrees which runs the most urgent
+   * background layouts first. If set, it takes precedence over {@link
+   * #threadPoolForBackgroundThreadsConfig}.
+   */
+  public static LayoutThreadPoolConfiguration priorityLayoutSchedulerConfig = null;
+
   /** Whether to fill list viewports in RecyclerBinder from measure(). */
   public static boolean fillListViewport = false;
 
@@ -189,4 +202,79 @@ public class ComponentsConfiguration {
    * instead.
    */
   public static boolean lazyLayoutForExactSpec = false;
+
+  /**
+   * If true, LayoutStates index the bounds of their outputs so that incremental mount and
+   * visibility processing only look at the outputs around the visible rect, on both axes.
+   */
+  public static boolean useBoundsIndexForIncrementalMount = false;
+
+  /**
+   * Whether an async layout still running on the layout thread should be aborted between
+   * components as soon as a newer layout calculation for the same ComponentTree starts.
+   */
+  public static boolean cancelObsoleteInFlightLayouts = false;
+
+  /**
+   * Whether layouts caused by state updates should take over the persisted InternalNode tree of the
+   * previous layout and only re-create the subtrees of the components whose state changed.
+   */
+  public static boolean reuseUnchangedSubtreesOnStateUpdate = false;
+
+  /**
+   * How many LayoutStates for other size specs than the current ones each ComponentTree keeps
+   * around for its current root and state, e.g. to go back to the previous orientation without a
+   * new layout. 0 disables the cache.
+   */
+  public static int layoutStateCacheSize = 0;
+
+  /**
+   * Whether the pools of the objects created for every node of a layout (InternalNodes, YogaNodes,
+   * LayoutOutputs...) should have a small cache per thread in front of a lock-free shared pool,
+   * instead of a single synchronized pool that layout threads contend on. Must be set before
+   * ComponentsPools is first used.
+   */
+  public static boolean useThreadLocalPools = false;
+
+  /**
+   * Whether the default pools of mount content should be lock-free ring buffers instead of
+   * synchronized pools, since they are used both from the preallocation thread and the main thread.
+   */
+  public static boolean useLockFreeMountContentPools = false;
+
+  /**
+   * Whether default mount content pools should size themselves from their hits and misses, share a
+   * cap on the content retained per Activity, and be trimmed when the system is low on memory,
+   * instead of each keeping up to {@code poolSize()} items until the Activity is destroyed.
+   */
+  public static boolean useAdaptiveMountContentPools = false;
+
+  /**
+   * Whether RecyclePools should count their acquires, hits, misses, dropped releases and
+   * preallocations, and log them as EVENT_POOL_STATS at most every {@link
+   * #poolStatsFlushIntervalMs}. Must be set before ComponentsPools is first used.
+   */
+  public static boolean enablePoolStats = false;
+
+  public static long poolStatsFlushIntervalMs = 60000;
+
+  /**
+   * Whether the transient Rects and Sizes of a layout calculation should come from a stack
+   * allocator of the layout thread, which takes them back at the end of the scope that used them,
+   * instead of going through synchronized pools.
+   */
+  public static boolean useLayoutArena = false;
+
+  /**
+   * Whether ComponentTree state updates should be enqueued without taking the lock of the tree, so
+   * that a burst of updates only takes it once to schedule the layout that applies all of them.
+   */
+  public static boolean useLockFreeStateUpdateQueue = false;
+
+  /**
+   * Whether the layouts for async state updates should be calculated together at the next frame,
+   * in parallel across ComponentTrees, and mounted together, instead of each update scheduling a
+   * layout of its tree and a main thread handoff of its own.
+   */
+  public static boolean batchStateUpdatesPerFrame = false;
 }
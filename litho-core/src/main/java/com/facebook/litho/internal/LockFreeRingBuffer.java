@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded FIFO queue that any number of threads can offer to and poll from at the same time
+ * without taking a lock, and without allocating once it's created.
+ *
+ * <p>Every slot of the ring has a sequence number telling whether it's ready to be written or read
+ * for a given position of the producers or consumers, so a thread only has to win a CAS on the
+ * position to own a slot (see Dmitry Vyukov's bounded MPMC queue).
+ */
+public class LockFreeRingBuffer<T> {
+
+  private final int mCapacity;
+  private final AtomicReferenceArray<T> mItems;
+  private final AtomicLongArray mSequences;
+  private final AtomicLong mEnqueuePosition = new AtomicLong(0);
+  private final AtomicLong mDequeuePosition = new AtomicLong(0);
+  private final AtomicInteger mSize = new AtomicInteger(0);
+
+  public LockFreeRingBuffer(int capacity) {
+    mCapacity = capacity;
+    mItems = new AtomicReferenceArray<>(capacity);
+    mSequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      mSequences.set(i, i);
+    }
+  }
+
+  /** @return false if the item wasn't added because the buffer is full. */
+  public boolean offer(T item) {
+    if (mCapacity == 0) {
+      return false;
+    }
+
+    long position = mEnqueuePosition.get();
+    while (true) {
+      final int index = (int) (position % mCapacity);
+      final long difference = mSequences.get(index) - position;
+
+      if (difference == 0) {
+        if (mEnqueuePosition.compareAndSet(position, position + 1)) {
+          mItems.set(index, item);
+          mSize.incrementAndGet();
+          // Hands the slot over to the consumer of this position.
+          mSequences.set(index, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        // The slot still holds the item written a full turn ago.
+        return false;
+      }
+
+      position = mEnqueuePosition.get();
+    }
+  }
+
+  /** @return the oldest item in the buffer, or null if it's empty. */
+  @Nullable
+  public T poll() {
+    if (mCapacity == 0) {
+      return null;
+    }
+
+    long position = mDequeuePosition.get();
+    while (true) {
+      final int index = (int) (position % mCapacity);
+      final long difference = mSequences.get(index) - (position + 1);
+
+      if (difference == 0) {
+        if (mDequeuePosition.compareAndSet(position, position + 1)) {
+          final T item = mItems.getAndSet(index, null);
+          mSize.decrementAndGet();
+          // Hands the slot over to the producer of the next turn.
+          mSequences.set(index, position + mCapacity);
+          return item;
+        }
+      } else if (difference < 0) {
+        // Nothing was written for this position yet.
+        return null;
+      }
+
+      position = mDequeuePosition.get();
+    }
+  }
+
+  /**
+   * @return whether the given instance is in the buffer. This scans the whole buffer and is only
+   *     exact if no other thread is using it, so it's meant for debug checks.
+   */
+  public boolean contains(T item) {
+    for (int i = 0; i < mCapacity; i++) {
+      if (mItems.get(i) == item) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @return the number of items in the buffer. It's exact once all the concurrent calls to {@link
+   *     #offer} and {@link #poll} have returned.
+   */
+  public int size() {
+    return mSize.get();
+  }
+
+  public int capacity() {
+    return mCapacity;
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.internal;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive longs to primitive ints, backed by an open-addressing hash table with
+ * linear probing. Unlike {@link android.support.v4.util.LongSparseArray}, values are not boxed and
+ * lookups take constant time instead of a binary search, which matters for maps that are queried
+ * many times per frame, e.g. the positions of the outputs of a layout by id.
+ *
+ * <p>Only insertions are supported: entries can't be removed one by one, only all at once with
+ * {@link #clear()}, which keeps the allocated capacity so that the map can be reused. This class is
+ * not thread safe.
+ */
+public class LongIntHashMap {
+
+  private static final int DEFAULT_CAPACITY = 8;
+
+  // Marks an empty slot in mKeys. The entry for this key, if any, is stored out of the table.
+  private static final long FREE_KEY = 0;
+
+  private long[] mKeys;
+  private int[] mValues;
+  private int mMask;
+  private int mSize;
+
+  private boolean mHasFreeKey;
+  private int mFreeKeyValue;
+
+  public LongIntHashMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** @param capacity the number of entries the map can hold before having to grow. */
+  public LongIntHashMap(int capacity) {
+    allocate(tableSizeFor(capacity));
+  }
+
+  /**
+   * Maps the given key to the given value, replacing the previous value for that key if there was
+   * one.
+   */
+  public void put(long key, int value) {
+    if (key == FREE_KEY) {
+      if (!mHasFreeKey) {
+        mHasFreeKey = true;
+        mSize++;
+      }
+      mFreeKeyValue = value;
+      return;
+    }
+
+    int index = indexFor(key, mMask);
+    while (mKeys[index] != FREE_KEY) {
+      if (mKeys[index] == key) {
+        mValues[index] = value;
+        return;
+      }
+      index = (index + 1) & mMask;
+    }
+
+    mKeys[index] = key;
+    mValues[index] = value;
+    mSize++;
+
+    // Keep the table at most half full, so that probe sequences stay short.
+    if (mSize * 2 > mKeys.length) {
+      rehash(mKeys.length * 2);
+    }
+  }
+
+  /**
+   * @return the value mapped to the given key, or valueIfKeyNotFound if there is no mapping for
+   *     it.
+   */
+  public int get(long key, int valueIfKeyNotFound) {
+    if (key == FREE_KEY) {
+      return mHasFreeKey ? mFreeKeyValue : valueIfKeyNotFound;
+    }
+
+    int index = indexFor(key, mMask);
+    long current;
+    while ((current = mKeys[index]) != FREE_KEY) {
+      if (current == key) {
+        return mValues[index];
+      }
+      index = (index + 1) & mMask;
+    }
+
+    return valueIfKeyNotFound;
+  }
+
+  public boolean containsKey(long key) {
+    if (key == FREE_KEY) {
+      return mHasFreeKey;
+    }
+
+    int index = indexFor(key, mMask);
+    long current;
+    while ((current = mKeys[index]) != FREE_KEY) {
+      if (current == key) {
+        return true;
+      }
+      index = (index + 1) & mMask;
+    }
+
+    return false;
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+
+  /** Removes all the entries, without shrinking the map. */
+  public void clear() {
+    if (mSize == 0) {
+      return;
+    }
+
+    Arrays.fill(mKeys, FREE_KEY);
+    mHasFreeKey = false;
+    mSize = 0;
+  }
+
+  private void rehash(int newTableSize) {
+    final long[] oldKeys = mKeys;
+    final int[] oldValues = mValues;
+
+    allocate(newTableSize);
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      final long key = oldKeys[i];
+      if (key == FREE_KEY) {
+        continue;
+      }
+
+      int index = indexFor(key, mMask);
+      while (mKeys[index] != FREE_KEY) {
+        index = (index + 1) & mMask;
+      }
+      mKeys[index] = key;
+      mValues[index] = oldValues[i];
+    }
+  }
+
+  private void allocate(int tableSize) {
+    mKeys = new long[tableSize];
+    mValues = new int[tableSize];
+    mMask = tableSize - 1;
+  }
+
+  private static int indexFor(long key, int mask) {
+    // Layout output ids pack the component id, level and type in distinct bit ranges, so the bits
+    // have to be mixed before they can be masked.
+    final long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  private static int tableSizeFor(int capacity) {
+    int tableSize = DEFAULT_CAPACITY * 2;
+    while (tableSize < capacity * 2) {
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+}
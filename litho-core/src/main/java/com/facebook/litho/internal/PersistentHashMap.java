@@ -0,0 +1,297 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.internal;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable map from which new versions are derived with {@link #plus}, each sharing all the
+ * entries it doesn't change with the version it was derived from (a hash array mapped trie). Taking
+ * a snapshot of it is just keeping a reference, and {@link #plus} only copies the O(log n) trie
+ * nodes on the path to the key.
+ *
+ * <p>It doesn't support null keys. The methods of {@link Map} that would modify it throw {@link
+ * UnsupportedOperationException}.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+  private static final int BITS_PER_LEVEL = 5;
+  private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+
+  private static final Object NOT_FOUND = new Object();
+  private static final PersistentHashMap EMPTY = new PersistentHashMap(null, 0);
+
+  private final @Nullable Node mRoot;
+  private final int mSize;
+
+  private PersistentHashMap(@Nullable Node root, int size) {
+    mRoot = root;
+    mSize = size;
+  }
+
+  public static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  /** @return a map with the entries of this one, and value for key. */
+  public PersistentHashMap<K, V> plus(K key, V value) {
+    final boolean[] addedEntry = new boolean[1];
+    final Node root = mRoot == null ? BitmapNode.EMPTY_NODE : mRoot;
+    final Node newRoot = root.put(0, hash(key), key, value, addedEntry);
+
+    return newRoot == mRoot ? this : new PersistentHashMap<K, V>(
+        newRoot,
+        addedEntry[0] ? mSize + 1 : mSize);
+  }
+
+  @Override
+  @Nullable
+  public V get(Object key) {
+    final Object value = find(key);
+    return value == NOT_FOUND ? null : (V) value;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return find(key) != NOT_FOUND;
+  }
+
+  @Override
+  public int size() {
+    return mSize;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<Entry<K, V>>() {
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        final List<Entry<K, V>> entries = new ArrayList<>(mSize);
+        if (mRoot != null) {
+          mRoot.addEntries((List) entries);
+        }
+
+        return entries.iterator();
+      }
+
+      @Override
+      public int size() {
+        return mSize;
+      }
+    };
+  }
+
+  private Object find(@Nullable Object key) {
+    if (mRoot == null || key == null) {
+      return NOT_FOUND;
+    }
+
+    return mRoot.find(0, hash(key), key);
+  }
+
+  private static int hash(Object key) {
+    final int hash = key.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & LEVEL_MASK);
+  }
+
+  private abstract static class Node {
+
+    /** @return the value for key, or {@link #NOT_FOUND}. */
+    abstract Object find(int shift, int hash, Object key);
+
+    /**
+     * @return a node with the entries of this one and value for key, or this node if it already
+     *     has that value for key. addedEntry[0] is set if key wasn't in this node.
+     */
+    abstract Node put(int shift, int hash, Object key, Object value, boolean[] addedEntry);
+
+    abstract void addEntries(List<Entry<Object, Object>> out);
+  }
+
+  /**
+   * A node holding up to 32 entries or child nodes, one for every value of the bits of the hash at
+   * its level. Its array has a pair of slots for each of them: a key and its value, or null and a
+   * child node.
+   */
+  private static final class BitmapNode extends Node {
+
+    static final BitmapNode EMPTY_NODE = new BitmapNode(0, new Object[0]);
+
+    private final int mBitmap;
+    private final Object[] mArray;
+
+    BitmapNode(int bitmap, Object[] array) {
+      mBitmap = bitmap;
+      mArray = array;
+    }
+
+    @Override
+    Object find(int shift, int hash, Object key) {
+      final int bit = bit(hash, shift);
+      if ((mBitmap & bit) == 0) {
+        return NOT_FOUND;
+      }
+
+      final int index = 2 * Integer.bitCount(mBitmap & (bit - 1));
+      final Object keyOrNull = mArray[index];
+      final Object valueOrNode = mArray[index + 1];
+      if (keyOrNull == null) {
+        return ((Node) valueOrNode).find(shift + BITS_PER_LEVEL, hash, key);
+      }
+
+      return key.equals(keyOrNull) ? valueOrNode : NOT_FOUND;
+    }
+
+    @Override
+    Node put(int shift, int hash, Object key, Object value, boolean[] addedEntry) {
+      final int bit = bit(hash, shift);
+      final int index = 2 * Integer.bitCount(mBitmap & (bit - 1));
+
+      if ((mBitmap & bit) == 0) {
+        final Object[] array = new Object[mArray.length + 2];
+        System.arraycopy(mArray, 0, array, 0, index);
+        array[index] = key;
+        array[index + 1] = value;
+        System.arraycopy(mArray, index, array, index + 2, mArray.length - index);
+        addedEntry[0] = true;
+        return new BitmapNode(mBitmap | bit, array);
+      }
+
+      final Object keyOrNull = mArray[index];
+      final Object valueOrNode = mArray[index + 1];
+      final Object newValueOrNode;
+      if (keyOrNull == null) {
+        newValueOrNode =
+            ((Node) valueOrNode).put(shift + BITS_PER_LEVEL, hash, key, value, addedEntry);
+      } else if (key.equals(keyOrNull)) {
+        newValueOrNode = value;
+      } else {
+        addedEntry[0] = true;
+        return with(
+            index,
+            null,
+            createNode(shift + BITS_PER_LEVEL, keyOrNull, valueOrNode, hash, key, value));
+      }
+
+      return newValueOrNode == valueOrNode ? this : with(index, keyOrNull, newValueOrNode);
+    }
+
+    @Override
+    void addEntries(List<Entry<Object, Object>> out) {
+      for (int i = 0; i < mArray.length; i += 2) {
+        if (mArray[i] == null) {
+          ((Node) mArray[i + 1]).addEntries(out);
+        } else {
+          out.add(new SimpleImmutableEntry<>(mArray[i], mArray[i + 1]));
+        }
+      }
+    }
+
+    private BitmapNode with(int index, @Nullable Object keyOrNull, Object valueOrNode) {
+      final Object[] array = mArray.clone();
+      array[index] = keyOrNull;
+      array[index + 1] = valueOrNode;
+      return new BitmapNode(mBitmap, array);
+    }
+
+    private static Node createNode(
+        int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+      final int hash1 = hash(key1);
+      if (hash1 == hash2) {
+        return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+      }
+
+      final boolean[] addedEntry = new boolean[1];
+      return EMPTY_NODE
+          .put(shift, hash1, key1, value1, addedEntry)
+          .put(shift, hash2, key2, value2, addedEntry);
+    }
+  }
+
+  /** A node holding the entries of keys with the same hash, as pairs of key and value. */
+  private static final class CollisionNode extends Node {
+
+    private final int mHash;
+    private final Object[] mArray;
+
+    CollisionNode(int hash, Object[] array) {
+      mHash = hash;
+      mArray = array;
+    }
+
+    @Override
+    Object find(int shift, int hash, Object key) {
+      final int index = indexOf(key);
+      return index < 0 ? NOT_FOUND : mArray[index + 1];
+    }
+
+    @Override
+    Node put(int shift, int hash, Object key, Object value, boolean[] addedEntry) {
+      if (hash != mHash) {
+        // Moves this node one level down so that it can sit next to the new key.
+        return new BitmapNode(bit(mHash, shift), new Object[] {null, this})
+            .put(shift, hash, key, value, addedEntry);
+      }
+
+      final int index = indexOf(key);
+      if (index >= 0) {
+        if (mArray[index + 1] == value) {
+          return this;
+        }
+
+        final Object[] array = mArray.clone();
+        array[index + 1] = value;
+        return new CollisionNode(mHash, array);
+      }
+
+      final Object[] array = new Object[mArray.length + 2];
+      System.arraycopy(mArray, 0, array, 0, mArray.length);
+      array[mArray.length] = key;
+      array[mArray.length + 1] = value;
+      addedEntry[0] = true;
+      return new CollisionNode(mHash, array);
+    }
+
+    @Override
+    void addEntries(List<Entry<Object, Object>> out) {
+      for (int i = 0; i < mArray.length; i += 2) {
+        out.add(new SimpleImmutableEntry<>(mArray[i], mArray[i + 1]));
+      }
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < mArray.length; i += 2) {
+        if (key.equals(mArray[i])) {
+          return i;
+        }
+      }
+
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.graphics.Rect;
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(ComponentsTestRunner.class)
+public class BoundsIndexTest {
+
+  private BoundsIndex mIndex;
+
+  @Before
+  public void setup() {
+    mIndex = new BoundsIndex();
+  }
+
+  @Test
+  public void testFindsOutputsIntersectingRect() {
+    final List<Rect> bounds = new ArrayList<>();
+    bounds.add(new Rect(0, 0, 100, 1000));
+    bounds.add(new Rect(0, 0, 100, 100));
+    bounds.add(new Rect(0, 100, 100, 200));
+    bounds.add(new Rect(0, 200, 100, 300));
+    bounds.add(new Rect(100, 100, 200, 200));
+    buildIndex(bounds);
+
+    assertThat(query(new Rect(0, 150, 100, 250))).containsExactly(0, 2, 3);
+    assertThat(query(new Rect(150, 0, 250, 150))).containsExactly(4);
+    assertThat(query(new Rect(0, 1000, 100, 1100))).isEmpty();
+  }
+
+  @Test
+  public void testEmptyIndexFindsNothing() {
+    buildIndex(new ArrayList<Rect>());
+
+    assertThat(query(new Rect(0, 0, 100, 100))).isEmpty();
+  }
+
+  @Test
+  public void testMatchesLinearScan() {
+    final Random random = new Random(42);
+    final List<Rect> bounds = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      final int left = random.nextInt(1000) - 100;
+      final int top = random.nextInt(5000) - 100;
+      bounds.add(new Rect(left, top, left + random.nextInt(300), top + random.nextInt(300)));
+    }
+    buildIndex(bounds);
+
+    for (int i = 0; i < 200; i++) {
+      final int left = random.nextInt(1000);
+      final int top = random.nextInt(5000);
+      final Rect rect = new Rect(left, top, left + random.nextInt(500), top + random.nextInt(800));
+
+      final List<Integer> expected = new ArrayList<>();
+      for (int j = 0; j < bounds.size(); j++) {
+        if (Rect.intersects(bounds.get(j), rect)) {
+          expected.add(j);
+        }
+      }
+
+      assertThat(query(rect)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testResetReusesIndex() {
+    final List<Rect> bounds = new ArrayList<>();
+    bounds.add(new Rect(0, 0, 100, 100));
+    bounds.add(new Rect(0, 100, 100, 200));
+    buildIndex(bounds);
+
+    bounds.remove(1);
+    buildIndex(bounds);
+
+    assertThat(mIndex.size()).isEqualTo(1);
+    assertThat(query(new Rect(0, 0, 100, 200))).containsExactly(0);
+  }
+
+  private void buildIndex(List<Rect> bounds) {
+    mIndex.reset(bounds.size());
+    for (int i = 0; i < bounds.size(); i++) {
+      mIndex.set(i, bounds.get(i));
+    }
+    mIndex.build();
+  }
+
+  private List<Integer> query(Rect rect) {
+    final int[] positions = new int[mIndex.size()];
+    final int count = mIndex.findIntersecting(rect, positions);
+    Arrays.sort(positions, 0, count);
+
+    final List<Integer> result = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      result.add(positions[i]);
+    }
+    return result;
+  }
+}
@@ -30,6 +30,7 @@ import android.os.Looper;
 import com.facebook.litho.testing.TestDrawableComponent;
 import com.facebook.litho.testing.TestLayoutComponent;
 import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import com.facebook.litho.testing.util.InlineLayoutSpec;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -520,6 +521,59 @@ public class ComponentTreeTest {
     componentTree.setRoot(TestDrawableComponent.create(mContext).build());
   }
 
+  @Test
+  public void testOlderLayoutReachingTheSwapAfterNewerOneDoesNotCancelIt() {
+    ComponentTree componentTree = ComponentTree.create(mContext, mComponent).build();
+
+    final LayoutCancellationToken newerToken = new LayoutCancellationToken(2);
+    componentTree.onLayoutStarted(2, newerToken);
+
+    // An older sync layout, e.g. a setRoot or setSizeSpec that read the tree before the newer one.
+    componentTree.onLayoutStarted(1, null);
+    assertThat(newerToken.isCancelled()).isFalse();
+
+    // An older async layout, e.g. from another thread of a ThreadPoolLayoutHandler.
+    final LayoutCancellationToken olderToken = new LayoutCancellationToken(1);
+    componentTree.onLayoutStarted(1, olderToken);
+    assertThat(newerToken.isCancelled()).isFalse();
+    assertThat(olderToken.isCancelled()).isTrue();
+
+    componentTree.onLayoutStarted(3, null);
+    assertThat(newerToken.isCancelled()).isTrue();
+  }
+
+  @Test
+  public void testLayoutOfReplacedRootIsNotCommitted() {
+    final ComponentTree[] componentTree = new ComponentTree[1];
+    final Component replacedRoot =
+        new InlineLayoutSpec() {
+          private boolean mHasReplacedRoot;
+
+          @Override
+          protected Component onCreateLayout(ComponentContext c) {
+            if (!mHasReplacedRoot) {
+              mHasReplacedRoot = true;
+              componentTree[0].setRootAsync(mComponent);
+            }
+            return TestDrawableComponent.create(c).build();
+          }
+        };
+    componentTree[0] = ComponentTree.create(mContext, replacedRoot).build();
+
+    componentTree[0].setSizeSpec(mWidthSpec, mHeightSpec);
+
+    Assert.assertNull(getInternalState(componentTree[0], "mBackgroundLayoutState"));
+
+    mLayoutThreadShadowLooper.runToEndOfTasks();
+
+    LayoutState backgroundLayoutState =
+        getInternalState(componentTree[0], "mBackgroundLayoutState");
+    assertThat(
+            backgroundLayoutState.isCompatibleComponentAndSpec(
+                mComponent.getId(), mWidthSpec, mHeightSpec))
+        .isTrue();
+  }
+
   private static LithoView getLithoView(ComponentTree componentTree) {
     return Whitebox.getInternalState(componentTree, "mLithoView");
   }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.content.ComponentCallbacks2;
+import android.view.View;
+import com.facebook.litho.config.ComponentsConfiguration;
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(ComponentsTestRunner.class)
+public class DefaultMountContentPoolTest {
+
+  private static final int POOL_SIZE = 10;
+
+  private final ComponentLifecycle mLifecycle =
+      new ComponentLifecycle() {
+        @Override
+        int getTypeId() {
+          return 1;
+        }
+
+        @Override
+        protected int poolSize() {
+          return POOL_SIZE;
+        }
+
+        @Override
+        public View onCreateMountContent(ComponentContext context) {
+          return new View(context);
+        }
+      };
+
+  private ComponentContext mContext;
+  private boolean mUseAdaptiveMountContentPools;
+  private int mMountContentPerActivitySize;
+
+  @Before
+  public void setup() {
+    mUseAdaptiveMountContentPools = ComponentsConfiguration.useAdaptiveMountContentPools;
+    mMountContentPerActivitySize = PoolsConfig.sMountContentPerActivitySize;
+    ComponentsConfiguration.useAdaptiveMountContentPools = true;
+    ComponentsPools.clearMountContentPools();
+    mContext = new ComponentContext(RuntimeEnvironment.application);
+  }
+
+  @After
+  public void tearDown() {
+    ComponentsConfiguration.useAdaptiveMountContentPools = mUseAdaptiveMountContentPools;
+    PoolsConfig.sMountContentPerActivitySize = mMountContentPerActivitySize;
+    ComponentsPools.clearMountContentPools();
+  }
+
+  @Test
+  public void testAdaptDropsContentThatWasNotAcquired() {
+    final DefaultMountContentPool pool = createPool();
+    fill(pool, 8);
+    pool.adapt();
+
+    for (int i = 0; i < 3; i++) {
+      pool.release(pool.acquire(mContext, mLifecycle));
+    }
+    pool.acquire(mContext, mLifecycle);
+    pool.acquire(mContext, mLifecycle);
+    pool.adapt();
+
+    // Only 2 of the 8 items were needed since the last adaptation.
+    assertThat(pool.getTargetSize()).isEqualTo(2);
+    assertThat(pool.getCurrentSize()).isEqualTo(2);
+  }
+
+  @Test
+  public void testMissesGrowTargetSize() {
+    final DefaultMountContentPool pool = createPool();
+    pool.trim(0);
+    assertThat(pool.getTargetSize()).isEqualTo(0);
+
+    final Object first = pool.acquire(mContext, mLifecycle);
+    final Object second = pool.acquire(mContext, mLifecycle);
+    pool.release(first);
+    assertThat(pool.getCurrentSize()).isEqualTo(0);
+
+    pool.adapt();
+    pool.release(first);
+    pool.release(second);
+
+    assertThat(pool.getTargetSize()).isEqualTo(2);
+    assertThat(pool.getCurrentSize()).isEqualTo(2);
+  }
+
+  @Test
+  public void testBudgetIsSharedAcrossPools() {
+    final MountContentBudget budget = new MountContentBudget(3);
+    final DefaultMountContentPool first = createPool();
+    final DefaultMountContentPool second = createPool();
+    budget.addPool(first);
+    budget.addPool(second);
+    first.setBudget(budget);
+    second.setBudget(budget);
+
+    fill(first, 2);
+    fill(second, 2);
+
+    assertThat(first.getCurrentSize()).isEqualTo(2);
+    assertThat(second.getCurrentSize()).isEqualTo(1);
+    assertThat(budget.getRetained()).isEqualTo(3);
+    assertThat(second.isFull()).isTrue();
+
+    first.acquire(mContext, mLifecycle);
+
+    assertThat(budget.getRetained()).isEqualTo(2);
+    assertThat(second.isFull()).isFalse();
+  }
+
+  @Test
+  public void testComponentsPoolsCapsContentPerActivity() {
+    PoolsConfig.sMountContentPerActivitySize = 1;
+
+    ComponentsPools.release(mContext, mLifecycle, new View(mContext));
+    ComponentsPools.release(mContext, mLifecycle, new View(mContext));
+
+    final MountContentBudget budget = ComponentsPools.getMountContentBudget(mContext);
+    assertThat(budget.getLimit()).isEqualTo(1);
+    assertThat(budget.getRetained()).isEqualTo(1);
+  }
+
+  @Test
+  public void testTrimMemory() {
+    fill(mContext, 8);
+
+    ComponentsPools.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+    assertThat(ComponentsPools.getMountContentBudget(mContext).getRetained()).isEqualTo(4);
+
+    ComponentsPools.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    assertThat(ComponentsPools.getMountContentBudget(mContext).getRetained()).isEqualTo(0);
+  }
+
+  private DefaultMountContentPool createPool() {
+    return new DefaultMountContentPool("test", POOL_SIZE, RecyclePool.SYNCHRONIZED);
+  }
+
+  private void fill(DefaultMountContentPool pool, int count) {
+    for (int i = 0; i < count; i++) {
+      pool.release(new View(mContext));
+    }
+  }
+
+  private void fill(ComponentContext context, int count) {
+    for (int i = 0; i < count; i++) {
+      ComponentsPools.release(context, mLifecycle, new View(context));
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static com.facebook.litho.GlobalKeyInterner.NO_ID;
+import static com.facebook.litho.GlobalKeyInterner.ROOT_ID;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(ComponentsTestRunner.class)
+public class GlobalKeyInternerTest {
+
+  private static final int ROOT_TYPE_ID = 1;
+
+  private GlobalKeyInterner mInterner;
+
+  @Before
+  public void setup() {
+    mInterner = new GlobalKeyInterner(ROOT_TYPE_ID);
+  }
+
+  @Test
+  public void testKeysMatchConcatenatedKeys() {
+    final int rootId = mInterner.intern(ROOT_ID, "root");
+    final int childId = mInterner.intern(rootId, "child");
+    final int duplicateId = mInterner.internChildPosition(childId, 2);
+
+    assertThat(mInterner.getKey(rootId)).isEqualTo("root");
+    assertThat(mInterner.getKey(childId))
+        .isEqualTo(ComponentKeyUtils.getKeyWithSeparator("root", "child"));
+    assertThat(mInterner.getKey(duplicateId))
+        .isEqualTo(
+            ComponentKeyUtils.getKeyForChildPosition(
+                ComponentKeyUtils.getKeyWithSeparator("root", "child"), 2));
+  }
+
+  @Test
+  public void testSamePathIsInternedOnce() {
+    final int rootId = mInterner.intern(ROOT_ID, "root");
+    final int childId = mInterner.intern(rootId, "child");
+
+    assertThat(mInterner.intern(ROOT_ID, "root")).isEqualTo(rootId);
+    assertThat(mInterner.intern(rootId, "child")).isEqualTo(childId);
+    assertThat(mInterner.getKey(mInterner.intern(rootId, "child")))
+        .isSameAs(mInterner.getKey(childId));
+    assertThat(mInterner.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testDifferentPathsGetDifferentIds() {
+    final int rootId = mInterner.intern(ROOT_ID, "root");
+    final int childId = mInterner.intern(rootId, "child");
+
+    assertThat(mInterner.intern(childId, "child")).isNotEqualTo(childId);
+    assertThat(mInterner.internChildPosition(childId, 0)).isNotEqualTo(childId);
+    assertThat(mInterner.internChildPosition(childId, 0))
+        .isNotEqualTo(mInterner.internChildPosition(childId, 1));
+  }
+
+  @Test
+  public void testNoIdIsPropagated() {
+    assertThat(mInterner.intern(NO_ID, "child")).isEqualTo(NO_ID);
+    assertThat(mInterner.internChildPosition(NO_ID, 0)).isEqualTo(NO_ID);
+  }
+
+  @Test
+  public void testStopsInterningWhenFull() {
+    final int rootId = mInterner.intern(ROOT_ID, "root");
+    for (int i = 0; i < GlobalKeyInterner.MAX_INTERNED_KEYS; i++) {
+      mInterner.internChildPosition(rootId, i);
+    }
+
+    assertThat(mInterner.intern(rootId, "late")).isEqualTo(NO_ID);
+    assertThat(mInterner.intern(ROOT_ID, "root")).isEqualTo(rootId);
+  }
+
+  @Test
+  public void testNumericAndOtherKeysDoNotCollide() {
+    final int rootId = mInterner.intern(ROOT_ID, "root");
+    final int numericId = mInterner.intern(rootId, "1");
+    final int paddedId = mInterner.intern(rootId, "01");
+    final int otherId = mInterner.intern(rootId, "a");
+
+    assertThat(numericId).isNotEqualTo(paddedId);
+    assertThat(numericId).isNotEqualTo(otherId);
+    assertThat(mInterner.getKey(numericId))
+        .isEqualTo(ComponentKeyUtils.getKeyWithSeparator("root", "1"));
+    assertThat(mInterner.getKey(paddedId))
+        .isEqualTo(ComponentKeyUtils.getKeyWithSeparator("root", "01"));
+    assertThat(mInterner.intern(rootId, "1")).isEqualTo(numericId);
+  }
+
+  @Test
+  public void testNextLayoutKeepsIdsAndKeys() {
+    final int rootId = mInterner.intern(ROOT_ID, "root");
+    final int childId = mInterner.intern(rootId, "child");
+    final int duplicateId = mInterner.internChildPosition(childId, 1);
+
+    final GlobalKeyInterner next = GlobalKeyInterner.forLayout(mInterner, ROOT_TYPE_ID);
+
+    assertThat(next).isNotSameAs(mInterner);
+    assertThat(next.intern(ROOT_ID, "root")).isEqualTo(rootId);
+    assertThat(next.intern(rootId, "child")).isEqualTo(childId);
+    assertThat(next.internChildPosition(childId, 1)).isEqualTo(duplicateId);
+    assertThat(next.getKey(childId)).isSameAs(mInterner.getKey(childId));
+    assertThat(next.size()).isEqualTo(3);
+
+    final int newId = next.intern(childId, "new");
+    assertThat(newId).isEqualTo(4);
+    assertThat(next.getKey(newId))
+        .isEqualTo(ComponentKeyUtils.getKeyWithSeparator(mInterner.getKey(childId), "new"));
+  }
+
+  @Test
+  public void testNextLayoutReusesInternerWithoutNewKeys() {
+    mInterner.intern(ROOT_ID, "root");
+    final GlobalKeyInterner next = GlobalKeyInterner.forLayout(mInterner, ROOT_TYPE_ID);
+    next.intern(ROOT_ID, "root");
+
+    assertThat(GlobalKeyInterner.forLayout(next, ROOT_TYPE_ID)).isSameAs(next);
+  }
+
+  @Test
+  public void testKeysAreDroppedWhenRootChangesType() {
+    mInterner.intern(ROOT_ID, "root");
+
+    final GlobalKeyInterner next = GlobalKeyInterner.forLayout(mInterner, ROOT_TYPE_ID + 1);
+
+    assertThat(next.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testKeysAreDroppedWhenFull() {
+    final int rootId = mInterner.intern(ROOT_ID, "root");
+    for (int i = 0; i < GlobalKeyInterner.MAX_INTERNED_KEYS; i++) {
+      mInterner.internChildPosition(rootId, i);
+    }
+
+    final GlobalKeyInterner next = GlobalKeyInterner.forLayout(mInterner, ROOT_TYPE_ID);
+
+    assertThat(next.size()).isEqualTo(0);
+    assertThat(next.intern(ROOT_ID, "late")).isNotEqualTo(NO_ID);
+  }
+}
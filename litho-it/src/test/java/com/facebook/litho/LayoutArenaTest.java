@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static com.facebook.litho.SizeSpec.EXACTLY;
+import static com.facebook.litho.SizeSpec.makeSizeSpec;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.graphics.Rect;
+import com.facebook.litho.config.ComponentsConfiguration;
+import com.facebook.litho.testing.TestDrawableComponent;
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import com.facebook.litho.testing.util.InlineLayoutSpec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(ComponentsTestRunner.class)
+public class LayoutArenaTest {
+
+  // More measured nodes than an arena retains objects of each kind.
+  private static final int MEASURED_CHILDREN_COUNT = 300;
+
+  private boolean mUseLayoutArena;
+  private ComponentContext mContext;
+
+  @Before
+  public void setup() {
+    mUseLayoutArena = ComponentsConfiguration.useLayoutArena;
+    ComponentsConfiguration.useLayoutArena = true;
+    mContext = new ComponentContext(RuntimeEnvironment.application);
+  }
+
+  @After
+  public void tearDown() {
+    ComponentsConfiguration.useLayoutArena = mUseLayoutArena;
+  }
+
+  @Test
+  public void testLayoutOnlyAllocatesWhatIsUsedAtTheSameTime() {
+    final LayoutArena threadArena = LayoutArena.getForCurrentThread();
+    final int allocationsBeforeLayout = threadArena.getAllocationCount();
+
+    calculateLayout();
+    final int allocationsAfterFirstLayout = threadArena.getAllocationCount();
+
+    calculateLayout();
+
+    // Every measure and every result releases its objects before the next sibling acquires any,
+    // so the number of allocations doesn't depend on the number of nodes.
+    assertThat(allocationsAfterFirstLayout - allocationsBeforeLayout).isLessThan(10);
+    assertThat(threadArena.getAllocationCount()).isEqualTo(allocationsAfterFirstLayout);
+  }
+
+  @Test
+  public void testReleasedObjectsAreReused() {
+    final LayoutArena arena = LayoutArena.enter();
+    final Rect rect = arena.acquireRect();
+    rect.set(1, 2, 3, 4);
+    arena.releaseRect(rect);
+
+    final Rect nextRect = arena.acquireRect();
+    assertThat(nextRect).isSameAs(rect);
+    assertThat(nextRect.isEmpty()).isTrue();
+    arena.releaseRect(nextRect);
+    arena.exit();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReleasingOutOfOrderFails() {
+    final LayoutArena arena = LayoutArena.enter();
+    try {
+      final Size outerSize = arena.acquireSize();
+      arena.acquireSize();
+
+      arena.releaseSize(outerSize);
+    } finally {
+      arena.exit();
+    }
+  }
+
+  @Test
+  public void testNestedLayoutsShareArena() {
+    final LayoutArena arena = LayoutArena.enter();
+    final Rect outerRect = arena.acquireRect();
+    outerRect.set(1, 2, 3, 4);
+
+    final LayoutArena nestedArena = LayoutArena.enter();
+    assertThat(nestedArena).isSameAs(arena);
+    final Rect nestedRect = nestedArena.acquireRect();
+    assertThat(nestedRect).isNotSameAs(outerRect);
+    nestedArena.releaseRect(nestedRect);
+    nestedArena.exit();
+
+    // Exiting the nested layout doesn't free what the outer one still uses.
+    assertThat(LayoutArena.current()).isSameAs(arena);
+    assertThat(outerRect).isEqualTo(new Rect(1, 2, 3, 4));
+
+    // Exiting the outermost layout frees what wasn't released.
+    arena.exit();
+
+    assertThat(LayoutArena.current()).isNull();
+    final LayoutArena nextArena = LayoutArena.enter();
+    assertThat(nextArena.acquireRect()).isSameAs(outerRect);
+    assertThat(outerRect.isEmpty()).isTrue();
+    nextArena.exit();
+  }
+
+  @Test
+  public void testDisabled() {
+    ComponentsConfiguration.useLayoutArena = false;
+
+    assertThat(LayoutArena.enter()).isNull();
+    assertThat(LayoutArena.current()).isNull();
+  }
+
+  private void calculateLayout() {
+    final Component component =
+        new InlineLayoutSpec() {
+          @Override
+          protected Component onCreateLayout(ComponentContext c) {
+            final Column.Builder column = Column.create(c);
+            for (int i = 0; i < MEASURED_CHILDREN_COUNT; i++) {
+              column.child(TestDrawableComponent.create(c));
+            }
+            return column.build();
+          }
+        };
+
+    final LayoutState layoutState =
+        LayoutState.calculate(
+            mContext,
+            component,
+            -1,
+            makeSizeSpec(100, EXACTLY),
+            makeSizeSpec(10000, EXACTLY),
+            false /* shouldGenerateDiffTree */,
+            null /* previousDiffTreeRoot */,
+            false /* canPrefetchDisplayLists */,
+            false /* canCacheDrawingDisplayLists */,
+            true /* clipChildren */,
+            false /* persistInternalNodeTree */,
+            LayoutState.CalculateLayoutSource.TEST,
+            null);
+
+    assertThat(layoutState.getMountableOutputCount()).isGreaterThan(MEASURED_CHILDREN_COUNT);
+    layoutState.releaseRef();
+  }
+}
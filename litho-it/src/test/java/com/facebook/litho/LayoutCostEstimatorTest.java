@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static com.facebook.litho.LayoutCostEstimator.UNKNOWN_COST;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.facebook.litho.testing.TestDrawableComponent;
+import com.facebook.litho.testing.TestViewComponent;
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(ComponentsTestRunner.class)
+public class LayoutCostEstimatorTest {
+
+  private ComponentContext mContext;
+
+  @Before
+  public void setup() {
+    mContext = new ComponentContext(RuntimeEnvironment.application);
+    LayoutCostEstimator.clear();
+  }
+
+  @After
+  public void tearDown() {
+    LayoutCostEstimator.clear();
+  }
+
+  @Test
+  public void testUnknownComponentHasUnknownCost() {
+    final Component component = TestDrawableComponent.create(mContext).build();
+
+    assertThat(LayoutCostEstimator.getEstimatedCostNs(component)).isEqualTo(UNKNOWN_COST);
+  }
+
+  @Test
+  public void testCostIsMovingAverageOfRecordedDurations() {
+    final Component component = TestDrawableComponent.create(mContext).build();
+
+    LayoutCostEstimator.record(component, 1000);
+    assertThat(LayoutCostEstimator.getEstimatedCostNs(component)).isEqualTo(1000);
+
+    LayoutCostEstimator.record(component, 2000);
+    assertThat(LayoutCostEstimator.getEstimatedCostNs(component)).isEqualTo(1250);
+  }
+
+  @Test
+  public void testContainerCostIsSumOfChildrenCosts() {
+    final Component drawable = TestDrawableComponent.create(mContext).build();
+    final Component view = TestViewComponent.create(mContext).build();
+    LayoutCostEstimator.record(drawable, 1000);
+    LayoutCostEstimator.record(view, 300);
+
+    final Component column =
+        Column.create(mContext)
+            .child(drawable)
+            .child(Row.create(mContext).child(view).child(view))
+            .build();
+
+    assertThat(LayoutCostEstimator.getEstimatedCostNs(column)).isEqualTo(1600);
+  }
+
+  @Test
+  public void testContainerCostIsUnknownIfAnyChildIsUnknown() {
+    final Component drawable = TestDrawableComponent.create(mContext).build();
+    LayoutCostEstimator.record(drawable, 1000);
+
+    final Component column =
+        Column.create(mContext)
+            .child(drawable)
+            .child(TestViewComponent.create(mContext))
+            .build();
+
+    assertThat(LayoutCostEstimator.getEstimatedCostNs(column)).isEqualTo(UNKNOWN_COST);
+  }
+
+  @Test
+  public void testConcurrentRecordsKeepCostWithinRecordedDurations() throws Exception {
+    final Component component = TestDrawableComponent.create(mContext).build();
+    LayoutCostEstimator.record(component, 1000);
+
+    final Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      final long durationNs = i % 2 == 0 ? 1000 : 3000;
+      threads[i] =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  for (int j = 0; j < 10000; j++) {
+                    LayoutCostEstimator.record(component, durationNs);
+                  }
+                }
+              });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(LayoutCostEstimator.getEstimatedCostNs(component)).isBetween(1000L, 3000L);
+  }
+}
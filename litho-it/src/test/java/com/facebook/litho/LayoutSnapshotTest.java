@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static com.facebook.litho.SizeSpec.AT_MOST;
+import static com.facebook.litho.SizeSpec.EXACTLY;
+import static com.facebook.litho.SizeSpec.makeSizeSpec;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.facebook.litho.testing.TestDrawableComponent;
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(ComponentsTestRunner.class)
+public class LayoutSnapshotTest {
+
+  private final int mWidthSpec = makeSizeSpec(100, EXACTLY);
+  private final int mHeightSpec = makeSizeSpec(50, EXACTLY);
+
+  private ComponentContext mContext;
+  private Component mRoot;
+  private ComponentTree mComponentTree;
+
+  @Before
+  public void setup() {
+    mContext = new ComponentContext(RuntimeEnvironment.application);
+    mRoot = TestDrawableComponent.create(mContext).build();
+    mComponentTree = ComponentTree.create(mContext, mRoot).build();
+  }
+
+  @Test
+  public void testSnapshotIsPublishedWithNewLayout() {
+    final LayoutSnapshot initialSnapshot = mComponentTree.getLayoutSnapshot();
+    assertThat(initialSnapshot.root).isSameAs(mRoot);
+    assertThat(initialSnapshot.backgroundLayout).isNull();
+    assertThat(mComponentTree.hasCompatibleLayout(mWidthSpec, mHeightSpec)).isFalse();
+
+    mComponentTree.setSizeSpec(mWidthSpec, mHeightSpec);
+
+    final LayoutSnapshot snapshot = mComponentTree.getLayoutSnapshot();
+    assertThat(snapshot.version).isGreaterThan(initialSnapshot.version);
+    assertThat(snapshot.widthSpec).isEqualTo(mWidthSpec);
+    assertThat(snapshot.heightSpec).isEqualTo(mHeightSpec);
+    assertThat(snapshot.backgroundLayout).isNotNull();
+    assertThat(snapshot.backgroundLayout.componentId).isEqualTo(mRoot.getId());
+    assertThat(snapshot.backgroundLayout.width).isEqualTo(100);
+    assertThat(mComponentTree.hasCompatibleLayout(mWidthSpec, mHeightSpec)).isTrue();
+    assertThat(mComponentTree.hasCompatibleLayout(makeSizeSpec(200, EXACTLY), mHeightSpec))
+        .isFalse();
+  }
+
+  @Test
+  public void testMainThreadLayoutIsUpToDateOnlyForItsSizeSpecs() {
+    mComponentTree.setLithoView(new LithoView(mContext));
+    final int[] measureOutput = new int[2];
+    mComponentTree.measure(mWidthSpec, mHeightSpec, measureOutput, false);
+
+    final LayoutSnapshot snapshot = mComponentTree.getLayoutSnapshot();
+    assertThat(snapshot.mainThreadLayout).isNotNull();
+    assertThat(snapshot.isMainThreadLayoutUpToDate(mWidthSpec, mHeightSpec)).isTrue();
+    assertThat(snapshot.isMainThreadLayoutUpToDate(makeSizeSpec(100, AT_MOST), mHeightSpec))
+        .isFalse();
+
+    mComponentTree.measure(mWidthSpec, mHeightSpec, measureOutput, false);
+
+    assertThat(mComponentTree.getLayoutSnapshot()).isSameAs(snapshot);
+    assertThat(measureOutput[0]).isEqualTo(100);
+    assertThat(measureOutput[1]).isEqualTo(50);
+  }
+
+  @Test
+  public void testSnapshotHasNoRootAfterRelease() {
+    mComponentTree.setSizeSpec(mWidthSpec, mHeightSpec);
+
+    mComponentTree.release();
+
+    final LayoutSnapshot snapshot = mComponentTree.getLayoutSnapshot();
+    assertThat(snapshot.root).isNull();
+    assertThat(snapshot.backgroundLayout).isNull();
+    assertThat(mComponentTree.getRoot()).isNull();
+    assertThat(mComponentTree.hasCompatibleLayout(mWidthSpec, mHeightSpec)).isFalse();
+  }
+}
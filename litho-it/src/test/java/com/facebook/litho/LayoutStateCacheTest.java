@@ -0,0 +1,259 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static com.facebook.litho.SizeSpec.EXACTLY;
+import static com.facebook.litho.SizeSpec.makeSizeSpec;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.powermock.reflect.Whitebox.getInternalState;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.facebook.litho.config.ComponentsConfiguration;
+import com.facebook.litho.testing.TestDrawableComponent;
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.reflect.Whitebox;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowLooper;
+
+@RunWith(ComponentsTestRunner.class)
+public class LayoutStateCacheTest {
+
+  private final int mPortraitWidthSpec = makeSizeSpec(100, EXACTLY);
+  private final int mLandscapeWidthSpec = makeSizeSpec(200, EXACTLY);
+  private final int mHeightSpec = makeSizeSpec(50, EXACTLY);
+
+  private ComponentContext mContext;
+  private Looper mLayoutThreadLooper;
+  private ShadowLooper mLayoutThreadShadowLooper;
+  private ComponentTree mComponentTree;
+
+  @Before
+  public void setup() throws Exception {
+    ComponentsConfiguration.layoutStateCacheSize = 2;
+    mContext = new ComponentContext(RuntimeEnvironment.application);
+    mLayoutThreadLooper = Whitebox.invokeMethod(ComponentTree.class, "getDefaultLayoutThreadLooper");
+    mLayoutThreadShadowLooper = Shadows.shadowOf(mLayoutThreadLooper);
+    mComponentTree =
+        ComponentTree.create(mContext, TestDrawableComponent.create(mContext).build()).build();
+  }
+
+  @After
+  public void tearDown() {
+    ComponentsConfiguration.layoutStateCacheSize = 0;
+    mLayoutThreadShadowLooper.runToEndOfTasks();
+  }
+
+  @Test
+  public void testGoingBackToPreviousSizeSpecUsesCachedLayoutState() {
+    mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec);
+    final LayoutState portraitLayoutState = getBackgroundLayoutState();
+
+    mComponentTree.setSizeSpec(mLandscapeWidthSpec, mHeightSpec);
+    final LayoutState landscapeLayoutState = getBackgroundLayoutState();
+    assertThat(landscapeLayoutState).isNotSameAs(portraitLayoutState);
+    assertThat(getCache().size()).isEqualTo(1);
+    assertThat(mComponentTree.hasCompatibleLayout(mPortraitWidthSpec, mHeightSpec)).isTrue();
+
+    final Size size = new Size();
+    mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec, size);
+
+    assertThat(getBackgroundLayoutState()).isSameAs(portraitLayoutState);
+    assertThat(size.width).isEqualTo(100);
+    assertThat(getCache().size()).isEqualTo(1);
+    assertThat(mComponentTree.hasCompatibleLayout(mLandscapeWidthSpec, mHeightSpec)).isTrue();
+  }
+
+  @Test
+  public void testStateUpdateInvalidatesCache() {
+    mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec);
+    mComponentTree.setSizeSpec(mLandscapeWidthSpec, mHeightSpec);
+    assertThat(getCache().size()).isEqualTo(1);
+
+    mComponentTree.updateStateSync("key", createStateUpdate(), "test");
+
+    assertThat(getCache().size()).isEqualTo(0);
+    assertThat(mComponentTree.hasCompatibleLayout(mPortraitWidthSpec, mHeightSpec)).isFalse();
+  }
+
+  @Test
+  public void testLazyStateUpdateInvalidatesCache() {
+    mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec);
+    mComponentTree.setSizeSpec(mLandscapeWidthSpec, mHeightSpec);
+    assertThat(getCache().size()).isEqualTo(1);
+
+    mComponentTree.updateStateLazy("key", createStateUpdate());
+
+    assertThat(getCache().size()).isEqualTo(0);
+    assertThat(mComponentTree.hasCompatibleLayout(mPortraitWidthSpec, mHeightSpec)).isFalse();
+    assertThat(mComponentTree.hasCompatibleLayout(mLandscapeWidthSpec, mHeightSpec)).isTrue();
+  }
+
+  @Test
+  public void testLazyStateUpdateInvalidatesCacheWithLockFreeQueue() {
+    ComponentsConfiguration.useLockFreeStateUpdateQueue = true;
+    try {
+      mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec);
+      mComponentTree.setSizeSpec(mLandscapeWidthSpec, mHeightSpec);
+      assertThat(getCache().size()).isEqualTo(1);
+
+      mComponentTree.updateStateLazy("key", createStateUpdate());
+
+      assertThat(getCache().size()).isEqualTo(0);
+      assertThat(mComponentTree.hasCompatibleLayout(mPortraitWidthSpec, mHeightSpec)).isFalse();
+    } finally {
+      ComponentsConfiguration.useLockFreeStateUpdateQueue = false;
+    }
+  }
+
+  @Test
+  public void testCachedLayoutStateRebindsEventHandlers() {
+    mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec);
+    final LayoutState portraitLayoutState = getBackgroundLayoutState();
+    final Component portraitRoot = portraitLayoutState.getComponents().get(0);
+
+    final EventHandler eventHandler = new EventHandler(portraitRoot, 1, null);
+    mComponentTree.recordEventHandler(portraitRoot, eventHandler);
+
+    mComponentTree.setSizeSpec(mLandscapeWidthSpec, mHeightSpec);
+    final Component landscapeRoot = getBackgroundLayoutState().getComponents().get(0);
+    assertThat(landscapeRoot).isNotSameAs(portraitRoot);
+    assertThat(eventHandler.mHasEventDispatcher).isSameAs(landscapeRoot);
+
+    mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec);
+
+    assertThat(getBackgroundLayoutState()).isSameAs(portraitLayoutState);
+    assertThat(eventHandler.mHasEventDispatcher).isSameAs(portraitRoot);
+  }
+
+  @Test
+  public void testNewRootInvalidatesCache() {
+    mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec);
+    mComponentTree.setSizeSpec(mLandscapeWidthSpec, mHeightSpec);
+    assertThat(getCache().size()).isEqualTo(1);
+
+    mComponentTree.setRoot(TestDrawableComponent.create(mContext).build());
+
+    assertThat(getCache().size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testSpeculativeSizeSpecIsIgnoredWithoutPriorityLayoutScheduler() {
+    mComponentTree.addSpeculativeSizeSpec(mLandscapeWidthSpec, mHeightSpec);
+    mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec);
+
+    mLayoutThreadShadowLooper.runToEndOfTasks();
+
+    assertThat(mComponentTree.hasCompatibleLayout(mLandscapeWidthSpec, mHeightSpec)).isFalse();
+    assertThat(getCache().size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testSpeculativeSizeSpecIsLaidOutOnLayoutThread() {
+    useLooperPriorityLayoutScheduler();
+    mComponentTree.addSpeculativeSizeSpec(mLandscapeWidthSpec, mHeightSpec);
+    mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec);
+    assertThat(mComponentTree.hasCompatibleLayout(mLandscapeWidthSpec, mHeightSpec)).isFalse();
+
+    mLayoutThreadShadowLooper.runToEndOfTasks();
+
+    assertThat(mComponentTree.hasCompatibleLayout(mLandscapeWidthSpec, mHeightSpec)).isTrue();
+    final LayoutState portraitLayoutState = getBackgroundLayoutState();
+
+    mComponentTree.setSizeSpec(mLandscapeWidthSpec, mHeightSpec);
+
+    assertThat(getBackgroundLayoutState()).isNotSameAs(portraitLayoutState);
+    assertThat(getBackgroundLayoutState().getWidth()).isEqualTo(200);
+    assertThat(getCache().size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testSpeculativeLayoutIsCalculatedAgainAfterStateUpdate() {
+    useLooperPriorityLayoutScheduler();
+    mComponentTree.addSpeculativeSizeSpec(mLandscapeWidthSpec, mHeightSpec);
+    mComponentTree.setSizeSpec(mPortraitWidthSpec, mHeightSpec);
+    mLayoutThreadShadowLooper.runToEndOfTasks();
+    assertThat(getCache().size()).isEqualTo(1);
+
+    mComponentTree.updateStateAsync(
+        "key",
+        new ComponentLifecycle.StateUpdate() {
+          @Override
+          public void updateState(
+              ComponentLifecycle.StateContainer stateContainer, Component newComponent) {}
+        },
+        "test");
+    assertThat(getCache().size()).isEqualTo(0);
+
+    mLayoutThreadShadowLooper.runToEndOfTasks();
+
+    assertThat(mComponentTree.hasCompatibleLayout(mLandscapeWidthSpec, mHeightSpec)).isTrue();
+  }
+
+  private void useLooperPriorityLayoutScheduler() {
+    mComponentTree =
+        ComponentTree.create(mContext, TestDrawableComponent.create(mContext).build())
+            .layoutThreadHandler(
+                new LooperPriorityLayoutScheduler(mLayoutThreadLooper))
+            .build();
+  }
+
+  private static ComponentLifecycle.StateUpdate createStateUpdate() {
+    return new ComponentLifecycle.StateUpdate() {
+      @Override
+      public void updateState(
+          ComponentLifecycle.StateContainer stateContainer, Component newComponent) {}
+    };
+  }
+
+  private LayoutState getBackgroundLayoutState() {
+    return getInternalState(mComponentTree, "mBackgroundLayoutState");
+  }
+
+  private LayoutStateCache getCache() {
+    return getInternalState(mComponentTree, "mLayoutStateCache");
+  }
+
+  /**
+   * A PriorityLayoutScheduler that runs the layouts on the test layout thread instead of its own
+   * pool, in posting order, so that the tests can run them deterministically.
+   */
+  private static class LooperPriorityLayoutScheduler extends PriorityLayoutScheduler {
+
+    private final Handler mHandler;
+
+    LooperPriorityLayoutScheduler(Looper looper) {
+      super(new LayoutThreadPoolConfigurationImpl(1, 1, 0));
+      mHandler = new Handler(looper);
+    }
+
+    @Override
+    public boolean post(Runnable runnable) {
+      return mHandler.post(runnable);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable runnable) {
+      mHandler.removeCallbacks(runnable);
+    }
+  }
+}
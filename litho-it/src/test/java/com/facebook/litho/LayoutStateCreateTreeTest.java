@@ -81,6 +81,101 @@ public class LayoutStateCreateTreeTest {
     assertThat(node.getRootComponent()).isInstanceOf(TestDrawableComponent.class);
   }
 
+  @Test
+  public void testCancelledLayoutDoesNotCreateTree() {
+    final Component component =
+        new InlineLayoutSpec() {
+          @Override
+          protected Component onCreateLayout(final ComponentContext c) {
+            return Column.create(c).child(TestDrawableComponent.create(c)).build();
+          }
+        };
+
+    final LayoutCancellationToken cancellationToken = new LayoutCancellationToken(0);
+    cancellationToken.cancel();
+    mComponentContext.setLayoutCancellationToken(cancellationToken);
+
+    final InternalNode node = LayoutState.createTree(component, mComponentContext);
+    assertThat(node).isEqualTo(ComponentContext.NULL_LAYOUT);
+  }
+
+  @Test
+  public void testLayoutCancelledBetweenComponentsSkipsRemainingComponents() {
+    final LayoutCancellationToken cancellationToken = new LayoutCancellationToken(0);
+    mComponentContext.setLayoutCancellationToken(cancellationToken);
+
+    final Component cancellingComponent =
+        new InlineLayoutSpec() {
+          @Override
+          protected Component onCreateLayout(final ComponentContext c) {
+            cancellationToken.cancel();
+            return TestDrawableComponent.create(c).build();
+          }
+        };
+    final Component component =
+        new InlineLayoutSpec() {
+          @Override
+          protected Component onCreateLayout(final ComponentContext c) {
+            return Column.create(c)
+                .child(cancellingComponent)
+                .child(TestDrawableComponent.create(c))
+                .build();
+          }
+        };
+
+    final InternalNode node = LayoutState.createTree(component, mComponentContext);
+    assertThat(cancellationToken.isCancelled()).isTrue();
+    assertThat(node.getChildCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testCancelledLayoutStateHasNoOutputs() {
+    final LayoutCancellationToken cancellationToken = new LayoutCancellationToken(0);
+    mComponentContext.setLayoutCancellationToken(cancellationToken);
+
+    final Component component =
+        new InlineLayoutSpec() {
+          @Override
+          protected Component onCreateLayout(final ComponentContext c) {
+            cancellationToken.cancel();
+            return Column.create(c).child(TestDrawableComponent.create(c)).build();
+          }
+        };
+
+    final LayoutState layoutState =
+        LayoutState.calculate(
+            mComponentContext,
+            component,
+            -1,
+            SizeSpec.makeSizeSpec(100, SizeSpec.EXACTLY),
+            SizeSpec.makeSizeSpec(100, SizeSpec.EXACTLY),
+            LayoutState.CalculateLayoutSource.TEST);
+
+    assertThat(layoutState.isCancelled()).isTrue();
+    assertThat(layoutState.getMountableOutputCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testFinishedLayoutCannotBeCancelled() {
+    final LayoutCancellationToken cancellationToken = new LayoutCancellationToken(0);
+    mComponentContext.setLayoutCancellationToken(cancellationToken);
+
+    assertThat(cancellationToken.finish()).isTrue();
+    cancellationToken.cancel();
+
+    assertThat(cancellationToken.isCancelled()).isFalse();
+    assertThat(mComponentContext.wasLayoutCancelled()).isFalse();
+  }
+
+  @Test
+  public void testCancelledLayoutCannotBeFinished() {
+    final LayoutCancellationToken cancellationToken = new LayoutCancellationToken(0);
+    cancellationToken.cancel();
+
+    assertThat(cancellationToken.finish()).isFalse();
+    assertThat(cancellationToken.isCancelled()).isTrue();
+  }
+
   @Test
   public void testHandlersAreAppliedToCorrectInternalNodes() {
     final EventHandler<ClickEvent> clickHandler1 = mock(EventHandler.class);
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.facebook.litho.testing.TestViewComponent;
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(ComponentsTestRunner.class)
+public class MountContentDemandTest {
+
+  private ComponentContext mContext;
+  private Component mComponent;
+
+  @Before
+  public void setup() {
+    ComponentsPools.clearMountContentPools();
+    mContext = new ComponentContext(RuntimeEnvironment.application);
+    mComponent = TestViewComponent.create(mContext).build();
+  }
+
+  @After
+  public void tearDown() {
+    ComponentsPools.clearMountContentPools();
+  }
+
+  @Test
+  public void testPreallocateTopsUpPools() {
+    final MountContentDemand demand = new MountContentDemand();
+    demand.add(mContext, mComponent);
+    demand.add(mContext, mComponent);
+
+    assertThat(demand.getTypeCount()).isEqualTo(1);
+    assertThat(demand.getCount(mComponent)).isEqualTo(2);
+    assertThat(demand.preallocate(Long.MAX_VALUE)).isTrue();
+    assertThat(getPooledCount()).isEqualTo(2);
+
+    // What the pool already holds counts towards the demand.
+    final MountContentDemand sameDemand = new MountContentDemand();
+    sameDemand.add(mContext, mComponent);
+    sameDemand.add(mContext, mComponent);
+    sameDemand.preallocate(Long.MAX_VALUE);
+
+    assertThat(getPooledCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testPreallocateStopsAtDeadline() {
+    final MountContentDemand demand = new MountContentDemand();
+    demand.add(mContext, mComponent);
+
+    assertThat(demand.preallocate(System.nanoTime() - 1)).isFalse();
+    assertThat(getPooledCount()).isEqualTo(0);
+
+    assertThat(demand.preallocate(Long.MAX_VALUE)).isTrue();
+    assertThat(getPooledCount()).isEqualTo(1);
+  }
+
+  private static int getPooledCount() {
+    int count = 0;
+    for (MountContentPool pool : ComponentsPools.getMountContentPools()) {
+      count += pool.getCurrentSize();
+    }
+    return count;
+  }
+}
@@ -39,6 +39,7 @@ import static org.mockito.Mockito.when;
 import android.content.Context;
 import android.graphics.Rect;
 import android.view.ViewGroup;
+import com.facebook.litho.config.ComponentsConfiguration;
 import com.facebook.litho.testing.TestComponent;
 import com.facebook.litho.testing.TestComponentContextWithView;
 import com.facebook.litho.testing.TestDrawableComponent;
@@ -47,11 +48,13 @@ import com.facebook.litho.testing.helper.ComponentTestHelper;
 import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
 import com.facebook.litho.testing.util.InlineLayoutSpec;
 import com.facebook.yoga.YogaEdge;
+import java.util.Arrays;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.powermock.reflect.Whitebox;
 import org.robolectric.RuntimeEnvironment;
 
 @RunWith(ComponentsTestRunner.class)
@@ -603,6 +606,55 @@ public class MountStateIncrementalMountTest {
     assertThat(child2.isMounted()).isTrue();
   }
 
+  /**
+   * Tests that, with the bounds index, an output that is kept mounted outside the visible rect for
+   * an animation is unmounted by a later incremental mount once the animation is over.
+   */
+  @Test
+  public void testIndexedIncrementalMountUnmountsItemsOnceAnimationUnlocked() {
+    final boolean useBoundsIndex = ComponentsConfiguration.useBoundsIndexForIncrementalMount;
+    ComponentsConfiguration.useBoundsIndexForIncrementalMount = true;
+    try {
+      final TestComponent child1 = TestDrawableComponent.create(mContext).build();
+      final TestComponent child2 = TestDrawableComponent.create(mContext).build();
+      final LithoView lithoView =
+          mountComponent(
+              mContext,
+              new InlineLayoutSpec() {
+                @Override
+                protected Component onCreateLayout(ComponentContext c) {
+                  return Column.create(c)
+                      .child(Wrapper.create(c).delegate(child1).widthPx(10).heightPx(10))
+                      .child(Wrapper.create(c).delegate(child2).widthPx(10).heightPx(10))
+                      .build();
+                }
+              });
+      final ComponentTree componentTree = lithoView.getComponentTree();
+      final int outputCount = componentTree.getMainThreadLayoutState().getMountableOutputCount();
+
+      componentTree.mountComponent(new Rect(0, 0, 10, 20), true);
+      assertThat(child1.isMounted()).isTrue();
+      assertThat(child2.isMounted()).isTrue();
+
+      final int[] lockedIndices = new int[outputCount];
+      Arrays.fill(lockedIndices, 1);
+      final MountState mountState = lithoView.getMountState();
+      Whitebox.setInternalState(mountState, "mAnimationLockedIndices", lockedIndices);
+
+      componentTree.mountComponent(new Rect(0, 15, 10, 25), true);
+      assertThat(child1.isMounted()).isTrue();
+      assertThat(child2.isMounted()).isTrue();
+
+      Whitebox.setInternalState(mountState, "mAnimationLockedIndices", new int[outputCount]);
+
+      componentTree.mountComponent(new Rect(0, 16, 10, 26), true);
+      assertThat(child1.isMounted()).isFalse();
+      assertThat(child2.isMounted()).isTrue();
+    } finally {
+      ComponentsConfiguration.useBoundsIndexForIncrementalMount = useBoundsIndex;
+    }
+  }
+
   private void verifyLoggingAndResetLogger(int mountedCount, int unmountedCount) {
     final LogEvent event = mComponentsLogger.newPerformanceEvent(EVENT_MOUNT);
     event.addParam(PARAM_MOUNTED_COUNT, String.valueOf(mountedCount));
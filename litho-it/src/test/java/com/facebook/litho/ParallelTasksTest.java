@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(ComponentsTestRunner.class)
+public class ParallelTasksTest {
+
+  @Test
+  public void testRunAllRunsTasksNotStartedByTheExecutorOnCallingThread() {
+    final List<Runnable> executed = new ArrayList<>();
+    final Executor executor =
+        new Executor() {
+          @Override
+          public void execute(Runnable command) {
+            executed.add(command);
+          }
+        };
+    final List<Integer> ran = Collections.synchronizedList(new ArrayList<Integer>());
+    final List<Runnable> tasks = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      final int index = i;
+      tasks.add(
+          new Runnable() {
+            @Override
+            public void run() {
+              ran.add(index);
+            }
+          });
+    }
+
+    ParallelTasks.runAll(executor, tasks);
+
+    assertThat(executed).hasSize(2);
+    assertThat(ran).containsExactly(0, 1, 2);
+
+    // The pool running them late is a no-op.
+    for (Runnable runnable : executed) {
+      runnable.run();
+    }
+    assertThat(ran).containsExactly(0, 1, 2);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testJoinRethrowsExceptionOfTask() {
+    final FutureTask<Object> task =
+        new FutureTask<>(
+            new Callable<Object>() {
+              @Override
+              public Object call() {
+                throw new IllegalStateException();
+              }
+            });
+
+    ParallelTasks.join(task, null);
+  }
+
+  @Test
+  public void testJoinRunsPendingTasksWhileWaiting() throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch pendingTaskDone = new CountDownLatch(1);
+    final FutureTask<Integer> task =
+        new FutureTask<>(
+            new Callable<Integer>() {
+              @Override
+              public Integer call() throws InterruptedException {
+                started.countDown();
+                pendingTaskDone.await();
+                return 1;
+              }
+            });
+    new Thread(task).start();
+    started.await();
+
+    final BlockingQueue<Runnable> pendingTasks = new LinkedBlockingQueue<>();
+    pendingTasks.add(
+        new Runnable() {
+          @Override
+          public void run() {
+            pendingTaskDone.countDown();
+          }
+        });
+
+    assertThat(ParallelTasks.join(task, pendingTasks)).isEqualTo(1);
+    assertThat(pendingTasks).isEmpty();
+  }
+}
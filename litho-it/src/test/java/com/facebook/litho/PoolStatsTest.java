@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static com.facebook.litho.FrameworkLogEvents.EVENT_POOL_STATS;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_POOL_ACQUIRE_COUNT;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_POOL_DROPPED_RELEASE_COUNT;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_POOL_HIT_COUNT;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_POOL_MISS_COUNT;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_POOL_NAME;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_POOL_PREALLOCATION_COUNT;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.view.View;
+import com.facebook.litho.config.ComponentsConfiguration;
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(ComponentsTestRunner.class)
+public class PoolStatsTest {
+
+  private final ComponentLifecycle mLifecycle =
+      new ComponentLifecycle() {
+        @Override
+        int getTypeId() {
+          return 1;
+        }
+
+        @Override
+        protected int poolSize() {
+          return 1;
+        }
+
+        @Override
+        public View onCreateMountContent(ComponentContext context) {
+          return new View(context);
+        }
+      };
+
+  private boolean mEnablePoolStats;
+  private long mPoolStatsFlushIntervalMs;
+
+  @Before
+  public void setup() {
+    mEnablePoolStats = ComponentsConfiguration.enablePoolStats;
+    mPoolStatsFlushIntervalMs = ComponentsConfiguration.poolStatsFlushIntervalMs;
+    ComponentsConfiguration.enablePoolStats = true;
+    ComponentsConfiguration.poolStatsFlushIntervalMs = 0;
+    ComponentsPools.clearMountContentPools();
+  }
+
+  @After
+  public void tearDown() {
+    ComponentsConfiguration.enablePoolStats = mEnablePoolStats;
+    ComponentsConfiguration.poolStatsFlushIntervalMs = mPoolStatsFlushIntervalMs;
+    ComponentsPools.clearMountContentPools();
+  }
+
+  @Test
+  public void testCounters() {
+    final RecyclePool<Object> pool = new RecyclePool<>("test", 1, RecyclePool.SYNCHRONIZED);
+
+    pool.acquire();
+    pool.release(new Object());
+    pool.release(new Object());
+    pool.acquire();
+
+    final PoolStats stats = pool.getStats();
+    assertThat(stats.getAcquireCount()).isEqualTo(2);
+    assertThat(stats.getHitCount()).isEqualTo(1);
+    assertThat(stats.getMissCount()).isEqualTo(1);
+    assertThat(stats.getReleaseCount()).isEqualTo(2);
+    assertThat(stats.getDroppedReleaseCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testMountContentPoolStatsAreLogged() {
+    final ComponentContext context = new ComponentContext(RuntimeEnvironment.application);
+    final EventCollectingLogger logger = new EventCollectingLogger();
+
+    ComponentsPools.maybePreallocateContent(context, mLifecycle);
+    final Object content = ComponentsPools.acquireMountContent(context, mLifecycle);
+    ComponentsPools.acquireMountContent(context, mLifecycle);
+    ComponentsPools.release(context, mLifecycle, content);
+    ComponentsPools.release(context, mLifecycle, new View(context));
+
+    final String poolName = ComponentsPools.getMountContentPools().get(0).getName();
+    ComponentsPools.maybeLogPoolStats(logger);
+
+    final List<LogEvent> events = logger.getEventsForPool(poolName);
+    assertThat(events).hasSize(1);
+    final LogEvent event = events.get(0);
+    assertThat(event.getEventId()).isEqualTo(EVENT_POOL_STATS);
+    assertThat((Long) event.getParam(PARAM_POOL_ACQUIRE_COUNT)).isEqualTo(2);
+    assertThat((Long) event.getParam(PARAM_POOL_HIT_COUNT)).isEqualTo(1);
+    assertThat((Long) event.getParam(PARAM_POOL_MISS_COUNT)).isEqualTo(1);
+    assertThat((Long) event.getParam(PARAM_POOL_DROPPED_RELEASE_COUNT)).isEqualTo(1);
+    assertThat((Long) event.getParam(PARAM_POOL_PREALLOCATION_COUNT)).isEqualTo(1);
+
+    // The counters were reset, so there is nothing left to log.
+    logger.mEvents.clear();
+    ComponentsPools.maybeLogPoolStats(logger);
+    assertThat(logger.getEventsForPool(poolName)).isEmpty();
+  }
+
+  private static class EventCollectingLogger extends TestComponentsLogger {
+    private final List<LogEvent> mEvents = new ArrayList<>();
+
+    @Override
+    public void onEvent(LogEvent event) {
+      mEvents.add(event);
+    }
+
+    List<LogEvent> getEventsForPool(String poolName) {
+      final List<LogEvent> events = new ArrayList<>();
+      for (LogEvent event : mEvents) {
+        if (poolName.equals(event.getParam(PARAM_POOL_NAME))) {
+          events.add(event);
+        }
+      }
+      return events;
+    }
+  }
+}
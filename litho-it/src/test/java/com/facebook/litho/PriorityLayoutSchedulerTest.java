@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(ComponentsTestRunner.class)
+public class PriorityLayoutSchedulerTest {
+
+  private PriorityLayoutScheduler mScheduler;
+  private CountDownLatch mBlockingLatch;
+  private List<String> mExecutionOrder;
+
+  @Before
+  public void setup() throws Exception {
+    // A single thread, so that queued layouts are run one after the other.
+    mScheduler = new PriorityLayoutScheduler(new LayoutThreadPoolConfigurationImpl(1, 1, 0));
+    mExecutionOrder = Collections.synchronizedList(new ArrayList<String>());
+    mBlockingLatch = new CountDownLatch(1);
+
+    final CountDownLatch blockingStarted = new CountDownLatch(1);
+    mScheduler.post(
+        new Runnable() {
+          @Override
+          public void run() {
+            blockingStarted.countDown();
+            try {
+              mBlockingLatch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        });
+    assertThat(blockingStarted.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void testRunsMostUrgentLayoutFirst() throws Exception {
+    final CountDownLatch done = new CountDownLatch(3);
+    mScheduler.post(new TestRunnable("far", 10, done));
+    mScheduler.post(new TestRunnable("visible", 0, done));
+    mScheduler.post(new TestRunnable("near", 2, done));
+
+    mBlockingLatch.countDown();
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(mExecutionOrder).containsExactly("visible", "near", "far");
+  }
+
+  @Test
+  public void testRunsLayoutsWithSamePriorityInPostingOrder() throws Exception {
+    final CountDownLatch done = new CountDownLatch(3);
+    mScheduler.post(new TestRunnable("first", 1, done));
+    mScheduler.post(new TestRunnable("second", 1, done));
+    mScheduler.post(new TestRunnable("third", 1, done));
+
+    mBlockingLatch.countDown();
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(mExecutionOrder).containsExactly("first", "second", "third");
+  }
+
+  @Test
+  public void testUpdatePriorityReordersQueuedLayout() throws Exception {
+    final CountDownLatch done = new CountDownLatch(2);
+    final TestRunnable offscreen = new TestRunnable("offscreen", 10, done);
+    mScheduler.post(new TestRunnable("near", 2, done));
+    mScheduler.post(offscreen);
+
+    mScheduler.updatePriority(offscreen, 0);
+    mBlockingLatch.countDown();
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(mExecutionOrder).containsExactly("offscreen", "near");
+  }
+
+  @Test
+  public void testRemoveCallbacksRemovesQueuedLayout() throws Exception {
+    final CountDownLatch done = new CountDownLatch(1);
+    final TestRunnable removed = new TestRunnable("removed", 0, done);
+    mScheduler.post(removed);
+    mScheduler.post(new TestRunnable("kept", 1, done));
+    assertThat(mScheduler.getQueuedLayoutsCount()).isEqualTo(2);
+
+    mScheduler.removeCallbacks(removed);
+    assertThat(mScheduler.getQueuedLayoutsCount()).isEqualTo(1);
+    mBlockingLatch.countDown();
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(mExecutionOrder).containsExactly("kept");
+  }
+
+  @Test
+  public void testRemoveCallbacksRacingUpdatePriorityRemovesLayout() throws Exception {
+    final CountDownLatch done = new CountDownLatch(1);
+    final List<TestRunnable> removed = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      final TestRunnable runnable = new TestRunnable("removed", 10, done);
+      removed.add(runnable);
+      mScheduler.post(runnable);
+    }
+
+    final CountDownLatch start = new CountDownLatch(1);
+    final Thread reprioritizer =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  throw new RuntimeException(e);
+                }
+                for (int i = 0; i < removed.size(); i++) {
+                  mScheduler.updatePriority(removed.get(i), i % 2);
+                }
+              }
+            });
+    reprioritizer.start();
+    start.countDown();
+    for (int i = 0; i < removed.size(); i++) {
+      mScheduler.removeCallbacks(removed.get(i));
+    }
+    reprioritizer.join();
+
+    mScheduler.post(new TestRunnable("kept", 20, done));
+    mBlockingLatch.countDown();
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(mExecutionOrder).containsExactly("kept");
+  }
+
+  @Test
+  public void testRunnablePostedTwiceRunsTwiceAndIsRemovedAtOnce() throws Exception {
+    final CountDownLatch done = new CountDownLatch(3);
+    final TestRunnable twice = new TestRunnable("twice", 1, done);
+    mScheduler.post(twice);
+    mScheduler.post(twice);
+    mScheduler.post(new TestRunnable("last", 2, done));
+
+    mScheduler.updatePriority(twice, 0);
+    mBlockingLatch.countDown();
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(mExecutionOrder).containsExactly("twice", "twice", "last");
+  }
+
+  @Test
+  public void testRemoveCallbacksRemovesAllPostsOfRunnable() throws Exception {
+    final CountDownLatch done = new CountDownLatch(1);
+    final TestRunnable twice = new TestRunnable("twice", 0, done);
+    mScheduler.post(twice);
+    mScheduler.post(twice);
+    mScheduler.post(new TestRunnable("kept", 1, done));
+
+    mScheduler.removeCallbacks(twice);
+    assertThat(mScheduler.getQueuedLayoutsCount()).isEqualTo(1);
+    mBlockingLatch.countDown();
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(mExecutionOrder).containsExactly("kept");
+  }
+
+  private class TestRunnable implements PriorityLayoutScheduler.PrioritizedRunnable {
+
+    private final String mName;
+    private final int mPriority;
+    private final CountDownLatch mDone;
+
+    private TestRunnable(String name, int priority, CountDownLatch done) {
+      mName = name;
+      mPriority = priority;
+      mDone = done;
+    }
+
+    @Override
+    public int getLayoutPriority() {
+      return mPriority;
+    }
+
+    @Override
+    public void run() {
+      mExecutionOrder.add(mName);
+      mDone.countDown();
+    }
+  }
+}
@@ -18,7 +18,13 @@ package com.facebook.litho;
 
 import static org.junit.Assert.assertEquals;
 
+import com.facebook.litho.config.ComponentsConfiguration;
 import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -40,4 +46,132 @@ public class RecyclePoolTest {
 
     assertEquals(0, pool.getCurrentSize());
   }
+
+  @Test
+  public void testSizeOnlyCountsPooledObjects() {
+    final RecyclePool<Object> pool = new RecyclePool<>("test", 2, RecyclePool.SYNCHRONIZED);
+
+    assertEquals(null, pool.acquire());
+    assertEquals(0, pool.getCurrentSize());
+
+    pool.release(new Object());
+    pool.release(new Object());
+    pool.release(new Object());
+
+    assertEquals(2, pool.getCurrentSize());
+    assertEquals(true, pool.isFull());
+  }
+
+  @Test
+  public void testLockFree() {
+    final RecyclePool<Object> pool = new RecyclePool<>("test", 2, RecyclePool.LOCK_FREE);
+    final Object first = new Object();
+    final Object second = new Object();
+
+    pool.release(first);
+    pool.release(second);
+    pool.release(new Object());
+
+    assertEquals(2, pool.getCurrentSize());
+    assertEquals(first, pool.acquire());
+    assertEquals(second, pool.acquire());
+    assertEquals(null, pool.acquire());
+    assertEquals(0, pool.getCurrentSize());
+
+    pool.release(first);
+    pool.clear();
+
+    assertEquals(0, pool.getCurrentSize());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSubclassWithoutStorageFailsOnRelease() {
+    final RecyclePool<Object> pool = new RecyclePool<Object>("test", 2) {};
+
+    pool.release(new Object());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSubclassWithoutStorageFailsOnAcquire() {
+    final RecyclePool<Object> pool = new RecyclePool<Object>("test", 2) {};
+
+    pool.acquire();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testLockFreeDoubleReleaseFailsInDebugMode() {
+    final boolean isDebugModeEnabled = ComponentsConfiguration.isDebugModeEnabled;
+    ComponentsConfiguration.isDebugModeEnabled = true;
+    try {
+      final RecyclePool<Object> pool = new RecyclePool<>("test", 2, RecyclePool.LOCK_FREE);
+      final Object item = new Object();
+
+      pool.release(item);
+      pool.release(item);
+    } finally {
+      ComponentsConfiguration.isDebugModeEnabled = isDebugModeEnabled;
+    }
+  }
+
+  @Test
+  public void testConcurrentAcquireNeverHandsOutAnObjectTwice() throws InterruptedException {
+    assertConcurrentAcquireNeverHandsOutAnObjectTwice(
+        new RecyclePool<Object>("synchronized", 64, RecyclePool.SYNCHRONIZED));
+    assertConcurrentAcquireNeverHandsOutAnObjectTwice(
+        new RecyclePool<Object>("lock-free", 64, RecyclePool.LOCK_FREE));
+    assertConcurrentAcquireNeverHandsOutAnObjectTwice(
+        new TieredRecyclePool<Object>("tiered", 64, PoolsConfig.sThreadCacheSize));
+  }
+
+  /**
+   * Has several threads acquire batches of objects and release them, as layout threads do with
+   * layout nodes, and checks that no object is ever held by two threads at once.
+   */
+  private static void assertConcurrentAcquireNeverHandsOutAnObjectTwice(
+      final RecyclePool<Object> pool) throws InterruptedException {
+    final Set<Object> acquired =
+        Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final CountDownLatch start = new CountDownLatch(1);
+    final Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  final Object[] batch = new Object[32];
+                  try {
+                    start.await();
+                    for (int b = 0; b < 2000; b++) {
+                      for (int j = 0; j < batch.length; j++) {
+                        Object item = pool.acquire();
+                        if (item == null) {
+                          item = new Object();
+                        }
+                        if (!acquired.add(item)) {
+                          throw new AssertionError("Acquired an object held by another thread");
+                        }
+                        batch[j] = item;
+                      }
+                      for (int j = 0; j < batch.length; j++) {
+                        acquired.remove(batch[j]);
+                        pool.release(batch[j]);
+                      }
+                    }
+                  } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                  }
+                }
+              });
+      threads[i].start();
+    }
+
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(null, error.get());
+  }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static com.facebook.litho.SizeSpec.EXACTLY;
+import static com.facebook.litho.SizeSpec.makeSizeSpec;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.facebook.litho.testing.TestDrawableComponent;
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import com.facebook.litho.testing.util.InlineLayoutSpec;
+import java.util.Collections;
+import java.util.HashSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(ComponentsTestRunner.class)
+public class ReusableLayoutTreeTest {
+
+  private ComponentContext mContext;
+  private Component mComponent;
+
+  @Before
+  public void setup() {
+    mContext = new ComponentContext(RuntimeEnvironment.application);
+    mComponent =
+        new InlineLayoutSpec() {
+          @Override
+          protected Component onCreateLayout(ComponentContext c) {
+            return Column.create(c)
+                .child(TestDrawableComponent.create(c).key("dirty").widthPx(10).heightPx(10))
+                .child(
+                    Row.create(c)
+                        .child(TestDrawableComponent.create(c).key("clean").widthPx(10)))
+                .build();
+          }
+        };
+  }
+
+  @Test
+  public void testReusesSubtreesWithoutStateUpdates() {
+    final LayoutState previousLayoutState = calculate(mContext, mComponent);
+    final InternalNode previousRoot = previousLayoutState.getLayoutRoot();
+    final InternalNode previousDirtyChild = previousRoot.getChildAt(0);
+    final InternalNode previousCleanChild = previousRoot.getChildAt(1);
+    final String dirtyKey = previousDirtyChild.getRootComponent().getGlobalKey();
+
+    final ReusableLayoutTree reusableLayoutTree =
+        new ReusableLayoutTree(
+            previousLayoutState.acquireRef(),
+            mComponent.getId(),
+            new HashSet<>(Collections.singleton(dirtyKey)));
+    final ComponentContext c = mContext.makeNewCopy();
+    c.setReusableLayoutTree(reusableLayoutTree);
+
+    final Component rootComponent = mComponent.makeShallowCopy();
+    final LayoutState layoutState = calculate(c, rootComponent);
+    final InternalNode root = layoutState.getLayoutRoot();
+
+    assertThat(root).isNotSameAs(previousRoot);
+    assertThat(root.getComponents()).contains(rootComponent);
+    assertThat(root.getChildCount()).isEqualTo(2);
+    assertThat(root.getChildAt(0).getRootComponent())
+        .isNotSameAs(previousDirtyChild.getRootComponent());
+    assertThat(root.getChildAt(0).getRootComponent().getGlobalKey()).isEqualTo(dirtyKey);
+    assertThat(root.getChildAt(1)).isNotSameAs(previousCleanChild);
+    assertThat(root.getChildAt(1).getRootComponent())
+        .isSameAs(previousCleanChild.getRootComponent());
+    assertThat(reusableLayoutTree.getRecreatedNodesCount()).isEqualTo(1);
+    assertThat(layoutState.getMountableOutputCount()).isEqualTo(3);
+
+    // The previous layout keeps its own tree.
+    assertThat(previousLayoutState.getLayoutRoot()).isSameAs(previousRoot);
+    assertThat(previousRoot.getComponents()).doesNotContain(rootComponent);
+    assertThat(previousRoot.getChildCount()).isEqualTo(2);
+    assertThat(previousRoot.getChildAt(0)).isSameAs(previousDirtyChild);
+    assertThat(previousRoot.getChildAt(1)).isSameAs(previousCleanChild);
+  }
+
+  @Test
+  public void testCreatesTreeFromScratchForDifferentRoot() {
+    final LayoutState previousLayoutState = calculate(mContext, mComponent);
+    final InternalNode previousRoot = previousLayoutState.getLayoutRoot();
+
+    final ReusableLayoutTree reusableLayoutTree =
+        new ReusableLayoutTree(previousLayoutState.acquireRef(), mComponent.getId(), null);
+    final ComponentContext c = mContext.makeNewCopy();
+    c.setReusableLayoutTree(reusableLayoutTree);
+
+    final Component otherComponent =
+        new InlineLayoutSpec() {
+          @Override
+          protected Component onCreateLayout(ComponentContext c) {
+            return TestDrawableComponent.create(c).build();
+          }
+        };
+    final InternalNode root = calculate(c, otherComponent).getLayoutRoot();
+
+    assertThat(root).isNotSameAs(previousRoot);
+    assertThat(reusableLayoutTree.getReusedNodesCount()).isEqualTo(0);
+
+    reusableLayoutTree.releaseIfUnused();
+    assertThat(previousLayoutState.getLayoutRoot()).isSameAs(previousRoot);
+  }
+
+  private static LayoutState calculate(ComponentContext c, Component component) {
+    return LayoutState.calculate(
+        c,
+        component,
+        -1,
+        makeSizeSpec(100, EXACTLY),
+        makeSizeSpec(100, EXACTLY),
+        false /* shouldGenerateDiffTree */,
+        null /* previousDiffTreeRoot */,
+        false /* canPrefetchDisplayLists */,
+        false /* canCacheDrawingDisplayLists */,
+        true /* clipChildren */,
+        true /* persistInternalNodeTree */,
+        LayoutState.CalculateLayoutSource.UPDATE_STATE,
+        null);
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.facebook.litho;
+
+import static com.facebook.litho.config.ComponentsConfiguration.DEFAULT_BACKGROUND_THREAD_PRIORITY;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.facebook.litho.config.ComponentsConfiguration;
+import com.facebook.litho.testing.TestDrawableComponent;
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import com.facebook.litho.testing.util.InlineLayoutSpec;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(ComponentsTestRunner.class)
+public class SplitLayoutResolverTest {
+
+  private static final String SPLIT_TAG = "SplitLayoutResolverTest";
+
+  private ComponentContext mContext;
+  private boolean mPreviousOnErrorConfig;
+
+  @Before
+  public void setup() {
+    mPreviousOnErrorConfig = ComponentsConfiguration.enableOnErrorHandling;
+    ComponentsConfiguration.enableOnErrorHandling = false;
+    LayoutCostEstimator.clear();
+
+    SplitLayoutResolver.createWorkStealingForTag(
+        SPLIT_TAG,
+        new LayoutThreadPoolConfigurationImpl(1, 1, DEFAULT_BACKGROUND_THREAD_PRIORITY),
+        0);
+    mContext = new ComponentContext(RuntimeEnvironment.application);
+    mContext.setWorkStealingResolver(SplitLayoutResolver.getForTag(SPLIT_TAG));
+  }
+
+  @After
+  public void tearDown() {
+    SplitLayoutResolver.getForTag(SPLIT_TAG).getWorkStealingExecutor().shutdownNow();
+    SplitLayoutResolver.clearTag(SPLIT_TAG);
+    LayoutCostEstimator.clear();
+    ComponentsConfiguration.enableOnErrorHandling = mPreviousOnErrorConfig;
+  }
+
+  @Test
+  public void testDoesNotForkWithoutWorkStealingResolver() {
+    final ComponentContext c = new ComponentContext(RuntimeEnvironment.application);
+    final List<Component> children = createExpensiveChildren(3);
+    final InternalNode node = ComponentsPools.acquireInternalNode(c);
+
+    assertThat(SplitLayoutResolver.forkLayouts(c, children, node)).isFalse();
+    assertThat(node.getChildCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDoesNotForkChildrenWithUnknownCost() {
+    final List<Component> children =
+        Arrays.<Component>asList(
+            TestDrawableComponent.create(mContext).build(),
+            TestDrawableComponent.create(mContext).build());
+    final InternalNode node = ComponentsPools.acquireInternalNode(mContext);
+
+    assertThat(SplitLayoutResolver.forkLayouts(mContext, children, node)).isFalse();
+    assertThat(node.getChildCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testForkedChildrenAreAddedInOrder() {
+    final List<Component> children = createExpensiveChildren(4);
+    final InternalNode node = ComponentsPools.acquireInternalNode(mContext);
+
+    assertThat(SplitLayoutResolver.forkLayouts(mContext, children, node)).isTrue();
+
+    assertThat(node.getChildCount()).isEqualTo(4);
+    for (int i = 0; i < 4; i++) {
+      assertThat(node.getChildAt(i).getRootComponent()).isSameAs(children.get(i));
+    }
+  }
+
+  @Test
+  public void testExceptionOfForkedChildIsRethrownByJoiningThread() {
+    final InlineLayoutSpec crasher =
+        new InlineLayoutSpec() {
+          @Override
+          protected Component onCreateLayout(ComponentContext c) {
+            throw new IllegalStateException("Forked layout crash");
+          }
+        };
+    LayoutCostEstimator.record(crasher, 1000);
+    final List<Component> children = createExpensiveChildren(2);
+    children.set(0, crasher);
+    final InternalNode node = ComponentsPools.acquireInternalNode(mContext);
+
+    IllegalStateException exception = null;
+    try {
+      SplitLayoutResolver.forkLayouts(mContext, children, node);
+    } catch (IllegalStateException e) {
+      exception = e;
+    }
+
+    assertThat(exception).hasMessage("Forked layout crash");
+  }
+
+  @Test
+  public void testMainThreadOnlyRunsItsOwnForkedLayouts() throws InterruptedException {
+    final ThreadPoolExecutor executor =
+        SplitLayoutResolver.getForTag(SPLIT_TAG).getWorkStealingExecutor();
+    final CountDownLatch isPoolBusy = new CountDownLatch(1);
+    final CountDownLatch canPoolContinue = new CountDownLatch(1);
+    final AtomicBoolean hasRunForeignWork = new AtomicBoolean();
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            isPoolBusy.countDown();
+            try {
+              canPoolContinue.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            hasRunForeignWork.set(true);
+          }
+        });
+    isPoolBusy.await();
+
+    final List<Component> children = createExpensiveChildren(3);
+    final InternalNode node = ComponentsPools.acquireInternalNode(mContext);
+
+    try {
+      assertThat(SplitLayoutResolver.forkLayouts(mContext, children, node)).isTrue();
+      assertThat(node.getChildCount()).isEqualTo(3);
+      assertThat(hasRunForeignWork.get()).isFalse();
+    } finally {
+      canPoolContinue.countDown();
+    }
+  }
+
+  private List<Component> createExpensiveChildren(int count) {
+    final Component[] children = new Component[count];
+    for (int i = 0; i < count; i++) {
+      children[i] = TestDrawableComponent.create(mContext).build();
+    }
+    LayoutCostEstimator.record(children[0], 1000);
+
+    return Arrays.asList(children);
+  }
+}
@@ -22,19 +22,25 @@ import static com.facebook.litho.SizeSpec.makeSizeSpec;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.os.Handler;
 import android.os.Looper;
 import com.facebook.litho.ComponentLifecycle.StateContainer;
+import com.facebook.litho.config.ComponentsConfiguration;
+import com.facebook.litho.dataflow.ChoreographerCompat;
 import com.facebook.litho.testing.helper.ComponentTestHelper;
 import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
 import com.facebook.litho.testing.util.InlineLayoutSpec;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.powermock.reflect.Whitebox;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.Shadows;
@@ -256,6 +262,138 @@ public class StateUpdatesTest {
     assertThat(mTestComponent.getComponentForStateUpdate().getCount()).isEqualTo(INITIAL_COUNT_STATE_VALUE + 1);
   }
 
+  @Test
+  public void testLockFreeQueueAppliesBurstOfUpdatesInOneLayout() {
+    ComponentsConfiguration.useLockFreeStateUpdateQueue = true;
+    try {
+      final String key = mTestComponent.getGlobalKey();
+      mComponentTree.updateStateLazy(key, new TestStateUpdate());
+      mComponentTree.updateStateAsync(key, new TestStateUpdate(), "test");
+      mComponentTree.updateStateAsync(key, new TestStateUpdate(), "test");
+
+      assertThat(getPendingStateUpdatesForComponent(mTestComponent)).hasSize(3);
+
+      mLayoutThreadShadowLooper.runToEndOfTasks();
+      assertThat(mTestComponent.getComponentForStateUpdate().getCount())
+          .isEqualTo(INITIAL_COUNT_STATE_VALUE + 3);
+      assertThat(getPendingStateUpdatesForComponent(mTestComponent.getComponentForStateUpdate()))
+          .isNull();
+    } finally {
+      ComponentsConfiguration.useLockFreeStateUpdateQueue = false;
+    }
+  }
+
+  @Test
+  public void testLockFreeQueueDrainsUpdatesPerKeyInOrder() {
+    final StateHandler stateHandler = ComponentsPools.acquireStateHandler();
+    final StateUpdate first = new TestStateUpdate();
+    final StateUpdate second = new TestStateUpdate();
+    final StateUpdate other = new TestStateUpdate();
+
+    stateHandler.enqueueStateUpdate("key", first, StateHandler.QUEUED_LAYOUT_ASYNC);
+    stateHandler.enqueueStateUpdate("otherKey", other, StateHandler.QUEUED_LAYOUT_ASYNC);
+    stateHandler.enqueueStateUpdate("key", second, StateHandler.QUEUED_LAYOUT_ASYNC);
+
+    final Map<String, List<StateUpdate>> pendingStateUpdates =
+        stateHandler.getPendingStateUpdates();
+    assertThat(pendingStateUpdates.get("key")).containsExactly(first, second);
+    assertThat(pendingStateUpdates.get("otherKey")).containsExactly(other);
+
+    // The queues are empty once drained.
+    assertThat(stateHandler.getPendingStateUpdates().get("key")).hasSize(2);
+    stateHandler.release();
+  }
+
+  @Test
+  public void testKeptStateContainerIsNotMergedOnCommit() {
+    final String key = mTestComponent.getGlobalKey();
+    assertThat(getStateContainersMap().get(key)).isSameAs(mTestComponent.getStateContainer());
+
+    final StateHandler layoutStateHandler = ComponentsPools.acquireStateHandler(getStateHandler());
+    layoutStateHandler.keepStateContainer(mTestComponent);
+
+    final Map<String, StateContainer> changedStateContainers =
+        layoutStateHandler.getChangedStateContainers();
+    if (changedStateContainers != null) {
+      assertThat(changedStateContainers).doesNotContainKey(key);
+    }
+    layoutStateHandler.release();
+  }
+
+  @Test
+  public void testLockFreeQueueSchedulesLayoutForUpdatesAfterDrain() {
+    ComponentsConfiguration.useLockFreeStateUpdateQueue = true;
+    try {
+      final String key = mTestComponent.getGlobalKey();
+      mComponentTree.updateStateAsync(key, new TestStateUpdate(), "test");
+      mLayoutThreadShadowLooper.runToEndOfTasks();
+
+      mComponentTree.updateStateAsync(key, new TestStateUpdate(), "test");
+      mLayoutThreadShadowLooper.runToEndOfTasks();
+
+      assertThat(mTestComponent.getComponentForStateUpdate().getCount())
+          .isEqualTo(INITIAL_COUNT_STATE_VALUE + 2);
+    } finally {
+      ComponentsConfiguration.useLockFreeStateUpdateQueue = false;
+    }
+  }
+
+  @Test
+  public void testBatchStateUpdatesPerFrame() {
+    final ChoreographerCompat choreographer = mock(ChoreographerCompat.class);
+    final Executor directExecutor =
+        new Executor() {
+          @Override
+          public void execute(Runnable runnable) {
+            runnable.run();
+          }
+        };
+    StateUpdateBatcher.setInstance(
+        new StateUpdateBatcher(
+            choreographer, directExecutor, new Handler(Looper.getMainLooper())));
+    ComponentsConfiguration.batchStateUpdatesPerFrame = true;
+    try {
+      final TestComponent otherComponent = new TestComponent();
+      final ComponentTree otherComponentTree =
+          ComponentTree.create(mContext, otherComponent).build();
+      final LithoView otherLithoView = new LithoView(mContext);
+      otherLithoView.setComponentTree(otherComponentTree);
+      otherLithoView.onAttachedToWindow();
+      ComponentTestHelper.measureAndLayout(otherLithoView);
+
+      mComponentTree.updateStateAsync(
+          mTestComponent.getGlobalKey(), new TestStateUpdate(), "test");
+      otherComponentTree.updateStateAsync(
+          otherComponent.getGlobalKey(), new TestStateUpdate(), "test");
+      mLayoutThreadShadowLooper.runToEndOfTasks();
+
+      final ArgumentCaptor<ChoreographerCompat.FrameCallback> frameCallback =
+          ArgumentCaptor.forClass(ChoreographerCompat.FrameCallback.class);
+      verify(choreographer).postFrameCallback(frameCallback.capture());
+      assertThat(mTestComponent.getComponentForStateUpdate().getCount())
+          .isEqualTo(INITIAL_COUNT_STATE_VALUE);
+
+      frameCallback.getValue().doFrame(0);
+      ShadowLooper.runUiThreadTasks();
+
+      final TestComponent updatedComponent = mTestComponent.getComponentForStateUpdate();
+      final TestComponent otherUpdatedComponent = otherComponent.getComponentForStateUpdate();
+      assertThat(updatedComponent.getCount()).isEqualTo(INITIAL_COUNT_STATE_VALUE + 1);
+      assertThat(otherUpdatedComponent.getCount()).isEqualTo(INITIAL_COUNT_STATE_VALUE + 1);
+      assertThat(
+              mComponentTree.getMainThreadLayoutState().isForComponentId(updatedComponent.getId()))
+          .isTrue();
+      assertThat(
+              otherComponentTree
+                  .getMainThreadLayoutState()
+                  .isForComponentId(otherUpdatedComponent.getId()))
+          .isTrue();
+    } finally {
+      ComponentsConfiguration.batchStateUpdatesPerFrame = false;
+      StateUpdateBatcher.setInstance(null);
+    }
+  }
+
   @Test
   public void testTransferState() {
     mComponentTree.updateStateAsync(mTestComponent.getGlobalKey(), new TestStateUpdate(), "test");
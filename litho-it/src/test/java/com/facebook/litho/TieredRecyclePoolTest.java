@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(ComponentsTestRunner.class)
+public class TieredRecyclePoolTest {
+
+  @Test
+  public void testThreadCacheIsUsedFirst() {
+    final TieredRecyclePool<Object> pool = new TieredRecyclePool<>("test", 4, 2);
+    final Object first = new Object();
+    final Object second = new Object();
+
+    pool.release(first);
+    pool.release(second);
+
+    assertThat(pool.getCurrentSize()).isEqualTo(0);
+    assertThat(pool.acquire()).isSameAs(second);
+    assertThat(pool.acquire()).isSameAs(first);
+    assertThat(pool.acquire()).isNull();
+  }
+
+  @Test
+  public void testOverflowIsSharedWithOtherThreads() throws InterruptedException {
+    final TieredRecyclePool<Object> pool = new TieredRecyclePool<>("test", 4, 1);
+    final Object cached = new Object();
+    final Object shared = new Object();
+    pool.release(cached);
+    pool.release(shared);
+    assertThat(pool.getCurrentSize()).isEqualTo(1);
+
+    final AtomicReference<Object> acquiredOnOtherThread = new AtomicReference<>();
+    final AtomicReference<Object> secondAcquiredOnOtherThread = new AtomicReference<>();
+    final Thread thread =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                acquiredOnOtherThread.set(pool.acquire());
+                secondAcquiredOnOtherThread.set(pool.acquire());
+              }
+            });
+    thread.start();
+    thread.join();
+
+    assertThat(acquiredOnOtherThread.get()).isSameAs(shared);
+    assertThat(secondAcquiredOnOtherThread.get()).isNull();
+    assertThat(pool.getCurrentSize()).isEqualTo(0);
+    assertThat(pool.acquire()).isSameAs(cached);
+  }
+
+  @Test
+  public void testReleaseWhenFull() {
+    final TieredRecyclePool<Object> pool = new TieredRecyclePool<>("test", 2, 1);
+
+    for (int i = 0; i < 5; i++) {
+      pool.release(new Object());
+    }
+
+    assertThat(pool.getCurrentSize()).isEqualTo(2);
+    assertThat(pool.isFull()).isTrue();
+  }
+
+  @Test
+  public void testClear() {
+    final TieredRecyclePool<Object> pool = new TieredRecyclePool<>("test", 10, 2);
+
+    for (int i = 0; i < 7; i++) {
+      pool.release(new Object());
+    }
+    assertThat(pool.getCurrentSize()).isEqualTo(5);
+
+    pool.clear();
+
+    assertThat(pool.getCurrentSize()).isEqualTo(0);
+    assertThat(pool.acquire()).isNull();
+  }
+}
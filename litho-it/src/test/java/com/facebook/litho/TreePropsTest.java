@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(ComponentsTestRunner.class)
+public class TreePropsTest {
+
+  @Test
+  public void testPutAndGet() {
+    final TreeProps treeProps = new TreeProps();
+    treeProps.put(String.class, "a");
+    treeProps.put(Integer.class, 1);
+
+    assertThat(treeProps.get(String.class)).isEqualTo("a");
+    assertThat(treeProps.get(Integer.class)).isEqualTo(1);
+    assertThat(treeProps.get(Long.class)).isNull();
+  }
+
+  @Test
+  public void testPutReplacesValue() {
+    final TreeProps treeProps = new TreeProps();
+    treeProps.put(String.class, "a");
+    treeProps.put(Integer.class, 1);
+    treeProps.put(String.class, "b");
+
+    assertThat(treeProps.get(String.class)).isEqualTo("b");
+    assertThat(treeProps.toMap()).hasSize(2);
+  }
+
+  @Test
+  public void testCopyIsNotAffectedByPutsOnEitherSide() {
+    final TreeProps parent = new TreeProps();
+    parent.put(String.class, "parent");
+    parent.put(Integer.class, 1);
+
+    final TreeProps child = TreeProps.copy(parent);
+    child.put(String.class, "child");
+    parent.put(Long.class, 2L);
+
+    assertThat(child.get(String.class)).isEqualTo("child");
+    assertThat(child.get(Integer.class)).isEqualTo(1);
+    assertThat(child.get(Long.class)).isNull();
+
+    assertThat(parent.get(String.class)).isEqualTo("parent");
+    assertThat(parent.get(Long.class)).isEqualTo(2L);
+  }
+
+  @Test
+  public void testResetDoesNotAffectCopies() {
+    final TreeProps parent = new TreeProps();
+    parent.put(String.class, "parent");
+
+    final TreeProps child = TreeProps.copy(parent);
+    ComponentsPools.release(child);
+
+    assertThat(child.get(String.class)).isNull();
+    assertThat(parent.get(String.class)).isEqualTo("parent");
+  }
+
+  @Test
+  public void testCopyOfNull() {
+    final TreeProps treeProps = TreeProps.copy(null);
+
+    assertThat(treeProps.get(String.class)).isNull();
+    assertThat(treeProps.toMap()).isEmpty();
+  }
+}
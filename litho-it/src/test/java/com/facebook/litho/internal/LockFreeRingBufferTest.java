@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class LockFreeRingBufferTest {
+
+  @Test
+  public void testOfferAndPollInOrder() {
+    final LockFreeRingBuffer<String> buffer = new LockFreeRingBuffer<>(2);
+
+    assertThat(buffer.offer("a")).isTrue();
+    assertThat(buffer.offer("b")).isTrue();
+    assertThat(buffer.offer("c")).isFalse();
+    assertThat(buffer.size()).isEqualTo(2);
+
+    assertThat(buffer.poll()).isEqualTo("a");
+    assertThat(buffer.offer("c")).isTrue();
+    assertThat(buffer.poll()).isEqualTo("b");
+    assertThat(buffer.poll()).isEqualTo("c");
+    assertThat(buffer.poll()).isNull();
+    assertThat(buffer.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testContains() {
+    final LockFreeRingBuffer<Object> buffer = new LockFreeRingBuffer<>(2);
+    final Object item = new Object();
+
+    assertThat(buffer.contains(item)).isFalse();
+    buffer.offer(item);
+    assertThat(buffer.contains(item)).isTrue();
+    buffer.poll();
+    assertThat(buffer.contains(item)).isFalse();
+  }
+
+  @Test
+  public void testZeroCapacity() {
+    final LockFreeRingBuffer<String> buffer = new LockFreeRingBuffer<>(0);
+
+    assertThat(buffer.offer("a")).isFalse();
+    assertThat(buffer.poll()).isNull();
+  }
+
+  @Test
+  public void testConcurrentUseNeverHandsOutAnItemTwice() throws InterruptedException {
+    final LockFreeRingBuffer<AtomicBoolean> buffer = new LockFreeRingBuffer<>(8);
+    final AtomicInteger failures = new AtomicInteger(0);
+    final Thread[] threads = new Thread[4];
+
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  for (int i = 0; i < 20000; i++) {
+                    AtomicBoolean item = buffer.poll();
+                    if (item == null) {
+                      item = new AtomicBoolean();
+                    }
+                    if (!item.compareAndSet(false, true)) {
+                      failures.incrementAndGet();
+                    }
+                    item.set(false);
+                    buffer.offer(item);
+                  }
+                }
+              });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(failures.get()).isEqualTo(0);
+    assertThat(buffer.size()).isBetween(1, 8);
+  }
+}
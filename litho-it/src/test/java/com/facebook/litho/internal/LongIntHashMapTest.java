@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.support.v4.util.LongSparseArray;
+import java.util.Random;
+import org.junit.Test;
+
+public class LongIntHashMapTest {
+
+  @Test
+  public void testPutAndGet() {
+    final LongIntHashMap map = new LongIntHashMap();
+    assertThat(map.isEmpty()).isTrue();
+
+    map.put(42L, 1);
+    map.put(-7L, 2);
+    map.put(Long.MAX_VALUE, 3);
+
+    assertThat(map.size()).isEqualTo(3);
+    assertThat(map.get(42L, -1)).isEqualTo(1);
+    assertThat(map.get(-7L, -1)).isEqualTo(2);
+    assertThat(map.get(Long.MAX_VALUE, -1)).isEqualTo(3);
+    assertThat(map.get(43L, -1)).isEqualTo(-1);
+    assertThat(map.containsKey(43L)).isFalse();
+
+    map.put(42L, 4);
+
+    assertThat(map.size()).isEqualTo(3);
+    assertThat(map.get(42L, -1)).isEqualTo(4);
+  }
+
+  @Test
+  public void testZeroKey() {
+    final LongIntHashMap map = new LongIntHashMap();
+    assertThat(map.containsKey(0L)).isFalse();
+    assertThat(map.get(0L, -1)).isEqualTo(-1);
+
+    map.put(0L, 5);
+
+    assertThat(map.containsKey(0L)).isTrue();
+    assertThat(map.get(0L, -1)).isEqualTo(5);
+    assertThat(map.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testGrowsPastInitialCapacity() {
+    final LongIntHashMap map = new LongIntHashMap(2);
+
+    for (int i = 0; i < 10000; i++) {
+      map.put(outputId(i), i);
+    }
+
+    assertThat(map.size()).isEqualTo(10000);
+    for (int i = 0; i < 10000; i++) {
+      assertThat(map.get(outputId(i), -1)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void testClear() {
+    final LongIntHashMap map = new LongIntHashMap();
+    map.put(0L, 1);
+    map.put(1L, 2);
+
+    map.clear();
+
+    assertThat(map.isEmpty()).isTrue();
+    assertThat(map.containsKey(0L)).isFalse();
+    assertThat(map.get(1L, -1)).isEqualTo(-1);
+
+    map.put(1L, 3);
+    assertThat(map.get(1L, -1)).isEqualTo(3);
+  }
+
+  private static long outputId(int i) {
+    // Same shape as the ids of LayoutOutputs: component id, level, type and sequence.
+    return ((long) (i / 4) << 26) | ((long) (i % 16) << 18) | ((long) (i % 4) << 16) | (i % 3);
+  }
+
+  @Test
+  public void testMatchesLongSparseArrayForLayoutOutputIds() {
+    final LongIntHashMap map = new LongIntHashMap(8);
+    for (int outputCount : new int[] {100, 1000, 10000}) {
+      final LongSparseArray<Integer> expected = new LongSparseArray<>(8);
+      map.clear();
+
+      // Ids shaped like the ones of LayoutOutputs, in the order a layout would create them.
+      for (int i = 0; i < outputCount; i++) {
+        final long componentId = i / 2;
+        final long level = i % 12;
+        final long type = i % 2;
+        final long id = (componentId << 26) | (level << 18) | (type << 16);
+        map.put(id, i);
+        expected.put(id, i);
+      }
+
+      assertThat(map.size()).isEqualTo(expected.size());
+      final Random random = new Random(outputCount);
+      for (int i = 0; i < outputCount * 4; i++) {
+        final long id = expected.keyAt(random.nextInt(expected.size()));
+        assertThat(map.get(id, -1)).isEqualTo(expected.get(id));
+
+        final long missingId = id + 1;
+        assertThat(map.get(missingId, -1)).isEqualTo(expected.get(missingId, -1));
+      }
+    }
+  }
+}
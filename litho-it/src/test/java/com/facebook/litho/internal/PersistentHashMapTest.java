@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class PersistentHashMapTest {
+
+  @Test
+  public void testPlusAndGet() {
+    final PersistentHashMap<String, Integer> map =
+        PersistentHashMap.<String, Integer>empty().plus("a", 1).plus("b", 2).plus("a", 3);
+
+    assertThat(map.get("a")).isEqualTo(3);
+    assertThat(map.get("b")).isEqualTo(2);
+    assertThat(map.get("c")).isNull();
+    assertThat(map.containsKey("c")).isFalse();
+    assertThat(map.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testPlusDoesNotChangePreviousVersions() {
+    final PersistentHashMap<String, Integer> first =
+        PersistentHashMap.<String, Integer>empty().plus("a", 1);
+    final PersistentHashMap<String, Integer> second = first.plus("a", 2).plus("b", 3);
+
+    assertThat(first).hasSize(1);
+    assertThat(first.get("a")).isEqualTo(1);
+    assertThat(second).hasSize(2);
+    assertThat(second.get("a")).isEqualTo(2);
+  }
+
+  @Test
+  public void testPlusSameValueReturnsSameMap() {
+    final Integer value = 1;
+    final PersistentHashMap<String, Integer> map =
+        PersistentHashMap.<String, Integer>empty().plus("a", value);
+
+    assertThat(map.plus("a", value)).isSameAs(map);
+  }
+
+  @Test
+  public void testCollidingKeys() {
+    PersistentHashMap<CollidingKey, Integer> map = PersistentHashMap.empty();
+    for (int i = 0; i < 10; i++) {
+      map = map.plus(new CollidingKey(i % 2, i), i);
+    }
+    map = map.plus(new CollidingKey(0, 4), 40);
+
+    assertThat(map).hasSize(10);
+    assertThat(map.get(new CollidingKey(0, 4))).isEqualTo(40);
+    assertThat(map.get(new CollidingKey(1, 5))).isEqualTo(5);
+    assertThat(map.get(new CollidingKey(0, 11))).isNull();
+  }
+
+  @Test
+  public void testMatchesHashMap() {
+    final Random random = new Random(42);
+    final Map<String, Integer> expected = new HashMap<>();
+    PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+
+    for (int i = 0; i < 5000; i++) {
+      final String key = "key" + random.nextInt(2000);
+      expected.put(key, i);
+      map = map.plus(key, i);
+    }
+
+    assertThat(map).isEqualTo(expected);
+    assertThat(map.size()).isEqualTo(expected.size());
+  }
+
+  private static class CollidingKey {
+    private final int mHash;
+    private final int mId;
+
+    CollidingKey(int hash, int id) {
+      mHash = hash;
+      mId = id;
+    }
+
+    @Override
+    public int hashCode() {
+      return mHash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof CollidingKey && ((CollidingKey) other).mId == mId;
+    }
+  }
+}
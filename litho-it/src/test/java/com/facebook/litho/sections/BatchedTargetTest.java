@@ -23,6 +23,7 @@ import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import com.facebook.litho.config.ComponentsConfiguration;
 import com.facebook.litho.sections.SectionTree.Target;
@@ -248,6 +249,22 @@ public class BatchedTargetTest {
     verify(mMockTarget).deleteRange(eq(102), eq(20));
   }
 
+  @Test
+  public void testConsolidateAdjacentDeleteRanges() throws Exception {
+    Change[] ops = new Change[] {
+        Change.removeRange(3, 2),
+        Change.removeRange(3, 2),
+        Change.remove(2),
+        Change.removeRange(10, 5),
+    };
+
+    executeOperations(ops);
+
+    verify(mMockTarget).deleteRange(2, 5);
+    verify(mMockTarget).deleteRange(10, 5);
+    verifyNoMoreInteractions(mMockTarget);
+  }
+
   @Test
   public void testConsolidateDifferentTypes() throws Exception {
     Change[] ops = new Change[] {
@@ -16,10 +16,12 @@
 
 package com.facebook.litho.sections;
 
+import static com.facebook.litho.sections.Change.DELETE_RANGE;
 import static com.facebook.litho.sections.Change.MOVE;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
+import com.facebook.litho.sections.config.SectionsConfiguration;
 import com.facebook.litho.sections.logger.SectionsDebugLogger;
 import com.facebook.litho.testing.sections.TestSectionCreator;
 import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
@@ -301,7 +303,10 @@ public class ChangeSetStateTest {
 
     final ChangeSet secondChangeSet = secondChangeSetState.getChangeSet();
 
-    assertThat(secondChangeSet.getChangeCount()).isEqualTo(2);
+    assertThat(secondChangeSet.getChangeCount()).isEqualTo(1);
+    assertThat(secondChangeSet.getChangeAt(0).getType()).isEqualTo(DELETE_RANGE);
+    assertThat(secondChangeSet.getChangeAt(0).getIndex()).isEqualTo(3);
+    assertThat(secondChangeSet.getChangeAt(0).getCount()).isEqualTo(2);
     assertThat(secondChangeSet.getCount()).isEqualTo(3);
     assertThat(leaf1.getCount()).isEqualTo(3);
     assertThat(newRoot.getCount()).isEqualTo(3);
@@ -536,7 +541,8 @@ public class ChangeSetStateTest {
 
     final ChangeSet secondChangeSet = secondChangeSetState.getChangeSet();
 
-    assertThat(numChildren1 + numChildren3).isEqualTo(secondChangeSet.getChangeCount());
+    // The moves of leaf1's items, then a single range removal of leaf3.
+    assertThat(numChildren1 + 1).isEqualTo(secondChangeSet.getChangeCount());
     assertThat(totalNumChildren).isEqualTo(secondChangeSet.getCount());
     assertThat(totalNumChildren).isEqualTo(newRoot.getCount());
 
@@ -598,7 +604,8 @@ public class ChangeSetStateTest {
 
     final ChangeSet secondChangeSet = secondChangeSetState.getChangeSet();
 
-    assertThat(numChildren1 + numChildren3).isEqualTo(secondChangeSet.getChangeCount());
+    // The moves of leaf1's items, then a single range removal of leaf3.
+    assertThat(numChildren1 + 1).isEqualTo(secondChangeSet.getChangeCount());
     assertThat(totalNumChildren - numChildren3).isEqualTo(secondChangeSet.getCount());
     assertThat(1).isEqualTo(secondChangeSetState.getRemovedComponents().size());
     assertThat(leaf3).isEqualTo(secondChangeSetState.getRemovedComponents().get(0));
@@ -656,7 +663,8 @@ public class ChangeSetStateTest {
 
     final ChangeSet secondChangeSet = secondChangeSetState.getChangeSet();
 
-    assertThat(numChildren1 + numChildren3).isEqualTo(secondChangeSet.getChangeCount());
+    // The moves of leaf1's items, then a single range removal of leaf3.
+    assertThat(numChildren1 + 1).isEqualTo(secondChangeSet.getChangeCount());
     assertThat(totalNumChildren).isEqualTo(secondChangeSet.getCount());
 
     int changeIndex = 0;
@@ -711,8 +719,7 @@ public class ChangeSetStateTest {
 
     final ChangeSet secondChangeSet = secondChangeSetState.getChangeSet();
 
-    assertThat(numChildren1 + numChildren3 + numChildren4)
-        .isEqualTo(secondChangeSet.getChangeCount());
+    assertThat(numChildren1 + 1 + numChildren4).isEqualTo(secondChangeSet.getChangeCount());
     assertThat(numChildren1 + numChildren2 + numChildren4).isEqualTo(secondChangeSet.getCount());
 
     int changeIndex = 0;
@@ -727,6 +734,67 @@ public class ChangeSetStateTest {
     assertThat(leaf3).isEqualTo(secondChangeSetState.getRemovedComponents().get(0));
   }
 
+  @Test
+  public void testParallelSiblingsMoveRemoveAndInsert() {
+    SectionsConfiguration.parallelSiblingSections = true;
+    try {
+      final Section leaf1 = createChangeSetComponent("leaf1", 3);
+      final Section leaf2 = createChangeSetComponent("leaf2", 2);
+      final Section leaf3 = createChangeSetComponent("leaf3", 2);
+      final Section leaf4 = createChangeSetComponent("leaf4", 2);
+
+      final Section root =
+          TestSectionCreator.createSectionComponent("node1", true, leaf1, leaf2, leaf3);
+      TestSectionCreator.createTree(root, mSectionContext);
+
+      final ChangeSet firstChangeSet =
+          ChangeSetState.generateChangeSet(
+                  mSectionContext,
+                  null,
+                  root,
+                  mSectionsDebugLogger,
+                  mSectionTreeTag,
+                  mCurrentPrefix,
+                  mNextPrefix)
+              .getChangeSet();
+
+      assertThat(firstChangeSet.getChangeCount()).isEqualTo(7);
+      for (int i = 0; i < 7; i++) {
+        assertThat(firstChangeSet.getChangeAt(i).getIndex()).isEqualTo(i);
+      }
+
+      final Section newRoot =
+          TestSectionCreator.createSectionComponent("node1", true, leaf2, leaf1, leaf4);
+      TestSectionCreator.createTree(newRoot, mSectionContext);
+
+      final ChangeSetState secondChangeSetState =
+          ChangeSetState.generateChangeSet(
+              mSectionContext,
+              root,
+              newRoot,
+              mSectionsDebugLogger,
+              mSectionTreeTag,
+              mCurrentPrefix,
+              mNextPrefix);
+      final ChangeSet secondChangeSet = secondChangeSetState.getChangeSet();
+
+      // Three moves for leaf1, two inserts after it for leaf4, then a range removal for leaf3.
+      assertThat(secondChangeSet.getChangeCount()).isEqualTo(6);
+      for (int i = 0; i < 3; i++) {
+        assertThat(secondChangeSet.getChangeAt(i).getType()).isEqualTo(MOVE);
+      }
+      assertThat(secondChangeSet.getChangeAt(3).getIndex()).isEqualTo(5);
+      assertThat(secondChangeSet.getChangeAt(4).getIndex()).isEqualTo(6);
+      assertThat(secondChangeSet.getChangeAt(5).getType()).isEqualTo(DELETE_RANGE);
+      assertThat(secondChangeSet.getChangeAt(5).getIndex()).isEqualTo(7);
+      assertThat(secondChangeSet.getChangeAt(5).getCount()).isEqualTo(2);
+      assertThat(secondChangeSet.getCount()).isEqualTo(7);
+      assertThat(secondChangeSetState.getRemovedComponents()).containsExactly(leaf3);
+    } finally {
+      SectionsConfiguration.parallelSiblingSections = false;
+    }
+  }
+
   private static Section createChangeSetComponent(String key, int numChildren) {
     Change[] changes = new Change[numChildren];
     for (int i = 0; i < numChildren; i++) {
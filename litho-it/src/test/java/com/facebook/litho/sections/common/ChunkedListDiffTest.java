@@ -0,0 +1,246 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.sections.common;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkedListDiffTest {
+
+  private ExecutorService mExecutor;
+
+  @Before
+  public void setup() {
+    mExecutor = Executors.newFixedThreadPool(2);
+    ChunkedListDiff.setExecutor(mExecutor);
+  }
+
+  @After
+  public void tearDown() {
+    ChunkedListDiff.setExecutor(null);
+    mExecutor.shutdown();
+  }
+
+  @Test
+  public void testSplitsAtSharedInstances() {
+    final List<String> previous = items("a", "b", "c", "d", "e", "f");
+    final List<String> next =
+        Arrays.asList(
+            previous.get(0), "x", previous.get(2), previous.get(3), "y", previous.get(5));
+
+    final List<ChunkedListDiff.Chunk> chunks =
+        ChunkedListDiff.split(previous, next, callback(previous, next), true, 2);
+
+    assertThat(chunks).hasSize(2);
+    assertChunk(chunks.get(0), 0, 2, 0, 2);
+    assertChunk(chunks.get(1), 3, 2, 3, 2);
+  }
+
+  @Test
+  public void testEqualItemsAndDuplicatedInstancesAreNotAnchors() {
+    final List<String> previous = items("a", "b", "c");
+    final String b = previous.get(1);
+    final List<String> duplicates = Arrays.asList(b, b, "c");
+    final List<String> next = Arrays.asList(new String("a"), b, new String("c"));
+
+    assertThat(ChunkedListDiff.split(duplicates, next, callback(duplicates, next), true, 1))
+        .hasSize(1);
+    assertThat(ChunkedListDiff.split(previous, next, callback(previous, next), true, 1))
+        .hasSize(2);
+  }
+
+  @Test
+  public void testListsWithoutAnchorsAreNotDiffed() {
+    final List<String> previous = items("a", "b");
+    final List<String> next = items("a", "b");
+    final RecordingListUpdateCallback updates = new RecordingListUpdateCallback(previous);
+
+    assertThat(
+            ChunkedListDiff.dispatchDiff(
+                previous, next, callback(previous, next), true, 1, updates, null))
+        .isFalse();
+    assertThat(updates.mOperations).isEmpty();
+  }
+
+  @Test
+  public void testChunkTimesAreReportedInOrder() {
+    final List<String> previous = items("a", "b", "c", "d", "e");
+    final List<String> next =
+        Arrays.asList("x", previous.get(1), "y", previous.get(3), "z");
+    final List<Double> chunkTimesMs = new ArrayList<>();
+    final RecordingListUpdateCallback updates = new RecordingListUpdateCallback(previous);
+
+    assertThat(
+            ChunkedListDiff.dispatchDiff(
+                previous, next, callback(previous, next), true, 1, updates, chunkTimesMs))
+        .isTrue();
+    assertThat(chunkTimesMs).hasSize(3);
+    assertThat(updates.mList).containsExactly(null, previous.get(1), null, previous.get(3), null);
+  }
+
+  @Test
+  public void testRandomEdits() {
+    final Random random = new Random(42);
+    for (int round = 0; round < 500; round++) {
+      final List<String> previous = new ArrayList<>();
+      for (int i = 0, size = random.nextInt(100); i < size; i++) {
+        previous.add("item" + i);
+      }
+
+      final List<String> next = new ArrayList<>(previous);
+      for (int i = 0, edits = random.nextInt(20); i < edits && !next.isEmpty(); i++) {
+        final int position = random.nextInt(next.size());
+        switch (random.nextInt(4)) {
+          case 0:
+            next.remove(position);
+            break;
+          case 1:
+            next.add(position, "new" + round + "-" + i);
+            break;
+          case 2:
+            // The same item, with a different content.
+            next.set(position, new String(next.get(position)));
+            break;
+          default:
+            next.add(random.nextInt(next.size()), next.remove(position));
+            break;
+        }
+      }
+
+      final RecordingListUpdateCallback updates = new RecordingListUpdateCallback(previous);
+      final boolean detectMoves = random.nextBoolean();
+      if (!ChunkedListDiff.dispatchDiff(
+          previous,
+          next,
+          callback(previous, next),
+          detectMoves,
+          1 + random.nextInt(10),
+          updates,
+          null)) {
+        DiffUtil.calculateDiff(callback(previous, next), detectMoves).dispatchUpdatesTo(updates);
+      }
+
+      assertThat(updates.mList).hasSize(next.size());
+      for (int i = 0; i < next.size(); i++) {
+        if (updates.mList.get(i) != null) {
+          assertThat(updates.mList.get(i)).isSameAs(next.get(i));
+        }
+      }
+    }
+  }
+
+  private static void assertChunk(
+      ChunkedListDiff.Chunk chunk,
+      int previousStart,
+      int previousSize,
+      int nextStart,
+      int nextSize) {
+    assertThat(chunk.mPreviousStart).isEqualTo(previousStart);
+    assertThat(chunk.mPreviousSize).isEqualTo(previousSize);
+    assertThat(chunk.mNextStart).isEqualTo(nextStart);
+    assertThat(chunk.mNextSize).isEqualTo(nextSize);
+  }
+
+  /** @return new instances of the given strings, so that they're only the same as themselves. */
+  private static List<String> items(String... values) {
+    final List<String> items = new ArrayList<>();
+    for (String value : values) {
+      items.add(new String(value));
+    }
+    return items;
+  }
+
+  /**
+   * Items are the same if they're equal, and have the same content if they're the same instance.
+   */
+  private static DiffUtil.Callback callback(final List<String> previous, final List<String> next) {
+    return new DiffUtil.Callback() {
+      @Override
+      public int getOldListSize() {
+        return previous.size();
+      }
+
+      @Override
+      public int getNewListSize() {
+        return next.size();
+      }
+
+      @Override
+      public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return previous.get(oldItemPosition).equals(next.get(newItemPosition));
+      }
+
+      @Override
+      public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return previous.get(oldItemPosition) == next.get(newItemPosition);
+      }
+    };
+  }
+
+  /**
+   * Applies the updates to a copy of the previous list, where inserted and changed items are null.
+   */
+  private static class RecordingListUpdateCallback implements ListUpdateCallback {
+    private final List<String> mList;
+    private final List<String> mOperations = new ArrayList<>();
+
+    RecordingListUpdateCallback(List<String> previous) {
+      mList = new ArrayList<>(previous);
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+      mOperations.add("insert " + position + " " + count);
+      for (int i = 0; i < count; i++) {
+        mList.add(position, null);
+      }
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+      mOperations.add("remove " + position + " " + count);
+      for (int i = 0; i < count; i++) {
+        mList.remove(position);
+      }
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+      mOperations.add("move " + fromPosition + " " + toPosition);
+      mList.add(toPosition, mList.remove(fromPosition));
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+      mOperations.add("change " + position + " " + count);
+      for (int i = 0; i < count; i++) {
+        mList.set(position + i, null);
+      }
+    }
+  }
+}
@@ -102,6 +102,28 @@ public class DataDiffSectionSpecTest {
     assertRangeOperation(executedOperations.get(0), TestTarget.INSERT_RANGE, 100, 100);
   }
 
+  @Test
+  public void testAppendPageToSameInstances() {
+    final ArrayList<String> data = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      data.add("" + i);
+    }
+
+    mSectionTree.setRoot(TestGroupSection.create(mSectionContext).data(data).build());
+    mTestTarget.clear();
+
+    final ArrayList<String> nextData = new ArrayList<>(data);
+    for (int i = 100; i < 120; i++) {
+      nextData.add("" + i);
+    }
+
+    mSectionTree.setRoot(TestGroupSection.create(mSectionContext).data(nextData).build());
+    final List<Operation> executedOperations = mTestTarget.getOperations();
+
+    assertThat(executedOperations.size()).isEqualTo(1);
+    assertRangeOperation(executedOperations.get(0), TestTarget.INSERT_RANGE, 100, 20);
+  }
+
   @Test
   public void testInsertData() {
     ArrayList<String> data = new ArrayList<>();
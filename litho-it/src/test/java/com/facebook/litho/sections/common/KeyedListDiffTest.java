@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.sections.common;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class KeyedListDiffTest {
+
+  @Test
+  public void testMoveToEndIsSingleMove() {
+    final RecordingListUpdateCallback updates =
+        diff(Arrays.asList("a", "b", "c", "d"), Arrays.asList("b", "c", "d", "a"), true);
+
+    assertThat(updates.mOperations).containsExactly("move 0 3");
+    assertThat(updates.mList).containsExactly("b", "c", "d", "a");
+  }
+
+  @Test
+  public void testRemovalsAndInsertionsAreRanges() {
+    final RecordingListUpdateCallback updates =
+        diff(
+            Arrays.asList("a", "b", "c", "d", "e"),
+            Arrays.asList("a", "x", "y", "d", "e", "z"),
+            true);
+
+    assertThat(updates.mOperations).containsExactly("remove 1 2", "insert 1 2", "insert 5 1");
+  }
+
+  @Test
+  public void testChangedItemsAreDispatchedInTheirFinalPositions() {
+    final List<String> next = Arrays.asList("c", "a", "b");
+    final RecordingListUpdateCallback updates =
+        diff(Arrays.asList("a", "b", "c"), next, true, new HashSet<>(Arrays.asList("a", "b")));
+
+    assertThat(updates.mOperations).containsExactly("move 2 0", "change 1 2");
+  }
+
+  @Test
+  public void testWithoutDetectMovesItemsAreRemovedAndInserted() {
+    final RecordingListUpdateCallback updates =
+        diff(Arrays.asList("a", "b", "c"), Arrays.asList("c", "a", "b"), false);
+
+    assertThat(updates.mOperations).containsExactly("remove 2 1", "insert 0 1");
+  }
+
+  @Test
+  public void testDuplicateOrNullKeysAreNotDiffed() {
+    final RecordingListUpdateCallback updates = new RecordingListUpdateCallback(null);
+
+    assertThat(
+            KeyedListDiff.dispatchDiff(
+                new Object[] {"a", "a"}, new Object[] {"a"}, null, true, updates))
+        .isFalse();
+    assertThat(
+            KeyedListDiff.dispatchDiff(
+                new Object[] {"a"}, new Object[] {"a", "a"}, null, true, updates))
+        .isFalse();
+    assertThat(
+            KeyedListDiff.dispatchDiff(
+                new Object[] {"a"}, new Object[] {null}, null, true, updates))
+        .isFalse();
+    assertThat(updates.mOperations).isEmpty();
+  }
+
+  @Test
+  public void testShuffledLists() {
+    final Random random = new Random(42);
+    for (int round = 0; round < 500; round++) {
+      final List<String> previous = new ArrayList<>();
+      for (int i = 0, size = random.nextInt(50); i < size; i++) {
+        previous.add("item" + i);
+      }
+
+      final List<String> next = new ArrayList<>(previous);
+      Collections.shuffle(next, random);
+      for (int i = 0, removals = random.nextInt(next.size() + 1) / 2; i < removals; i++) {
+        next.remove(random.nextInt(next.size()));
+      }
+      for (int i = 0, insertions = random.nextInt(10); i < insertions; i++) {
+        next.add(random.nextInt(next.size() + 1), "new" + i);
+      }
+
+      final RecordingListUpdateCallback updates = diff(previous, next, random.nextBoolean());
+
+      for (int i = 0; i < next.size(); i++) {
+        if (previous.contains(next.get(i)) && updates.mList.get(i) != null) {
+          assertThat(updates.mList.get(i)).isEqualTo(next.get(i));
+        }
+      }
+      assertThat(updates.mList).hasSize(next.size());
+    }
+  }
+
+  private static RecordingListUpdateCallback diff(
+      List<String> previous, List<String> next, boolean detectMoves) {
+    return diff(previous, next, detectMoves, Collections.<String>emptySet());
+  }
+
+  private static RecordingListUpdateCallback diff(
+      final List<String> previous,
+      final List<String> next,
+      boolean detectMoves,
+      final Set<String> changedItems) {
+    final RecordingListUpdateCallback updates = new RecordingListUpdateCallback(previous);
+    final DiffUtil.Callback callback =
+        new DiffUtil.Callback() {
+          @Override
+          public int getOldListSize() {
+            return previous.size();
+          }
+
+          @Override
+          public int getNewListSize() {
+            return next.size();
+          }
+
+          @Override
+          public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return previous.get(oldItemPosition).equals(next.get(newItemPosition));
+          }
+
+          @Override
+          public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return !changedItems.contains(next.get(newItemPosition));
+          }
+        };
+
+    assertThat(
+            KeyedListDiff.dispatchDiff(
+                previous.toArray(), next.toArray(), callback, detectMoves, updates))
+        .isTrue();
+
+    return updates;
+  }
+
+  /** Applies the updates to a copy of the previous list, where inserted items are null. */
+  private static class RecordingListUpdateCallback implements ListUpdateCallback {
+    private final List<String> mList;
+    private final List<String> mOperations = new ArrayList<>();
+
+    RecordingListUpdateCallback(List<String> previous) {
+      mList = previous == null ? new ArrayList<String>() : new ArrayList<>(previous);
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+      mOperations.add("insert " + position + " " + count);
+      for (int i = 0; i < count; i++) {
+        mList.add(position, null);
+      }
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+      mOperations.add("remove " + position + " " + count);
+      for (int i = 0; i < count; i++) {
+        mList.remove(position);
+      }
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+      mOperations.add("move " + fromPosition + " " + toPosition);
+      mList.add(toPosition, mList.remove(fromPosition));
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+      mOperations.add("change " + position + " " + count);
+    }
+  }
+}
@@ -53,6 +53,7 @@ import com.facebook.litho.Size;
 import com.facebook.litho.SizeSpec;
 import com.facebook.litho.config.ComponentsConfiguration;
 import com.facebook.litho.testing.TestDrawableComponent;
+import com.facebook.litho.testing.TestViewComponent;
 import com.facebook.litho.testing.testrunner.ComponentsTestRunner;
 import com.facebook.litho.testing.util.InlineLayoutSpec;
 import com.facebook.litho.viewcompat.SimpleViewBinder;
@@ -3248,6 +3249,86 @@ public class RecyclerBinderTest {
     recyclerBinder.notifyChangeSetComplete();
   }
 
+  @Test
+  public void testRangePreallocationIsPostedToHandler() {
+    final TestLayoutHandler handler = new TestLayoutHandler();
+    final RecyclerBinder recyclerBinder =
+        mRecyclerBinderBuilder.rangePreallocationHandler(handler).build(mComponentContext);
+
+    prepareLoadedBinder(recyclerBinder, 100);
+
+    assertThat(handler.mPosted).hasSize(1);
+  }
+
+  @Test
+  public void testNewRangeReplacesPendingRangePreallocation() {
+    final TestLayoutHandler handler = new TestLayoutHandler();
+    final RecyclerBinder recyclerBinder =
+        mRecyclerBinderBuilder.rangePreallocationHandler(handler).build(mComponentContext);
+    prepareLoadedBinder(recyclerBinder, 100);
+    final Runnable previousRangeRunnable = handler.mPosted.get(0);
+
+    recyclerBinder.onNewVisibleRange(40, 42);
+
+    assertThat(handler.mPosted).hasSize(1);
+    assertThat(handler.mPosted.get(0)).isNotSameAs(previousRangeRunnable);
+    assertThat(handler.mRemoved).contains(previousRangeRunnable);
+  }
+
+  @Test
+  public void testRangePreallocationRepostsItselfWhenTimeBudgetRunsOut() {
+    final TestLayoutHandler handler = new TestLayoutHandler();
+    final RecyclerBinder recyclerBinder =
+        mRecyclerBinderBuilder
+            .rangePreallocationHandler(handler)
+            .rangePreallocationTimeBudgetMs(0)
+            .build(mComponentContext);
+    final List<ComponentRenderInfo> components = prepareLoadedBinder(recyclerBinder, 100);
+    setLaidOutComponentTrees(components);
+    final Runnable rangeRunnable = handler.mPosted.get(0);
+
+    handler.runNext();
+
+    assertThat(handler.mPosted).containsExactly(rangeRunnable);
+  }
+
+  @Test
+  public void testRangePreallocationStopsOncePoolsAreToppedUp() {
+    final TestLayoutHandler handler = new TestLayoutHandler();
+    final RecyclerBinder recyclerBinder =
+        mRecyclerBinderBuilder
+            .rangePreallocationHandler(handler)
+            .rangePreallocationTimeBudgetMs(1000)
+            .build(mComponentContext);
+    final List<ComponentRenderInfo> components = prepareLoadedBinder(recyclerBinder, 100);
+    setLaidOutComponentTrees(components);
+
+    handler.runNext();
+
+    assertThat(handler.mPosted).isEmpty();
+  }
+
+  @Test
+  public void testRangePreallocationIsDroppedWhenRangeChanges() {
+    final TestLayoutHandler handler = new TestLayoutHandler();
+    final RecyclerBinder recyclerBinder =
+        mRecyclerBinderBuilder
+            .rangePreallocationHandler(handler)
+            .rangePreallocationTimeBudgetMs(0)
+            .build(mComponentContext);
+    final List<ComponentRenderInfo> components = prepareLoadedBinder(recyclerBinder, 100);
+    final Runnable previousRangeRunnable = handler.mPosted.get(0);
+
+    recyclerBinder.onNewVisibleRange(40, 42);
+    setLaidOutComponentTrees(components);
+    final Runnable rangeRunnable = handler.mPosted.get(0);
+
+    // The previous range was already being preallocated when the range changed.
+    previousRangeRunnable.run();
+
+    assertThat(handler.mPosted).containsExactly(rangeRunnable);
+  }
+
   private List<ComponentRenderInfo> prepareLoadedBinder() {
     return prepareLoadedBinder(mRecyclerBinder, 100);
   }
@@ -3273,6 +3354,19 @@ public class RecyclerBinderTest {
     return components;
   }
 
+  /** Gives every item a tree that has a layout with mount content to preallocate. */
+  private void setLaidOutComponentTrees(List<ComponentRenderInfo> components) {
+    final ComponentTree componentTree =
+        ComponentTree.create(mComponentContext, TestViewComponent.create(mComponentContext).build())
+            .build();
+    componentTree.setSizeSpec(
+        makeSizeSpec(100, EXACTLY), makeSizeSpec(100, EXACTLY), new Size());
+
+    for (int i = 0; i < components.size(); i++) {
+      mHoldersForComponents.get(components.get(i).getComponent()).mComponentTree = componentTree;
+    }
+  }
+
   private void makeIndexSticky(List<ComponentRenderInfo> components, int i) {
     components.set(
         i,
@@ -3304,6 +3398,34 @@ public class RecyclerBinderTest {
     assertThat(holder.getRenderInfo().getComponent()).isSameAs(component);
   }
 
+  /** Keeps the posted runnables until the test runs them. */
+  private static class TestLayoutHandler implements LayoutHandler {
+
+    private final List<Runnable> mPosted = new ArrayList<>();
+    private final List<Runnable> mRemoved = new ArrayList<>();
+
+    @Override
+    public boolean post(Runnable runnable) {
+      mPosted.add(runnable);
+      return true;
+    }
+
+    @Override
+    public void removeCallbacks(Runnable runnable) {
+      mPosted.remove(runnable);
+      mRemoved.add(runnable);
+    }
+
+    @Override
+    public void removeCallbacksAndMessages(Object token) {
+      mPosted.clear();
+    }
+
+    void runNext() {
+      mPosted.remove(0).run();
+    }
+  }
+
   private static class TestComponentTreeHolder extends ComponentTreeHolder {
 
     private boolean mTreeValid;
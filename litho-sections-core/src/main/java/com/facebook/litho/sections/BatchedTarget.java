@@ -125,8 +125,17 @@ class BatchedTarget implements SectionTree.Target {
 
   @Override
   public void deleteRange(int index, int count) {
+    if (mLastEventType == Change.DELETE
+        && mLastEventPosition >= index
+        && mLastEventPosition <= index + count) {
+      mLastEventCount += count;
+      mLastEventPosition = index;
+      return;
+    }
     dispatchLastEvent();
-    mTarget.deleteRange(index, count);
+    mLastEventPosition = index;
+    mLastEventCount = count;
+    mLastEventType = Change.DELETE;
   }
 
   @Override
@@ -121,8 +121,10 @@ public class ChangeSetState {
       removedComponents.add(currentRoot);
       final ChangeSet changeSet = ChangeSet.acquireChangeSet(currentRoot.getCount(), newRoot);
 
-      for (int i = 0; i < currentItemsCount; i++) {
+      if (currentItemsCount == 1) {
         changeSet.addChange(Change.remove(0));
+      } else if (currentItemsCount > 1) {
+        changeSet.addChange(Change.removeRange(0, currentItemsCount));
       }
 
       return changeSet;
@@ -290,6 +292,21 @@ public class ChangeSetState {
       }
     }
 
+    final ChangeSet[] newChildrenChangeSets =
+        SiblingSectionsExecutor.shouldRunInParallel(newChildrenList.size())
+            ? generateChildrenChangeSetsInParallel(
+                sectionContext,
+                currentChildren,
+                currentChildrenList,
+                newChildrenList,
+                removedComponents,
+                sectionsDebugLogger,
+                sectionTreeTag,
+                currentPrefix,
+                newPrefix,
+                thread)
+            : null;
+
     int activeChildIndex = 0;
     for (int i = 0; i < newChildrenList.size(); i++) {
       final Section newChild = newChildrenList.get(i);
@@ -300,16 +317,18 @@ public class ChangeSetState {
       if (currentChildIndex < 0) {
         final ChangeSet currentChangeSet = changeSets.get(activeChildIndex);
         final ChangeSet changeSet =
-            generateChangeSetRecursive(
-                sectionContext,
-                null,
-                newChild,
-                removedComponents,
-                sectionsDebugLogger,
-                sectionTreeTag,
-                currentPrefix,
-                newPrefix,
-                thread);
+            newChildrenChangeSets != null
+                ? newChildrenChangeSets[i]
+                : generateChangeSetRecursive(
+                    sectionContext,
+                    null,
+                    newChild,
+                    removedComponents,
+                    sectionsDebugLogger,
+                    sectionTreeTag,
+                    currentPrefix,
+                    newPrefix,
+                    thread);
 
         changeSets.put(activeChildIndex, ChangeSet.merge(currentChangeSet, changeSet));
 
@@ -323,16 +342,18 @@ public class ChangeSetState {
 
         final ChangeSet currentChangeSet = changeSets.get(activeChildIndex);
         final ChangeSet changeSet =
-            generateChangeSetRecursive(
-                sectionContext,
-                currentChildrenList.get(currentChildIndex),
-                newChild,
-                removedComponents,
-                sectionsDebugLogger,
-                sectionTreeTag,
-                currentPrefix,
-                newPrefix,
-                thread);
+            newChildrenChangeSets != null
+                ? newChildrenChangeSets[i]
+                : generateChangeSetRecursive(
+                    sectionContext,
+                    currentChildrenList.get(currentChildIndex),
+                    newChild,
+                    removedComponents,
+                    sectionsDebugLogger,
+                    sectionTreeTag,
+                    currentPrefix,
+                    newPrefix,
+                    thread);
 
         changeSets.put(activeChildIndex, ChangeSet.merge(currentChangeSet,changeSet));
 
@@ -350,6 +371,105 @@ public class ChangeSetState {
     return changeSets;
   }
 
+  /**
+   * Generates the {@link ChangeSet}s of all the children of newRoot in parallel, and adds the
+   * sections they removed to removedComponents in the order they'd have been added one child after
+   * the other.
+   *
+   * @return the {@link ChangeSet} of each child of newRoot, in order.
+   */
+  private static ChangeSet[] generateChildrenChangeSetsInParallel(
+      SectionContext sectionContext,
+      Map<String, Pair<Section, Integer>> currentChildren,
+      List<Section> currentChildrenList,
+      List<Section> newChildrenList,
+      List<Section> removedComponents,
+      SectionsDebugLogger sectionsDebugLogger,
+      String sectionTreeTag,
+      String currentPrefix,
+      String newPrefix,
+      String thread) {
+    final int size = newChildrenList.size();
+    final List<GenerateChangeSetTask> tasks = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      final Section newChild = newChildrenList.get(i);
+      final Pair<Section, Integer> valueAndPosition = currentChildren.get(newChild.getGlobalKey());
+      final Section currentChild =
+          valueAndPosition != null ? currentChildrenList.get(valueAndPosition.second) : null;
+
+      tasks.add(
+          new GenerateChangeSetTask(
+              sectionContext,
+              currentChild,
+              newChild,
+              sectionsDebugLogger,
+              sectionTreeTag,
+              currentPrefix,
+              newPrefix,
+              thread));
+    }
+
+    SiblingSectionsExecutor.runAll(tasks);
+
+    final ChangeSet[] changeSets = new ChangeSet[size];
+    for (int i = 0; i < size; i++) {
+      final GenerateChangeSetTask task = tasks.get(i);
+      changeSets[i] = task.mChangeSet;
+      removedComponents.addAll(task.mRemovedComponents);
+    }
+
+    return changeSets;
+  }
+
+  /** Generates the {@link ChangeSet} of a subtree, on any thread. */
+  private static class GenerateChangeSetTask implements Runnable {
+
+    private final SectionContext mSectionContext;
+    private final @Nullable Section mCurrentRoot;
+    private final Section mNewRoot;
+    private final SectionsDebugLogger mSectionsDebugLogger;
+    private final String mSectionTreeTag;
+    private final String mCurrentPrefix;
+    private final String mNewPrefix;
+    private final String mThread;
+    private final List<Section> mRemovedComponents = new ArrayList<>();
+    private ChangeSet mChangeSet;
+
+    GenerateChangeSetTask(
+        SectionContext sectionContext,
+        @Nullable Section currentRoot,
+        Section newRoot,
+        SectionsDebugLogger sectionsDebugLogger,
+        String sectionTreeTag,
+        String currentPrefix,
+        String newPrefix,
+        String thread) {
+      mSectionContext = sectionContext;
+      mCurrentRoot = currentRoot;
+      mNewRoot = newRoot;
+      mSectionsDebugLogger = sectionsDebugLogger;
+      mSectionTreeTag = sectionTreeTag;
+      mCurrentPrefix = currentPrefix;
+      mNewPrefix = newPrefix;
+      mThread = thread;
+    }
+
+    @Override
+    public void run() {
+      mChangeSet =
+          generateChangeSetRecursive(
+              mSectionContext,
+              mCurrentRoot,
+              mNewRoot,
+              mRemovedComponents,
+              mSectionsDebugLogger,
+              mSectionTreeTag,
+              mCurrentPrefix,
+              mNewPrefix,
+              mThread);
+    }
+  }
+
   private static SparseArray<ChangeSet> acquireChangeSetSparseArray() {
     //TODO use pools instead t11953296
     return new SparseArray<>();
@@ -69,6 +69,20 @@ public class SectionContext extends ComponentContext {
     return sectionContext;
   }
 
+  /**
+   * @return a copy of the given context, with the same tree props, to create a subtree on another
+   *     thread while the given context is used to create its siblings.
+   */
+  static SectionContext forSubtree(SectionContext context) {
+    SectionContext sectionContext = new SectionContext(context);
+    sectionContext.mSectionTree = context.mSectionTree;
+    sectionContext.mTreeLoadingEventHandler = context.mTreeLoadingEventHandler;
+    sectionContext.mScope = context.mScope;
+    sectionContext.setTreeProps(context.getTreeProps());
+
+    return sectionContext;
+  }
+
   /**
    * Notify the {@link SectionTree} that it needs to synchronously perform a state update.
    *
@@ -1239,6 +1239,10 @@ public class SectionTree {
       }
 
       final List<Section> nextRootChildren = nextRoot.getChildren();
+      final List<CreateSubtreeTask> createSubtreeTasks =
+          SiblingSectionsExecutor.shouldRunInParallel(nextRootChildren.size())
+              ? new ArrayList<CreateSubtreeTask>(nextRootChildren.size())
+              : null;
 
       for (int i = 0, size = nextRootChildren.size(); i < size; i++) {
         final Section child = nextRootChildren.get(i);
@@ -1261,8 +1265,28 @@ public class SectionTree {
             currentComponentChildren.get(child.getGlobalKey());
         final Section currentChild = valueAndIndex != null ? valueAndIndex.first : null;
 
-        createNewTreeAndApplyStateUpdates(
-            context, currentChild, child, pendingStateUpdates, sectionsDebugLogger, sectionTreeTag);
+        if (createSubtreeTasks != null) {
+          createSubtreeTasks.add(
+              new CreateSubtreeTask(
+                  SectionContext.forSubtree(context),
+                  currentChild,
+                  child,
+                  pendingStateUpdates,
+                  sectionsDebugLogger,
+                  sectionTreeTag));
+        } else {
+          createNewTreeAndApplyStateUpdates(
+              context,
+              currentChild,
+              child,
+              pendingStateUpdates,
+              sectionsDebugLogger,
+              sectionTreeTag);
+        }
+      }
+
+      if (createSubtreeTasks != null) {
+        SiblingSectionsExecutor.runAll(createSubtreeTasks);
       }
 
       final TreeProps contextTreeProps = context.getTreeProps();
@@ -1275,6 +1299,43 @@ public class SectionTree {
     }
   }
 
+  /** Creates the subtree of a section, on any thread, with its own copy of the context. */
+  private static class CreateSubtreeTask implements Runnable {
+
+    private final SectionContext mContext;
+    private final @Nullable Section mCurrentRoot;
+    private final Section mNextRoot;
+    private final Map<String, List<StateUpdate>> mPendingStateUpdates;
+    private final SectionsDebugLogger mSectionsDebugLogger;
+    private final String mSectionTreeTag;
+
+    CreateSubtreeTask(
+        SectionContext context,
+        @Nullable Section currentRoot,
+        Section nextRoot,
+        Map<String, List<StateUpdate>> pendingStateUpdates,
+        SectionsDebugLogger sectionsDebugLogger,
+        String sectionTreeTag) {
+      mContext = context;
+      mCurrentRoot = currentRoot;
+      mNextRoot = nextRoot;
+      mPendingStateUpdates = pendingStateUpdates;
+      mSectionsDebugLogger = sectionsDebugLogger;
+      mSectionTreeTag = sectionTreeTag;
+    }
+
+    @Override
+    public void run() {
+      createNewTreeAndApplyStateUpdates(
+          mContext,
+          mCurrentRoot,
+          mNextRoot,
+          mPendingStateUpdates,
+          mSectionsDebugLogger,
+          mSectionTreeTag);
+    }
+  }
+
   private static synchronized Looper getDefaultChangeSetThreadLooper() {
     if (sDefaultChangeSetThreadLooper == null) {
       HandlerThread defaultThread =
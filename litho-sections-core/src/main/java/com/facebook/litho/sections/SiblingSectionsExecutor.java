@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.sections;
+
+import com.facebook.litho.ParallelTasks;
+import com.facebook.litho.sections.config.SectionsConfiguration;
+import java.util.List;
+
+/**
+ * Runs the work on sibling sections, e.g. creating their subtrees or generating their {@link
+ * ChangeSet}s, in parallel on the {@link ParallelTasks#getSharedExecutor() shared pool} when {@link
+ * SectionsConfiguration#parallelSiblingSections} is set.
+ *
+ * <p>The calling thread works on the first sibling itself. While it waits for the others, it also
+ * works on those that no thread of the pool started yet, so siblings forked from a thread of the
+ * pool never wait for a free thread.
+ */
+final class SiblingSectionsExecutor {
+
+  private SiblingSectionsExecutor() {}
+
+  /** @return whether the work on the given number of siblings should be run in parallel. */
+  static boolean shouldRunInParallel(int siblingCount) {
+    return SectionsConfiguration.parallelSiblingSections && siblingCount > 1;
+  }
+
+  /**
+   * Runs all the tasks and returns once they are done. If a task throws, the exception is rethrown
+   * on the calling thread.
+   */
+  static void runAll(List<? extends Runnable> tasks) {
+    ParallelTasks.runAll(ParallelTasks.getSharedExecutor(), tasks);
+  }
+}
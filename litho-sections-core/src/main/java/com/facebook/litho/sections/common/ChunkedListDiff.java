@@ -0,0 +1,276 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.sections.common;
+
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import com.facebook.litho.ParallelTasks;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Diffs two lists by splitting them into chunks that are diffed in parallel with {@link DiffUtil},
+ * and dispatches the updates of all the chunks, in order, to a single {@link ListUpdateCallback}.
+ *
+ * <p>The lists are split at anchors: instances that are in both lists and stay in the same order.
+ * An anchor is the same item with the same content so it never needs an update, and the items
+ * between two anchors of the previous list turn into the items between the same anchors of the
+ * next list. The only thing lost is that an item moving past an anchor is removed from its chunk
+ * and inserted in another one instead of being moved.
+ *
+ * <p>The chunks are dispatched from the last one to the first one, so that when the updates of a
+ * chunk are dispatched, the chunk is still at its position in the previous list.
+ */
+final class ChunkedListDiff {
+
+  private static final double NS_IN_MS = 1000000.0;
+
+  private static volatile @Nullable Executor sExecutor;
+
+  private ChunkedListDiff() {}
+
+  /**
+   * @param callback compares the items of the two lists, by position. It's called from several
+   *     threads at once.
+   * @param chunkSize the number of items of both lists after which a chunk ends at the next anchor
+   * @param chunkTimesMs if not null, receives the time it took to diff every chunk, in order
+   * @return false without dispatching anything if the lists can't be split in at least two chunks,
+   *     in which case they have to be diffed as a whole.
+   */
+  static boolean dispatchDiff(
+      @Nullable List<?> previousData,
+      @Nullable List<?> nextData,
+      DiffUtil.Callback callback,
+      boolean detectMoves,
+      int chunkSize,
+      ListUpdateCallback updateCallback,
+      @Nullable List<Double> chunkTimesMs) {
+    if (previousData == null || nextData == null) {
+      return false;
+    }
+
+    final List<Chunk> chunks = split(previousData, nextData, callback, detectMoves, chunkSize);
+    final int chunkCount = chunks.size();
+    if (chunkCount < 2) {
+      return false;
+    }
+
+    ParallelTasks.runAll(getExecutor(), chunks);
+
+    for (int i = chunkCount - 1; i >= 0; i--) {
+      final Chunk chunk = chunks.get(i);
+      chunk.mResult.dispatchUpdatesTo(
+          new OffsetListUpdateCallback(updateCallback, chunk.mPreviousStart));
+    }
+
+    if (chunkTimesMs != null) {
+      for (int i = 0; i < chunkCount; i++) {
+        chunkTimesMs.add(chunks.get(i).mTimeNs / NS_IN_MS);
+      }
+    }
+
+    return true;
+  }
+
+  /** @return a chunk size that splits the given number of items among all the processors. */
+  static int getChunkSize(int itemCount) {
+    return Math.max(1, itemCount / Runtime.getRuntime().availableProcessors());
+  }
+
+  @VisibleForTesting
+  static List<Chunk> split(
+      List<?> previousData,
+      List<?> nextData,
+      DiffUtil.Callback callback,
+      boolean detectMoves,
+      int chunkSize) {
+    final int previousSize = previousData.size();
+    final int nextSize = nextData.size();
+
+    // Instances used more than once in the previous list can't be anchors, they're mapped to -1.
+    final Map<Object, Integer> previousPositions = new IdentityHashMap<>(previousSize);
+    for (int i = 0; i < previousSize; i++) {
+      final Object item = previousData.get(i);
+      previousPositions.put(item, previousPositions.containsKey(item) ? -1 : i);
+    }
+
+    final int[] previousPositionOf = new int[nextSize];
+    final boolean[] isMatched = new boolean[previousSize];
+    for (int i = 0; i < nextSize; i++) {
+      final Integer previousPosition = previousPositions.get(nextData.get(i));
+      if (previousPosition == null || previousPosition < 0 || isMatched[previousPosition]) {
+        previousPositionOf[i] = -1;
+      } else {
+        previousPositionOf[i] = previousPosition;
+        isMatched[previousPosition] = true;
+      }
+    }
+
+    final int[] positions = new int[previousSize];
+    for (int i = 0; i < previousSize; i++) {
+      positions[i] = i;
+    }
+    final boolean[] isAnchor = KeyedListDiff.findItemsThatStayStill(previousPositionOf, positions);
+
+    final List<Chunk> chunks = new ArrayList<>();
+    int previousStart = 0;
+    int nextStart = 0;
+    for (int i = 0; i < nextSize; i++) {
+      if (!isAnchor[i]) {
+        continue;
+      }
+
+      final int previousPosition = previousPositionOf[i];
+      if (previousPosition - previousStart + i - nextStart >= Math.max(1, chunkSize)) {
+        chunks.add(
+            new Chunk(
+                callback,
+                detectMoves,
+                previousStart,
+                previousPosition - previousStart,
+                nextStart,
+                i - nextStart));
+        previousStart = previousPosition + 1;
+        nextStart = i + 1;
+      }
+    }
+
+    if (previousStart < previousSize || nextStart < nextSize) {
+      chunks.add(
+          new Chunk(
+              callback,
+              detectMoves,
+              previousStart,
+              previousSize - previousStart,
+              nextStart,
+              nextSize - nextStart));
+    }
+
+    return chunks;
+  }
+
+  private static Executor getExecutor() {
+    final Executor executor = sExecutor;
+    return executor != null ? executor : ParallelTasks.getSharedExecutor();
+  }
+
+  @VisibleForTesting
+  static void setExecutor(@Nullable Executor executor) {
+    sExecutor = executor;
+  }
+
+  /** The diff of a range of the previous list with a range of the next list. */
+  @VisibleForTesting
+  static class Chunk extends DiffUtil.Callback implements Runnable {
+
+    private final DiffUtil.Callback mCallback;
+    private final boolean mDetectMoves;
+    final int mPreviousStart;
+    final int mPreviousSize;
+    final int mNextStart;
+    final int mNextSize;
+    private DiffUtil.DiffResult mResult;
+    private long mTimeNs;
+
+    Chunk(
+        DiffUtil.Callback callback,
+        boolean detectMoves,
+        int previousStart,
+        int previousSize,
+        int nextStart,
+        int nextSize) {
+      mCallback = callback;
+      mDetectMoves = detectMoves;
+      mPreviousStart = previousStart;
+      mPreviousSize = previousSize;
+      mNextStart = nextStart;
+      mNextSize = nextSize;
+    }
+
+    @Override
+    public void run() {
+      final long startTime = System.nanoTime();
+      mResult = DiffUtil.calculateDiff(this, mDetectMoves);
+      mTimeNs = System.nanoTime() - startTime;
+    }
+
+    @Override
+    public int getOldListSize() {
+      return mPreviousSize;
+    }
+
+    @Override
+    public int getNewListSize() {
+      return mNextSize;
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+      return mCallback.areItemsTheSame(
+          mPreviousStart + oldItemPosition, mNextStart + newItemPosition);
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+      return mCallback.areContentsTheSame(
+          mPreviousStart + oldItemPosition, mNextStart + newItemPosition);
+    }
+
+    @Nullable
+    @Override
+    public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+      return mCallback.getChangePayload(
+          mPreviousStart + oldItemPosition, mNextStart + newItemPosition);
+    }
+  }
+
+  private static class OffsetListUpdateCallback implements ListUpdateCallback {
+
+    private final ListUpdateCallback mUpdateCallback;
+    private final int mOffset;
+
+    OffsetListUpdateCallback(ListUpdateCallback updateCallback, int offset) {
+      mUpdateCallback = updateCallback;
+      mOffset = offset;
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+      mUpdateCallback.onInserted(mOffset + position, count);
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+      mUpdateCallback.onRemoved(mOffset + position, count);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+      mUpdateCallback.onMoved(mOffset + fromPosition, mOffset + toPosition);
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+      mUpdateCallback.onChanged(mOffset + position, count, payload);
+    }
+  }
+}
@@ -17,6 +17,8 @@
 package com.facebook.litho.sections.common;
 
 import static com.facebook.litho.FrameworkLogEvents.EVENT_SECTIONS_DATA_DIFF_CALCULATE_DIFF;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_DIFF_CHUNK_COUNT;
+import static com.facebook.litho.FrameworkLogEvents.PARAM_DIFF_CHUNK_TIMES;
 import static com.facebook.litho.FrameworkLogEvents.PARAM_LOG_TAG;
 import static com.facebook.litho.widget.RecyclerBinderUpdateCallback.acquire;
 import static com.facebook.litho.widget.RecyclerBinderUpdateCallback.release;
@@ -61,6 +63,19 @@ import java.util.List;
  *   {@link OnCheckIsSameContentEvent} whenever during a diffing it wants to check whether two items
  *   that represent the same piece of data have exactly the same content.
  *
+ *   {@link GetUniqueIdentifierEvent} for every item of the lists being diffed, if a handler is set
+ *   for it. Items are then matched by these identifiers, which must be unique and stable, instead
+ *   of through {@link OnCheckIsSameItemEvent}, and the diff takes roughly linear time even when the
+ *   list is reshuffled. If an identifier is null or used twice, the lists are diffed as usual.
+ *
+ * <p> If {@link SectionsConfiguration#parallelDataDiffMinItemCount} is set, large lists that are
+ * not diffed by identifiers are split at the instances they share, and the chunks are diffed in
+ * parallel.
+ *
+ * <p> When the new data starts with the same instances as the previous data, e.g. when a page is
+ * appended to a feed, the new items are inserted without any diffing. Set {@code appendOnly} if
+ * the data only ever grows this way, to skip comparing the instances too.
+ *
  * <p> For example:
  * <pre>
  * {@code
@@ -98,6 +113,7 @@ import java.util.List;
 @DiffSectionSpec(events = {
     OnCheckIsSameContentEvent.class,
     OnCheckIsSameItemEvent.class,
+    GetUniqueIdentifierEvent.class,
     RenderEvent.class})
 public class DataDiffSectionSpec<T> {
 
@@ -111,7 +127,13 @@ public class DataDiffSectionSpec<T> {
       @Prop Diff<List<T>> data,
       @Prop(optional = true) @Nullable Diff<Boolean> detectMoves,
       @Prop(optional = true) Diff<Boolean> trimHeadAndTail,
-      @Prop(optional = true) Diff<Boolean> trimSameInstancesOnly) {
+      @Prop(optional = true) Diff<Boolean> trimSameInstancesOnly,
+      @Prop(optional = true) @Nullable Diff<Boolean> appendOnly) {
+
+    if (isAppend(data.getPrevious(), data.getNext(), appendOnly)) {
+      insertAppendedItems(c, changeSet, data.getPrevious(), data.getNext());
+      return;
+    }
 
     final boolean shouldTrim =
         trimHeadAndTail == null || trimHeadAndTail.getNext() == null
@@ -127,6 +149,14 @@ public class DataDiffSectionSpec<T> {
         Callback.acquire(
             c, data.getPrevious(), data.getNext(), shouldTrim, shouldTrimSameInstanceOnly);
 
+    final RecyclerBinderUpdateCallback<T> updatesCallback =
+        acquire(
+            data.getPrevious() != null ? data.getPrevious().size() : 0,
+            data.getNext(),
+            new ComponentRenderer(DataDiffSection.getRenderEventHandler(c)),
+            new DiffSectionOperationExecutor(changeSet),
+            callback.getTrimmedHeadItemsCount());
+
     final ComponentsLogger logger = c.getLogger();
     LogEvent logEvent = null;
     if (logger != null) {
@@ -134,28 +164,126 @@ public class DataDiffSectionSpec<T> {
       logEvent.addParam(PARAM_LOG_TAG, c.getLogTag());
     }
 
-    DiffUtil.DiffResult result =
-        DiffUtil.calculateDiff(callback, isDetectMovesEnabled(detectMoves));
+    final EventHandler<GetUniqueIdentifierEvent> getUniqueIdentifierEventHandler =
+        DataDiffSection.getGetUniqueIdentifierEventHandler(c);
+    // The keyed diff dispatches its updates as it goes.
+    final boolean isDiffedByKeys =
+        getUniqueIdentifierEventHandler != null
+            && KeyedListDiff.dispatchDiff(
+                getUniqueIdentifiers(getUniqueIdentifierEventHandler, callback.getPreviousData()),
+                getUniqueIdentifiers(getUniqueIdentifierEventHandler, callback.getNextData()),
+                callback,
+                isDetectMovesEnabled(detectMoves),
+                updatesCallback);
+
+    final List<T> previousData = callback.getPreviousData();
+    final List<T> nextData = callback.getNextData();
+    final int itemCount =
+        (previousData == null ? 0 : previousData.size()) + (nextData == null ? 0 : nextData.size());
+    final List<Double> chunkTimesMs = logger != null ? new ArrayList<Double>() : null;
+    // The chunked diff dispatches its updates as well, once all the chunks are diffed.
+    final boolean isDiffedInChunks =
+        !isDiffedByKeys
+            && SectionsConfiguration.parallelDataDiffMinItemCount > 0
+            && itemCount >= SectionsConfiguration.parallelDataDiffMinItemCount
+            && ChunkedListDiff.dispatchDiff(
+                previousData,
+                nextData,
+                callback,
+                isDetectMovesEnabled(detectMoves),
+                ChunkedListDiff.getChunkSize(itemCount),
+                updatesCallback,
+                chunkTimesMs);
+
+    final DiffUtil.DiffResult result =
+        isDiffedByKeys || isDiffedInChunks
+            ? null
+            : DiffUtil.calculateDiff(callback, isDetectMovesEnabled(detectMoves));
 
     if (logger != null) {
+      if (isDiffedInChunks) {
+        logEvent.addParam(PARAM_DIFF_CHUNK_COUNT, chunkTimesMs.size());
+        logEvent.addJsonParam(PARAM_DIFF_CHUNK_TIMES, chunkTimesMs);
+      }
       logger.log(logEvent);
     }
 
-    final RecyclerBinderUpdateCallback<T> updatesCallback =
-        acquire(
-            data.getPrevious() != null ? data.getPrevious().size() : 0,
-            data.getNext(),
-            new ComponentRenderer(DataDiffSection.getRenderEventHandler(c)),
-            new DiffSectionOperationExecutor(changeSet),
-            callback.getTrimmedHeadItemsCount());
-
-    result.dispatchUpdatesTo(updatesCallback);
+    if (result != null) {
+      result.dispatchUpdatesTo(updatesCallback);
+    }
     updatesCallback.applyChangeset();
 
     Callback.release(callback);
     release(updatesCallback);
   }
 
+  /**
+   * @return whether the next data is the previous data with items appended. Unless appendOnly is
+   *     set, this checks that the next data starts with the same instances as the previous data,
+   *     which unlike diffing doesn't dispatch any event.
+   */
+  private static <T> boolean isAppend(
+      @Nullable List<T> previousData,
+      @Nullable List<T> nextData,
+      @Nullable Diff<Boolean> appendOnly) {
+    final int previousSize = previousData == null ? 0 : previousData.size();
+    if (nextData == null || nextData.size() < previousSize) {
+      return false;
+    }
+
+    if (appendOnly != null && appendOnly.getNext() != null && appendOnly.getNext()) {
+      return true;
+    }
+
+    for (int i = 0; i < previousSize; i++) {
+      if (previousData.get(i) != nextData.get(i)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /** Inserts the items after the end of the previous data, rendering only those. */
+  private static <T> void insertAppendedItems(
+      SectionContext c, ChangeSet changeSet, @Nullable List<T> previousData, List<T> nextData) {
+    final int previousSize = previousData == null ? 0 : previousData.size();
+    final int count = nextData.size() - previousSize;
+    if (count == 0) {
+      return;
+    }
+
+    final EventHandler<RenderEvent> renderEventHandler = DataDiffSection.getRenderEventHandler(c);
+    if (count == 1) {
+      changeSet.insert(
+          previousSize,
+          DataDiffSection.dispatchRenderEvent(
+              renderEventHandler, previousSize, nextData.get(previousSize), null));
+      return;
+    }
+
+    final List<RenderInfo> renderInfos = new ArrayList<>(count);
+    for (int i = previousSize, size = nextData.size(); i < size; i++) {
+      renderInfos.add(
+          DataDiffSection.dispatchRenderEvent(renderEventHandler, i, nextData.get(i), null));
+    }
+    changeSet.insertRange(previousSize, count, renderInfos);
+  }
+
+  private static <T> Object[] getUniqueIdentifiers(
+      EventHandler<GetUniqueIdentifierEvent> getUniqueIdentifierEventHandler,
+      @Nullable List<T> data) {
+    final int size = data == null ? 0 : data.size();
+    final Object[] identifiers = new Object[size];
+    for (int i = 0; i < size; i++) {
+      identifiers[i] =
+          DataDiffSection.dispatchGetUniqueIdentifierEvent(
+              getUniqueIdentifierEventHandler, data.get(i));
+    }
+
+    return identifiers;
+  }
+
   /**
    * @return true if detect moves should be enabled when performing the Diff. Detect moves is
    * enabled by default
@@ -362,6 +490,18 @@ public class DataDiffSectionSpec<T> {
       return mTrimmedHeadItemsCount;
     }
 
+    /** @return the previous data, without the head and tail items that were trimmed. */
+    @Nullable
+    List<T> getPreviousData() {
+      return mPreviousData;
+    }
+
+    /** @return the next data, without the head and tail items that were trimmed. */
+    @Nullable
+    List<T> getNextData() {
+      return mNextData;
+    }
+
     static <T> Diff<List<T>> trimHeadAndTail(
         List<T> previousData,
         List<T> nextData,
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2014-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.litho.sections.common;
+
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Diffs two lists whose items have unique, stable keys, and dispatches the removals, moves,
+ * insertions and changes that turn the previous list into the next one to a {@link
+ * ListUpdateCallback}, like {@link DiffUtil.DiffResult#dispatchUpdatesTo} does.
+ *
+ * <p>Instead of looking for the longest common subsequence of the two lists, which is quadratic in
+ * the worst case, items are matched through a hash index of the keys of the previous list. Items
+ * in the longest increasing subsequence of previous positions stay where they are and every other
+ * item is moved, which takes as few moves as possible. The positions of moves and insertions are
+ * counted with a Fenwick tree, so the whole diff is O((N + M) log(N + M)).
+ */
+final class KeyedListDiff {
+
+  private KeyedListDiff() {}
+
+  /**
+   * @param previousKeys the keys of the items of the previous list, in order
+   * @param nextKeys the keys of the items of the next list, in order
+   * @param callback compares the contents of items with the same key, by position
+   * @param detectMoves whether items that change position are dispatched as moves rather than as a
+   *     removal and an insertion
+   * @return false without dispatching anything if a key is null or used twice in the same list, in
+   *     which case the lists have to be diffed some other way.
+   */
+  static boolean dispatchDiff(
+      Object[] previousKeys,
+      Object[] nextKeys,
+      DiffUtil.Callback callback,
+      boolean detectMoves,
+      ListUpdateCallback updateCallback) {
+    final int previousSize = previousKeys.length;
+    final int nextSize = nextKeys.length;
+
+    final Map<Object, Integer> previousPositions = new HashMap<>(previousSize * 2);
+    for (int i = 0; i < previousSize; i++) {
+      if (previousKeys[i] == null || previousPositions.put(previousKeys[i], i) != null) {
+        return false;
+      }
+    }
+
+    // For every item of the next list, its position in the previous list, or -1 if it's new.
+    final int[] previousPositionOf = new int[nextSize];
+    final boolean[] isKept = new boolean[previousSize];
+    for (int i = 0; i < nextSize; i++) {
+      if (nextKeys[i] == null) {
+        return false;
+      }
+
+      final Integer previousPosition = previousPositions.get(nextKeys[i]);
+      if (previousPosition == null) {
+        previousPositionOf[i] = -1;
+      } else if (isKept[previousPosition]) {
+        return false;
+      } else {
+        previousPositionOf[i] = previousPosition;
+        isKept[previousPosition] = true;
+      }
+    }
+
+    dispatchRemovals(isKept, updateCallback);
+
+    // The position of every kept item once the removed ones are gone.
+    final int[] keptPositions = new int[previousSize];
+    int keptCount = 0;
+    for (int i = 0; i < previousSize; i++) {
+      keptPositions[i] = isKept[i] ? keptCount++ : -1;
+    }
+
+    final boolean[] isStill = findItemsThatStayStill(previousPositionOf, keptPositions);
+
+    // Every item of the next list that gets moved or inserted is placed right after the last item
+    // before it that stays still, or at the head of the list. Each of those runs gets a range of
+    // slots right after the slot of the still item, so that the slots of all the items are in the
+    // order of the list at any time during the diff.
+    final int[] runLengths = new int[keptCount + 1];
+    int anchor = 0;
+    for (int i = 0; i < nextSize; i++) {
+      if (isStill[i]) {
+        anchor = keptPositions[previousPositionOf[i]] + 1;
+      } else {
+        runLengths[anchor]++;
+      }
+    }
+
+    final int[] keptSlots = new int[keptCount];
+    final int[] nextRunSlots = new int[keptCount + 1];
+    int slotCount = runLengths[0];
+    for (int i = 0; i < keptCount; i++) {
+      keptSlots[i] = slotCount++;
+      nextRunSlots[i + 1] = slotCount;
+      slotCount += runLengths[i + 1];
+    }
+
+    final int[] tree = new int[slotCount + 1];
+    for (int i = 0; i < keptCount; i++) {
+      add(tree, keptSlots[i], 1);
+    }
+
+    final boolean[] isReinserted = new boolean[nextSize];
+    int insertionPosition = -1;
+    int insertionCount = 0;
+    anchor = 0;
+    for (int i = 0; i < nextSize; i++) {
+      final int previousPosition = previousPositionOf[i];
+      if (isStill[i]) {
+        anchor = keptPositions[previousPosition] + 1;
+        continue;
+      }
+
+      final int slot = nextRunSlots[anchor]++;
+      if (previousPosition < 0) {
+        final int position = countBefore(tree, slot);
+        add(tree, slot, 1);
+        if (insertionCount > 0 && position == insertionPosition + insertionCount) {
+          insertionCount++;
+        } else {
+          if (insertionCount > 0) {
+            updateCallback.onInserted(insertionPosition, insertionCount);
+          }
+          insertionPosition = position;
+          insertionCount = 1;
+        }
+        continue;
+      }
+
+      if (insertionCount > 0) {
+        updateCallback.onInserted(insertionPosition, insertionCount);
+        insertionCount = 0;
+      }
+
+      final int keptSlot = keptSlots[keptPositions[previousPosition]];
+      final int fromPosition = countBefore(tree, keptSlot);
+      add(tree, keptSlot, -1);
+      final int toPosition = countBefore(tree, slot);
+      add(tree, slot, 1);
+
+      if (detectMoves) {
+        updateCallback.onMoved(fromPosition, toPosition);
+      } else {
+        updateCallback.onRemoved(fromPosition, 1);
+        updateCallback.onInserted(toPosition, 1);
+        isReinserted[i] = true;
+      }
+    }
+
+    if (insertionCount > 0) {
+      updateCallback.onInserted(insertionPosition, insertionCount);
+    }
+
+    dispatchChanges(previousPositionOf, isReinserted, callback, updateCallback);
+
+    return true;
+  }
+
+  /** Removes the items that aren't kept, from the last to the first, one range at a time. */
+  private static void dispatchRemovals(boolean[] isKept, ListUpdateCallback updateCallback) {
+    int i = isKept.length - 1;
+    while (i >= 0) {
+      if (isKept[i]) {
+        i--;
+        continue;
+      }
+
+      final int last = i;
+      while (i >= 0 && !isKept[i]) {
+        i--;
+      }
+      updateCallback.onRemoved(i + 1, last - i);
+    }
+  }
+
+  /** Changes the items whose content changed, in their final positions, one range at a time. */
+  private static void dispatchChanges(
+      int[] previousPositionOf,
+      boolean[] isReinserted,
+      DiffUtil.Callback callback,
+      ListUpdateCallback updateCallback) {
+    int changeStart = -1;
+    for (int i = 0; i <= previousPositionOf.length; i++) {
+      final boolean isChanged =
+          i < previousPositionOf.length
+              && previousPositionOf[i] >= 0
+              && !isReinserted[i]
+              && !callback.areContentsTheSame(previousPositionOf[i], i);
+
+      if (isChanged && changeStart < 0) {
+        changeStart = i;
+      } else if (!isChanged && changeStart >= 0) {
+        updateCallback.onChanged(changeStart, i - changeStart, null);
+        changeStart = -1;
+      }
+    }
+  }
+
+  /**
+   * @return for every item of the next list, whether it's in the longest subsequence of kept items
+   *     that are in the same order as in the previous list. Those don't need to move.
+   */
+  static boolean[] findItemsThatStayStill(int[] previousPositionOf, int[] keptPositions) {
+    final int size = previousPositionOf.length;
+    // tails[k] is the index in the next list of the smallest item ending a subsequence of k + 1.
+    final int[] tails = new int[size];
+    final int[] predecessors = new int[size];
+    final int[] tailValues = new int[size];
+    int length = 0;
+
+    for (int i = 0; i < size; i++) {
+      if (previousPositionOf[i] < 0) {
+        continue;
+      }
+
+      final int value = keptPositions[previousPositionOf[i]];
+      int k = Arrays.binarySearch(tailValues, 0, length, value);
+      if (k < 0) {
+        k = -k - 1;
+      }
+
+      tailValues[k] = value;
+      tails[k] = i;
+      predecessors[i] = k > 0 ? tails[k - 1] : -1;
+      if (k == length) {
+        length++;
+      }
+    }
+
+    final boolean[] isStill = new boolean[size];
+    for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+      isStill[i] = true;
+    }
+
+    return isStill;
+  }
+
+  /** Adds delta to the count of the given slot of a Fenwick tree. */
+  private static void add(int[] tree, int slot, int delta) {
+    for (int i = slot + 1; i < tree.length; i += i & -i) {
+      tree[i] += delta;
+    }
+  }
+
+  /** @return the sum of the counts of the slots before the given one in a Fenwick tree. */
+  private static int countBefore(int[] tree, int slot) {
+    int count = 0;
+    for (int i = slot; i > 0; i -= i & -i) {
+      count += tree[i];
+    }
+    return count;
+  }
+}
@@ -43,6 +43,20 @@ public class SectionsConfiguration {
    */
   public static boolean trimSameInstancesOnly = false;
 
+  /**
+   * If positive, DataDiffSection data with at least this many items, counting both the previous
+   * and next lists, is split into chunks that are diffed in parallel. The OnCheckIsSameItemEvent
+   * and OnCheckIsSameContentEvent handlers are then called from several threads at once.
+   */
+  public static int parallelDataDiffMinItemCount = 0;
+
+  /**
+   * Whether the subtrees of sibling sections are created, and their ChangeSets generated, in
+   * parallel on the pool shared with the other parallel work of Litho. Their lifecycle methods,
+   * event handlers and the SectionsDebugLoggers are then called from several threads at once.
+   */
+  public static boolean parallelSiblingSections = false;
+
   /** Whether inserts/updates/removes should be async. */
   public static boolean asyncMutations = false;
 }
@@ -22,6 +22,7 @@ import com.facebook.litho.ComponentContext;
 import com.facebook.litho.ComponentTree;
 import com.facebook.litho.ComponentTree.MeasureListener;
 import com.facebook.litho.LayoutHandler;
+import com.facebook.litho.PriorityLayoutScheduler;
 import com.facebook.litho.Size;
 import com.facebook.litho.StateHandler;
 import javax.annotation.Nullable;
@@ -62,6 +63,15 @@ public class ComponentTreeHolder {
   @GuardedBy("this")
   private int mLastRequestedHeightSpec = UNINITIALIZED;
 
+  @GuardedBy("this")
+  private int mLayoutPriority = PriorityLayoutScheduler.DEFAULT_PRIORITY;
+
+  @GuardedBy("this")
+  private int mSpeculativeWidthSpec = UNINITIALIZED;
+
+  @GuardedBy("this")
+  private int mSpeculativeHeightSpec = UNINITIALIZED;
+
   private boolean mIsTreeValid;
   private LayoutHandler mLayoutHandler;
   private boolean mCanPrefetchDisplayLists;
@@ -221,6 +231,7 @@ public class ComponentTreeHolder {
 
     final ComponentTree componentTree;
     final Component component;
+    final int layoutPriority;
 
     synchronized (this) {
       if (mRenderInfo.rendersView()) {
@@ -235,9 +246,10 @@ public class ComponentTreeHolder {
 
       componentTree = mComponentTree;
       component = mRenderInfo.getComponent();
+      layoutPriority = mLayoutPriority;
     }
 
-    componentTree.setRootAndSizeSpecAsync(component, widthSpec, heightSpec);
+    componentTree.setRootAndSizeSpecAsync(component, widthSpec, heightSpec, layoutPriority);
 
     synchronized (this) {
       if (mComponentTree == componentTree && component == mRenderInfo.getComponent()) {
@@ -246,6 +258,52 @@ public class ComponentTreeHolder {
     }
   }
 
+  /**
+   * Sets how urgent the async layouts of this item are, lower values being more urgent. This only
+   * has an effect if the layout handler of the item is a {@link PriorityLayoutScheduler}, in which
+   * case a layout of this item that is still queued gets re-prioritized.
+   */
+  void updateLayoutPriority(int layoutPriority) {
+    final ComponentTree componentTree;
+
+    synchronized (this) {
+      if (mLayoutPriority == layoutPriority) {
+        return;
+      }
+
+      mLayoutPriority = layoutPriority;
+      componentTree = mComponentTree;
+    }
+
+    if (componentTree != null) {
+      componentTree.setLayoutPriority(layoutPriority);
+    }
+  }
+
+  /**
+   * Sets the size specs this item is likely to be laid out with later, for which the layout is
+   * calculated ahead of time when the layout thread is idle. See {@link
+   * ComponentTree#addSpeculativeSizeSpec(int, int)}.
+   */
+  void setSpeculativeSizeSpec(int widthSpec, int heightSpec) {
+    final ComponentTree componentTree;
+
+    synchronized (this) {
+      if (mSpeculativeWidthSpec == widthSpec && mSpeculativeHeightSpec == heightSpec) {
+        return;
+      }
+
+      mSpeculativeWidthSpec = widthSpec;
+      mSpeculativeHeightSpec = heightSpec;
+      componentTree = mComponentTree;
+    }
+
+    if (componentTree != null) {
+      componentTree.clearSpeculativeSizeSpecs();
+      componentTree.addSpeculativeSizeSpec(widthSpec, heightSpec);
+    }
+  }
+
   public synchronized RenderInfo getRenderInfo() {
     return mRenderInfo;
   }
@@ -318,6 +376,9 @@ public class ComponentTreeHolder {
     mPendingNewLayoutListener = null;
     mLastRequestedWidthSpec = UNINITIALIZED;
     mLastRequestedHeightSpec = UNINITIALIZED;
+    mLayoutPriority = PriorityLayoutScheduler.DEFAULT_PRIORITY;
+    mSpeculativeWidthSpec = UNINITIALIZED;
+    mSpeculativeHeightSpec = UNINITIALIZED;
     mIsInserted = true;
   }
 
@@ -345,6 +406,9 @@ public class ComponentTreeHolder {
       if (mPendingNewLayoutListener != null) {
         mComponentTree.setNewLayoutStateReadyListener(mPendingNewLayoutListener);
       }
+      if (mSpeculativeWidthSpec != UNINITIALIZED && mSpeculativeHeightSpec != UNINITIALIZED) {
+        mComponentTree.addSpeculativeSizeSpec(mSpeculativeWidthSpec, mSpeculativeHeightSpec);
+      }
     }
   }
 
@@ -50,6 +50,7 @@ import com.facebook.litho.LayoutHandler;
 import com.facebook.litho.LithoView;
 import com.facebook.litho.LogEvent;
 import com.facebook.litho.MeasureComparisonUtils;
+import com.facebook.litho.MountContentDemand;
 import com.facebook.litho.Size;
 import com.facebook.litho.SizeSpec;
 import com.facebook.litho.ThreadUtils;
@@ -64,6 +65,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
@@ -78,6 +80,7 @@ public class RecyclerBinder
     implements Binder<RecyclerView>, LayoutInfo.RenderInfoCollection, HasStickyHeader {
 
   private static final int UNINITIALIZED = -1;
+  private static final long DEFAULT_RANGE_PREALLOCATION_TIME_BUDGET_MS = 4;
   private static final Size sDummySize = new Size();
   private static final String TAG = RecyclerBinder.class.getSimpleName();
 
@@ -189,6 +192,13 @@ public class RecyclerBinder
   private final boolean mHasDynamicItemHeight;
   private final boolean mWrapContent;
   private final boolean mInsertPostAsyncLayoutEnabled;
+  private final int mSpeculativeWidthSpec;
+  private final int mSpeculativeHeightSpec;
+  private final @Nullable LayoutHandler mRangePreallocationHandler;
+  private final long mRangePreallocationTimeBudgetNs;
+
+  @GuardedBy("this")
+  private @Nullable PreallocateRangeRunnable mPreallocateRangeRunnable;
   private int mLastWidthSpec = UNINITIALIZED;
   private int mLastHeightSpec = UNINITIALIZED;
   private Size mMeasuredSize;
@@ -310,6 +320,10 @@ public class RecyclerBinder
     private int componentViewType;
     private @Nullable RecyclerView.Adapter overrideInternalAdapter;
     private String splitLayoutTag;
+    private int speculativeWidthSpec = UNINITIALIZED;
+    private int speculativeHeightSpec = UNINITIALIZED;
+    private @Nullable LayoutHandler rangePreallocationHandler;
+    private long rangePreallocationTimeBudgetMs = DEFAULT_RANGE_PREALLOCATION_TIME_BUDGET_MS;
 
     /**
      * @param rangeRatio specifies how big a range this binder should try to compute. The range is
@@ -451,6 +465,39 @@ public class RecyclerBinder
       return this;
     }
 
+    /**
+     * Size specs the RecyclerView is likely to be measured with later, e.g. in the other
+     * orientation. The layouts of the items in range for these size specs are then calculated
+     * ahead of time when the layout threads are idle, so that switching to them only needs a
+     * mount. See {@link ComponentTree#addSpeculativeSizeSpec(int, int)}.
+     */
+    public Builder speculativeSizeSpecs(int widthSpec, int heightSpec) {
+      this.speculativeWidthSpec = widthSpec;
+      this.speculativeHeightSpec = heightSpec;
+      return this;
+    }
+
+    /**
+     * If set, every time the range changes, the mount content pools are topped up on this handler
+     * to what the laid out items of the range that aren't visible yet need, taking into account
+     * what the pools already hold. This way items of a new type scrolling in don't create their
+     * views on the main thread.
+     */
+    public Builder rangePreallocationHandler(LayoutHandler rangePreallocationHandler) {
+      this.rangePreallocationHandler = rangePreallocationHandler;
+      return this;
+    }
+
+    /**
+     * @param rangePreallocationTimeBudgetMs how long the range preallocation can keep its handler
+     *     busy before letting other messages run. It then carries on in a new message. Defaults
+     *     to 4ms.
+     */
+    public Builder rangePreallocationTimeBudgetMs(long rangePreallocationTimeBudgetMs) {
+      this.rangePreallocationTimeBudgetMs = rangePreallocationTimeBudgetMs;
+      return this;
+    }
+
     /** @param c The {@link ComponentContext} the RecyclerBinder will use. */
     public RecyclerBinder build(ComponentContext c) {
       componentContext = new ComponentContext(c.getBaseContext(), c.getLogTag(), c.getLogger());
@@ -503,6 +550,11 @@ public class RecyclerBinder
             mMainThreadHandler);
 
     mSplitLayoutTag = builder.splitLayoutTag;
+    mSpeculativeWidthSpec = builder.speculativeWidthSpec;
+    mSpeculativeHeightSpec = builder.speculativeHeightSpec;
+    mRangePreallocationHandler = builder.rangePreallocationHandler;
+    mRangePreallocationTimeBudgetNs =
+        TimeUnit.MILLISECONDS.toNanos(builder.rangePreallocationTimeBudgetMs);
   }
 
   /**
@@ -712,6 +764,7 @@ public class RecyclerBinder
 
     final ComponentTreeHolder holder = operation.mHolder;
     holder.setNewLayoutReadyListener(mAsyncLayoutReadyListener);
+    maybeSetSpeculativeSizeSpec(holder);
     holder.computeLayoutAsync(
         mComponentContext, getActualChildrenWidthSpec(holder), getActualChildrenHeightSpec(holder));
   }
@@ -1577,9 +1630,25 @@ public class RecyclerBinder
     // computation will be canceled (if it hasn't started) and this new one will run.
     final int widthSpec = getActualChildrenWidthSpec(holder);
     final int heightSpec = getActualChildrenHeightSpec(holder);
+    maybeSetSpeculativeSizeSpec(holder);
     holder.computeLayoutAsync(mComponentContext, widthSpec, heightSpec);
   }
 
+  private void maybeSetSpeculativeSizeSpec(ComponentTreeHolder holder) {
+    if (mSpeculativeWidthSpec == UNINITIALIZED || mSpeculativeHeightSpec == UNINITIALIZED) {
+      return;
+    }
+
+    final RenderInfo renderInfo = holder.getRenderInfo();
+    if (renderInfo.rendersView()) {
+      return;
+    }
+
+    holder.setSpeculativeSizeSpec(
+        mLayoutInfo.getChildWidthSpec(mSpeculativeWidthSpec, renderInfo),
+        mLayoutInfo.getChildHeightSpec(mSpeculativeHeightSpec, renderInfo));
+  }
+
   private static int findFirstComponentPosition(List<ComponentTreeHolder> holders) {
     for (int i = 0, size = holders.size(); i < size; i++) {
       if (holders.get(i).getRenderInfo().rendersComponent()) {
@@ -2048,11 +2117,53 @@ public class RecyclerBinder
       treeHoldersSize = mComponentTreeHolders.size();
     }
 
-    computeRangeLayout(treeHoldersSize, rangeStart, rangeEnd, mIsCircular);
+    computeRangeLayout(
+        treeHoldersSize, rangeStart, rangeEnd, firstVisible, lastVisible, mIsCircular);
+
+    if (mRangePreallocationHandler != null && !mIsCircular) {
+      preallocateMountContentForRange(rangeStart, rangeEnd, firstVisible, lastVisible);
+    }
+  }
+
+  /**
+   * Replaces any pending range preallocation with one for the items of the new range that aren't
+   * visible yet.
+   */
+  private void preallocateMountContentForRange(
+      int rangeStart, int rangeEnd, int firstVisible, int lastVisible) {
+    final PreallocateRangeRunnable runnable;
+
+    synchronized (this) {
+      final List<ComponentTreeHolder> holders = new ArrayList<>();
+      final int end = Math.min(rangeEnd, mComponentTreeHolders.size() - 1);
+      for (int i = Math.max(0, rangeStart); i <= end; i++) {
+        if (i >= firstVisible && i <= lastVisible) {
+          continue;
+        }
+
+        final ComponentTreeHolder holder = mComponentTreeHolders.get(i);
+        if (holder.getRenderInfo().rendersComponent()) {
+          holders.add(holder);
+        }
+      }
+
+      if (mPreallocateRangeRunnable != null) {
+        mRangePreallocationHandler.removeCallbacks(mPreallocateRangeRunnable);
+      }
+      runnable = new PreallocateRangeRunnable(holders);
+      mPreallocateRangeRunnable = runnable;
+    }
+
+    mRangePreallocationHandler.post(runnable);
   }
 
   private void computeRangeLayout(
-      int treeHoldersSize, int rangeStart, int rangeEnd, boolean ignoreRange) {
+      int treeHoldersSize,
+      int rangeStart,
+      int rangeEnd,
+      int firstVisible,
+      int lastVisible,
+      boolean ignoreRange) {
     // TODO 16212153 optimize computeRange loop.
     for (int i = 0; i < treeHoldersSize; i++) {
       final ComponentTreeHolder holder;
@@ -2081,6 +2192,11 @@ public class RecyclerBinder
         }
       } else {
         if (i >= rangeStart && i <= rangeEnd) {
+          // Items closer to the viewport get laid out first. This also re-prioritizes layouts of
+          // valid trees that are still queued now that the viewport moved.
+          holder.updateLayoutPriority(getLayoutPriority(i, firstVisible, lastVisible));
+          maybeSetSpeculativeSizeSpec(holder);
+
           if (!holder.isTreeValid()) {
             holder.computeLayoutAsync(mComponentContext, childrenWidthSpec, childrenHeightSpec);
           }
@@ -2091,6 +2207,18 @@ public class RecyclerBinder
     }
   }
 
+  /**
+   * @return how urgent the layout of the item at the given position is: 0 for visible items, and the
+   *     distance in items from the viewport otherwise.
+   */
+  private static int getLayoutPriority(int position, int firstVisible, int lastVisible) {
+    if (position < firstVisible) {
+      return firstVisible - position;
+    }
+
+    return position > lastVisible ? position - lastVisible : 0;
+  }
+
   @VisibleForTesting
   @Nullable
   RangeCalculationResult getRangeCalculationResult() {
@@ -2376,6 +2504,46 @@ public class RecyclerBinder
     }
   }
 
+  /**
+   * Collects the mount content demand of the trees of a range once their layouts are needed, then
+   * tops up the pools to it within the time budget, posting itself again until it's done.
+   */
+  private class PreallocateRangeRunnable implements Runnable {
+
+    private final List<ComponentTreeHolder> mHolders;
+    private @Nullable MountContentDemand mDemand;
+
+    PreallocateRangeRunnable(List<ComponentTreeHolder> holders) {
+      mHolders = holders;
+    }
+
+    @Override
+    public void run() {
+      final long deadlineNs = System.nanoTime() + mRangePreallocationTimeBudgetNs;
+
+      if (mDemand == null) {
+        mDemand = new MountContentDemand();
+        for (int i = 0, size = mHolders.size(); i < size; i++) {
+          final ComponentTree componentTree = mHolders.get(i).getComponentTree();
+          if (componentTree != null) {
+            componentTree.collectMountContentDemand(mDemand);
+          }
+        }
+      }
+
+      if (mDemand.preallocate(deadlineNs)) {
+        return;
+      }
+
+      synchronized (RecyclerBinder.this) {
+        // Don't carry on if the range changed in the meantime.
+        if (mPreallocateRangeRunnable == this) {
+          mRangePreallocationHandler.post(this);
+        }
+      }
+    }
+  }
+
   private ComponentTreeHolder createComponentTreeHolder(RenderInfo renderInfo) {
     return mComponentTreeHolderFactory.create(
         renderInfo,